@@ -0,0 +1,5 @@
+insert into db_version (major, minor, patch, scriptname, description) values (2, 0, '0011', 'U0011AddFeedConditionalGetColumns.sql', 'Add etag, lastModified and contentHash to Feed');
+
+ALTER TABLE Feed ADD COLUMN etag varchar(255);
+ALTER TABLE Feed ADD COLUMN lastModified varchar(255);
+ALTER TABLE Feed ADD COLUMN contentHash varchar(255);
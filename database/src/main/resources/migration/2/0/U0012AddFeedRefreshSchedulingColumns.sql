@@ -0,0 +1,4 @@
+insert into db_version (major, minor, patch, scriptname, description) values (2, 0, '0012', 'U0012AddFeedRefreshSchedulingColumns.sql', 'Add nextRefresh and failureCount to Feed');
+
+ALTER TABLE Feed ADD COLUMN nextRefresh bigint;
+ALTER TABLE Feed ADD COLUMN failureCount integer;
@@ -19,13 +19,14 @@ import org.eurekastreams.commons.actions.Action;
 import org.eurekastreams.commons.actions.AuthorizationStrategy;
 import org.eurekastreams.commons.actions.ExecutionStrategy;
 import org.eurekastreams.commons.actions.ValidationStrategy;
+import org.springframework.beans.factory.BeanNameAware;
 
 /**
  * Service based implementation of the Action interface. Service actions are intended to be called through the GWT RPC
  * servlet and populated with an appropriate ServiceActionContext.
  *
  */
-public class ServiceAction implements Action
+public class ServiceAction implements Action, BeanNameAware
 {
     /**
      * Instance of the {@link ValidationStrategy} for this action.
@@ -47,6 +48,11 @@ public class ServiceAction implements Action
      */
     private final boolean readOnly;
 
+    /**
+     * Name of the action's bean, which is also its action key.
+     */
+    private String beanName;
+
     /**
      * Constructor for the ServiceAction class.
      *
@@ -101,4 +107,21 @@ public class ServiceAction implements Action
         return readOnly;
     }
 
+    /**
+     * @param inBeanName
+     *            name of the action's bean.
+     */
+    public void setBeanName(final String inBeanName)
+    {
+        beanName = inBeanName;
+    }
+
+    /**
+     * @return name of the action's bean, which is also its action key; null if not created by Spring.
+     */
+    public String getBeanName()
+    {
+        return beanName;
+    }
+
 }
@@ -20,6 +20,7 @@ import org.eurekastreams.commons.actions.TaskHandlerAction;
 import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
 import org.eurekastreams.commons.actions.ValidationStrategy;
 import org.eurekastreams.commons.task.TaskHandler;
+import org.springframework.beans.factory.BeanNameAware;
 
 /**
  * This class represents the {@link ServiceAction} based implementation of the {@link TaskHandlerAction} interface.
@@ -29,7 +30,7 @@ import org.eurekastreams.commons.task.TaskHandler;
  * the controller to use to submit the requests.
  *
  */
-public class TaskHandlerServiceAction implements TaskHandlerAction
+public class TaskHandlerServiceAction implements TaskHandlerAction, BeanNameAware
 {
     /**
      * Instance of the {@link TaskHandler} for this class.
@@ -56,6 +57,11 @@ public class TaskHandlerServiceAction implements TaskHandlerAction
      */
     private final boolean readOnly;
 
+    /**
+     * Name of the action's bean, which is also its action key.
+     */
+    private String beanName;
+
     /**
      * Constructor for this class.
      *
@@ -126,4 +132,21 @@ public class TaskHandlerServiceAction implements TaskHandlerAction
         return readOnly;
     }
 
+    /**
+     * @param inBeanName
+     *            name of the action's bean.
+     */
+    public void setBeanName(final String inBeanName)
+    {
+        beanName = inBeanName;
+    }
+
+    /**
+     * @return name of the action's bean, which is also its action key; null if not created by Spring.
+     */
+    public String getBeanName()
+    {
+        return beanName;
+    }
+
 }
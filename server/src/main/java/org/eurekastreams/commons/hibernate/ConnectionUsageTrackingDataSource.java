@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.hibernate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Counts the connections taken from a data source, in total and by the current thread. Placed between a lazy
+ * connection proxy and the pool, it counts the physical connections actually needed, so a caller can tell whether a
+ * unit of work it ran touched the database by comparing the thread's count before and after.
+ */
+public class ConnectionUsageTrackingDataSource extends DelegatingDataSource
+{
+    /**
+     * Connections taken by each thread.
+     */
+    private final ThreadLocal<int[]> takenByThread = new ThreadLocal<int[]>()
+    {
+        @Override
+        protected int[] initialValue()
+        {
+            return new int[1];
+        }
+    };
+
+    /**
+     * Connections taken by all threads.
+     */
+    private final AtomicLong taken = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param inTargetDataSource
+     *            the data source to take connections from.
+     */
+    public ConnectionUsageTrackingDataSource(final DataSource inTargetDataSource)
+    {
+        super(inTargetDataSource);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection() throws SQLException
+    {
+        count();
+        return super.getConnection();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Connection getConnection(final String inUsername, final String inPassword) throws SQLException
+    {
+        count();
+        return super.getConnection(inUsername, inPassword);
+    }
+
+    /**
+     * Counts a connection taken.
+     */
+    private void count()
+    {
+        takenByThread.get()[0]++;
+        taken.incrementAndGet();
+    }
+
+    /**
+     * @return the number of connections the current thread has taken; only differences between two calls on the same
+     *         thread are meaningful.
+     */
+    public int getConnectionsTakenByThread()
+    {
+        return takenByThread.get()[0];
+    }
+
+    /**
+     * @return the number of connections taken by all threads.
+     */
+    public long getConnectionsTaken()
+    {
+        return taken.get();
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.hibernate;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.Entity;
+import javax.persistence.MappedSuperclass;
+
+import org.hibernate.collection.PersistentCollection;
+import org.hibernate.proxy.HibernateProxy;
+
+/**
+ * Tells whether an object graph may hold anything Hibernate manages: entities, entity proxies or persistent
+ * collections. Graphs holding none of these need no preparation for serialization.
+ *
+ * Types registered as proxy-free are trusted without looking inside. Anything else is walked: collections, maps and
+ * arrays by their elements, other objects by their fields. The walk only reads references, so it is much cheaper than
+ * a clone of the graph.
+ */
+public class PersistentObjectDetector
+{
+    /**
+     * Names of the classes whose instances never hold persistent objects.
+     */
+    private final Set<String> proxyFreeClassNames;
+
+    /**
+     * Whether each class seen is an entity.
+     */
+    private final Map<Class< ? >, Boolean> entityClasses = new ConcurrentHashMap<Class< ? >, Boolean>();
+
+    /**
+     * The reference fields of each class seen.
+     */
+    private final Map<Class< ? >, Field[]> referenceFields = new ConcurrentHashMap<Class< ? >, Field[]>();
+
+    /**
+     * Constructor.
+     *
+     * @param inProxyFreeClassNames
+     *            names of the classes whose instances never hold persistent objects.
+     */
+    public PersistentObjectDetector(final Collection<String> inProxyFreeClassNames)
+    {
+        proxyFreeClassNames = new HashSet<String>(inProxyFreeClassNames);
+    }
+
+    /**
+     * Determines if an object graph may hold persistent objects.
+     *
+     * @param inObject
+     *            the root of the graph.
+     * @return true if the graph holds an entity, proxy or persistent collection, or can't be walked.
+     */
+    public boolean holdsPersistentObjects(final Object inObject)
+    {
+        Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        List<Object> pending = new ArrayList<Object>();
+        pending.add(inObject);
+
+        while (!pending.isEmpty())
+        {
+            Object current = pending.remove(pending.size() - 1);
+            if (isLeaf(current) || !visited.add(current))
+            {
+                continue;
+            }
+            if (current instanceof HibernateProxy || current instanceof PersistentCollection
+                    || isEntity(current.getClass()))
+            {
+                return true;
+            }
+
+            if (current instanceof Collection)
+            {
+                pending.addAll((Collection< ? >) current);
+            }
+            else if (current instanceof Map)
+            {
+                pending.addAll(((Map< ? , ? >) current).keySet());
+                pending.addAll(((Map< ? , ? >) current).values());
+            }
+            else if (current instanceof Object[])
+            {
+                Collections.addAll(pending, (Object[]) current);
+            }
+            else if (!current.getClass().isArray())
+            {
+                try
+                {
+                    for (Field field : getReferenceFields(current.getClass()))
+                    {
+                        pending.add(field.get(current));
+                    }
+                }
+                catch (Exception ex)
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determines if an object can hold nothing of interest.
+     *
+     * @param inObject
+     *            the object.
+     * @return true if the object is null, a registered proxy-free type or a simple value.
+     */
+    private boolean isLeaf(final Object inObject)
+    {
+        return inObject == null || inObject instanceof String || inObject instanceof Number
+                || inObject instanceof Boolean || inObject instanceof Character || inObject instanceof Enum
+                || inObject instanceof Date || inObject instanceof Class
+                || proxyFreeClassNames.contains(inObject.getClass().getName());
+    }
+
+    /**
+     * Determines if a class is a mapped entity.
+     *
+     * @param inClass
+     *            the class.
+     * @return true if the class or one of its superclasses is an entity or mapped superclass.
+     */
+    private boolean isEntity(final Class< ? > inClass)
+    {
+        Boolean entity = entityClasses.get(inClass);
+        if (entity == null)
+        {
+            entity = false;
+            for (Class< ? > c = inClass; c != null && !entity; c = c.getSuperclass())
+            {
+                entity = c.isAnnotationPresent(Entity.class) || c.isAnnotationPresent(MappedSuperclass.class);
+            }
+            entityClasses.put(inClass, entity);
+        }
+        return entity;
+    }
+
+    /**
+     * Gets the instance fields of a class, including inherited ones, which can refer to other objects.
+     *
+     * @param inClass
+     *            the class.
+     * @return the fields, made accessible.
+     */
+    private Field[] getReferenceFields(final Class< ? > inClass)
+    {
+        Field[] fields = referenceFields.get(inClass);
+        if (fields == null)
+        {
+            List<Field> found = new ArrayList<Field>();
+            for (Class< ? > c = inClass; c != null && c != Object.class; c = c.getSuperclass())
+            {
+                for (Field field : c.getDeclaredFields())
+                {
+                    if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive())
+                    {
+                        field.setAccessible(true);
+                        found.add(field);
+                    }
+                }
+            }
+            fields = found.toArray(new Field[found.size()]);
+            referenceFields.put(inClass, fields);
+        }
+        return fields;
+    }
+}
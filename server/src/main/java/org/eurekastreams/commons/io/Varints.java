@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.io;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Variable-length encoding of longs shared by the compact binary formats (cached id lists, queued action requests).
+ * An unsigned varint holds seven bits per byte, least significant first, with the high bit set on every byte but the
+ * last. Signed values are zig-zag encoded first so small magnitudes of either sign stay short.
+ *
+ * The byte[] forms take a single-element int[] holding the position, which they advance past the varint.
+ */
+public final class Varints
+{
+    /** Maximum bytes in a varint encoded long. */
+    public static final int MAX_BYTES = 10;
+
+    /** Continuation bit, set on every byte of a varint but the last. */
+    public static final int CONTINUE = 0x80;
+
+    /** Bits of payload per varint byte. */
+    private static final int PAYLOAD_BITS = 7;
+
+    /** Mask for the varint payload bits. */
+    private static final int PAYLOAD_MASK = 0x7F;
+
+    /**
+     * Not instantiable.
+     */
+    private Varints()
+    {
+    }
+
+    /**
+     * Write an unsigned varint into a buffer.
+     *
+     * @param inBuffer
+     *            the buffer, with room for MAX_BYTES at the position.
+     * @param inPos
+     *            single-element holder of the write position, advanced past the varint.
+     * @param inValue
+     *            the value, treated as unsigned.
+     */
+    public static void writeUnsigned(final byte[] inBuffer, final int[] inPos, final long inValue)
+    {
+        long v = inValue;
+        while ((v & ~PAYLOAD_MASK) != 0)
+        {
+            inBuffer[inPos[0]++] = (byte) ((v & PAYLOAD_MASK) | CONTINUE);
+            v >>>= PAYLOAD_BITS;
+        }
+        inBuffer[inPos[0]++] = (byte) v;
+    }
+
+    /**
+     * Read an unsigned varint from a buffer.
+     *
+     * @param inBuffer
+     *            the buffer.
+     * @param inPos
+     *            single-element holder of the read position, advanced past the varint.
+     * @return the value.
+     * @throws IOException
+     *             if the varint is truncated or too long.
+     */
+    public static long readUnsigned(final byte[] inBuffer, final int[] inPos) throws IOException
+    {
+        long result = 0;
+        for (int shift = 0; shift < MAX_BYTES * PAYLOAD_BITS; shift += PAYLOAD_BITS)
+        {
+            if (inPos[0] >= inBuffer.length)
+            {
+                throw new IOException("Truncated varint at byte " + inPos[0]);
+            }
+            int b = inBuffer[inPos[0]++];
+            result |= ((long) (b & PAYLOAD_MASK)) << shift;
+            if ((b & CONTINUE) == 0)
+            {
+                return result;
+            }
+        }
+        throw new IOException("Malformed varint ending at byte " + inPos[0]);
+    }
+
+    /**
+     * Write a signed long as a zig-zag varint; small magnitudes take one or two bytes.
+     *
+     * @param inValue
+     *            the value.
+     * @param inOut
+     *            where to write it.
+     * @throws IOException
+     *             on error.
+     */
+    public static void writeSigned(final long inValue, final DataOutput inOut) throws IOException
+    {
+        long v = zigzag(inValue);
+        while ((v & ~PAYLOAD_MASK) != 0)
+        {
+            inOut.writeByte((int) ((v & PAYLOAD_MASK) | CONTINUE));
+            v >>>= PAYLOAD_BITS;
+        }
+        inOut.writeByte((int) v);
+    }
+
+    /**
+     * Read a long written by writeSigned.
+     *
+     * @param inIn
+     *            where to read it from.
+     * @return the value.
+     * @throws IOException
+     *             on error or if the varint is too long.
+     */
+    public static long readSigned(final DataInput inIn) throws IOException
+    {
+        long v = 0;
+        for (int shift = 0; shift < MAX_BYTES * PAYLOAD_BITS; shift += PAYLOAD_BITS)
+        {
+            int b = inIn.readByte();
+            v |= ((long) (b & PAYLOAD_MASK)) << shift;
+            if ((b & CONTINUE) == 0)
+            {
+                return unzigzag(v);
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Zig-zag encode a signed value so small magnitudes of either sign become small unsigned values.
+     *
+     * @param inValue
+     *            the signed value.
+     * @return the zig-zag encoded value.
+     */
+    public static long zigzag(final long inValue)
+    {
+        return (inValue << 1) ^ (inValue >> (Long.SIZE - 1));
+    }
+
+    /**
+     * Reverse zigzag.
+     *
+     * @param inValue
+     *            the zig-zag encoded value.
+     * @return the signed value.
+     */
+    public static long unzigzag(final long inValue)
+    {
+        return (inValue >>> 1) ^ -(inValue & 1);
+    }
+}
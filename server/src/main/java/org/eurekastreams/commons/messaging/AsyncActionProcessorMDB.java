@@ -15,26 +15,72 @@
  */
 package org.eurekastreams.commons.messaging;
 
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageListener;
 import javax.jms.ObjectMessage;
 
 import org.apache.log4j.Logger;
 import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.commons.server.UserActionRequestBatch;
 import org.eurekastreams.commons.task.TaskHandler;
 
 /**
  * This class takes a message off the queue, gets the request out of the message, gets the action, and calls the action,
- * passing the request to it.
+ * passing the request to it. A message may also carry a batch of requests, which are run in order.
+ *
+ * Throughput (messages and requests per second) and how long messages waited on the queue are logged at info level
+ * once per report interval. Use one instance per queue (lane) so the figures are per lane. Wait times come from the
+ * time the producer stamped on the message, so they are only as good as the clock agreement between hosts.
  */
 public class AsyncActionProcessorMDB implements MessageListener
 {
     /** The logger. */
     private final Logger log = Logger.getLogger(AsyncActionProcessorMDB.class);
 
+    /** Default time between throughput reports, in milliseconds. */
+    private static final long DEFAULT_REPORT_INTERVAL_MILLIS = 60000;
+
     /** The task handler which will execute the action. */
     private final TaskHandler taskHandler;
 
+    /** Reads requests from messages in either format; when null, only ObjectMessages are understood. */
+    private final UserActionRequestCodec messageCodec;
+
+    /** Time between throughput reports, in milliseconds. */
+    private long reportIntervalMillis = DEFAULT_REPORT_INTERVAL_MILLIS;
+
+    /** Messages processed since the last report. */
+    private final AtomicLong messagesProcessed = new AtomicLong();
+
+    /** Requests processed since the last report. */
+    private final AtomicLong requestsProcessed = new AtomicLong();
+
+    /** When the last report was made. */
+    private final AtomicLong lastReportMillis = new AtomicLong(System.currentTimeMillis());
+
+    /** Name of the lane (queue) this instance consumes, for reports. */
+    private String laneName = "Queue";
+
+    /** Total time messages waited on the queue since the last report, in milliseconds. */
+    private final AtomicLong waitMillisSinceReport = new AtomicLong();
+
+    /** Longest time a message waited on the queue since the last report, in milliseconds. */
+    private final AtomicLong maxWaitMillisSinceReport = new AtomicLong();
+
+    /** Total messages processed. */
+    private final AtomicLong totalMessagesProcessed = new AtomicLong();
+
+    /** Total time messages waited on the queue, in milliseconds. */
+    private final AtomicLong totalWaitMillis = new AtomicLong();
+
+    /** Time the most recent message waited on the queue, in milliseconds. */
+    private volatile long lastWaitMillis = 0;
+
     /**
      * Constructor.
      *
@@ -42,8 +88,22 @@ public class AsyncActionProcessorMDB implements MessageListener
      *            The task handler which will execute the action.
      */
     public AsyncActionProcessorMDB(final TaskHandler inTaskHandler)
+    {
+        this(inTaskHandler, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inTaskHandler
+     *            The task handler which will execute the action.
+     * @param inMessageCodec
+     *            Reads requests from messages in either format.
+     */
+    public AsyncActionProcessorMDB(final TaskHandler inTaskHandler, final UserActionRequestCodec inMessageCodec)
     {
         taskHandler = inTaskHandler;
+        messageCodec = inMessageCodec;
     }
 
     /**
@@ -57,24 +117,45 @@ public class AsyncActionProcessorMDB implements MessageListener
     {
         try
         {
-            if (message instanceof ObjectMessage)
-            {
-                log.debug("message received is of ObjectMessage type.");
-
-                // get the message containing the request off the queue
-                ObjectMessage objectMessage = (ObjectMessage) message;
+            recordWait(message);
 
-                // pull the request out of the message
-                UserActionRequest userActionRequest = (UserActionRequest) objectMessage.getObject();
-
-                log.debug("found action " + userActionRequest.getActionKey());
+            // get the request (or batch) out of the message
+            Serializable payload = null;
+            if (messageCodec != null)
+            {
+                payload = messageCodec.fromMessage(message);
+            }
+            else if (message instanceof ObjectMessage)
+            {
+                payload = ((ObjectMessage) message).getObject();
+            }
 
-                // run the action.
-                taskHandler.handleTask(userActionRequest);
+            if (payload instanceof UserActionRequestBatch)
+            {
+                int count = 0;
+                for (UserActionRequest userActionRequest : ((UserActionRequestBatch) payload).getRequests())
+                {
+                    // one failing request must not keep the rest of the batch from running
+                    try
+                    {
+                        handle(userActionRequest);
+                    }
+                    catch (Exception e)
+                    {
+                        log.error("Error running " + userActionRequest.getActionKey() + " from a batch.", e);
+                    }
+                    count++;
+                }
+                countProcessed(count);
+            }
+            else if (payload instanceof UserActionRequest)
+            {
+                handle((UserActionRequest) payload);
+                countProcessed(1);
             }
             else
             {
-                log.debug("message received is not of ObjectMessage type.");
+                log.debug("message received is not of a known type.");
             }
         }
         catch (Exception e)
@@ -82,4 +163,122 @@ public class AsyncActionProcessorMDB implements MessageListener
             log.error(e);
         }
     }
+
+    /**
+     * Runs one request.
+     *
+     * @param userActionRequest
+     *            the request.
+     * @throws Exception
+     *             from the task handler.
+     */
+    private void handle(final UserActionRequest userActionRequest) throws Exception
+    {
+        log.debug("found action " + userActionRequest.getActionKey());
+
+        // run the action.
+        taskHandler.handleTask(userActionRequest);
+    }
+
+    /**
+     * Records how long a message waited on the queue.
+     *
+     * @param message
+     *            the message.
+     * @throws JMSException
+     *             if the timestamp cannot be read.
+     */
+    private void recordWait(final Message message) throws JMSException
+    {
+        long sent = message.getJMSTimestamp();
+        if (sent <= 0)
+        {
+            // the producer disabled timestamps
+            return;
+        }
+        long wait = Math.max(0, System.currentTimeMillis() - sent);
+        lastWaitMillis = wait;
+        totalWaitMillis.addAndGet(wait);
+        waitMillisSinceReport.addAndGet(wait);
+        long max = maxWaitMillisSinceReport.get();
+        while (wait > max && !maxWaitMillisSinceReport.compareAndSet(max, wait))
+        {
+            max = maxWaitMillisSinceReport.get();
+        }
+    }
+
+    /**
+     * Counts a processed message and reports throughput if the report interval has passed.
+     *
+     * @param requestCount
+     *            number of requests the message carried.
+     */
+    private void countProcessed(final int requestCount)
+    {
+        messagesProcessed.incrementAndGet();
+        requestsProcessed.addAndGet(requestCount);
+        totalMessagesProcessed.incrementAndGet();
+
+        long now = System.currentTimeMillis();
+        long last = lastReportMillis.get();
+        long elapsed = now - last;
+        if (elapsed >= reportIntervalMillis && lastReportMillis.compareAndSet(last, now))
+        {
+            long messages = messagesProcessed.getAndSet(0);
+            long requests = requestsProcessed.getAndSet(0);
+            long waitMillis = waitMillisSinceReport.getAndSet(0);
+            long maxWaitMillis = maxWaitMillisSinceReport.getAndSet(0);
+            if (log.isInfoEnabled())
+            {
+                double seconds = elapsed / (double) TimeUnit.SECONDS.toMillis(1);
+                long averageWaitMillis = messages == 0 ? 0 : waitMillis / messages;
+                log.info(String.format("%s processed %d messages (%d requests) in %.0f s: %.1f messages/s, "
+                        + "%.1f requests/s; queue wait %d ms average, %d ms max", laneName, messages, requests,
+                        seconds, messages / seconds, requests / seconds, averageWaitMillis, maxWaitMillis));
+            }
+        }
+    }
+
+    /**
+     * @param inReportIntervalMillis
+     *            time between throughput reports, in milliseconds.
+     */
+    public void setReportIntervalMillis(final long inReportIntervalMillis)
+    {
+        reportIntervalMillis = inReportIntervalMillis;
+    }
+
+    /**
+     * @param inLaneName
+     *            name of the lane (queue) this instance consumes, for reports.
+     */
+    public void setLaneName(final String inLaneName)
+    {
+        laneName = inLaneName;
+    }
+
+    /**
+     * @return total messages processed.
+     */
+    public long getMessagesProcessed()
+    {
+        return totalMessagesProcessed.get();
+    }
+
+    /**
+     * @return average time messages waited on the queue, in milliseconds.
+     */
+    public long getAverageWaitMillis()
+    {
+        long messages = totalMessagesProcessed.get();
+        return messages == 0 ? 0 : totalWaitMillis.get() / messages;
+    }
+
+    /**
+     * @return time the most recent message waited on the queue, in milliseconds.
+     */
+    public long getLastWaitMillis()
+    {
+        return lastWaitMillis;
+    }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.messaging;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+/**
+ * Writes and reads one family of action request parameter types in the compact queue message format, without Java
+ * serialization's class descriptors. See {@link UserActionRequestCodec}.
+ *
+ * Type ids are part of the wire format: never reuse or renumber one, and deploy a new codec to every consumer before
+ * any producer starts writing it.
+ */
+public interface ParamCodec
+{
+    /**
+     * @return the id written ahead of values this codec encodes; unique among the codecs configured.
+     */
+    int getTypeId();
+
+    /**
+     * @param value
+     *            a non-null parameter value.
+     * @return whether this codec can write the value.
+     */
+    boolean canWrite(Serializable value);
+
+    /**
+     * Write a value.
+     *
+     * @param value
+     *            the value (one this codec can write).
+     * @param out
+     *            where to write it.
+     * @throws IOException
+     *             on error writing.
+     */
+    void write(Serializable value, DataOutput out) throws IOException;
+
+    /**
+     * Read a value written by this codec.
+     *
+     * @param in
+     *            where to read it from.
+     * @return the value.
+     * @throws IOException
+     *             on error reading or if the data is corrupt.
+     */
+    Serializable read(DataInput in) throws IOException;
+}
@@ -0,0 +1,754 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.messaging;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.ObjectMessage;
+import javax.jms.Session;
+
+import org.eurekastreams.commons.actions.context.DefaultPrincipal;
+import org.eurekastreams.commons.io.Varints;
+import org.eurekastreams.commons.actions.context.Principal;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.commons.server.UserActionRequestBatch;
+
+/**
+ * Converts the requests put on the action queues to and from JMS messages.
+ *
+ * Two formats exist:
+ * <ul>
+ * <li>legacy: an ObjectMessage holding the Java-serialized request or batch.</li>
+ * <li>compact: a BytesMessage starting with a format version byte. Requests are written field by field; common
+ * parameter types (boxed primitives, strings, lists and sets of longs or strings) and those handled by a configured
+ * {@link ParamCodec} are written without class descriptors, with numbers and lengths as varints. Within a message, an
+ * action key is written once and referred to by index after that. Any other parameter is Java-serialized in place, so
+ * every request can be sent either way.</li>
+ * </ul>
+ *
+ * Reading always accepts both formats; only the format written is configurable. To switch a cluster to the compact
+ * format, first deploy every consumer with writeCompact false (the default), then turn writeCompact on. A consumer
+ * given a version it doesn't know fails the message rather than guessing, so later format versions must likewise be
+ * read everywhere before they are written.
+ */
+public class UserActionRequestCodec
+{
+    /** Version 1 of the compact format. */
+    static final byte VERSION_1 = 1;
+
+    /** Payload is a single request. */
+    private static final byte KIND_REQUEST = 1;
+
+    /** Payload is a batch of requests. */
+    private static final byte KIND_BATCH = 2;
+
+    /** Payload is some other value. */
+    private static final byte KIND_VALUE = 3;
+
+    /** Value tag: null. */
+    private static final byte TAG_NULL = 0;
+
+    /** Value tag: Java-serialized value. */
+    private static final byte TAG_SERIALIZED = 1;
+
+    /** Value tag: Long. */
+    private static final byte TAG_LONG = 2;
+
+    /** Value tag: Integer. */
+    private static final byte TAG_INTEGER = 3;
+
+    /** Value tag: String. */
+    private static final byte TAG_STRING = 4;
+
+    /** Value tag: Boolean. */
+    private static final byte TAG_BOOLEAN = 5;
+
+    /** Value tag: list of longs. */
+    private static final byte TAG_LONG_LIST = 6;
+
+    /** Value tag: set of longs. */
+    private static final byte TAG_LONG_SET = 7;
+
+    /** Value tag: list of strings. */
+    private static final byte TAG_STRING_LIST = 8;
+
+    /** Value tag: set of strings. */
+    private static final byte TAG_STRING_SET = 9;
+
+    /** Value tag: DefaultPrincipal. */
+    private static final byte TAG_PRINCIPAL = 10;
+
+    /** Value tag: value written by a ParamCodec. */
+    private static final byte TAG_CODEC = 11;
+
+    /** Initial size of the encoding buffer. */
+    private static final int INITIAL_BUFFER_SIZE = 128;
+
+    /**
+     * List classes written compactly (read back as ArrayList). Only exact classes are, so a subclass with state of its
+     * own is never silently replaced.
+     */
+    private static final Collection<Class< ? >> LIST_CLASSES = Arrays.<Class< ? >> asList(ArrayList.class, Collections
+            .singletonList(null).getClass(), Collections.emptyList().getClass(), Arrays.asList().getClass());
+
+    /** Set classes written compactly (read back as LinkedHashSet, which keeps order and is a HashSet). */
+    private static final Collection<Class< ? >> SET_CLASSES = Arrays.<Class< ? >> asList(HashSet.class,
+            LinkedHashSet.class, Collections.singleton(null).getClass(), Collections.emptySet().getClass());
+
+    /** Whether to write the compact format. */
+    private final boolean writeCompact;
+
+    /** Codecs for specific parameter types. */
+    private final List<ParamCodec> paramCodecs;
+
+    /** Codecs for specific parameter types, by type id. */
+    private final Map<Integer, ParamCodec> paramCodecsById = new HashMap<Integer, ParamCodec>();
+
+    /**
+     * Constructor.
+     *
+     * @param inWriteCompact
+     *            true to write the compact format, false to write the legacy format.
+     * @param inParamCodecs
+     *            codecs for specific parameter types.
+     */
+    public UserActionRequestCodec(final boolean inWriteCompact, final List<ParamCodec> inParamCodecs)
+    {
+        writeCompact = inWriteCompact;
+        paramCodecs = inParamCodecs;
+        for (ParamCodec codec : inParamCodecs)
+        {
+            if (paramCodecsById.put(codec.getTypeId(), codec) != null)
+            {
+                throw new IllegalArgumentException("Duplicate param codec type id " + codec.getTypeId());
+            }
+        }
+    }
+
+    /**
+     * @return whether the compact format is written.
+     */
+    public boolean isWriteCompact()
+    {
+        return writeCompact;
+    }
+
+    /**
+     * Create a message holding a request or batch of requests.
+     *
+     * @param session
+     *            the JMS session.
+     * @param payload
+     *            the request or batch.
+     * @return the message.
+     * @throws JMSException
+     *             on error creating the message or if the payload can't be encoded.
+     */
+    public Message toMessage(final Session session, final Serializable payload) throws JMSException
+    {
+        if (!writeCompact)
+        {
+            return session.createObjectMessage(payload);
+        }
+
+        byte[] bytes;
+        try
+        {
+            bytes = encode(payload);
+        }
+        catch (IOException ex)
+        {
+            JMSException jex = new JMSException("Could not encode " + payload);
+            jex.setLinkedException(ex);
+            throw jex;
+        }
+        BytesMessage message = session.createBytesMessage();
+        message.writeBytes(bytes);
+        return message;
+    }
+
+    /**
+     * Get the request or batch of requests from a message in either format.
+     *
+     * @param message
+     *            the message.
+     * @return the request or batch, or null if the message is not of a type this codec writes.
+     * @throws JMSException
+     *             on error reading the message.
+     * @throws IOException
+     *             if the compact data is corrupt or of an unknown version.
+     */
+    public Serializable fromMessage(final Message message) throws JMSException, IOException
+    {
+        if (message instanceof ObjectMessage)
+        {
+            return ((ObjectMessage) message).getObject();
+        }
+        if (message instanceof BytesMessage)
+        {
+            BytesMessage bytesMessage = (BytesMessage) message;
+            byte[] bytes = new byte[(int) bytesMessage.getBodyLength()];
+            bytesMessage.readBytes(bytes);
+            return decode(bytes);
+        }
+        return null;
+    }
+
+    /**
+     * Encode a request, batch of requests, or other value in the compact format.
+     *
+     * @param payload
+     *            the request or batch.
+     * @return the bytes.
+     * @throws IOException
+     *             if a parameter can't be serialized.
+     */
+    public byte[] encode(final Serializable payload) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(VERSION_1);
+        if (payload instanceof UserActionRequestBatch)
+        {
+            List<UserActionRequest> requests = ((UserActionRequestBatch) payload).getRequests();
+            List<String> actionKeys = new ArrayList<String>();
+            out.writeByte(KIND_BATCH);
+            Varints.writeSigned(requests.size(), out);
+            for (UserActionRequest request : requests)
+            {
+                writeRequest(request, actionKeys, out);
+            }
+        }
+        else if (payload instanceof UserActionRequest && payload.getClass() == UserActionRequest.class)
+        {
+            out.writeByte(KIND_REQUEST);
+            writeRequest((UserActionRequest) payload, new ArrayList<String>(), out);
+        }
+        else
+        {
+            out.writeByte(KIND_VALUE);
+            writeValue(payload, out);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decode bytes written in the compact format.
+     *
+     * @param inBytes
+     *            the bytes.
+     * @return the request, batch of requests, or other value.
+     * @throws IOException
+     *             if the bytes are corrupt or of an unknown version.
+     */
+    public Serializable decode(final byte[] inBytes) throws IOException
+    {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(inBytes));
+        byte version = in.readByte();
+        if (version != VERSION_1)
+        {
+            throw new IOException("Unsupported queue message format version " + version);
+        }
+
+        byte kind = in.readByte();
+        switch (kind)
+        {
+        case KIND_REQUEST:
+            return readRequest(new ArrayList<String>(), in);
+        case KIND_BATCH:
+            long count = Varints.readSigned(in);
+            if (count < 0 || count > inBytes.length)
+            {
+                throw new IOException("Invalid batch size " + count);
+            }
+            List<String> actionKeys = new ArrayList<String>();
+            List<UserActionRequest> requests = new ArrayList<UserActionRequest>((int) count);
+            for (int i = 0; i < count; i++)
+            {
+                requests.add(readRequest(actionKeys, in));
+            }
+            return new UserActionRequestBatch(requests);
+        case KIND_VALUE:
+            return readValue(in);
+        default:
+            throw new IOException("Unknown queue message kind " + kind);
+        }
+    }
+
+    /**
+     * Write a request.
+     *
+     * @param request
+     *            the request.
+     * @param actionKeys
+     *            action keys already written in this message, by index; added to.
+     * @param out
+     *            where to write it.
+     * @throws IOException
+     *             on error.
+     */
+    private void writeRequest(final UserActionRequest request, final List<String> actionKeys, final DataOutput out)
+            throws IOException
+    {
+        // 0 then the key the first time, index + 1 after that
+        int index = actionKeys.indexOf(request.getActionKey());
+        Varints.writeSigned(index + 1, out);
+        if (index < 0)
+        {
+            writeString(request.getActionKey(), out);
+            actionKeys.add(request.getActionKey());
+        }
+        writeValue(request.getUser(), out);
+        writeValue(request.getParams(), out);
+    }
+
+    /**
+     * Read a request.
+     *
+     * @param actionKeys
+     *            action keys already read from this message, by index; added to.
+     * @param in
+     *            where to read it from.
+     * @return the request.
+     * @throws IOException
+     *             on error.
+     */
+    private UserActionRequest readRequest(final List<String> actionKeys, final DataInput in) throws IOException
+    {
+        String actionKey;
+        long index = Varints.readSigned(in);
+        if (index == 0)
+        {
+            actionKey = readString(in);
+            actionKeys.add(actionKey);
+        }
+        else if (index > 0 && index <= actionKeys.size())
+        {
+            actionKey = actionKeys.get((int) index - 1);
+        }
+        else
+        {
+            throw new IOException("Invalid action key index " + index);
+        }
+        Serializable user = readValue(in);
+        if (user != null && !(user instanceof Principal))
+        {
+            throw new IOException("Request user is a " + user.getClass().getName());
+        }
+        return new UserActionRequest(actionKey, (Principal) user, readValue(in));
+    }
+
+    /**
+     * Write a tagged value.
+     *
+     * @param value
+     *            the value.
+     * @param out
+     *            where to write it.
+     * @throws IOException
+     *             if the value can't be serialized.
+     */
+    @SuppressWarnings("unchecked")
+    private void writeValue(final Serializable value, final DataOutput out) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeByte(TAG_NULL);
+        }
+        else if (value instanceof Long)
+        {
+            out.writeByte(TAG_LONG);
+            Varints.writeSigned((Long) value, out);
+        }
+        else if (value instanceof Integer)
+        {
+            out.writeByte(TAG_INTEGER);
+            Varints.writeSigned((Integer) value, out);
+        }
+        else if (value instanceof String)
+        {
+            out.writeByte(TAG_STRING);
+            writeString((String) value, out);
+        }
+        else if (value instanceof Boolean)
+        {
+            out.writeByte(TAG_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        }
+        else if (value.getClass() == DefaultPrincipal.class)
+        {
+            DefaultPrincipal principal = (DefaultPrincipal) value;
+            out.writeByte(TAG_PRINCIPAL);
+            writeString(principal.getAccountId(), out);
+            writeString(principal.getOpenSocialId(), out);
+            writeNullableLong(principal.getId(), out);
+        }
+        else if (isAll(value, LIST_CLASSES, Long.class))
+        {
+            out.writeByte(TAG_LONG_LIST);
+            writeLongs((Collection<Long>) value, out);
+        }
+        else if (isAll(value, SET_CLASSES, Long.class))
+        {
+            out.writeByte(TAG_LONG_SET);
+            writeLongs((Collection<Long>) value, out);
+        }
+        else if (isAll(value, LIST_CLASSES, String.class))
+        {
+            out.writeByte(TAG_STRING_LIST);
+            writeStrings((Collection<String>) value, out);
+        }
+        else if (isAll(value, SET_CLASSES, String.class))
+        {
+            out.writeByte(TAG_STRING_SET);
+            writeStrings((Collection<String>) value, out);
+        }
+        else
+        {
+            for (ParamCodec codec : paramCodecs)
+            {
+                if (codec.canWrite(value))
+                {
+                    out.writeByte(TAG_CODEC);
+                    Varints.writeSigned(codec.getTypeId(), out);
+                    codec.write(value, out);
+                    return;
+                }
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+            ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+            objectOut.writeObject(value);
+            objectOut.close();
+            out.writeByte(TAG_SERIALIZED);
+            Varints.writeSigned(bytes.size(), out);
+            out.write(bytes.toByteArray());
+        }
+    }
+
+    /**
+     * Read a tagged value.
+     *
+     * @param in
+     *            where to read it from.
+     * @return the value.
+     * @throws IOException
+     *             if the data is corrupt.
+     */
+    private Serializable readValue(final DataInput in) throws IOException
+    {
+        byte tag = in.readByte();
+        switch (tag)
+        {
+        case TAG_NULL:
+            return null;
+        case TAG_LONG:
+            return Varints.readSigned(in);
+        case TAG_INTEGER:
+            return (int) Varints.readSigned(in);
+        case TAG_STRING:
+            return readString(in);
+        case TAG_BOOLEAN:
+            return in.readBoolean();
+        case TAG_PRINCIPAL:
+            String accountId = readString(in);
+            String openSocialId = readString(in);
+            return new DefaultPrincipal(accountId, openSocialId, readNullableLong(in));
+        case TAG_LONG_LIST:
+            return readLongs(in);
+        case TAG_LONG_SET:
+            return new LinkedHashSet<Long>(readLongs(in));
+        case TAG_STRING_LIST:
+            return readStrings(in);
+        case TAG_STRING_SET:
+            return new LinkedHashSet<String>(readStrings(in));
+        case TAG_CODEC:
+            int typeId = (int) Varints.readSigned(in);
+            ParamCodec codec = paramCodecsById.get(typeId);
+            if (codec == null)
+            {
+                throw new IOException("No param codec for type id " + typeId);
+            }
+            return codec.read(in);
+        case TAG_SERIALIZED:
+            int length = readLength(in);
+            if (length < 0)
+            {
+                throw new IOException("Invalid serialized param length " + length);
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            ObjectInputStream objectIn = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try
+            {
+                return (Serializable) objectIn.readObject();
+            }
+            catch (ClassNotFoundException ex)
+            {
+                throw new IOException("Unknown class in serialized param: " + ex.getMessage());
+            }
+            finally
+            {
+                objectIn.close();
+            }
+        default:
+            throw new IOException("Unknown param tag " + tag);
+        }
+    }
+
+    /**
+     * @param value
+     *            a value.
+     * @param collectionClasses
+     *            collection classes to accept.
+     * @param elementClass
+     *            the class every element must have.
+     * @return whether the value is one of the collection classes holding only non-null elements of the element class.
+     */
+    private static boolean isAll(final Object value, final Collection<Class< ? >> collectionClasses,
+            final Class< ? > elementClass)
+    {
+        if (!collectionClasses.contains(value.getClass()))
+        {
+            return false;
+        }
+        for (Object element : (Collection< ? >) value)
+        {
+            if (element == null || element.getClass() != elementClass)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write a long which may be null (for use by param codecs).
+     *
+     * @param value
+     *            the value.
+     * @param out
+     *            where to write it.
+     * @throws IOException
+     *             on error.
+     */
+    public static void writeNullableLong(final Long value, final DataOutput out) throws IOException
+    {
+        out.writeBoolean(value != null);
+        if (value != null)
+        {
+            Varints.writeSigned(value, out);
+        }
+    }
+
+    /**
+     * Read a long written by writeNullableLong (for use by param codecs).
+     *
+     * @param in
+     *            where to read it from.
+     * @return the value.
+     * @throws IOException
+     *             on error.
+     */
+    public static Long readNullableLong(final DataInput in) throws IOException
+    {
+        return in.readBoolean() ? Varints.readSigned(in) : null;
+    }
+
+    /**
+     * Read a length (or count) and check it is sane.
+     *
+     * @param in
+     *            where to read it from.
+     * @return the length, or -1 for null.
+     * @throws IOException
+     *             on error or if the length is invalid.
+     */
+    private static int readLength(final DataInput in) throws IOException
+    {
+        long length = Varints.readSigned(in);
+        if (length < -1 || length > Integer.MAX_VALUE)
+        {
+            throw new IOException("Invalid length " + length);
+        }
+        return (int) length;
+    }
+
+    /**
+     * Write a string which may be null (for use by param codecs).
+     *
+     * @param value
+     *            the string.
+     * @param out
+     *            where to write it.
+     * @throws IOException
+     *             on error.
+     */
+    public static void writeString(final String value, final DataOutput out) throws IOException
+    {
+        if (value == null)
+        {
+            Varints.writeSigned(-1, out);
+        }
+        else
+        {
+            // not writeUTF, which is limited to 64K
+            byte[] bytes = value.getBytes("UTF-8");
+            Varints.writeSigned(bytes.length, out);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Read a string written by writeString (for use by param codecs).
+     *
+     * @param in
+     *            where to read it from.
+     * @return the string.
+     * @throws IOException
+     *             on error.
+     */
+    public static String readString(final DataInput in) throws IOException
+    {
+        int length = readLength(in);
+        if (length < 0)
+        {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Write a collection of non-null longs which may itself be null (for use by param codecs). Each value is written as
+     * the difference from the one before, so runs of nearby ids take a byte or two each.
+     *
+     * @param values
+     *            the values.
+     * @param out
+     *            where to write them.
+     * @throws IOException
+     *             on error.
+     */
+    public static void writeLongs(final Collection<Long> values, final DataOutput out) throws IOException
+    {
+        Varints.writeSigned(values == null ? -1 : values.size(), out);
+        if (values != null)
+        {
+            long previous = 0;
+            for (Long value : values)
+            {
+                Varints.writeSigned(value - previous, out);
+                previous = value;
+            }
+        }
+    }
+
+    /**
+     * Read longs written by writeLongs (for use by param codecs).
+     *
+     * @param in
+     *            where to read them from.
+     * @return the values, or null.
+     * @throws IOException
+     *             on error.
+     */
+    public static ArrayList<Long> readLongs(final DataInput in) throws IOException
+    {
+        int count = readLength(in);
+        if (count < 0)
+        {
+            return null;
+        }
+        ArrayList<Long> values = new ArrayList<Long>(Math.min(count, INITIAL_BUFFER_SIZE));
+        long previous = 0;
+        for (int i = 0; i < count; i++)
+        {
+            previous += Varints.readSigned(in);
+            values.add(previous);
+        }
+        return values;
+    }
+
+    /**
+     * Write a collection of strings which may itself be null (for use by param codecs).
+     *
+     * @param values
+     *            the values.
+     * @param out
+     *            where to write them.
+     * @throws IOException
+     *             on error.
+     */
+    public static void writeStrings(final Collection<String> values, final DataOutput out) throws IOException
+    {
+        Varints.writeSigned(values == null ? -1 : values.size(), out);
+        if (values != null)
+        {
+            for (String value : values)
+            {
+                writeString(value, out);
+            }
+        }
+    }
+
+    /**
+     * Read strings written by writeStrings (for use by param codecs).
+     *
+     * @param in
+     *            where to read them from.
+     * @return the values, or null.
+     * @throws IOException
+     *             on error.
+     */
+    public static ArrayList<String> readStrings(final DataInput in) throws IOException
+    {
+        int count = readLength(in);
+        if (count < 0)
+        {
+            return null;
+        }
+        ArrayList<String> values = new ArrayList<String>(Math.min(count, INITIAL_BUFFER_SIZE));
+        for (int i = 0; i < count; i++)
+        {
+            values.add(readString(in));
+        }
+        return values;
+    }
+}
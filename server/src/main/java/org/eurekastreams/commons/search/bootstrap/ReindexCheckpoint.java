@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.search.bootstrap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The id ranges of a reindex and how far each has got. Each partition covers the ids after its start up to and
+ * including its end; its progress is the last id whose document is in the index.
+ */
+public class ReindexCheckpoint
+{
+    /**
+     * Highest id covered by the reindex; later ids are left to normal indexing.
+     */
+    private final long maxId;
+
+    /**
+     * Last id of each partition.
+     */
+    private final long[] ends;
+
+    /**
+     * Last id indexed in each partition.
+     */
+    private final AtomicLongArray done;
+
+    /**
+     * Constructor.
+     *
+     * @param inMaxId
+     *            highest id covered by the reindex.
+     * @param inEnds
+     *            last id of each partition.
+     * @param inDone
+     *            last id indexed in each partition.
+     */
+    ReindexCheckpoint(final long inMaxId, final long[] inEnds, final long[] inDone)
+    {
+        maxId = inMaxId;
+        ends = inEnds;
+        done = new AtomicLongArray(inDone);
+    }
+
+    /**
+     * Split an id range into partitions of equal width.
+     *
+     * @param inMinId
+     *            lowest id.
+     * @param inMaxId
+     *            highest id.
+     * @param inPartitions
+     *            number of partitions wanted; fewer are made if the range is smaller.
+     * @return the plan, with nothing indexed.
+     */
+    public static ReindexCheckpoint plan(final long inMinId, final long inMaxId, final int inPartitions)
+    {
+        long span = inMaxId - inMinId + 1;
+        int count = (int) Math.max(0, Math.min(inPartitions, span));
+        long[] ends = new long[count];
+        long[] done = new long[count];
+        long size = count == 0 ? 0 : (span + count - 1) / count;
+        for (int i = 0; i < count; i++)
+        {
+            done[i] = inMinId - 1 + i * size;
+            ends[i] = Math.min(inMaxId, done[i] + size);
+        }
+        return new ReindexCheckpoint(inMaxId, ends, done);
+    }
+
+    /**
+     * Read a saved checkpoint.
+     *
+     * @param inFile
+     *            the file.
+     * @return the checkpoint, or null if there is none or it can't be read.
+     */
+    public static ReindexCheckpoint load(final File inFile)
+    {
+        if (!inFile.exists())
+        {
+            return null;
+        }
+        Properties props = new Properties();
+        try
+        {
+            InputStream in = new FileInputStream(inFile);
+            try
+            {
+                props.load(in);
+            }
+            finally
+            {
+                in.close();
+            }
+            int count = Integer.parseInt(props.getProperty("partitions"));
+            long[] ends = new long[count];
+            long[] done = new long[count];
+            for (int i = 0; i < count; i++)
+            {
+                ends[i] = Long.parseLong(props.getProperty("partition." + i + ".end"));
+                done[i] = Long.parseLong(props.getProperty("partition." + i + ".done"));
+            }
+            return new ReindexCheckpoint(Long.parseLong(props.getProperty("maxId")), ends, done);
+        }
+        catch (IOException ex)
+        {
+            return null;
+        }
+        catch (RuntimeException ex)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Save the checkpoint, replacing the file in one step.
+     *
+     * @param inFile
+     *            the file.
+     * @throws IOException
+     *             on failure to write.
+     */
+    public void save(final File inFile) throws IOException
+    {
+        Properties props = new Properties();
+        props.setProperty("maxId", Long.toString(maxId));
+        props.setProperty("partitions", Integer.toString(ends.length));
+        for (int i = 0; i < ends.length; i++)
+        {
+            props.setProperty("partition." + i + ".end", Long.toString(ends[i]));
+            props.setProperty("partition." + i + ".done", Long.toString(done.get(i)));
+        }
+
+        File temp = new File(inFile.getPath() + ".tmp");
+        OutputStream out = new FileOutputStream(temp);
+        try
+        {
+            props.store(out, "reindex progress");
+        }
+        finally
+        {
+            out.close();
+        }
+        if (!temp.renameTo(inFile) && !(inFile.delete() && temp.renameTo(inFile)))
+        {
+            throw new IOException("Unable to replace " + inFile);
+        }
+    }
+
+    /**
+     * @return a copy of this checkpoint as it is now.
+     */
+    public ReindexCheckpoint snapshot()
+    {
+        long[] copy = new long[ends.length];
+        for (int i = 0; i < ends.length; i++)
+        {
+            copy[i] = done.get(i);
+        }
+        return new ReindexCheckpoint(maxId, ends.clone(), copy);
+    }
+
+    /**
+     * @return highest id covered by the reindex.
+     */
+    public long getMaxId()
+    {
+        return maxId;
+    }
+
+    /**
+     * @return number of partitions.
+     */
+    public int getPartitionCount()
+    {
+        return ends.length;
+    }
+
+    /**
+     * @param inPartition
+     *            a partition.
+     * @return last id of the partition.
+     */
+    public long getEnd(final int inPartition)
+    {
+        return ends[inPartition];
+    }
+
+    /**
+     * @param inPartition
+     *            a partition.
+     * @return last id indexed in the partition.
+     */
+    public long getDone(final int inPartition)
+    {
+        return done.get(inPartition);
+    }
+
+    /**
+     * @param inPartition
+     *            a partition.
+     * @param inId
+     *            last id indexed in the partition.
+     */
+    public void setDone(final int inPartition, final long inId)
+    {
+        done.set(inPartition, inId);
+    }
+}
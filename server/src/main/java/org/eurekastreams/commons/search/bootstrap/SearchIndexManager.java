@@ -15,6 +15,8 @@
  */
 package org.eurekastreams.commons.search.bootstrap;
 
+import java.io.IOException;
+
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.logging.LogFactory;
 import org.hibernate.CacheMode;
@@ -45,6 +47,11 @@ public class SearchIndexManager
      */
     private Log log = LogFactory.make();
 
+    /**
+     * Rebuilds indexes without purging them first; if null, indexes are purged and rebuilt in place.
+     */
+    private ShadowReindexer shadowReindexer;
+
     /**
      * Constructor.
      *
@@ -76,7 +83,8 @@ public class SearchIndexManager
     }
 
     /**
-     * Purge & index all entities with the input class and name.
+     * Purge & index all entities with the input class and name. If a shadow reindexer is set, the index is instead
+     * rebuilt alongside the live one and swapped in when complete, so searches keep working throughout.
      *
      * @param entityClass
      *            the type of entities to reindex into search index.
@@ -92,6 +100,24 @@ public class SearchIndexManager
     {
         log.info("reindexEntities(" + entityClass.toString() + ", " + entityName + ")");
 
+        if (shadowReindexer != null)
+        {
+            try
+            {
+                shadowReindexer.reindex(entityClass, entityName, search);
+            }
+            catch (IOException ex)
+            {
+                throw new RuntimeException(ex);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while reindexing " + entityName, ex);
+            }
+            return;
+        }
+
         // purge first
         purgeSearchIndex(entityClass, search);
 
@@ -133,6 +159,15 @@ public class SearchIndexManager
         search.getSearchFactory().optimize(entityClass);
     }
 
+    /**
+     * @param inShadowReindexer
+     *            rebuilds indexes without purging them first.
+     */
+    public void setShadowReindexer(final ShadowReindexer inShadowReindexer)
+    {
+        shadowReindexer = inShadowReindexer;
+    }
+
     /**
      * purge the search index of all the entities of the input type.
      *
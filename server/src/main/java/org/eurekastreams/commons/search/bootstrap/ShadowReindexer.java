@@ -0,0 +1,753 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.search.bootstrap;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermDocs;
+import org.apache.lucene.index.TermEnum;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.engine.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.SearchFactoryImplementor;
+import org.hibernate.search.store.DirectoryProvider;
+
+/**
+ * Rebuilds the search index of an entity type without taking it away from searches. The documents are built into a
+ * shadow index directory by a pool of workers, each with its own session and id range; the live index is then brought
+ * up to date in a single commit (stale documents deleted, shadow documents added) while Hibernate Search is held off
+ * the directory, so searches see the old index until the new one is complete.
+ *
+ * Progress is checkpointed next to the shadow directory; a reindex that dies part way resumes from its last checkpoint
+ * the next time it is run. Entities created after the reindex started are left to normal indexing. An entity changed
+ * while the reindex runs may be indexed as it was when its range was read, until it next changes; one deleted while it
+ * runs is dropped again when the rebuilt index is swapped in (unless it was missing from the live index, and deleted
+ * while the swap was checking the database).
+ */
+public class ShadowReindexer
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Directory holding the shadow indexes and checkpoints.
+     */
+    private final File shadowBase;
+
+    /**
+     * Number of worker threads.
+     */
+    private final int threadCount;
+
+    /**
+     * Number of entities to load per query.
+     */
+    private final int fetchBatchSize;
+
+    /**
+     * Number of batches between checkpoints.
+     */
+    private final int checkpointInterval;
+
+    /**
+     * Constructor.
+     *
+     * @param inShadowBase
+     *            directory holding the shadow indexes and checkpoints.
+     * @param inThreadCount
+     *            number of worker threads (and id ranges).
+     * @param inFetchBatchSize
+     *            number of entities to load per query.
+     * @param inCheckpointInterval
+     *            number of batches between checkpoints.
+     */
+    public ShadowReindexer(final String inShadowBase, final int inThreadCount, final int inFetchBatchSize,
+            final int inCheckpointInterval)
+    {
+        shadowBase = new File(inShadowBase);
+        threadCount = inThreadCount;
+        fetchBatchSize = inFetchBatchSize;
+        checkpointInterval = inCheckpointInterval;
+    }
+
+    /**
+     * Rebuild the index of all entities with the input class and name, resuming an earlier attempt if there is one.
+     *
+     * @param entityClass
+     *            the type of entities to reindex.
+     * @param entityName
+     *            the name of the entity to reindex.
+     * @param search
+     *            the FullTextSession to use.
+     * @throws IOException
+     *             on failure to write an index; the reindex can be resumed.
+     * @throws InterruptedException
+     *             if interrupted while waiting for the workers; the reindex can be resumed.
+     */
+    @SuppressWarnings("unchecked")
+    public void reindex(final Class entityClass, final String entityName, final FullTextSession search)
+            throws IOException, InterruptedException
+    {
+        SearchFactoryImplementor searchFactory = (SearchFactoryImplementor) search.getSearchFactory();
+        DirectoryProvider[] providers = searchFactory.getDirectoryProviders(entityClass);
+        if (providers.length != 1)
+        {
+            throw new IllegalStateException("Shadow reindexing of sharded index for " + entityName
+                    + " is not supported.");
+        }
+        DocumentBuilderIndexedEntity builder = searchFactory.getDocumentBuilderIndexedEntity(entityClass);
+
+        File shadowDir = new File(shadowBase, entityName);
+        File checkpointFile = new File(shadowBase, entityName + ".checkpoint");
+        ReindexCheckpoint checkpoint = ReindexCheckpoint.load(checkpointFile);
+        boolean resuming = checkpoint != null && shadowDir.isDirectory();
+        if (resuming)
+        {
+            log.info("Resuming reindex of " + entityName + " up to id " + checkpoint.getMaxId());
+        }
+        else
+        {
+            deleteRecursively(shadowDir);
+            Object[] range = (Object[]) search.createQuery("SELECT min(id), max(id) FROM " + entityName)
+                    .uniqueResult();
+            checkpoint = range[0] == null ? ReindexCheckpoint.plan(1, 0, threadCount) : ReindexCheckpoint.plan(
+                    ((Number) range[0]).longValue(), ((Number) range[1]).longValue(), threadCount);
+            log.info("Reindexing " + entityName + " up to id " + checkpoint.getMaxId() + " in "
+                    + checkpoint.getPartitionCount() + " ranges into " + shadowDir);
+        }
+        if (!shadowBase.isDirectory() && !shadowBase.mkdirs())
+        {
+            throw new IOException("Unable to create " + shadowBase);
+        }
+
+        Directory shadow = FSDirectory.open(shadowDir);
+        try
+        {
+            buildShadow(entityName, search, builder, shadow, checkpoint, checkpointFile, resuming);
+            swap(entityName, search, searchFactory, providers[0], builder, shadow, checkpoint.getMaxId());
+        }
+        finally
+        {
+            shadow.close();
+        }
+
+        deleteRecursively(shadowDir);
+        if (!checkpointFile.delete())
+        {
+            log.warn("Unable to delete " + checkpointFile);
+        }
+
+        log.info("Optimizing index for " + entityName);
+        searchFactory.optimize(entityClass);
+    }
+
+    /**
+     * Index every partition not yet done into the shadow index.
+     *
+     * @param entityName
+     *            the name of the entity to reindex.
+     * @param search
+     *            the FullTextSession to use.
+     * @param builder
+     *            builds the documents.
+     * @param shadow
+     *            the shadow index.
+     * @param checkpoint
+     *            the partitions and their progress.
+     * @param checkpointFile
+     *            where to save progress.
+     * @param resuming
+     *            whether the shadow index already holds part of the reindex.
+     * @throws IOException
+     *             on failure to write the shadow index.
+     * @throws InterruptedException
+     *             if interrupted while waiting for the workers.
+     */
+    private void buildShadow(final String entityName, final FullTextSession search,
+            final DocumentBuilderIndexedEntity builder, final Directory shadow, final ReindexCheckpoint checkpoint,
+            final File checkpointFile, final boolean resuming) throws IOException, InterruptedException
+    {
+        if (IndexWriter.isLocked(shadow))
+        {
+            // left by a reindex which died; nothing else writes the shadow index
+            IndexWriter.unlock(shadow);
+        }
+        final IndexWriter writer = new IndexWriter(shadow, builder.getAnalyzer(), !resuming,
+                IndexWriter.MaxFieldLength.UNLIMITED);
+        final Progress progress = new Progress(entityName, writer, checkpoint, checkpointFile);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threadCount));
+        try
+        {
+            List<Future<Long>> results = new ArrayList<Future<Long>>();
+            for (int i = 0; i < checkpoint.getPartitionCount(); i++)
+            {
+                final int partition = i;
+                results.add(pool.submit(new Callable<Long>()
+                {
+                    public Long call() throws IOException
+                    {
+                        return indexPartition(entityName, search, builder, writer, progress, partition);
+                    }
+                }));
+            }
+            for (Future<Long> result : results)
+            {
+                result.get();
+            }
+            progress.save();
+            writer.close();
+        }
+        catch (ExecutionException ex)
+        {
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            saveAndClose(progress, writer);
+            throw new IOException("Reindex of " + entityName + " failed; run it again to resume", ex.getCause());
+        }
+        catch (InterruptedException ex)
+        {
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.MINUTES);
+            saveAndClose(progress, writer);
+            throw ex;
+        }
+        finally
+        {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Save what progress can be saved after a failure and release the shadow index.
+     *
+     * @param progress
+     *            the progress.
+     * @param writer
+     *            the shadow index writer.
+     */
+    private void saveAndClose(final Progress progress, final IndexWriter writer)
+    {
+        try
+        {
+            progress.save();
+            writer.close();
+        }
+        catch (IOException ex)
+        {
+            log.error("Unable to save reindex progress; it will resume from the previous checkpoint", ex);
+        }
+    }
+
+    /**
+     * Index one id range into the shadow index, using a session of its own.
+     *
+     * @param entityName
+     *            the name of the entity to reindex.
+     * @param search
+     *            the FullTextSession the reindex was started with, for its session factory.
+     * @param builder
+     *            builds the documents.
+     * @param writer
+     *            the shadow index writer.
+     * @param progress
+     *            the progress.
+     * @param partition
+     *            the partition.
+     * @return number of entities indexed.
+     * @throws IOException
+     *             on failure to write the shadow index.
+     */
+    @SuppressWarnings("unchecked")
+    private long indexPartition(final String entityName, final FullTextSession search,
+            final DocumentBuilderIndexedEntity builder, final IndexWriter writer, final Progress progress,
+            final int partition) throws IOException
+    {
+        ReindexCheckpoint checkpoint = progress.getCheckpoint();
+        long after = checkpoint.getDone(partition);
+        long end = checkpoint.getEnd(partition);
+        long count = 0;
+
+        Session session = search.getSessionFactory().openSession();
+        try
+        {
+            while (after < end && !Thread.currentThread().isInterrupted())
+            {
+                Transaction tx = session.beginTransaction();
+                List<Object> entities = session.createQuery(
+                        "FROM " + entityName + " WHERE id > :after AND id <= :end ORDER BY id").setLong("after",
+                        after).setLong("end", end).setCacheMode(CacheMode.IGNORE).setReadOnly(true).setMaxResults(
+                        fetchBatchSize).list();
+                for (Object entity : entities)
+                {
+                    Serializable id = session.getIdentifier(entity);
+                    Document document = builder.getDocument(entity, id, new HashMap<String, String>());
+                    // update rather than add, as a resumed range may repeat documents written after its checkpoint
+                    writer.updateDocument(new Term(builder.getIdKeywordName(), builder.getIdBridge().objectToString(
+                            id)), document, builder.getAnalyzer());
+                    after = ((Number) id).longValue();
+                }
+                tx.commit();
+                session.clear();
+
+                if (entities.size() < fetchBatchSize)
+                {
+                    after = end;
+                }
+                count += entities.size();
+                checkpoint.setDone(partition, after);
+                progress.batchDone(entities.size());
+            }
+        }
+        finally
+        {
+            session.close();
+        }
+        return count;
+    }
+
+    /**
+     * Replace the live index's documents up to the reindex's last id with the shadow index, in a single commit.
+     * Documents of entities deleted since their range was read are dropped in the same commit. The database is checked
+     * for those before Hibernate Search is held off the live index, so index writes for the entity carry on meanwhile;
+     * with the index held, only the entities Hibernate Search has removed from the live index since are checked again,
+     * and deletes committed after that are applied after the swap.
+     *
+     * @param entityName
+     *            the name of the entity to reindex.
+     * @param search
+     *            the FullTextSession to use.
+     * @param searchFactory
+     *            the search factory.
+     * @param provider
+     *            provider of the live index.
+     * @param builder
+     *            builds the documents.
+     * @param shadow
+     *            the shadow index.
+     * @param maxId
+     *            highest id covered by the reindex.
+     * @throws IOException
+     *             on failure; the live index is left as it was.
+     */
+    private void swap(final String entityName, final FullTextSession search,
+            final SearchFactoryImplementor searchFactory, final DirectoryProvider provider,
+            final DocumentBuilderIndexedEntity builder, final Directory shadow, final long maxId) throws IOException
+    {
+        String idField = builder.getIdKeywordName();
+        Directory live = provider.getDirectory();
+
+        // an entity missing from the live index now won't be removed from it when deleted, so the check below can't
+        // see its delete; it is only caught by this pass if deleted before its id is checked
+        Set<String> unindexed = findUnindexed(idField, shadow, live, Collections.<String> emptySet());
+        Set<String> deleted = findDeleted(entityName, search, idField, shadow);
+
+        log.info("Swapping rebuilt index into place for " + entityName);
+        ReentrantLock lock = searchFactory.getDirectoryProviderLock(provider);
+        lock.lock();
+        try
+        {
+            IndexWriter writer = new IndexWriter(live, builder.getAnalyzer(), IndexWriter.MaxFieldLength.UNLIMITED);
+            boolean committed = false;
+            try
+            {
+                IndexReader reader = IndexReader.open(live, true);
+                try
+                {
+                    TermEnum terms = reader.terms(new Term(idField, ""));
+                    try
+                    {
+                        do
+                        {
+                            Term term = terms.term();
+                            if (term == null || !idField.equals(term.field()))
+                            {
+                                break;
+                            }
+                            if (isCovered(term.text(), maxId))
+                            {
+                                writer.deleteDocuments(term);
+                            }
+                        }
+                        while (terms.next());
+                    }
+                    finally
+                    {
+                        terms.close();
+                    }
+                }
+                finally
+                {
+                    reader.close();
+                }
+
+                writer.addIndexesNoOptimize(new Directory[] { shadow });
+
+                // the live index reader sees Hibernate Search's last commit; an entity removed from it since the
+                // database was checked has been deleted, so only those need checking again
+                Set<String> removed = findUnindexed(idField, shadow, live, unindexed);
+                removed.removeAll(deleted);
+                deleted.addAll(findMissing(entityName, search, removed));
+                for (String id : deleted)
+                {
+                    writer.deleteDocuments(new Term(idField, id));
+                }
+                writer.commit();
+                committed = true;
+            }
+            finally
+            {
+                if (!committed)
+                {
+                    // whatever went wrong, including a failed query, the live index must not be left half swapped
+                    writer.rollback();
+                }
+            }
+            writer.close();
+        }
+        finally
+        {
+            lock.unlock();
+        }
+        if (!deleted.isEmpty())
+        {
+            log.info("Dropped " + deleted.size() + " " + entityName + " deleted during the reindex");
+        }
+        log.info("Rebuilt index for " + entityName + " is live");
+    }
+
+    /**
+     * Find the shadow index's entities which have no document in the live index. Only the indexes are read.
+     *
+     * @param idField
+     *            name of the id field.
+     * @param shadow
+     *            the shadow index.
+     * @param live
+     *            the live index.
+     * @param ignore
+     *            ids not to look for.
+     * @return the ids with no live document.
+     * @throws IOException
+     *             on failure to read an index.
+     */
+    private Set<String> findUnindexed(final String idField, final Directory shadow, final Directory live,
+            final Set<String> ignore) throws IOException
+    {
+        Set<String> unindexed = new HashSet<String>();
+        IndexReader shadowReader = IndexReader.open(shadow, true);
+        try
+        {
+            IndexReader liveReader = IndexReader.open(live, true);
+            try
+            {
+                // the shadow index never deletes a document without adding it again, so its ids are all current
+                TermEnum terms = shadowReader.terms(new Term(idField, ""));
+                TermDocs liveDocs = liveReader.termDocs();
+                try
+                {
+                    do
+                    {
+                        Term term = terms.term();
+                        if (term == null || !idField.equals(term.field()))
+                        {
+                            break;
+                        }
+                        if (!ignore.contains(term.text()))
+                        {
+                            // term docs skip deleted documents, which the live index's terms still list until merged
+                            liveDocs.seek(term);
+                            if (!liveDocs.next())
+                            {
+                                unindexed.add(term.text());
+                            }
+                        }
+                    }
+                    while (terms.next());
+                }
+                finally
+                {
+                    liveDocs.close();
+                    terms.close();
+                }
+            }
+            finally
+            {
+                liveReader.close();
+            }
+        }
+        finally
+        {
+            shadowReader.close();
+        }
+        return unindexed;
+    }
+
+    /**
+     * Find the shadow index's entities which are no longer in the database.
+     *
+     * @param entityName
+     *            the name of the entity to reindex.
+     * @param search
+     *            the FullTextSession to use.
+     * @param idField
+     *            name of the id field.
+     * @param shadow
+     *            the shadow index.
+     * @return the ids no longer in the database.
+     * @throws IOException
+     *             on failure to read the shadow index.
+     */
+    private Set<String> findDeleted(final String entityName, final FullTextSession search, final String idField,
+            final Directory shadow) throws IOException
+    {
+        Set<String> deleted = new HashSet<String>();
+        List<String> batch = new ArrayList<String>();
+        IndexReader reader = IndexReader.open(shadow, true);
+        try
+        {
+            TermEnum terms = reader.terms(new Term(idField, ""));
+            try
+            {
+                do
+                {
+                    Term term = terms.term();
+                    if (term == null || !idField.equals(term.field()))
+                    {
+                        break;
+                    }
+                    batch.add(term.text());
+                    if (batch.size() >= fetchBatchSize)
+                    {
+                        deleted.addAll(findMissing(entityName, search, batch));
+                        batch.clear();
+                    }
+                }
+                while (terms.next());
+            }
+            finally
+            {
+                terms.close();
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        deleted.addAll(findMissing(entityName, search, batch));
+        return deleted;
+    }
+
+    /**
+     * Find which of some ids are no longer in the database, querying fetchBatchSize of them at a time.
+     *
+     * @param entityName
+     *            the name of the entity to reindex.
+     * @param search
+     *            the FullTextSession to use.
+     * @param ids
+     *            the ids.
+     * @return the ids no longer in the database.
+     */
+    @SuppressWarnings("unchecked")
+    private List<String> findMissing(final String entityName, final FullTextSession search,
+            final Collection<String> ids)
+    {
+        List<String> missing = new ArrayList<String>();
+        List<Long> batch = new ArrayList<Long>();
+        Iterator<String> iter = ids.iterator();
+        while (iter.hasNext())
+        {
+            batch.add(Long.valueOf(iter.next()));
+            if (batch.size() >= fetchBatchSize || !iter.hasNext())
+            {
+                Set<Long> existing = new HashSet<Long>();
+                for (Object id : search.createQuery("SELECT id FROM " + entityName + " WHERE id IN (:ids)")
+                        .setParameterList("ids", batch).list())
+                {
+                    existing.add(((Number) id).longValue());
+                }
+                for (Long id : batch)
+                {
+                    if (!existing.contains(id))
+                    {
+                        missing.add(id.toString());
+                    }
+                }
+                batch.clear();
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * @param inId
+     *            an indexed id.
+     * @param maxId
+     *            highest id covered by the reindex.
+     * @return whether the reindex replaces the id's document.
+     */
+    private static boolean isCovered(final String inId, final long maxId)
+    {
+        try
+        {
+            return Long.parseLong(inId) <= maxId;
+        }
+        catch (NumberFormatException ex)
+        {
+            return true;
+        }
+    }
+
+    /**
+     * Delete a directory and its contents.
+     *
+     * @param inDir
+     *            the directory.
+     */
+    private static void deleteRecursively(final File inDir)
+    {
+        File[] files = inDir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                deleteRecursively(file);
+            }
+        }
+        inDir.delete();
+    }
+
+    /**
+     * Counts batches across the workers, saving a checkpoint and logging progress every checkpointInterval batches.
+     */
+    private class Progress
+    {
+        /** The name of the entity being reindexed. */
+        private final String entityName;
+
+        /** The shadow index writer. */
+        private final IndexWriter writer;
+
+        /** The partitions and their progress. */
+        private final ReindexCheckpoint checkpoint;
+
+        /** Where to save progress. */
+        private final File checkpointFile;
+
+        /** Batches done by this run. */
+        private final AtomicLong batches = new AtomicLong();
+
+        /** Entities indexed by this run. */
+        private final AtomicLong indexed = new AtomicLong();
+
+        /** When this run started. */
+        private final long startTime = System.currentTimeMillis();
+
+        /**
+         * Constructor.
+         *
+         * @param inEntityName
+         *            the name of the entity being reindexed.
+         * @param inWriter
+         *            the shadow index writer.
+         * @param inCheckpoint
+         *            the partitions and their progress.
+         * @param inCheckpointFile
+         *            where to save progress.
+         */
+        public Progress(final String inEntityName, final IndexWriter inWriter, final ReindexCheckpoint inCheckpoint,
+                final File inCheckpointFile)
+        {
+            entityName = inEntityName;
+            writer = inWriter;
+            checkpoint = inCheckpoint;
+            checkpointFile = inCheckpointFile;
+        }
+
+        /**
+         * @return the partitions and their progress.
+         */
+        public ReindexCheckpoint getCheckpoint()
+        {
+            return checkpoint;
+        }
+
+        /**
+         * Record a finished batch.
+         *
+         * @param inCount
+         *            entities in the batch.
+         * @throws IOException
+         *             on failure to save a checkpoint.
+         */
+        public void batchDone(final int inCount) throws IOException
+        {
+            long total = indexed.addAndGet(inCount);
+            if (batches.incrementAndGet() % checkpointInterval == 0)
+            {
+                save();
+                long seconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - startTime));
+                log.info("Reindexed " + total + " " + entityName + " in " + seconds + " s (" + (total / seconds)
+                        + "/s)");
+            }
+        }
+
+        /**
+         * Commit the shadow index and save the progress it holds. The progress is taken before the commit, so every
+         * id it counts as done is in the committed index.
+         *
+         * @throws IOException
+         *             on failure.
+         */
+        public synchronized void save() throws IOException
+        {
+            ReindexCheckpoint snapshot = checkpoint.snapshot();
+            writer.commit();
+            snapshot.save(checkpointFile);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.server;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.eurekastreams.commons.client.ActionRequest;
+import org.springframework.security.context.SecurityContext;
+import org.springframework.security.context.SecurityContextHolder;
+import org.springframework.security.userdetails.UserDetails;
+
+/**
+ * Executes a batch of action requests, running consecutive read-only actions in parallel on a bounded pool. Actions
+ * which are not read-only act as barriers: every action before one finishes before it starts, it runs on the calling
+ * thread, and actions after it start only once it has finished, so writes keep their order relative to everything else
+ * in the batch.
+ *
+ * Each action still gets its own transaction from the action controller on whatever thread runs it; the caller's
+ * security context is copied to the pool thread for the duration of the action.
+ */
+public class ActionBatchExecutor
+{
+    /** Logger. */
+    private final Log log = LogFactory.getLog(ActionBatchExecutor.class);
+
+    /** Executes the individual actions. */
+    private final ActionExecutor actionExecutor;
+
+    /** Runs read-only actions in parallel. */
+    private final ExecutorService executor;
+
+    /**
+     * Constructor.
+     *
+     * @param inActionExecutor
+     *            executes the individual actions.
+     * @param inThreads
+     *            the number of pool threads running read-only actions.
+     * @param inMaxQueued
+     *            the number of read-only actions which may wait for a pool thread; when full, actions run on the
+     *            calling thread instead.
+     */
+    public ActionBatchExecutor(final ActionExecutor inActionExecutor, final int inThreads, final int inMaxQueued)
+    {
+        this(inActionExecutor, new ThreadPoolExecutor(inThreads, inThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(inMaxQueued), new ThreadFactory()
+                {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(final Runnable inRunnable)
+                    {
+                        Thread thread = new Thread(inRunnable, "action-batch-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                }));
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inActionExecutor
+     *            executes the individual actions.
+     * @param inExecutor
+     *            runs read-only actions in parallel.
+     */
+    ActionBatchExecutor(final ActionExecutor inActionExecutor, final ExecutorService inExecutor)
+    {
+        actionExecutor = inActionExecutor;
+        executor = inExecutor;
+    }
+
+    /**
+     * Execute a batch of requests.
+     *
+     * @param requests
+     *            the requests.
+     * @param user
+     *            the user making the requests.
+     * @return the requests with their responses, in the same order.
+     */
+    @SuppressWarnings("rawtypes")
+    public ActionRequest[] execute(final ActionRequest[] requests, final UserDetails user)
+    {
+        final SecurityContext securityContext = SecurityContextHolder.getContext();
+        final ActionRequest[] results = new ActionRequest[requests.length];
+        final List<Future<ActionRequest>> pending = new ArrayList<Future<ActionRequest>>();
+        final List<Integer> pendingIndexes = new ArrayList<Integer>();
+
+        for (int i = 0; i < requests.length; i++)
+        {
+            final ActionRequest request = requests[i];
+            if (actionExecutor.isReadOnly(request.getActionKey()))
+            {
+                FutureTask<ActionRequest> task = new FutureTask<ActionRequest>(new Runnable()
+                {
+                    public void run()
+                    {
+                        SecurityContextHolder.setContext(securityContext);
+                        try
+                        {
+                            actionExecutor.execute(request, user);
+                        }
+                        finally
+                        {
+                            SecurityContextHolder.clearContext();
+                        }
+                    }
+                }, request);
+                try
+                {
+                    executor.execute(task);
+                    pending.add(task);
+                    pendingIndexes.add(i);
+                }
+                catch (RejectedExecutionException ex)
+                {
+                    log.debug("Action pool full; running " + request.getActionKey() + " on the calling thread.");
+                    results[i] = actionExecutor.execute(request, user);
+                }
+            }
+            else
+            {
+                // barrier: let everything before the write finish first
+                awaitPending(pending, pendingIndexes, requests, results);
+                results[i] = actionExecutor.execute(request, user);
+            }
+        }
+        awaitPending(pending, pendingIndexes, requests, results);
+
+        return results;
+    }
+
+    /**
+     * Wait for the read-only actions in flight and collect their results.
+     *
+     * @param pending
+     *            the actions in flight; cleared.
+     * @param pendingIndexes
+     *            the position of each action in the batch; cleared.
+     * @param requests
+     *            the batch.
+     * @param results
+     *            the results, filled in.
+     */
+    @SuppressWarnings("rawtypes")
+    private void awaitPending(final List<Future<ActionRequest>> pending, final List<Integer> pendingIndexes,
+            final ActionRequest[] requests, final ActionRequest[] results)
+    {
+        boolean interrupted = false;
+        for (int j = 0; j < pending.size(); j++)
+        {
+            int index = pendingIndexes.get(j);
+            Future<ActionRequest> future = pending.get(j);
+            while (results[index] == null)
+            {
+                try
+                {
+                    results[index] = future.get();
+                }
+                catch (InterruptedException ex)
+                {
+                    // keep waiting: the action is running against the request object we are about to return
+                    interrupted = true;
+                }
+                catch (ExecutionException ex)
+                {
+                    // ActionExecutor reports action failures in the response, so this is unexpected
+                    log.error("Error running " + requests[index].getActionKey() + " in parallel.", ex.getCause());
+                    results[index] = requests[index];
+                }
+            }
+        }
+        pending.clear();
+        pendingIndexes.clear();
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stop the pool threads.
+     */
+    public void shutdown()
+    {
+        executor.shutdown();
+    }
+}
@@ -16,6 +16,8 @@
 package org.eurekastreams.commons.server;
 
 import java.io.Serializable;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.sf.gilead.core.PersistentBeanManager;
 
@@ -27,6 +29,7 @@ import org.eurekastreams.commons.actions.service.ServiceAction;
 import org.eurekastreams.commons.actions.service.TaskHandlerServiceAction;
 import org.eurekastreams.commons.client.ActionRequest;
 import org.eurekastreams.commons.exceptions.InvalidActionException;
+import org.eurekastreams.commons.hibernate.PersistentObjectDetector;
 import org.eurekastreams.commons.server.service.ActionController;
 import org.eurekastreams.server.persistence.mappers.cache.Transformer;
 import org.springframework.beans.factory.BeanFactory;
@@ -57,6 +60,15 @@ public class ActionExecutor
     /** Prepares exceptions for returning to the client. */
     private final Transformer<Exception, Exception> exceptionSanitizer;
 
+    /** Finds results which need no cloning; null to clone every result. */
+    private PersistentObjectDetector persistentObjectDetector;
+
+    /** Time taken to clone results. */
+    private final DurationHistogram cloneTimes = new DurationHistogram();
+
+    /** Number of results returned without cloning. */
+    private final AtomicLong clonesSkipped = new AtomicLong();
+
     /**
      * Constructor.
      *
@@ -82,6 +94,15 @@ public class ActionExecutor
         exceptionSanitizer = inExceptionSanitizer;
     }
 
+    /**
+     * @param inPersistentObjectDetector
+     *            finds results which hold no persistent objects, so can be returned without cloning.
+     */
+    public void setPersistentObjectDetector(final PersistentObjectDetector inPersistentObjectDetector)
+    {
+        persistentObjectDetector = inPersistentObjectDetector;
+    }
+
     /**
      * Execute method for the class.
      *
@@ -144,11 +165,18 @@ public class ActionExecutor
             // set the results to be passed back
 
             // cloning here ensures that gilead makes all the objects
-            // serializable.
-            long startClone = System.currentTimeMillis();
-            actionRequest.setResponse((Serializable) persistentBeanManager.clone(result));
-            log.debug(actionRequest.getActionKey() + " gilead serialization time: "
-                    + (System.currentTimeMillis() - startClone) + " (ms)");
+            // serializable. Results holding no persistent objects are already serializable.
+            if (persistentObjectDetector != null && !persistentObjectDetector.holdsPersistentObjects(result))
+            {
+                clonesSkipped.incrementAndGet();
+                actionRequest.setResponse(result);
+            }
+            else
+            {
+                long startClone = System.nanoTime();
+                actionRequest.setResponse((Serializable) persistentBeanManager.clone(result));
+                cloneTimes.record(System.nanoTime() - startClone);
+            }
         }
         catch (Exception ex)
         {
@@ -182,6 +210,66 @@ public class ActionExecutor
         return actionRequest;
     }
 
+    /**
+     * Determine whether an action only reads data (and so may be run alongside others).
+     *
+     * @param actionKey
+     *            the action's bean name.
+     * @return true if the action is a read-only service or task handler action; false if it isn't or can't be found.
+     */
+    public boolean isReadOnly(final String actionKey)
+    {
+        try
+        {
+            Object springBean = beanFactory.getBean(actionKey);
+            if (springBean instanceof ServiceAction)
+            {
+                return ((ServiceAction) springBean).isReadOnly();
+            }
+            if (springBean instanceof TaskHandlerServiceAction)
+            {
+                return ((TaskHandlerServiceAction) springBean).isReadOnly();
+            }
+        }
+        catch (Exception ex)
+        {
+            log.debug("Could not look up action " + actionKey + " to check if it is read-only.", ex);
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of results cloned per range of time taken to clone them.
+     */
+    public Map<String, Long> getCloneTimeCounts()
+    {
+        return cloneTimes.getCounts();
+    }
+
+    /**
+     * @return the total time taken to clone results, in microseconds.
+     */
+    public long getCloneTimeTotalMicros()
+    {
+        return cloneTimes.getTotalMicros();
+    }
+
+    /**
+     * @return the number of results cloned.
+     */
+    public long getClonesPerformed()
+    {
+        return cloneTimes.getCount();
+    }
+
+    /**
+     * @return the number of results returned without cloning.
+     */
+    public long getClonesSkipped()
+    {
+        return clonesSkipped.get();
+    }
+
     /**
      * Helper for getting userName.
      *
@@ -15,6 +15,9 @@
  */
 package org.eurekastreams.commons.server;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
 
@@ -56,6 +59,11 @@ public class ActionRPCServiceImpl extends RemoteServiceServlet implements Action
      */
     private ActionExecutor actionExecutor;
 
+    /**
+     * Runs the read-only actions of a batch in parallel; null to run batches sequentially.
+     */
+    private ActionBatchExecutor actionBatchExecutor;
+
     /**
      * As a servlet, this class' init() method is called automatically. This is how we get context.
      *
@@ -79,6 +87,11 @@ public class ActionRPCServiceImpl extends RemoteServiceServlet implements Action
         springContext = WebApplicationContextUtils.getWebApplicationContext(getServletContext());
 
         actionExecutor = (ActionExecutor) springContext.getBean("actionExecutor");
+
+        if (springContext.containsBean("actionBatchExecutor"))
+        {
+            actionBatchExecutor = (ActionBatchExecutor) springContext.getBean("actionBatchExecutor");
+        }
     }
 
     /**
@@ -124,6 +137,11 @@ public class ActionRPCServiceImpl extends RemoteServiceServlet implements Action
     {
         UserDetails user = getUserDetails();
 
+        if (actionBatchExecutor != null && requests.length > 1)
+        {
+            return executeInParallel(requests, user);
+        }
+
         ActionRequest[] results = new ActionRequest[requests.length];
         for (int i = 0; i < requests.length; i++)
         {
@@ -133,6 +151,42 @@ public class ActionRPCServiceImpl extends RemoteServiceServlet implements Action
         return results;
     }
 
+    /**
+     * Execute multiple ActionRequests, running the read-only ones in parallel.
+     *
+     * @param requests
+     *            the request specifications to execute
+     * @param user
+     *            the user making the request
+     * @return the action response encapsulated with the request
+     */
+    @SuppressWarnings({ "rawtypes" })
+    private ActionRequest[] executeInParallel(final ActionRequest[] requests, final UserDetails user)
+    {
+        // the session check needs the servlet request, so do it here on the servlet thread
+        String sessionId = getThreadLocalRequest().getSession().getId();
+        List<ActionRequest> valid = new ArrayList<ActionRequest>(requests.length);
+        for (ActionRequest request : requests)
+        {
+            if (sessionId.equals(request.getSessionId()))
+            {
+                valid.add(request);
+            }
+            else
+            {
+                request.setResponse(new SessionException("Session Expired"));
+            }
+        }
+
+        if (!valid.isEmpty())
+        {
+            actionBatchExecutor.execute(valid.toArray(new ActionRequest[valid.size()]), user);
+        }
+
+        // actions fill in the responses of the request objects they are given
+        return requests;
+    }
+
     /**
      * Execute a single ActionRequest.
      *
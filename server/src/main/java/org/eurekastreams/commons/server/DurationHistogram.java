@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in fixed buckets, for a cheap view of how a timing is spread that can be read over JMX.
+ */
+public class DurationHistogram
+{
+    /**
+     * Upper bounds of the buckets in microseconds; one more bucket holds everything longer.
+     */
+    private static final long[] BOUNDS_MICROS = { 50, 100, 250, 500, 1000, 2500, 5000, 10000, 25000, 50000,
+            100000 };
+
+    /**
+     * Nanoseconds per microsecond.
+     */
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    /**
+     * Counts per bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS_MICROS.length + 1);
+
+    /**
+     * Total of all durations recorded, in microseconds.
+     */
+    private final AtomicLong totalMicros = new AtomicLong();
+
+    /**
+     * Records a duration.
+     *
+     * @param inNanos
+     *            the duration in nanoseconds.
+     */
+    public void record(final long inNanos)
+    {
+        long micros = inNanos / NANOS_PER_MICRO;
+        int bucket = 0;
+        while (bucket < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[bucket])
+        {
+            bucket++;
+        }
+        counts.incrementAndGet(bucket);
+        totalMicros.addAndGet(micros);
+    }
+
+    /**
+     * @return the number of durations per bucket, in order of the buckets, keyed by the bucket's upper bound.
+     */
+    public Map<String, Long> getCounts()
+    {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (int i = 0; i < BOUNDS_MICROS.length; i++)
+        {
+            result.put("<=" + BOUNDS_MICROS[i] + "us", counts.get(i));
+        }
+        result.put(">" + BOUNDS_MICROS[BOUNDS_MICROS.length - 1] + "us", counts.get(BOUNDS_MICROS.length));
+        return result;
+    }
+
+    /**
+     * @return the number of durations recorded.
+     */
+    public long getCount()
+    {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++)
+        {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * @return the total of all durations recorded, in microseconds.
+     */
+    public long getTotalMicros()
+    {
+        return totalMicros.get();
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.server;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A number of user action requests sent to the queue as one message. The consumer runs them in order.
+ */
+public class UserActionRequestBatch implements Serializable
+{
+    /** Serial version Id. */
+    private static final long serialVersionUID = 4411318305245062351L;
+
+    /** The requests. */
+    private final ArrayList<UserActionRequest> requests;
+
+    /**
+     * Constructor.
+     *
+     * @param inRequests
+     *            the requests.
+     */
+    public UserActionRequestBatch(final List<UserActionRequest> inRequests)
+    {
+        requests = new ArrayList<UserActionRequest>(inRequests);
+    }
+
+    /**
+     * Getter.
+     *
+     * @return the requests.
+     */
+    public List<UserActionRequest> getRequests()
+    {
+        return requests;
+    }
+}
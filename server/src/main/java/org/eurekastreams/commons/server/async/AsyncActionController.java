@@ -31,6 +31,7 @@ import org.eurekastreams.commons.exceptions.GeneralException;
 import org.eurekastreams.commons.exceptions.ValidationException;
 import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.commons.task.BatchTaskHandler;
 import org.eurekastreams.commons.task.TaskHandler;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
@@ -197,9 +198,16 @@ public class AsyncActionController implements AsynchronousActionController
         try
         {
             TaskHandler currentTaskHandler = inTaskHandlerAction.getTaskHandler();
-            for (UserActionRequest currentRequest : taskHandlerContext.getUserActionRequests())
+            if (currentTaskHandler instanceof BatchTaskHandler)
             {
-                currentTaskHandler.handleTask(currentRequest);
+                ((BatchTaskHandler) currentTaskHandler).handleTasks(taskHandlerContext.getUserActionRequests());
+            }
+            else
+            {
+                for (UserActionRequest currentRequest : taskHandlerContext.getUserActionRequests())
+                {
+                    currentTaskHandler.handleTask(currentRequest);
+                }
             }
         }
         catch (Exception ex)
@@ -17,7 +17,12 @@ package org.eurekastreams.commons.server.service;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.actions.TaskHandlerAction;
@@ -25,13 +30,16 @@ import org.eurekastreams.commons.actions.context.PrincipalActionContext;
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContextImpl;
 import org.eurekastreams.commons.actions.service.ServiceAction;
+import org.eurekastreams.commons.actions.service.TaskHandlerServiceAction;
 import org.eurekastreams.commons.exceptions.AuthorizationException;
 import org.eurekastreams.commons.exceptions.ExecutionException;
 import org.eurekastreams.commons.exceptions.GeneralException;
 import org.eurekastreams.commons.exceptions.InvalidActionException;
 import org.eurekastreams.commons.exceptions.ValidationException;
+import org.eurekastreams.commons.hibernate.ConnectionUsageTrackingDataSource;
 import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.commons.task.BatchTaskHandler;
 import org.eurekastreams.commons.task.TaskHandler;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
@@ -61,6 +69,10 @@ import org.springframework.transaction.support.DefaultTransactionDefinition;
  * {@link AuthorizationException} will be logged and passed to the client when encountered. - {@link ExecutionException}
  * will be logged and passed to the client when encountered.
  *
+ * Transactions are only as expensive as what the action does in them: when the data source behind the transaction
+ * manager is a lazy connection proxy over a {@link ConnectionUsageTrackingDataSource}, a pooled connection is only
+ * taken when the action first runs a statement, so actions served from cache never take one. Given the tracking data
+ * source, the controller counts per action how many executions there were and how many of them needed a connection.
  */
 public class ServiceActionController implements ActionController
 {
@@ -74,6 +86,29 @@ public class ServiceActionController implements ActionController
      */
     private final PlatformTransactionManager transMgr;
 
+    /**
+     * Counts the connections taken by each thread; null if not tracked.
+     */
+    private ConnectionUsageTrackingDataSource connectionUsageTracker;
+
+    /**
+     * Usage statistics per action, keyed by action name.
+     */
+    private final ConcurrentMap<String, ActionStatistics> statistics = // \n
+    new ConcurrentHashMap<String, ActionStatistics>();
+
+    /**
+     * Execution and connection counts for an action.
+     */
+    private static class ActionStatistics
+    {
+        /** Executions. */
+        private final AtomicLong executions = new AtomicLong();
+
+        /** Executions which took a connection. */
+        private final AtomicLong connections = new AtomicLong();
+    }
+
     /**
      * Constructor.
      *
@@ -85,6 +120,16 @@ public class ServiceActionController implements ActionController
         transMgr = inTransMgr;
     }
 
+    /**
+     * @param inConnectionUsageTracker
+     *            the data source counting the connections taken by each thread, to count per action how often a
+     *            connection was needed.
+     */
+    public void setConnectionUsageTracker(final ConnectionUsageTrackingDataSource inConnectionUsageTracker)
+    {
+        connectionUsageTracker = inConnectionUsageTracker;
+    }
+
     /**
      * Execute the supplied {@link ServiceAction} with the given {@link PrincipalActionContext}.
      *
@@ -113,6 +158,7 @@ public class ServiceActionController implements ActionController
         DefaultTransactionDefinition transDef = new DefaultTransactionDefinition();
         transDef.setName(inServiceAction.toString());
         transDef.setReadOnly(inServiceAction.isReadOnly());
+        int connectionsBefore = getConnectionsTaken();
         TransactionStatus transStatus = transMgr.getTransaction(transDef);
         try
         {
@@ -149,6 +195,10 @@ public class ServiceActionController implements ActionController
             logger.error("Error occurred performing transaction.", ex);
             throw new GeneralException(ex);
         }
+        finally
+        {
+            recordUsage(inServiceAction, inServiceAction.getExecutionStrategy(), connectionsBefore);
+        }
 
         return results;
     }
@@ -182,6 +232,7 @@ public class ServiceActionController implements ActionController
         DefaultTransactionDefinition transDef = new DefaultTransactionDefinition();
         transDef.setName(inTaskHandlerAction.toString());
         transDef.setReadOnly(inTaskHandlerAction.isReadOnly());
+        int connectionsBefore = getConnectionsTaken();
         TransactionStatus transStatus = transMgr.getTransaction(transDef);
         TaskHandlerActionContext<PrincipalActionContext> taskHandlerContext = // \n
         new TaskHandlerActionContextImpl<PrincipalActionContext>(inServiceActionContext,
@@ -221,14 +272,25 @@ public class ServiceActionController implements ActionController
             logger.error("Error occurred performing transaction.", ex);
             throw new GeneralException(ex);
         }
+        finally
+        {
+            recordUsage(inTaskHandlerAction, inTaskHandlerAction.getExecutionStrategy(), connectionsBefore);
+        }
 
         // Submit the TaskRequests gathered from the execution strategy into the TaskHandlerContext to the TaskHandler.
         try
         {
             TaskHandler currentTaskHandler = inTaskHandlerAction.getTaskHandler();
-            for (UserActionRequest currentRequest : taskHandlerContext.getUserActionRequests())
+            if (currentTaskHandler instanceof BatchTaskHandler)
             {
-                currentTaskHandler.handleTask(currentRequest);
+                ((BatchTaskHandler) currentTaskHandler).handleTasks(taskHandlerContext.getUserActionRequests());
+            }
+            else
+            {
+                for (UserActionRequest currentRequest : taskHandlerContext.getUserActionRequests())
+                {
+                    currentTaskHandler.handleTask(currentRequest);
+                }
             }
         }
         catch (Exception ex)
@@ -254,4 +316,96 @@ public class ServiceActionController implements ActionController
         }
         // TODO: Perform undo operations here.
     }
+
+    /**
+     * @return the number of connections the current thread has taken so far, or 0 if not tracked.
+     */
+    private int getConnectionsTaken()
+    {
+        return connectionUsageTracker == null ? 0 : connectionUsageTracker.getConnectionsTakenByThread();
+    }
+
+    /**
+     * Name an action for its usage statistics.
+     *
+     * @param inAction
+     *            the action.
+     * @param inExecutionStrategy
+     *            the action's execution strategy.
+     * @return the action's bean name, which is its action key, or for actions without one of their own (created in
+     *         code, or inner beans with generated names), the execution strategy's class name.
+     */
+    private static String getActionName(final Object inAction, final Object inExecutionStrategy)
+    {
+        String beanName = null;
+        if (inAction instanceof ServiceAction)
+        {
+            beanName = ((ServiceAction) inAction).getBeanName();
+        }
+        else if (inAction instanceof TaskHandlerServiceAction)
+        {
+            beanName = ((TaskHandlerServiceAction) inAction).getBeanName();
+        }
+        if (beanName == null || beanName.indexOf('#') >= 0)
+        {
+            return inExecutionStrategy.getClass().getSimpleName();
+        }
+        return beanName;
+    }
+
+    /**
+     * Counts an execution of an action and whether it took a connection.
+     *
+     * @param inAction
+     *            the action.
+     * @param inExecutionStrategy
+     *            the action's execution strategy.
+     * @param inConnectionsBefore
+     *            the number of connections the thread had taken before the action's transaction began.
+     */
+    private void recordUsage(final Object inAction, final Object inExecutionStrategy, final int inConnectionsBefore)
+    {
+        if (connectionUsageTracker == null)
+        {
+            return;
+        }
+        String name = getActionName(inAction, inExecutionStrategy);
+        ActionStatistics stats = statistics.get(name);
+        if (stats == null)
+        {
+            statistics.putIfAbsent(name, new ActionStatistics());
+            stats = statistics.get(name);
+        }
+        stats.executions.incrementAndGet();
+        if (getConnectionsTaken() != inConnectionsBefore)
+        {
+            stats.connections.incrementAndGet();
+        }
+    }
+
+    /**
+     * @return the number of executions per action, keyed by action key.
+     */
+    public Map<String, Long> getExecutionCounts()
+    {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Entry<String, ActionStatistics> entry : statistics.entrySet())
+        {
+            counts.put(entry.getKey(), entry.getValue().executions.get());
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of executions per action which needed a database connection, keyed by action key.
+     */
+    public Map<String, Long> getConnectionCounts()
+    {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Entry<String, ActionStatistics> entry : statistics.entrySet())
+        {
+            counts.put(entry.getKey(), entry.getValue().connections.get());
+        }
+        return counts;
+    }
 }
@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import java.util.List;
+
+import org.eurekastreams.commons.server.UserActionRequest;
+
+/**
+ * A task handler which can take a number of tasks at once more cheaply than one at a time.
+ */
+public interface BatchTaskHandler extends TaskHandler
+{
+    /**
+     * Handle a number of tasks.
+     *
+     * @param inUserActionRequests
+     *            The user action requests to perform asynchronously, in order.
+     * @throws Exception
+     *             not expected.
+     */
+    void handleTasks(List<UserActionRequest> inUserActionRequests) throws Exception;
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2009-2010 Lockheed Martin Corporation
+ * Copyright (c) 2009-2011 Lockheed Martin Corporation
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,24 +15,50 @@
  */
 package org.eurekastreams.commons.task;
 
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
 import javax.jms.JMSException;
+import javax.jms.MapMessage;
 import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
 import javax.jms.ObjectMessage;
+import javax.jms.Queue;
 import javax.jms.Session;
+import javax.jms.TemporaryQueue;
 
 import org.apache.log4j.Logger;
+import org.eurekastreams.commons.messaging.UserActionRequestCodec;
 import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.commons.server.UserActionRequestBatch;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.jms.core.MessageCreator;
+import org.springframework.jms.core.SessionCallback;
 import org.springframework.util.Assert;
 
 /**
- * This class puts a request into a message and places it on the queue.
+ * This class puts a request into a message and places it on the queue. When given several requests at once, it puts up
+ * to maxBatchSize of them into each message, so a large fan-out costs one send per batch instead of one per request.
  * 
  */
-public class QueueTaskHandler implements TaskHandler
+public class QueueTaskHandler implements BatchTaskHandler
 {
 
+    /**
+     * Prefix of the destinations on which ActiveMQ's statistics broker plugin answers with a destination's statistics.
+     */
+    private static final String STATISTICS_DESTINATION_PREFIX = "ActiveMQ.Statistics.Destination.";
+
+    /**
+     * Default time to wait for the broker's statistics, in milliseconds.
+     */
+    private static final long DEFAULT_STATISTICS_TIMEOUT_MILLIS = 2000;
+
     /**
      * The logger.
      */
@@ -43,6 +69,36 @@ public class QueueTaskHandler implements TaskHandler
      */
     private JmsTemplate jmsTemplate;
 
+    /**
+     * Most requests to put in one message; 1 sends every request in its own message.
+     */
+    private int maxBatchSize = 1;
+
+    /**
+     * Converts requests to messages; when null, requests are sent as Java-serialized ObjectMessages.
+     */
+    private UserActionRequestCodec messageCodec;
+
+    /**
+     * Time to wait for the broker's statistics, in milliseconds.
+     */
+    private long statisticsTimeoutMillis = DEFAULT_STATISTICS_TIMEOUT_MILLIS;
+
+    /**
+     * Number of messages sent.
+     */
+    private final AtomicLong messagesSent = new AtomicLong();
+
+    /**
+     * Number of requests sent.
+     */
+    private final AtomicLong requestsSent = new AtomicLong();
+
+    /**
+     * Time spent sending, in nanoseconds.
+     */
+    private final AtomicLong sendNanos = new AtomicLong();
+
     /**
      * Constructor.
      * 
@@ -64,14 +120,182 @@ public class QueueTaskHandler implements TaskHandler
      */
     public void handleTask(final UserActionRequest inUserActionRequest)
     {
+        send(inUserActionRequest, 1);
+        logger.debug("Message sent to message broker");
+    }
+
+    /**
+     * Puts the requests into as few messages as the batch size allows and places them on the queue.
+     * 
+     * @param inUserActionRequests
+     *            the requests, in order
+     */
+    public void handleTasks(final List<UserActionRequest> inUserActionRequests)
+    {
+        int size = inUserActionRequests.size();
+        for (int start = 0; start < size; start += maxBatchSize)
+        {
+            int end = Math.min(start + maxBatchSize, size);
+            if (end - start == 1)
+            {
+                send(inUserActionRequests.get(start), 1);
+            }
+            else
+            {
+                send(new UserActionRequestBatch(inUserActionRequests.subList(start, end)), end - start);
+            }
+        }
+        if (logger.isDebugEnabled())
+        {
+            logger.debug("Sent " + size + " requests to message broker");
+        }
+    }
+
+    /**
+     * Sends one message.
+     * 
+     * @param payload
+     *            the request or batch of requests
+     * @param requestCount
+     *            the number of requests in the payload
+     */
+    private void send(final Serializable payload, final int requestCount)
+    {
+        long start = System.nanoTime();
         jmsTemplate.send(new MessageCreator()
         {
             public Message createMessage(final Session session) throws JMSException
             {
-                ObjectMessage message = session.createObjectMessage(inUserActionRequest);
+                if (messageCodec != null)
+                {
+                    return messageCodec.toMessage(session, payload);
+                }
+                ObjectMessage message = session.createObjectMessage(payload);
                 return message;
             }
         });
-        logger.debug("Message sent to message broker");
+        sendNanos.addAndGet(System.nanoTime() - start);
+        messagesSent.incrementAndGet();
+        requestsSent.addAndGet(requestCount);
+    }
+
+    /**
+     * @param inMaxBatchSize
+     *            most requests to put in one message; 1 sends every request in its own message. Only raise this once
+     *            every consumer runs a build which understands batches.
+     */
+    public void setMaxBatchSize(final int inMaxBatchSize)
+    {
+        Assert.isTrue(inMaxBatchSize > 0, "Batch size must be positive.");
+        maxBatchSize = inMaxBatchSize;
+    }
+
+    /**
+     * @param inMessageCodec
+     *            converts requests to messages.
+     */
+    public void setMessageCodec(final UserActionRequestCodec inMessageCodec)
+    {
+        messageCodec = inMessageCodec;
+    }
+
+    /**
+     * @param inStatisticsTimeoutMillis
+     *            time to wait for the broker's statistics, in milliseconds.
+     */
+    public void setStatisticsTimeoutMillis(final long inStatisticsTimeoutMillis)
+    {
+        statisticsTimeoutMillis = inStatisticsTimeoutMillis;
+    }
+
+    /**
+     * Gets the number of messages waiting on the queue from the broker's own statistics for it, so reading the depth
+     * costs one small request and reply however deep the queue is. Needs the statistics plugin enabled on the broker
+     * (&lt;statisticsBrokerPlugin/&gt; in its plugins).
+     * 
+     * @return number of messages waiting, or -1 if the broker didn't report it.
+     */
+    public long getQueueDepth()
+    {
+        final Destination destination = jmsTemplate.getDefaultDestination();
+        if (!(destination instanceof Queue))
+        {
+            return -1;
+        }
+        Long depth = (Long) jmsTemplate.execute(new SessionCallback()
+        {
+            public Object doInJms(final Session session) throws JMSException
+            {
+                TemporaryQueue replyQueue = session.createTemporaryQueue();
+                MessageConsumer consumer = session.createConsumer(replyQueue);
+                MessageProducer producer = session.createProducer(session.createQueue(STATISTICS_DESTINATION_PREFIX
+                        + ((Queue) destination).getQueueName()));
+                try
+                {
+                    producer.setDeliveryMode(DeliveryMode.NON_PERSISTENT);
+                    Message query = session.createMessage();
+                    query.setJMSReplyTo(replyQueue);
+                    producer.send(query);
+
+                    Message reply = consumer.receive(statisticsTimeoutMillis);
+                    if (reply instanceof MapMessage && ((MapMessage) reply).itemExists("size"))
+                    {
+                        return ((MapMessage) reply).getLong("size");
+                    }
+                    logger.debug("No statistics from the broker for " + destination);
+                    return -1L;
+                }
+                finally
+                {
+                    producer.close();
+                    consumer.close();
+                    replyQueue.delete();
+                }
+            }
+        }, true);
+        return depth;
+    }
+
+    /**
+     * @return number of messages sent.
+     */
+    public long getMessagesSent()
+    {
+        return messagesSent.get();
+    }
+
+    /**
+     * @return number of requests sent.
+     */
+    public long getRequestsSent()
+    {
+        return requestsSent.get();
+    }
+
+    /**
+     * @return messages sent per second spent sending.
+     */
+    public double getMessagesPerSecond()
+    {
+        return perSecond(messagesSent.get());
+    }
+
+    /**
+     * @return requests sent per second spent sending.
+     */
+    public double getRequestsPerSecond()
+    {
+        return perSecond(requestsSent.get());
+    }
+
+    /**
+     * @param count
+     *            a count.
+     * @return the count divided by the time spent sending, in seconds.
+     */
+    private double perSecond(final long count)
+    {
+        long nanos = sendNanos.get();
+        return nanos == 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
     }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.springframework.util.Assert;
+
+/**
+ * Hands each request to the task handler for its action key (e.g. the queue for a priority lane), or to a default
+ * handler for action keys with no route. Lets low priority bulk work be moved off the queues that carry user-visible
+ * work without touching the actions which submit it.
+ */
+public class RoutingTaskHandler implements BatchTaskHandler
+{
+    /** Handler for action keys with no route. */
+    private final TaskHandler defaultHandler;
+
+    /** Handler by action key. */
+    private Map<String, TaskHandler> routes = Collections.emptyMap();
+
+    /**
+     * Constructor.
+     *
+     * @param inDefaultHandler
+     *            handler for action keys with no route.
+     */
+    public RoutingTaskHandler(final TaskHandler inDefaultHandler)
+    {
+        Assert.notNull(inDefaultHandler, "Default task handler cannot be null");
+        defaultHandler = inDefaultHandler;
+    }
+
+    /**
+     * Hands the request to the handler for its action key.
+     *
+     * @param inUserActionRequest
+     *            the request
+     * @throws Exception
+     *             from the handler.
+     */
+    public void handleTask(final UserActionRequest inUserActionRequest) throws Exception
+    {
+        route(inUserActionRequest.getActionKey()).handleTask(inUserActionRequest);
+    }
+
+    /**
+     * Hands the requests to the handlers for their action keys, each handler getting its requests together and in the
+     * order given.
+     *
+     * @param inUserActionRequests
+     *            the requests, in order
+     * @throws Exception
+     *             from the handlers.
+     */
+    public void handleTasks(final List<UserActionRequest> inUserActionRequests) throws Exception
+    {
+        Map<TaskHandler, List<UserActionRequest>> byHandler = new LinkedHashMap<TaskHandler, List<UserActionRequest>>();
+        for (UserActionRequest request : inUserActionRequests)
+        {
+            TaskHandler handler = route(request.getActionKey());
+            List<UserActionRequest> requests = byHandler.get(handler);
+            if (requests == null)
+            {
+                requests = new ArrayList<UserActionRequest>();
+                byHandler.put(handler, requests);
+            }
+            requests.add(request);
+        }
+
+        for (Map.Entry<TaskHandler, List<UserActionRequest>> entry : byHandler.entrySet())
+        {
+            TaskHandler handler = entry.getKey();
+            if (handler instanceof BatchTaskHandler)
+            {
+                ((BatchTaskHandler) handler).handleTasks(entry.getValue());
+            }
+            else
+            {
+                for (UserActionRequest request : entry.getValue())
+                {
+                    handler.handleTask(request);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param actionKey
+     *            an action key.
+     * @return the handler for the action key.
+     */
+    private TaskHandler route(final String actionKey)
+    {
+        TaskHandler handler = routes.get(actionKey);
+        return handler == null ? defaultHandler : handler;
+    }
+
+    /**
+     * @param inRoutes
+     *            handler by action key; action keys not listed go to the default handler.
+     */
+    public void setRoutes(final Map<String, TaskHandler> inRoutes)
+    {
+        routes = new HashMap<String, TaskHandler>(inRoutes);
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.springframework.util.Assert;
+
+/**
+ * Caps how many requests for an action key run at once on this node, passing each request on to another task handler.
+ * A request over its action's cap waits on the calling thread (a queue consumer thread) until one finishes, so a cap
+ * only leaves room for other actions when it is lower than the consumer concurrency of the lane. Action keys without a
+ * cap are not limited.
+ */
+public class ThrottlingTaskHandler implements TaskHandler
+{
+    /** The logger. */
+    private final Logger logger = Logger.getLogger(ThrottlingTaskHandler.class);
+
+    /** Handler which runs the requests. */
+    private final TaskHandler taskHandler;
+
+    /** Permits by action key. */
+    private Map<String, Semaphore> permits = Collections.emptyMap();
+
+    /** Cap by action key. */
+    private Map<String, Integer> limits = Collections.emptyMap();
+
+    /** Number of requests which had to wait for a permit. */
+    private final AtomicLong throttledCount = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param inTaskHandler
+     *            handler which runs the requests.
+     */
+    public ThrottlingTaskHandler(final TaskHandler inTaskHandler)
+    {
+        Assert.notNull(inTaskHandler, "Task handler cannot be null");
+        taskHandler = inTaskHandler;
+    }
+
+    /**
+     * Runs the request once its action key is under its cap.
+     *
+     * @param inUserActionRequest
+     *            the request
+     * @throws Exception
+     *             from the handler, or if interrupted while waiting.
+     */
+    public void handleTask(final UserActionRequest inUserActionRequest) throws Exception
+    {
+        Semaphore semaphore = permits.get(inUserActionRequest.getActionKey());
+        if (semaphore == null)
+        {
+            taskHandler.handleTask(inUserActionRequest);
+            return;
+        }
+
+        if (!semaphore.tryAcquire())
+        {
+            throttledCount.incrementAndGet();
+            if (logger.isDebugEnabled())
+            {
+                logger.debug("Waiting for a " + inUserActionRequest.getActionKey() + " request to finish");
+            }
+            semaphore.acquire();
+        }
+        try
+        {
+            taskHandler.handleTask(inUserActionRequest);
+        }
+        finally
+        {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * @param inLimits
+     *            most requests to run at once by action key.
+     */
+    public void setLimits(final Map<String, Integer> inLimits)
+    {
+        Map<String, Semaphore> newPermits = new HashMap<String, Semaphore>();
+        for (Map.Entry<String, Integer> entry : inLimits.entrySet())
+        {
+            Assert.isTrue(entry.getValue() > 0, "Limit for " + entry.getKey() + " must be positive.");
+            newPermits.put(entry.getKey(), new Semaphore(entry.getValue(), true));
+        }
+        limits = new HashMap<String, Integer>(inLimits);
+        permits = newPermits;
+    }
+
+    /**
+     * @return number of requests which had to wait for a permit.
+     */
+    public long getThrottledCount()
+    {
+        return throttledCount.get();
+    }
+
+    /**
+     * @return number of requests running for each capped action key.
+     */
+    public Map<String, Integer> getInFlightCounts()
+    {
+        Map<String, Integer> counts = new TreeMap<String, Integer>();
+        for (Map.Entry<String, Semaphore> entry : permits.entrySet())
+        {
+            counts.put(entry.getKey(), limits.get(entry.getKey()) - entry.getValue().availablePermits());
+        }
+        return counts;
+    }
+}
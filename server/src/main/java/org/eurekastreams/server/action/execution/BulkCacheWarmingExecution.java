@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.BulkCacheWarmingRequest;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.eurekastreams.server.persistence.mappers.cache.GenerationalCache;
+
+/**
+ * Warms the cache for every entity of a type, one chunk of ids per action. Each chunk is loaded with one set-based
+ * query per kind of cached data and written with batched multi-sets; the action then queues itself for the next chunk.
+ * The position travels in the queued request, so a run interrupted by a task processor restart picks up at the chunk
+ * it was on, and a run can be started part way by giving the action a request.
+ *
+ * Progress (entities warmed, position and rate) is logged at info level for every chunk; the figures for the chunks
+ * this node ran are also available through the getters. When the last chunk is done the run reports finishing to the
+ * generational cache, if one is set, so a cache generation warmed by the run can be activated.
+ */
+public class BulkCacheWarmingExecution implements TaskHandlerExecutionStrategy<ActionContext>
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Key of the action running this strategy, to queue the next chunk.
+     */
+    private final String actionKey;
+
+    /**
+     * Returns the next chunk of ids after a given id, in ascending order.
+     */
+    private final DomainMapper<Long, List<Long>> idMapper;
+
+    /**
+     * Warm one kind of cached data for a chunk of ids.
+     */
+    private final List<DomainMapper<List<Long>, ? >> warmers;
+
+    /**
+     * Entities warmed by this node.
+     */
+    private final AtomicLong warmedCount = new AtomicLong();
+
+    /**
+     * Time this node spent warming, in milliseconds.
+     */
+    private final AtomicLong warmingMillis = new AtomicLong();
+
+    /**
+     * Last id warmed by this node.
+     */
+    private volatile long lastWarmedId = 0;
+
+    /**
+     * Cache to tell when the run finishes; may be null.
+     */
+    private GenerationalCache generationalCache;
+
+    /**
+     * Constructor.
+     *
+     * @param inActionKey
+     *            key of the action running this strategy, to queue the next chunk.
+     * @param inIdMapper
+     *            returns the next chunk of ids after a given id, in ascending order.
+     * @param inWarmers
+     *            warm one kind of cached data for a chunk of ids.
+     */
+    public BulkCacheWarmingExecution(final String inActionKey, final DomainMapper<Long, List<Long>> inIdMapper,
+            final List<DomainMapper<List<Long>, ? >> inWarmers)
+    {
+        actionKey = inActionKey;
+        idMapper = inIdMapper;
+        warmers = inWarmers;
+    }
+
+    /**
+     * Warm the cache for the next chunk of entities and queue the chunk after it.
+     *
+     * @param inActionContext
+     *            {@link TaskHandlerActionContext}; the params are a {@link BulkCacheWarmingRequest}, or null to start
+     *            from the beginning.
+     * @return null.
+     */
+    @Override
+    public Serializable execute(final TaskHandlerActionContext<ActionContext> inActionContext)
+    {
+        long start = System.currentTimeMillis();
+        BulkCacheWarmingRequest request = (BulkCacheWarmingRequest) inActionContext.getActionContext().getParams();
+        if (request == null)
+        {
+            log.info(actionKey + ": starting");
+            request = new BulkCacheWarmingRequest(0, 0, start);
+        }
+
+        List<Long> ids = idMapper.execute(request.getAfterId());
+        if (ids.isEmpty())
+        {
+            log.info(String.format("%s: finished, warmed %d entities in %d s", actionKey, request.getWarmedCount(),
+                    TimeUnit.MILLISECONDS.toSeconds(start - request.getStartTimeMillis())));
+            if (generationalCache != null)
+            {
+                generationalCache.finishWarming(actionKey);
+            }
+            return null;
+        }
+
+        for (DomainMapper<List<Long>, ? > warmer : warmers)
+        {
+            warmer.execute(ids);
+        }
+
+        long lastId = ids.get(ids.size() - 1);
+        long warmed = request.getWarmedCount() + ids.size();
+        long now = System.currentTimeMillis();
+        warmedCount.addAndGet(ids.size());
+        warmingMillis.addAndGet(now - start);
+        lastWarmedId = lastId;
+
+        if (log.isInfoEnabled())
+        {
+            double seconds = Math.max(1, now - request.getStartTimeMillis()) / (double) TimeUnit.SECONDS.toMillis(1);
+            log.info(String.format("%s: warmed %d entities through id %d in %.0f s (%.1f entities/s); "
+                    + "chunk of %d took %d ms", actionKey, warmed, lastId, seconds, warmed / seconds, ids.size(),
+                    now - start));
+        }
+
+        inActionContext.getUserActionRequests().add(
+                new UserActionRequest(actionKey, null, new BulkCacheWarmingRequest(lastId, warmed, request
+                        .getStartTimeMillis())));
+        return null;
+    }
+
+    /**
+     * @param inGenerationalCache
+     *            cache to tell when the run finishes.
+     */
+    public void setGenerationalCache(final GenerationalCache inGenerationalCache)
+    {
+        generationalCache = inGenerationalCache;
+    }
+
+    /**
+     * @return entities warmed by this node.
+     */
+    public long getWarmedCount()
+    {
+        return warmedCount.get();
+    }
+
+    /**
+     * @return last id warmed by this node.
+     */
+    public long getLastWarmedId()
+    {
+        return lastWarmedId;
+    }
+
+    /**
+     * @return entities warmed per second spent warming on this node.
+     */
+    public double getEntitiesPerSecond()
+    {
+        long millis = warmingMillis.get();
+        return millis == 0 ? 0 : warmedCount.get() * (double) TimeUnit.SECONDS.toMillis(1) / millis;
+    }
+}
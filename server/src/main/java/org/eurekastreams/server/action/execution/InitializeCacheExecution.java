@@ -24,11 +24,14 @@ import org.eurekastreams.commons.actions.context.ActionContext;
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.commons.server.UserActionRequest;
-import org.eurekastreams.server.persistence.mappers.cache.Cache;
+import org.eurekastreams.server.persistence.mappers.cache.GenerationalCache;
 
 /**
  * This action initialized/warms the cache by running a series of cache loaders. This action is meant to be run
  * asynchronously at application startup.
+ *
+ * Rather than flushing the cache, it starts a new cache generation and warms that while readers keep using the
+ * current one; the new generation is activated once each of the awaited warming actions has reported finishing.
  */
 public class InitializeCacheExecution implements TaskHandlerExecutionStrategy<ActionContext>
 {
@@ -40,7 +43,7 @@ public class InitializeCacheExecution implements TaskHandlerExecutionStrategy<Ac
     /**
      * The cache.
      */
-    private Cache cache;
+    private GenerationalCache cache;
 
     /**
      * Action key.
@@ -48,21 +51,30 @@ public class InitializeCacheExecution implements TaskHandlerExecutionStrategy<Ac
     private List<String> actionKeys = null;
 
     /**
-     * Constructor. Set cache to null to skip clearing cache before warming.
+     * Keys of the queued actions which must finish warming before the new generation is used.
+     */
+    private List<String> awaitedActionKeys;
+
+    /**
+     * Constructor. Set cache to null to warm the current cache generation in place.
      * 
      * @param inCache
-     *            Cache client, leave null to skip clearing cache before warming.
+     *            Cache client, leave null to warm the current generation in place.
      * @param inActionKeys
      *            Action keys.
+     * @param inAwaitedActionKeys
+     *            Keys of the queued actions which must finish warming before the new generation is used.
      */
-    public InitializeCacheExecution(final Cache inCache, final List<String> inActionKeys)
+    public InitializeCacheExecution(final GenerationalCache inCache, final List<String> inActionKeys,
+            final List<String> inAwaitedActionKeys)
     {
         cache = inCache;
         actionKeys = inActionKeys;
+        awaitedActionKeys = inAwaitedActionKeys;
     }
 
     /**
-     * Clear cache (if not null) and queue list of cache warming actions.
+     * Start a new cache generation (if cache is not null) and queue list of cache warming actions.
      * 
      * @param inActionContext
      *            {@link TaskHandlerActionContext}.
@@ -73,12 +85,12 @@ public class InitializeCacheExecution implements TaskHandlerExecutionStrategy<Ac
     {
         if (cache != null)
         {
-            log.info("Clearing Cache");
-            cache.clear();
+            log.info("Starting new cache generation");
+            cache.startGeneration(awaitedActionKeys);
         }
         else
         {
-            log.info("Skipping Cache clearing");
+            log.info("Warming current cache generation in place");
         }
 
         for (String key : actionKeys)
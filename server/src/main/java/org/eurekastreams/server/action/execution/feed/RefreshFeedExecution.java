@@ -32,16 +32,17 @@ import org.eurekastreams.commons.actions.context.ActionContext;
 import org.eurekastreams.commons.exceptions.ExecutionException;
 import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.server.action.request.feed.RefreshFeedRequest;
-import org.eurekastreams.server.domain.DomainGroup;
 import org.eurekastreams.server.domain.EntityType;
 import org.eurekastreams.server.domain.GeneralGadgetDefinition;
-import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.domain.gadgetspec.GadgetMetaDataDTO;
 import org.eurekastreams.server.domain.stream.Activity;
 import org.eurekastreams.server.domain.stream.ActivityVerb;
 import org.eurekastreams.server.domain.stream.BaseObjectType;
+import org.eurekastreams.server.domain.stream.StreamScope;
+import org.eurekastreams.server.domain.stream.StreamScope.ScopeType;
 import org.eurekastreams.server.domain.stream.plugins.Feed;
 import org.eurekastreams.server.domain.stream.plugins.FeedSubscriber;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.eurekastreams.server.persistence.mappers.FindByIdMapper;
 import org.eurekastreams.server.persistence.mappers.InsertMapper;
 import org.eurekastreams.server.persistence.mappers.UpdateMapper;
@@ -49,11 +50,15 @@ import org.eurekastreams.server.persistence.mappers.cache.Cache;
 import org.eurekastreams.server.persistence.mappers.cache.CacheKeys;
 import org.eurekastreams.server.persistence.mappers.requests.FindByIdRequest;
 import org.eurekastreams.server.persistence.mappers.requests.PersistenceRequest;
+import org.eurekastreams.server.search.modelview.DomainGroupModelView;
+import org.eurekastreams.server.search.modelview.PersonModelView;
 import org.eurekastreams.server.service.actions.strategies.activity.plugins.FeedObjectActivityBuilder;
+import org.eurekastreams.server.service.actions.strategies.activity.plugins.FeedRefreshScheduler;
 import org.eurekastreams.server.service.actions.strategies.activity.plugins.ObjectBuilderForSpecificUrl;
 import org.eurekastreams.server.service.actions.strategies.activity.plugins.rome.ActivityStreamsModule;
 import org.eurekastreams.server.service.actions.strategies.activity.plugins.rome.FeedFactory;
 import org.eurekastreams.server.service.opensocial.gadgets.spec.GadgetMetaDataFetcher;
+import org.eurekastreams.server.service.utility.http.HttpCacheValidators;
 
 import com.sun.syndication.feed.module.SyModule;
 import com.sun.syndication.feed.synd.SyndEntryImpl;
@@ -64,6 +69,12 @@ import com.sun.syndication.feed.synd.SyndFeed;
  * reason for the queueing is so I don't update the same exact list 100s of times instead of once. This cuts down by
  * multiple orders of magnitude
  * 
+ * The fetch is conditional on the ETag and Last-Modified of the last copy and on its content hash; if the feed has not
+ * changed, nothing is parsed and only the feed's refresh time is updated. If a refresh scheduler is set, it decides
+ * when the feed is next due from how the refresh went.
+ *
+ * The subscribers receiving a feed's new entries are resolved once per refresh, from the cached person and group
+ * model views fetched in bulk, and each entry's activity is copied per subscriber from those.
  */
 public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
 {
@@ -123,13 +134,14 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
     private final FeedFactory feedFetcherFactory;
 
     /**
-     * Person finder.
+     * Gets people by ids.
      */
-    private final FindByIdMapper<Person> personFinder;
+    private final DomainMapper<List<Long>, List<PersonModelView>> getPeopleByIdsMapper;
+
     /**
-     * Group finder.
+     * Gets groups by ids.
      */
-    private final FindByIdMapper<DomainGroup> groupFinder;
+    private final DomainMapper<List<Long>, List<DomainGroupModelView>> getGroupsByIdsMapper;
 
     /**
      * Feed finder.
@@ -151,6 +163,11 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
      */
     private List<String> outOfOrderFeeds;
 
+    /**
+     * Decides when the feed is next due; may be null to leave it to the feed's update frequency.
+     */
+    private FeedRefreshScheduler refreshScheduler;
+
     /**
      * Default constructor.
      * 
@@ -164,10 +181,10 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
      *            The cache.
      * @param inFeedFetcherFactory
      *            feed fetcher factory.
-     * @param inPersonFinder
-     *            find person.
-     * @param inGroupFinder
-     *            find group.
+     * @param inGetPeopleByIdsMapper
+     *            gets people by ids.
+     * @param inGetGroupsByIdsMapper
+     *            gets groups by ids.
      * @param inFeedFinder
      *            find feed.
      * @param inMetaDataFetcher
@@ -180,8 +197,10 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
     public RefreshFeedExecution(final HashMap<BaseObjectType, FeedObjectActivityBuilder> inStandardFeedMappers,
             final List<ObjectBuilderForSpecificUrl> inSpecificUrlMappers,
             final InsertMapper<Activity> inActivityDBInserter, final Cache inCache,
-            final FeedFactory inFeedFetcherFactory, final FindByIdMapper<Person> inPersonFinder,
-            final FindByIdMapper<DomainGroup> inGroupFinder, final FindByIdMapper<Feed> inFeedFinder,
+            final FeedFactory inFeedFetcherFactory,
+            final DomainMapper<List<Long>, List<PersonModelView>> inGetPeopleByIdsMapper,
+            final DomainMapper<List<Long>, List<DomainGroupModelView>> inGetGroupsByIdsMapper,
+            final FindByIdMapper<Feed> inFeedFinder,
             final GadgetMetaDataFetcher inMetaDataFetcher, final UpdateMapper<Feed> inUpdateFeedMapper,
             final List<String> inOutOfOrderFeeds)
     {
@@ -190,8 +209,8 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
         activityDBInserter = inActivityDBInserter;
         cache = inCache;
         feedFetcherFactory = inFeedFetcherFactory;
-        personFinder = inPersonFinder;
-        groupFinder = inGroupFinder;
+        getPeopleByIdsMapper = inGetPeopleByIdsMapper;
+        getGroupsByIdsMapper = inGetGroupsByIdsMapper;
         feedFinder = inFeedFinder;
         metaDataFetcher = inMetaDataFetcher;
         updateFeedMapper = inUpdateFeedMapper;
@@ -213,6 +232,11 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
         Date lastPostDate = feed.getLastPostDate();
         Long updateFrequency = null;
         Boolean isOutOfOrder = false;
+        HttpCacheValidators validators =
+                new HttpCacheValidators(feed.getEtag(), feed.getLastModified(), feed.getContentHash());
+        long fetchStart = System.currentTimeMillis();
+        Long fetchMillis = null;
+        boolean completed = false;
 
         log.info("Processor feed: " + feed.getUrl());
         for (String oooFeed : outOfOrderFeeds)
@@ -236,7 +260,14 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
             {
                 requestorAccounts.add(feedSubscriber.getRequestor().getAccountId());
             }
-            Map<String, SyndFeed> syndFeeds = feedFetcherFactory.getSyndicatedFeed(feed.getUrl(), requestorAccounts);
+            Map<String, SyndFeed> syndFeeds =
+                    feedFetcherFactory.getSyndicatedFeed(feed.getUrl(), requestorAccounts, validators);
+            fetchMillis = System.currentTimeMillis() - fetchStart;
+            if (validators.isNotModified())
+            {
+                log.info("Feed unchanged since last refresh: " + feed.getUrl());
+                return null;
+            }
 
             FeedObjectActivityBuilder selectedObjectMapper = null;
             for (ObjectBuilderForSpecificUrl entry : specificUrlMappers)
@@ -250,10 +281,14 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
 
             // iterate through all feed instances returned by the fetcher
             List<Activity> insertedActivities = new LinkedList<Activity>();
+            RecipientResolver resolver = new RecipientResolver(feed.getFeedSubscribers());
+            String appName = null;
+            boolean appNameLoaded = false;
             for (Map.Entry<String, SyndFeed> mapEntry : syndFeeds.entrySet())
             {
                 SyndFeed syndFeed = mapEntry.getValue();
                 List<FeedSubscriber> subscribers = getFeedSubscribers(mapEntry.getKey(), feed);
+                List<Recipient> recipients = null;
 
                 // check for update frequency info
                 if (updateFrequency == null)
@@ -311,7 +346,12 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
                                 lastPostDate = entry.getPublishedDate();
                             }
 
-                            Activity activity = getActivityFromATOMEntry(feed, entry, selectedObjectMapper);
+                            if (!appNameLoaded)
+                            {
+                                appName = getAppName(feed);
+                                appNameLoaded = true;
+                            }
+                            Activity activity = getActivityFromATOMEntry(feed, entry, selectedObjectMapper, appName);
                             // We were able to parse at least one good entry to completion, so the feed isn't broken.
                             brokenFeed = false;
 
@@ -337,41 +377,18 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
                             }
 
                             // create activities per subscriber
-                            for (FeedSubscriber feedSubscriber : subscribers)
+                            if (recipients == null)
+                            {
+                                recipients = resolver.getRecipients(subscribers);
+                            }
+                            for (Recipient recipient : recipients)
                             {
                                 Activity activityForIndividual = (Activity) activity.clone();
-
-                                if (feedSubscriber.getEntityType().equals(EntityType.PERSON))
-                                {
-                                    Person person = personFinder.execute(new FindByIdRequest("Person", feedSubscriber
-                                            .getEntityId()));
-
-                                    if (person.isAccountLocked())
-                                    {
-                                        log.info("Ignoring locked account: " + person.getAccountId());
-                                    }
-                                    else
-                                    {
-                                        activityForIndividual.setActorId(person.getAccountId());
-                                        activityForIndividual.setRecipientStreamScope(person.getStreamScope());
-                                        activityForIndividual.setIsDestinationStreamPublic(true);
-
-                                        activityForIndividual.setActorType(feedSubscriber.getEntityType());
-                                        insertedActivities.add(activityForIndividual);
-                                    }
-                                }
-                                else if (feedSubscriber.getEntityType().equals(EntityType.GROUP))
-                                {
-                                    DomainGroup group = groupFinder.execute(new FindByIdRequest("DomainGroup",
-                                            feedSubscriber.getEntityId()));
-
-                                    activityForIndividual.setActorId(group.getShortName());
-                                    activityForIndividual.setRecipientStreamScope(group.getStreamScope());
-                                    activityForIndividual.setIsDestinationStreamPublic(group.isPublicGroup());
-
-                                    activityForIndividual.setActorType(feedSubscriber.getEntityType());
-                                    insertedActivities.add(activityForIndividual);
-                                }
+                                activityForIndividual.setActorId(recipient.getActorId());
+                                activityForIndividual.setActorType(recipient.getActorType());
+                                activityForIndividual.setRecipientStreamScope(recipient.getStreamScope());
+                                activityForIndividual.setIsDestinationStreamPublic(recipient.isStreamPublic());
+                                insertedActivities.add(activityForIndividual);
                             }
 
                         }
@@ -406,6 +423,7 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
                     cache.addToTopOfList(CacheKeys.BUFFERED_ACTIVITIES, insertedActivityIds);
                 }
             }
+            completed = true;
         }
         catch (Exception ex)
         {
@@ -413,17 +431,48 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
         }
         finally
         {
-            feed.setLastSeenGUID(lastSeenGUID);
-            feed.setIsFeedBroken(brokenFeed);
-            feed.setLastPostDate(lastPostDate);
-            feed.setLastUpdated(new Date().getTime() / MS_IN_MIN);
-            feed.setUpdateFrequency(updateFrequency);
+            long now = new Date().getTime() / MS_IN_MIN;
+            feed.setLastUpdated(now);
             feed.setPending(false);
+            // if nothing was read, the state from the last copy still holds
+            if (!validators.isNotModified())
+            {
+                // only remember this copy once it has been fully processed; otherwise the next refresh would be told
+                // the feed is unchanged and the entries this one failed on would never be read
+                if (completed)
+                {
+                    feed.setEtag(validators.getEtag());
+                    feed.setLastModified(validators.getLastModified());
+                    feed.setContentHash(validators.getContentHash());
+                }
+                feed.setLastSeenGUID(lastSeenGUID);
+                feed.setIsFeedBroken(brokenFeed);
+                feed.setLastPostDate(lastPostDate);
+                feed.setUpdateFrequency(updateFrequency);
+            }
+            if (refreshScheduler != null)
+            {
+                boolean failed =
+                        fetchMillis == null
+                                || (validators.isNotModified() ? Boolean.TRUE.equals(feed.getIsFeedBroken())
+                                        : brokenFeed);
+                refreshScheduler.scheduleNext(feed, now, failed, fetchMillis == null ? System.currentTimeMillis()
+                        - fetchStart : fetchMillis);
+            }
         }
 
         return null;
     }
 
+    /**
+     * @param inRefreshScheduler
+     *            decides when the feed is next due.
+     */
+    public void setRefreshScheduler(final FeedRefreshScheduler inRefreshScheduler)
+    {
+        refreshScheduler = inRefreshScheduler;
+    }
+
     /**
      * Get the Activity object from an ATOM entry.
      * 
@@ -433,10 +482,12 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
      *            the entry.
      * @param inSelectedObjectMapper
      *            the mapper.
+     * @param appName
+     *            the name of the feed's plugin.
      * @return the activity.
      */
     private Activity getActivityFromATOMEntry(final Feed feed, final SyndEntryImpl inEntry,
-            final FeedObjectActivityBuilder inSelectedObjectMapper)
+            final FeedObjectActivityBuilder inSelectedObjectMapper, final String appName)
     {
         SyndEntryImpl entry = inEntry;
         FeedObjectActivityBuilder selectedObjectMapper = inSelectedObjectMapper;
@@ -445,23 +496,7 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
         activity.setAppType(EntityType.PLUGIN);
         activity.setAppId(feed.getPlugin().getId());
         activity.setAppSource(feed.getUrl());
-        final Map<String, GeneralGadgetDefinition> gadgetDefs = //
-        new HashMap<String, GeneralGadgetDefinition>();
-        gadgetDefs.put(feed.getPlugin().getUrl(), feed.getPlugin());
-        try
-        {
-            List<GadgetMetaDataDTO> meta = metaDataFetcher.getGadgetsMetaData(gadgetDefs);
-
-            if (meta.size() > 0)
-            {
-                activity.setAppName(meta.get(0).getTitle());
-            }
-        }
-        catch (Exception ex)
-        {
-            log.error("Error getting plugin definition");
-            activity.setAppName(feed.getTitle());
-        }
+        activity.setAppName(appName);
         activity.setPostedTime(entry.getPublishedDate());
         activity.setUpdated(entry.getUpdatedDate());
         activity.setVerb(ActivityVerb.POST);
@@ -487,6 +522,35 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
         return activity;
     }
 
+    /**
+     * Gets the name of the feed's plugin from its gadget metadata.
+     *
+     * @param feed
+     *            the feed.
+     * @return the name, the feed's title if the metadata can't be had, or null if it has none.
+     */
+    private String getAppName(final Feed feed)
+    {
+        final Map<String, GeneralGadgetDefinition> gadgetDefs = //
+        new HashMap<String, GeneralGadgetDefinition>();
+        gadgetDefs.put(feed.getPlugin().getUrl(), feed.getPlugin());
+        try
+        {
+            List<GadgetMetaDataDTO> meta = metaDataFetcher.getGadgetsMetaData(gadgetDefs);
+
+            if (meta.size() > 0)
+            {
+                return meta.get(0).getTitle();
+            }
+            return null;
+        }
+        catch (Exception ex)
+        {
+            log.error("Error getting plugin definition");
+            return feed.getTitle();
+        }
+    }
+
     /**
      * Returns the subscribers applicable to receive feed results returned for a given requestor.
      * 
@@ -550,4 +614,192 @@ public class RefreshFeedExecution implements ExecutionStrategy<ActionContext>
         // default to hourly.
         return updateFrequency * MINS_IN_HOUR;
     }
+
+    /**
+     * Where a feed entry's activity is posted for one subscriber.
+     */
+    private static class Recipient
+    {
+        /** Actor id: the person's account id or the group's short name. */
+        private final String actorId;
+
+        /** Actor type. */
+        private final EntityType actorType;
+
+        /** Stream the activity is posted to. */
+        private final StreamScope streamScope;
+
+        /** If that stream is public. */
+        private final boolean streamPublic;
+
+        /**
+         * Constructor.
+         *
+         * @param inActorId
+         *            actor id.
+         * @param inActorType
+         *            actor type.
+         * @param inStreamScope
+         *            stream the activity is posted to.
+         * @param inStreamPublic
+         *            if that stream is public.
+         */
+        public Recipient(final String inActorId, final EntityType inActorType, final StreamScope inStreamScope,
+                final boolean inStreamPublic)
+        {
+            actorId = inActorId;
+            actorType = inActorType;
+            streamScope = inStreamScope;
+            streamPublic = inStreamPublic;
+        }
+
+        /**
+         * @return actor id.
+         */
+        public String getActorId()
+        {
+            return actorId;
+        }
+
+        /**
+         * @return actor type.
+         */
+        public EntityType getActorType()
+        {
+            return actorType;
+        }
+
+        /**
+         * @return stream the activity is posted to.
+         */
+        public StreamScope getStreamScope()
+        {
+            return streamScope;
+        }
+
+        /**
+         * @return if that stream is public.
+         */
+        public boolean isStreamPublic()
+        {
+            return streamPublic;
+        }
+    }
+
+    /**
+     * Resolves a feed's subscribers to recipients, loading all of the subscribing people and groups in one bulk fetch
+     * the first time any are needed.
+     */
+    private class RecipientResolver
+    {
+        /** All of the feed's subscribers. */
+        private final List<FeedSubscriber> allSubscribers;
+
+        /** Subscribing people by id; null until loaded. */
+        private Map<Long, PersonModelView> people;
+
+        /** Subscribing groups by id; null until loaded. */
+        private Map<Long, DomainGroupModelView> groups;
+
+        /**
+         * Constructor.
+         *
+         * @param inAllSubscribers
+         *            all of the feed's subscribers.
+         */
+        public RecipientResolver(final List<FeedSubscriber> inAllSubscribers)
+        {
+            allSubscribers = inAllSubscribers;
+        }
+
+        /**
+         * Gets the recipients for some of the feed's subscribers, leaving out locked accounts and subscribers which
+         * no longer exist.
+         *
+         * @param subscribers
+         *            the subscribers.
+         * @return the recipients.
+         */
+        public List<Recipient> getRecipients(final List<FeedSubscriber> subscribers)
+        {
+            if (people == null)
+            {
+                load();
+            }
+
+            List<Recipient> recipients = new ArrayList<Recipient>(subscribers.size());
+            for (FeedSubscriber subscriber : subscribers)
+            {
+                if (EntityType.PERSON.equals(subscriber.getEntityType()))
+                {
+                    PersonModelView person = people.get(subscriber.getEntityId());
+                    if (person == null)
+                    {
+                        log.warn("Feed subscriber person not found: " + subscriber.getEntityId());
+                    }
+                    else if (person.isAccountLocked())
+                    {
+                        log.info("Ignoring locked account: " + person.getAccountId());
+                    }
+                    else
+                    {
+                        recipients.add(new Recipient(person.getAccountId(), EntityType.PERSON, new StreamScope(
+                                ScopeType.PERSON, person.getAccountId(), person.getStreamScopeId()), true));
+                    }
+                }
+                else if (EntityType.GROUP.equals(subscriber.getEntityType()))
+                {
+                    DomainGroupModelView group = groups.get(subscriber.getEntityId());
+                    if (group == null)
+                    {
+                        log.warn("Feed subscriber group not found: " + subscriber.getEntityId());
+                    }
+                    else
+                    {
+                        recipients.add(new Recipient(group.getShortName(), EntityType.GROUP, new StreamScope(
+                                ScopeType.GROUP, group.getShortName(), group.getStreamScopeId()), Boolean.TRUE
+                                .equals(group.isPublic())));
+                    }
+                }
+            }
+            return recipients;
+        }
+
+        /**
+         * Loads all of the subscribing people and groups.
+         */
+        private void load()
+        {
+            List<Long> personIds = new ArrayList<Long>();
+            List<Long> groupIds = new ArrayList<Long>();
+            for (FeedSubscriber subscriber : allSubscribers)
+            {
+                if (EntityType.PERSON.equals(subscriber.getEntityType()))
+                {
+                    personIds.add(subscriber.getEntityId());
+                }
+                else if (EntityType.GROUP.equals(subscriber.getEntityType()))
+                {
+                    groupIds.add(subscriber.getEntityId());
+                }
+            }
+
+            people = new HashMap<Long, PersonModelView>();
+            if (!personIds.isEmpty())
+            {
+                for (PersonModelView person : getPeopleByIdsMapper.execute(personIds))
+                {
+                    people.put(person.getId(), person);
+                }
+            }
+            groups = new HashMap<Long, DomainGroupModelView>();
+            if (!groupIds.isEmpty())
+            {
+                for (DomainGroupModelView group : getGroupsByIdsMapper.execute(groupIds))
+                {
+                    groups.put(group.getId(), group);
+                }
+            }
+        }
+    }
 }
@@ -16,9 +16,14 @@
 package org.eurekastreams.server.action.execution.feed;
 
 import java.io.Serializable;
+import java.net.MalformedURLException;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 
 import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
 import org.eurekastreams.commons.actions.context.ActionContext;
@@ -33,6 +38,8 @@ import org.eurekastreams.server.persistence.mappers.requests.CurrentDateInMinute
 /**
  * Feed refresh task. Get the feeds that need to be updated. Pop an action on the queue. Set them as pending.
  *
+ * The actions are queued taking the feeds' hosts in turn, so the few consumers refreshing feeds at once are spread
+ * across hosts instead of working through one host's feeds together.
  */
 public class RefreshFeedsExecution implements TaskHandlerExecutionStrategy<ActionContext>
 {
@@ -86,19 +93,70 @@ public class RefreshFeedsExecution implements TaskHandlerExecutionStrategy<Actio
                 / (MILLISECONDSINMINUTE));
 
         List<Feed> feeds = getFeedsMapper.execute(request);
-        List<Long> feedIds = new ArrayList<Long>();
-        for (Feed feed : feeds)
-        {
-            feedIds.add(feed.getId());
-        }
+        List<Long> feedIds = interleaveByHost(feeds);
         setFeedsAsPendingMapper.execute(request);
 
+        List<UserActionRequest> requests = inActionContext.getUserActionRequests();
         for (Long id : feedIds)
         {
-             inActionContext.getUserActionRequests().add(
-                        new UserActionRequest("refreshFeedAction", null, new RefreshFeedRequest(id)));
+            requests.add(new UserActionRequest("refreshFeedAction", null, new RefreshFeedRequest(id)));
         }
 
         return null;
     }
+
+    /**
+     * Orders feeds taking one from each host in turn.
+     *
+     * @param feeds
+     *            The feeds.
+     * @return The feed ids.
+     */
+    private List<Long> interleaveByHost(final List<Feed> feeds)
+    {
+        Map<String, LinkedList<Long>> idsByHost = new LinkedHashMap<String, LinkedList<Long>>();
+        for (Feed feed : feeds)
+        {
+            String host = getHost(feed.getUrl());
+            LinkedList<Long> ids = idsByHost.get(host);
+            if (ids == null)
+            {
+                ids = new LinkedList<Long>();
+                idsByHost.put(host, ids);
+            }
+            ids.add(feed.getId());
+        }
+
+        List<Long> feedIds = new ArrayList<Long>(feeds.size());
+        while (feedIds.size() < feeds.size())
+        {
+            for (LinkedList<Long> ids : idsByHost.values())
+            {
+                if (!ids.isEmpty())
+                {
+                    feedIds.add(ids.removeFirst());
+                }
+            }
+        }
+        return feedIds;
+    }
+
+    /**
+     * Gets the host of a feed URL.
+     *
+     * @param url
+     *            The URL.
+     * @return The host, or the URL itself if it can't be parsed.
+     */
+    private String getHost(final String url)
+    {
+        try
+        {
+            return new URL(url).getHost().toLowerCase();
+        }
+        catch (MalformedURLException ex)
+        {
+            return url;
+        }
+    }
 }
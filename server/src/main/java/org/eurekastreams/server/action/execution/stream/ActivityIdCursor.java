@@ -0,0 +1,211 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution.stream;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.sf.json.JSONObject;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.server.service.actions.strategies.activity.ListCollider;
+import org.eurekastreams.server.service.actions.strategies.activity.datasources.DescendingOrderDataSource;
+
+/**
+ * Walks the activity ids for one query in order, a chunk at a time. Ids are only fetched from the data sources when
+ * the ones already fetched are used up, and each fetch picks up after the last id handed out instead of starting over.
+ * Not thread safe; use one per query.
+ */
+public class ActivityIdCursor
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Data source that MUST provide results in descending order of ID.
+     */
+    private final DescendingOrderDataSource descendingOrderDataSource;
+
+    /**
+     * Results from the sorted data source (fetched once up front), or null if it didn't handle the query.
+     */
+    private final List<Long> sortedDataSet;
+
+    /**
+     * AND collider.
+     */
+    private final ListCollider andCollider;
+
+    /**
+     * The query; its count is set to the size of each fetch.
+     */
+    private final JSONObject request;
+
+    /**
+     * The user running the query.
+     */
+    private final Long userEntityId;
+
+    /**
+     * Number of ids to ask the data sources for next time.
+     */
+    private int fetchSize;
+
+    /**
+     * Ids from the most recent fetch.
+     */
+    private List<Long> fetched = new ArrayList<Long>();
+
+    /**
+     * Index in fetched of the next id to hand out.
+     */
+    private int position = 0;
+
+    /**
+     * Last id handed out, used to find our place in a new fetch when the ids are in descending order.
+     */
+    private Long lastId = null;
+
+    /**
+     * Whether the ids come back in descending order of id.
+     */
+    private boolean sortedByIdDescending = false;
+
+    /**
+     * Whether the data sources have nothing more to give.
+     */
+    private boolean exhausted = false;
+
+    /**
+     * Constructor.
+     *
+     * @param inDescendingOrderDataSource
+     *            data source providing ids in descending order.
+     * @param inSortedDataSet
+     *            results from the sorted data source, or null if it didn't handle the query.
+     * @param inAndCollider
+     *            collider to merge the two.
+     * @param inRequest
+     *            the query.
+     * @param inUserEntityId
+     *            the user running the query.
+     * @param inInitialFetchSize
+     *            number of ids to fetch the first time; doubled for each later fetch.
+     */
+    public ActivityIdCursor(final DescendingOrderDataSource inDescendingOrderDataSource,
+            final List<Long> inSortedDataSet, final ListCollider inAndCollider, final JSONObject inRequest,
+            final Long inUserEntityId, final int inInitialFetchSize)
+    {
+        descendingOrderDataSource = inDescendingOrderDataSource;
+        sortedDataSet = inSortedDataSet;
+        andCollider = inAndCollider;
+        request = inRequest;
+        userEntityId = inUserEntityId;
+        fetchSize = inInitialFetchSize;
+    }
+
+    /**
+     * Get the next ids.
+     *
+     * @param maxIds
+     *            the most ids to return.
+     * @return up to maxIds ids following the ones already returned; empty when there are no more.
+     */
+    public List<Long> next(final int maxIds)
+    {
+        List<Long> chunk = new ArrayList<Long>(maxIds);
+        while (chunk.size() < maxIds)
+        {
+            if (position >= fetched.size())
+            {
+                if (exhausted)
+                {
+                    break;
+                }
+                fetch();
+                continue;
+            }
+
+            lastId = fetched.get(position++);
+            chunk.add(lastId);
+        }
+        return chunk;
+    }
+
+    /**
+     * @return whether the ids come back in descending order of id (valid once next has been called).
+     */
+    public boolean isSortedByIdDescending()
+    {
+        return sortedByIdDescending;
+    }
+
+    /**
+     * Fetch the next, larger set of ids from the data sources and find our place in it.
+     */
+    private void fetch()
+    {
+        request.put("count", fetchSize);
+
+        List<Long> allKeys = null;
+        final List<Long> descendingOrderDataSet = descendingOrderDataSource.fetch(request, userEntityId);
+        if (descendingOrderDataSet != null)
+        {
+            sortedByIdDescending = true;
+            if (sortedDataSet != null)
+            {
+                // we have both lists
+                allKeys = andCollider.collide(descendingOrderDataSet, sortedDataSet, fetchSize);
+            }
+            else
+            {
+                // we don't have a sorted list - just descending order list
+                allKeys = descendingOrderDataSet;
+            }
+        }
+        else
+        {
+            // the sorted list is fetched in full up front, so there is never more to get
+            sortedByIdDescending = false;
+            allKeys = sortedDataSet == null ? new ArrayList<Long>() : sortedDataSet;
+            exhausted = true;
+        }
+
+        // a fetch which came back short, or no longer than the last one, means the source has run out
+        if (allKeys.size() < fetchSize || allKeys.size() <= fetched.size())
+        {
+            exhausted = true;
+        }
+
+        if (sortedByIdDescending && lastId != null)
+        {
+            // pick up after the last id handed out, even if new ids were added to the top since the last fetch
+            position = 0;
+            while (position < allKeys.size() && allKeys.get(position) >= lastId)
+            {
+                position++;
+            }
+        }
+
+        log.debug("Fetched " + allKeys.size() + " ids with count " + fetchSize + ", resuming at " + position);
+
+        fetched = allKeys;
+        fetchSize *= 2;
+    }
+}
@@ -15,8 +15,9 @@
  */
 package org.eurekastreams.server.action.execution.stream;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -73,13 +74,34 @@ public class ActivitySecurityTrimmer implements ListTrimmer, ActivityQueryListTr
      * @return the activityIDs that the user has permission to see.
      */
     public List<Long> trim(final List<Long> activityIds, final Long userPersonId)
+    {
+        return trim(activityIds, userPersonId, getVisibleGroupsForUserMapper.execute(userPersonId));
+    }
+
+    /**
+     * Trim activities that the user does not have permission to see, given the groups the user can see.
+     *
+     * @param activityIds
+     *            the activityIDs.
+     * @param userPersonId
+     *            the user's id.
+     * @param accessibleGroupIds
+     *            ids of the private groups the user can see activity for.
+     * @return the activityIDs that the user has permission to see, in input order.
+     */
+    private List<Long> trim(final List<Long> activityIds, final Long userPersonId,
+            final Set<Long> accessibleGroupIds)
     {
         log.debug("Trimming " + activityIds.size() + " activity ids for person#" + userPersonId);
-        Set<Long> accessibleGroupIds = getVisibleGroupsForUserMapper.execute(userPersonId);
+        if (activityIds.isEmpty())
+        {
+            return new ArrayList<Long>();
+        }
 
         final Collection<ActivitySecurityDTO> securityDTOs = securityMapper.execute(activityIds);
 
-        final List<Long> visibleActivities = new LinkedList<Long>();
+        final boolean debug = log.isDebugEnabled();
+        final Set<Long> visibleActivities = new HashSet<Long>(securityDTOs.size() * 2);
 
         for (ActivitySecurityDTO actSec : securityDTOs)
         {
@@ -87,23 +109,26 @@ public class ActivitySecurityTrimmer implements ListTrimmer, ActivityQueryListTr
                     && (actSec.isDestinationStreamPublic() || accessibleGroupIds.contains(actSec
                             .getDestinationEntityId())))
             {
-                log.debug("Activity with ID permitted: " + actSec.getId());
+                if (debug)
+                {
+                    log.debug("Activity with ID permitted: " + actSec.getId());
+                }
                 visibleActivities.add(actSec.getId());
             }
-            else
+            else if (debug)
             {
                 log.debug("Activity with ID NOT permitted: " + actSec.getId());
             }
         }
 
         // Preserve order
-        final List<Long> orderedActivities = new LinkedList<Long>();
+        final List<Long> orderedActivities = new ArrayList<Long>(visibleActivities.size());
 
-        for (int i = 0; i < activityIds.size(); i++)
+        for (Long activityId : activityIds)
         {
-            if (visibleActivities.contains(activityIds.get(i)))
+            if (visibleActivities.contains(activityId))
             {
-                orderedActivities.add(activityIds.get(i));
+                orderedActivities.add(activityId);
             }
         }
 
@@ -113,11 +138,30 @@ public class ActivitySecurityTrimmer implements ListTrimmer, ActivityQueryListTr
     /**
      * {@inheritDoc}
      *
-     * Note: Trimmer is stateless. So as a shortcut, we can put the class and the factory in one class.
+     * Returns a trimmer for the one query which looks up the groups the user can see on first use and reuses them for
+     * every page the query trims.
      */
     @Override
     public ListTrimmer getTrimmer(final JSONObject inRequest, final Long inUserEntityId)
     {
-        return this;
+        return new ListTrimmer()
+        {
+            /** Private groups the user can see activity for; loaded on first trim. */
+            private Set<Long> accessibleGroupIds;
+
+            /** Id of the user the groups were loaded for. */
+            private Long accessibleGroupIdsUserId;
+
+            @Override
+            public List<Long> trim(final List<Long> inActivityIds, final Long inUserPersonId)
+            {
+                if (accessibleGroupIds == null || !inUserPersonId.equals(accessibleGroupIdsUserId))
+                {
+                    accessibleGroupIds = getVisibleGroupsForUserMapper.execute(inUserPersonId);
+                    accessibleGroupIdsUserId = inUserPersonId;
+                }
+                return ActivitySecurityTrimmer.this.trim(inActivityIds, inUserPersonId, accessibleGroupIds);
+            }
+        };
     }
 }
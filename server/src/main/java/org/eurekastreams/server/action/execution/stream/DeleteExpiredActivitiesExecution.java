@@ -15,27 +15,23 @@
  */
 package org.eurekastreams.server.action.execution.stream;
 
-import java.util.ArrayList;
-import java.util.List;
-
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
 import org.eurekastreams.commons.actions.context.PrincipalActionContext;
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.logging.LogFactory;
 import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.stream.PurgeExpiredActivitiesRequest;
 import org.eurekastreams.server.domain.SystemSettings;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
-import org.eurekastreams.server.persistence.mappers.db.GetExpiredActivities;
 import org.eurekastreams.server.persistence.mappers.requests.MapperRequest;
 
 import com.ibm.icu.util.Calendar;
 
 /**
- * This execution strategy performs a cleanup of expired activites from the system based on the system setting for the
- * number of days before content/activity is considered old or expired. Once the expired activities are found, they are
- * batched and then each batch is submitted to the DeleteActivitiesByIds async action which then proceeds with the
- * cleanup by batches.
+ * This execution strategy starts a cleanup of expired activites from the system based on the system setting for the
+ * number of days before content/activity is considered old or expired. The cleanup itself is done by the purge action,
+ * which deletes the expired activities a chunk at a time; this strategy queues its first chunk.
  *
  */
 public class DeleteExpiredActivitiesExecution implements TaskHandlerExecutionStrategy<PrincipalActionContext>
@@ -51,31 +47,23 @@ public class DeleteExpiredActivitiesExecution implements TaskHandlerExecutionStr
     private DomainMapper<MapperRequest, SystemSettings> settingsMapper;
 
     /**
-     * Mapper to get a list of all expired activities.
+     * Key of the action which purges the expired activities.
      */
-    private GetExpiredActivities expiredActivitiesMapper;
-
-    /**
-     * Number of expired activities to process at a time so the queue can handle smaller tasks.
-     */
-    private int chunkSize;
+    private String purgeActionKey;
 
     /**
      * Constructor.
      *
      * @param inSettingsMapper
      *            the settings mapper.
-     * @param inExpiredActivitiesMapper
-     *            the expired activities mapper.
-     * @param inChunkSize
-     *            the number of activities to include in a single processing chunk.
+     * @param inPurgeActionKey
+     *            key of the action which purges the expired activities.
      */
     public DeleteExpiredActivitiesExecution(final DomainMapper<MapperRequest, SystemSettings> inSettingsMapper,
-            final GetExpiredActivities inExpiredActivitiesMapper, final int inChunkSize)
+            final String inPurgeActionKey)
     {
         settingsMapper = inSettingsMapper;
-        expiredActivitiesMapper = inExpiredActivitiesMapper;
-        chunkSize = inChunkSize;
+        purgeActionKey = inPurgeActionKey;
     }
 
     /**
@@ -92,29 +80,14 @@ public class DeleteExpiredActivitiesExecution implements TaskHandlerExecutionStr
         {
             Calendar calendar = Calendar.getInstance();
             calendar.add(Calendar.DATE, expirationDays * -1);
-            List<Long> expired = expiredActivitiesMapper.execute(calendar.getTime());
-
-            if (log.isTraceEnabled())
-            {
-                log.trace("Expired activity ids to delete: " + expired);
-            }
 
-            while (expired.size() > 0)
+            if (log.isInfoEnabled())
             {
-                int count = expired.size() > chunkSize ? chunkSize : expired.size();
-
-                ArrayList<Long> chunkActivityIds = new ArrayList<Long>(expired.subList(0, count));
-
-                if (log.isTraceEnabled())
-                {
-                    log.trace("Pushing UserActionRequest to queue for deleteActivitiesByIds with "
-                            + chunkActivityIds.size() + " activities");
-                }
-                inActionContext.getUserActionRequests().add(
-                        new UserActionRequest("deleteActivitiesByIds", null, chunkActivityIds));
-
-                expired.subList(0, count).clear();
+                log.info("Queuing " + purgeActionKey + " for activities posted before " + calendar.getTime());
             }
+            inActionContext.getUserActionRequests().add(
+                    new UserActionRequest(purgeActionKey, null, new PurgeExpiredActivitiesRequest(calendar.getTime(),
+                            0, 0, System.currentTimeMillis(), 0)));
         }
         return Boolean.TRUE;
     }
@@ -50,6 +50,10 @@ import org.eurekastreams.server.service.actions.strategies.activity.ActivityFilt
  * for activities, this time, asking for 40. The size of each activities batch increases by a factor of the input
  * multiplier. The thought here is that if there are enough activities in the system that are private to this user that
  * require 20, 40, etc, then we should more aggressively look ahead to prevent serial requests to cache.
+ * 
+ * The total of the result is not a count of the whole stream. When sorted by date, or with "sinceId" in the request
+ * (only activities newer than it are returned, which is how a stream already shown is refreshed), one more activity
+ * than asked for is looked for, so the total is greater than the number returned exactly when there are more.
  */
 public class GetActivitiesByRequestExecution implements ExecutionStrategy<PrincipalActionContext>
 {
@@ -130,7 +134,11 @@ public class GetActivitiesByRequestExecution implements ExecutionStrategy<Princi
 
         final int currentMax = request.getInt("count");
 
-        if (!query.containsKey("sortBy") || query.getString("sortBy").equals("date"))
+        // look for one extra to tell whether there are more; when only looking for newer activities the walk covers
+        // only ids newer than sinceId (stopping at it for id-ordered streams, and dropping the older ids of a sorted
+        // data set up front), so the extra one is cheap whatever the sort
+        if (!query.containsKey("sortBy") || query.getString("sortBy").equals("date")
+                || request.containsKey(GetActivityIdsByJson.SINCE_ID_KEY))
         {
             request.put("count", currentMax + 1);
         }
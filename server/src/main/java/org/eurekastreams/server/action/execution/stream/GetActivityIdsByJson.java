@@ -31,9 +31,20 @@ import org.eurekastreams.server.service.actions.strategies.activity.datasources.
 
 /**
  * Get Activity IDs with a JSON request.
+ *
+ * With "sinceId" in the request only ids newer than it are returned, for refreshing a stream already shown: the ids
+ * are fetched in small chunks from the top of the stream, and when they come in descending order the walk stops at the
+ * first id at or below sinceId instead of filling a page. A sorted data set is in no id order, but as it is fetched in
+ * full its older ids are dropped before the walk, which then covers only the newer ones.
  */
 public class GetActivityIdsByJson
 {
+    /** Request key for the id to return only newer ids than. */
+    public static final String SINCE_ID_KEY = "sinceId";
+
+    /** Most ids to fetch at first when only newer ids than sinceId are wanted; usually there are only a few. */
+    private static final int SINCE_ID_CHUNK_SIZE = 10;
+
     /**
      * Logger.
      */
@@ -141,7 +152,12 @@ public class GetActivityIdsByJson
         }
         if (jsonRequest.containsKey("minId"))
         {
-            minActivityId = jsonRequest.getInt("minId");
+            minActivityId = jsonRequest.getLong("minId");
+        }
+        boolean sinceMode = jsonRequest.containsKey(SINCE_ID_KEY);
+        if (sinceMode)
+        {
+            minActivityId = Math.max(minActivityId, jsonRequest.getLong(SINCE_ID_KEY));
         }
         if (jsonRequest.containsKey("maxId"))
         {
@@ -159,132 +175,67 @@ public class GetActivityIdsByJson
             }
         }
 
-        // used for paging, this is the next activity in the list to add to the
-        // current page
-        int startingIndex = 0;
-
-        // the list of activities to return
-        List<Long> results = new ArrayList<Long>();
-
-        List<Long> allKeys = new ArrayList<Long>();
-
-        final List<Long> sortedDataSet = sortedDataSource.fetch(jsonRequest, userEntityId);
-
-        // The pass.
-        int pass = 1;
-        int batchSize = 0;
-
-        // build a list of activity ids to fetch for this page, and
-        // increment the start index for next page
-        List<Long> page = new ArrayList<Long>();
-
-        boolean reachedMinActivityIdWhenSortingByIdDescending = false;
-        boolean sortedByIdDescending = false;
-        do
+        List<Long> sortedDataSet = sortedDataSource.fetch(jsonRequest, userEntityId);
+        if (sinceMode && sortedDataSet != null)
         {
-            allKeys.clear();
-
-            // multiply the batch size by the multiplier to avoid extra cache hits
-            batchSize = maxResults * (int) (Math.pow(2, pass));
-
-            jsonRequest.put("count", batchSize);
-
-            final List<Long> descendingOrderDataSet = descendingOrderdataSource.fetch(jsonRequest, userEntityId);
-
-            if (descendingOrderDataSet != null)
+            // the walk can't stop at sinceId in a list which isn't sorted by id, so leave only the ids it could return
+            List<Long> newerIds = new ArrayList<Long>();
+            for (Long id : sortedDataSet)
             {
-                sortedByIdDescending = true;
-                if (sortedDataSet != null)
+                if (id > minActivityId && id < maxActivityId)
                 {
-                    // we have both lists
-                    allKeys = andCollider.collide(descendingOrderDataSet, sortedDataSet, batchSize);
+                    newerIds.add(id);
                 }
-                else
-                {
-                    // we don't have a sorted list - just descending order list
-                    allKeys = descendingOrderDataSet;
-                }
-            }
-            else if (sortedDataSet != null)
-            {
-                sortedByIdDescending = false;
-                allKeys = sortedDataSet;
             }
+            sortedDataSet = newerIds;
+        }
+
+        // walk the ids in fixed-size chunks, fetching more from the data sources only as needed
+        final int chunkSize = sinceMode ? Math.min(maxResults * 2, SINCE_ID_CHUNK_SIZE) : maxResults * 2;
+        final ActivityIdCursor cursor = new ActivityIdCursor(descendingOrderdataSource, sortedDataSet, andCollider,
+                jsonRequest, userEntityId, chunkSize);
+
+        // the list of activities to return
+        List<Long> results = new ArrayList<Long>();
 
-            if (allKeys.size() < startingIndex)
+        boolean reachedMinActivityIdWhenSortingByIdDescending = false;
+        while (results.size() < maxResults && !reachedMinActivityIdWhenSortingByIdDescending)
+        {
+            List<Long> chunk = cursor.next(chunkSize);
+            if (chunk.isEmpty())
             {
-                // no more
-                log.debug("No more results to page through after " + allKeys.size());
+                log.debug("No more results to page through.");
                 break;
             }
 
-            // loop across the available keys in allKeys
-            for (int i = startingIndex; i < allKeys.size(); i++, startingIndex++)
+            List<Long> page = new ArrayList<Long>(chunk.size());
+            for (Long id : chunk)
             {
-                if (sortedByIdDescending && allKeys.get(i) <= minActivityId)
+                if (cursor.isSortedByIdDescending() && id <= minActivityId)
                 {
-                    // we've reached the minimum id and our list is sorted by id, descending, so we can safely break out
+                    // we've reached the minimum id and our list is sorted by id, descending, so we can safely stop
                     reachedMinActivityIdWhenSortingByIdDescending = true;
                     break;
                 }
                 // if this is within our limits, include it for security trimming
-                if (allKeys.get(i) < maxActivityId && allKeys.get(i) > minActivityId)
+                if (id < maxActivityId && id > minActivityId)
                 {
-                    page.add(allKeys.get(i));
-
-                    // we've filled up a page - either by hitting our batch size or by hitting the end of allKeys,
-                    // so trim it (for security, etc.)
-                    if (page.size() == batchSize || i == allKeys.size() - 1)
-                    {
-                        log.debug("Sending a page of " + page.size() + " out for security trimming.");
-
-                        for (ListTrimmer trimmer : trimmers)
-                        {
-                            page = trimmer.trim(page, userEntityId);
-                        }
-
-                        // add the trimmed results to our return list
-                        for (Long item : page)
-                        {
-                            results.add(item);
-                            if (results.size() >= maxResults)
-                            {
-                                log.debug("Filled a full page of " + results.size() + " results.");
-                                return results;
-                            }
-                        }
-
-                        log.info("Return results now has " + results.size() + " results - looking for more");
-
-                        // start over for our next scoped page
-                        page = new ArrayList<Long>();
-                    }
+                    page.add(id);
                 }
             }
 
-            // we've looped across allPages and haven't yet found enough results - increment the pass, and try
-            // getting more into allKeys
-
-            log.trace("Done looping?: "
-                    + (reachedMinActivityIdWhenSortingByIdDescending || allKeys.size() >= batchSize) + ", pass: "
-                    + pass + ", results.size(): " + results.size() + ", maxResults: " + maxResults
-                    + ", allKeys.size(): " + allKeys.size() + ", batchSize: " + batchSize
-                    + ", sorting by id descending? " + sortedByIdDescending
-                    + ", reached min activity id when sorted by id descending? "
-                    + reachedMinActivityIdWhenSortingByIdDescending);
-
-            pass++;
-        }
-        while (!reachedMinActivityIdWhenSortingByIdDescending && allKeys.size() >= batchSize); // while we got back at
-        // least as many as we needed for the recent batch
+            if (page.isEmpty())
+            {
+                continue;
+            }
 
-        if (results.size() < maxResults && page.size() > 0)
-        {
-            // we haven't gotten all our results yet, and we still have results to security trim
+            log.debug("Sending a page of " + page.size() + " out for security trimming.");
             for (ListTrimmer trimmer : trimmers)
             {
                 page = trimmer.trim(page, userEntityId);
             }
+
+            // add the trimmed results to our return list
             for (Long item : page)
             {
                 results.add(item);
@@ -294,6 +245,8 @@ public class GetActivityIdsByJson
                     return results;
                 }
             }
+
+            log.info("Return results now has " + results.size() + " results - looking for more");
         }
 
         return results;
@@ -0,0 +1,173 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution.stream;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
+import org.eurekastreams.commons.actions.context.TaskHandlerActionContextImpl;
+import org.eurekastreams.commons.actions.context.async.AsyncActionContext;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.stream.PurgeExpiredActivitiesRequest;
+import org.eurekastreams.server.persistence.mappers.db.GetExpiredActivities;
+
+/**
+ * Purges expired activities one chunk per action. Each chunk deletes the next expired activities in id order, so the
+ * IN-list deletes only ever cover a bounded id range, and then queues itself for the chunk after it. The position
+ * travels in the queued request, so a purge interrupted by a task processor restart picks up at the chunk it was on.
+ *
+ * The purge paces itself to a most rows per second: a chunk holds off the one after it for as long as its rows are
+ * worth at that rate. The wait happens at the start of the next chunk, before it has touched the database, so no
+ * locks are held while waiting.
+ */
+public class PurgeExpiredActivitiesExecution implements TaskHandlerExecutionStrategy<ActionContext>
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Key of the action running this strategy, to queue the next chunk.
+     */
+    private final String actionKey;
+
+    /**
+     * Mapper to get the next chunk of expired activities.
+     */
+    private final GetExpiredActivities expiredActivitiesMapper;
+
+    /**
+     * Deletes a chunk of activities and queues the clean up of the cache and search index.
+     */
+    private final TaskHandlerExecutionStrategy<ActionContext> deleteExecution;
+
+    /**
+     * Most activities to delete in a chunk.
+     */
+    private final int chunkSize;
+
+    /**
+     * Most activities to delete per second; 0 for no limit.
+     */
+    private final int maxRowsPerSecond;
+
+    /**
+     * Constructor.
+     *
+     * @param inActionKey
+     *            key of the action running this strategy, to queue the next chunk.
+     * @param inExpiredActivitiesMapper
+     *            mapper to get the next chunk of expired activities.
+     * @param inDeleteExecution
+     *            deletes a chunk of activities and queues the clean up of the cache and search index.
+     * @param inChunkSize
+     *            most activities to delete in a chunk.
+     * @param inMaxRowsPerSecond
+     *            most activities to delete per second; 0 for no limit.
+     */
+    public PurgeExpiredActivitiesExecution(final String inActionKey,
+            final GetExpiredActivities inExpiredActivitiesMapper,
+            final TaskHandlerExecutionStrategy<ActionContext> inDeleteExecution, final int inChunkSize,
+            final int inMaxRowsPerSecond)
+    {
+        actionKey = inActionKey;
+        expiredActivitiesMapper = inExpiredActivitiesMapper;
+        deleteExecution = inDeleteExecution;
+        chunkSize = inChunkSize;
+        maxRowsPerSecond = inMaxRowsPerSecond;
+    }
+
+    /**
+     * Delete the next chunk of expired activities and queue the chunk after it.
+     *
+     * @param inActionContext
+     *            {@link TaskHandlerActionContext}; the params are a {@link PurgeExpiredActivitiesRequest}.
+     * @return null.
+     */
+    @Override
+    public Serializable execute(final TaskHandlerActionContext<ActionContext> inActionContext)
+    {
+        PurgeExpiredActivitiesRequest request = (PurgeExpiredActivitiesRequest) inActionContext.getActionContext()
+                .getParams();
+
+        waitUntil(request.getNotBeforeMillis());
+
+        long start = System.currentTimeMillis();
+        List<Long> ids = expiredActivitiesMapper.execute(request.getExpirationDate(), request.getAfterId(),
+                chunkSize);
+        if (ids.isEmpty())
+        {
+            log.info(String.format("%s: finished, deleted %d activities in %d s", actionKey, request
+                    .getDeletedCount(), TimeUnit.MILLISECONDS.toSeconds(start - request.getStartTimeMillis())));
+            return null;
+        }
+
+        deleteExecution.execute(new TaskHandlerActionContextImpl<ActionContext>(new AsyncActionContext(
+                new ArrayList<Long>(ids)), inActionContext.getUserActionRequests()));
+
+        long lastId = ids.get(ids.size() - 1);
+        long deleted = request.getDeletedCount() + ids.size();
+        long now = System.currentTimeMillis();
+        long notBefore = maxRowsPerSecond > 0 ? start + TimeUnit.SECONDS.toMillis(ids.size()) / maxRowsPerSecond
+                : 0;
+
+        if (log.isInfoEnabled())
+        {
+            log.info(String.format("%s: deleted %d activities through id %d; chunk of %d took %d ms", actionKey,
+                    deleted, lastId, ids.size(), now - start));
+        }
+
+        inActionContext.getUserActionRequests().add(
+                new UserActionRequest(actionKey, null, new PurgeExpiredActivitiesRequest(request
+                        .getExpirationDate(), lastId, deleted, request.getStartTimeMillis(), notBefore)));
+        return null;
+    }
+
+    /**
+     * Wait until a given time.
+     *
+     * @param inTimeMillis
+     *            the time, in milliseconds since the epoch.
+     */
+    private void waitUntil(final long inTimeMillis)
+    {
+        long wait = inTimeMillis - System.currentTimeMillis();
+        if (wait <= 0)
+        {
+            return;
+        }
+        if (log.isDebugEnabled())
+        {
+            log.debug(actionKey + ": waiting " + wait + " ms to keep under " + maxRowsPerSecond + " rows/s");
+        }
+        try
+        {
+            Thread.sleep(wait);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -16,7 +16,6 @@
 package org.eurekastreams.server.action.principal;
 
 import org.apache.commons.logging.Log;
-import org.eurekastreams.commons.actions.context.DefaultPrincipal;
 import org.eurekastreams.commons.actions.context.Principal;
 import org.eurekastreams.commons.actions.context.PrincipalPopulator;
 import org.eurekastreams.commons.exceptions.AuthorizationException;
@@ -79,10 +78,8 @@ public class SpringSecurityContextPrincipalPopulator implements PrincipalPopulat
             Object obj = auth.getPrincipal();
             if (obj instanceof UserDetails)
             {
-                UserDetails user = (UserDetails) obj;
-                ExtendedUserDetails extUser = (ExtendedUserDetails) user;
-                return new DefaultPrincipal(extUser.getUsername(), extUser.getPerson().getOpenSocialId(), extUser
-                        .getPerson().getId());
+                // built once per session by the user details
+                return ((ExtendedUserDetails) obj).getPrincipal();
             }
             else
             {
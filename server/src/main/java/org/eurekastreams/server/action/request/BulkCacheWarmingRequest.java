@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.request;
+
+import java.io.Serializable;
+
+/**
+ * Request for the next chunk of a bulk cache warming run: where the run has got to and how it has done so far.
+ */
+public class BulkCacheWarmingRequest implements Serializable
+{
+    /**
+     * Serial version id.
+     */
+    private static final long serialVersionUID = 3412857725190371848L;
+
+    /**
+     * Warm entities with ids greater than this.
+     */
+    private long afterId;
+
+    /**
+     * Number of entities warmed so far in the run.
+     */
+    private long warmedCount;
+
+    /**
+     * When the run started, in milliseconds since the epoch.
+     */
+    private long startTimeMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param inAfterId
+     *            warm entities with ids greater than this.
+     * @param inWarmedCount
+     *            number of entities warmed so far in the run.
+     * @param inStartTimeMillis
+     *            when the run started, in milliseconds since the epoch.
+     */
+    public BulkCacheWarmingRequest(final long inAfterId, final long inWarmedCount, final long inStartTimeMillis)
+    {
+        afterId = inAfterId;
+        warmedCount = inWarmedCount;
+        startTimeMillis = inStartTimeMillis;
+    }
+
+    /**
+     * @return warm entities with ids greater than this.
+     */
+    public long getAfterId()
+    {
+        return afterId;
+    }
+
+    /**
+     * @return number of entities warmed so far in the run.
+     */
+    public long getWarmedCount()
+    {
+        return warmedCount;
+    }
+
+    /**
+     * @return when the run started, in milliseconds since the epoch.
+     */
+    public long getStartTimeMillis()
+    {
+        return startTimeMillis;
+    }
+}
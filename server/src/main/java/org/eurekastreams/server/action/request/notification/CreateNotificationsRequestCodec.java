@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.request.notification;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.eurekastreams.commons.io.Varints;
+import org.eurekastreams.commons.messaging.ParamCodec;
+import org.eurekastreams.commons.messaging.UserActionRequestCodec;
+import org.eurekastreams.server.action.request.notification.CreateNotificationsRequest.RequestType;
+
+/**
+ * Writes CreateNotificationsRequest and its subclasses in the compact queue message format. A subtype byte says which
+ * class follows; subtype numbers are part of the wire format, so never reuse or renumber one.
+ */
+public class CreateNotificationsRequestCodec implements ParamCodec
+{
+    /** Type id (part of the wire format; never change). */
+    private static final int TYPE_ID = 2;
+
+    /** Subtype: CreateNotificationsRequest. */
+    private static final byte BASE = 1;
+
+    /** Subtype: TargetEntityNotificationsRequest. */
+    private static final byte TARGET_ENTITY = 2;
+
+    /** Subtype: ActivityNotificationsRequest. */
+    private static final byte ACTIVITY = 3;
+
+    /** Subtype: CommentNotificationsRequest. */
+    private static final byte COMMENT = 4;
+
+    /** Subtype: GroupMembershipResponseNotificationsRequest. */
+    private static final byte GROUP_MEMBERSHIP_RESPONSE = 5;
+
+    /** Subtype: GroupRemovedNotificationsRequest. */
+    private static final byte GROUP_REMOVED = 6;
+
+    /** Subtype: PrebuiltNotificationsRequest. */
+    private static final byte PREBUILT = 7;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTypeId()
+    {
+        return TYPE_ID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean canWrite(final Serializable inValue)
+    {
+        return getSubtype(inValue) != 0;
+    }
+
+    /**
+     * @param inValue
+     *            a value.
+     * @return the subtype for the value's exact class, or 0 if not handled.
+     */
+    private byte getSubtype(final Serializable inValue)
+    {
+        Class< ? > type = inValue.getClass();
+        if (type == CreateNotificationsRequest.class)
+        {
+            return BASE;
+        }
+        if (type == TargetEntityNotificationsRequest.class)
+        {
+            return TARGET_ENTITY;
+        }
+        if (type == ActivityNotificationsRequest.class)
+        {
+            return ACTIVITY;
+        }
+        if (type == CommentNotificationsRequest.class)
+        {
+            return COMMENT;
+        }
+        if (type == GroupMembershipResponseNotificationsRequest.class)
+        {
+            return GROUP_MEMBERSHIP_RESPONSE;
+        }
+        if (type == GroupRemovedNotificationsRequest.class)
+        {
+            return GROUP_REMOVED;
+        }
+        if (type == PrebuiltNotificationsRequest.class)
+        {
+            return PREBUILT;
+        }
+        return 0;
+    }
+
+    /**
+     * @param subtype
+     *            a subtype.
+     * @return whether the subtype is a TargetEntityNotificationsRequest.
+     */
+    private static boolean hasTargetEntity(final byte subtype)
+    {
+        return subtype == TARGET_ENTITY || subtype == ACTIVITY || subtype == COMMENT
+                || subtype == GROUP_MEMBERSHIP_RESPONSE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final Serializable inValue, final DataOutput inOut) throws IOException
+    {
+        CreateNotificationsRequest request = (CreateNotificationsRequest) inValue;
+        byte subtype = getSubtype(inValue);
+        inOut.writeByte(subtype);
+        UserActionRequestCodec.writeString(request.getType() == null ? null : request.getType().name(), inOut);
+        Varints.writeSigned(request.getActorId(), inOut);
+
+        if (hasTargetEntity(subtype))
+        {
+            TargetEntityNotificationsRequest targeted = (TargetEntityNotificationsRequest) request;
+            Varints.writeSigned(targeted.getTargetEntityId(), inOut);
+        }
+
+        switch (subtype)
+        {
+        case ACTIVITY:
+            Varints.writeSigned(((ActivityNotificationsRequest) request).getActivityId(), inOut);
+            break;
+        case COMMENT:
+            Varints.writeSigned(((CommentNotificationsRequest) request).getActivityId(), inOut);
+            Varints.writeSigned(((CommentNotificationsRequest) request).getCommentId(), inOut);
+            break;
+        case GROUP_MEMBERSHIP_RESPONSE:
+            Varints.writeSigned(((GroupMembershipResponseNotificationsRequest) request)
+                    .getRequestorId(), inOut);
+            break;
+        case GROUP_REMOVED:
+            GroupRemovedNotificationsRequest removed = (GroupRemovedNotificationsRequest) request;
+            UserActionRequestCodec.writeString(removed.getGroupName(), inOut);
+            UserActionRequestCodec.writeLongs(removed.getCoordinatorIds(), inOut);
+            break;
+        case PREBUILT:
+            PrebuiltNotificationsRequest prebuilt = (PrebuiltNotificationsRequest) request;
+            inOut.writeBoolean(prebuilt.isHighPriority());
+            UserActionRequestCodec.writeString(prebuilt.getClientId(), inOut);
+            Varints.writeSigned(prebuilt.getRecipientId(), inOut);
+            UserActionRequestCodec.writeString(prebuilt.getMessage(), inOut);
+            UserActionRequestCodec.writeString(prebuilt.getUrl(), inOut);
+            break;
+        default:
+            break;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable read(final DataInput inIn) throws IOException
+    {
+        byte subtype = inIn.readByte();
+        String typeName = UserActionRequestCodec.readString(inIn);
+        RequestType type;
+        try
+        {
+            type = typeName == null ? null : RequestType.valueOf(typeName);
+        }
+        catch (IllegalArgumentException ex)
+        {
+            throw new IOException("Unknown notification request type " + typeName);
+        }
+        long actorId = Varints.readSigned(inIn);
+        long targetEntityId = hasTargetEntity(subtype) ? Varints.readSigned(inIn) : 0;
+
+        switch (subtype)
+        {
+        case BASE:
+            return new CreateNotificationsRequest(type, actorId);
+        case TARGET_ENTITY:
+            return new TargetEntityNotificationsRequest(type, actorId, targetEntityId);
+        case ACTIVITY:
+            long activityId = Varints.readSigned(inIn);
+            return new ActivityNotificationsRequest(type, actorId, targetEntityId, activityId);
+        case COMMENT:
+            long commentActivityId = Varints.readSigned(inIn);
+            long commentId = Varints.readSigned(inIn);
+            return new CommentNotificationsRequest(type, actorId, targetEntityId, commentActivityId, commentId);
+        case GROUP_MEMBERSHIP_RESPONSE:
+            long requestorId = Varints.readSigned(inIn);
+            return new GroupMembershipResponseNotificationsRequest(type, actorId, targetEntityId, requestorId);
+        case GROUP_REMOVED:
+            String groupName = UserActionRequestCodec.readString(inIn);
+            return new GroupRemovedNotificationsRequest(type, actorId, groupName, UserActionRequestCodec
+                    .readLongs(inIn));
+        case PREBUILT:
+            boolean highPriority = inIn.readBoolean();
+            String clientId = UserActionRequestCodec.readString(inIn);
+            long recipientId = Varints.readSigned(inIn);
+            String message = UserActionRequestCodec.readString(inIn);
+            return new PrebuiltNotificationsRequest(type, highPriority, clientId, recipientId, message,
+                    UserActionRequestCodec.readString(inIn));
+        default:
+            throw new IOException("Unknown notification request subtype " + subtype);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.request.stream;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.Serializable;
+
+import org.eurekastreams.commons.messaging.ParamCodec;
+import org.eurekastreams.commons.messaging.UserActionRequestCodec;
+
+/**
+ * Writes DeleteIdsFromListsRequests in the compact queue message format.
+ */
+public class DeleteIdsFromListsRequestCodec implements ParamCodec
+{
+    /** Type id (part of the wire format; never change). */
+    private static final int TYPE_ID = 3;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getTypeId()
+    {
+        return TYPE_ID;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean canWrite(final Serializable inValue)
+    {
+        return inValue.getClass() == DeleteIdsFromListsRequest.class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final Serializable inValue, final DataOutput inOut) throws IOException
+    {
+        DeleteIdsFromListsRequest request = (DeleteIdsFromListsRequest) inValue;
+        UserActionRequestCodec.writeStrings(request.getKeys(), inOut);
+        UserActionRequestCodec.writeLongs(request.getValues(), inOut);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Serializable read(final DataInput inIn) throws IOException
+    {
+        return new DeleteIdsFromListsRequest(UserActionRequestCodec.readStrings(inIn), UserActionRequestCodec
+                .readLongs(inIn));
+    }
+}
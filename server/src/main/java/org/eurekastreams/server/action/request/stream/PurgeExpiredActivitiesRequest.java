@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.request.stream;
+
+import java.io.Serializable;
+import java.util.Date;
+
+/**
+ * Request for the next chunk of an expired activity purge: the expiration cutoff, where the purge has got to and how
+ * it has done so far.
+ */
+public class PurgeExpiredActivitiesRequest implements Serializable
+{
+    /**
+     * Serial version id.
+     */
+    private static final long serialVersionUID = -6372310457718861264L;
+
+    /**
+     * Activities posted before this are expired.
+     */
+    private Date expirationDate;
+
+    /**
+     * Purge activities with ids greater than this.
+     */
+    private long afterId;
+
+    /**
+     * Number of activities deleted so far in the purge.
+     */
+    private long deletedCount;
+
+    /**
+     * When the purge started, in milliseconds since the epoch.
+     */
+    private long startTimeMillis;
+
+    /**
+     * Earliest time the chunk may run, in milliseconds since the epoch.
+     */
+    private long notBeforeMillis;
+
+    /**
+     * Constructor.
+     *
+     * @param inExpirationDate
+     *            activities posted before this are expired.
+     * @param inAfterId
+     *            purge activities with ids greater than this.
+     * @param inDeletedCount
+     *            number of activities deleted so far in the purge.
+     * @param inStartTimeMillis
+     *            when the purge started, in milliseconds since the epoch.
+     * @param inNotBeforeMillis
+     *            earliest time the chunk may run, in milliseconds since the epoch.
+     */
+    public PurgeExpiredActivitiesRequest(final Date inExpirationDate, final long inAfterId,
+            final long inDeletedCount, final long inStartTimeMillis, final long inNotBeforeMillis)
+    {
+        expirationDate = inExpirationDate;
+        afterId = inAfterId;
+        deletedCount = inDeletedCount;
+        startTimeMillis = inStartTimeMillis;
+        notBeforeMillis = inNotBeforeMillis;
+    }
+
+    /**
+     * @return activities posted before this are expired.
+     */
+    public Date getExpirationDate()
+    {
+        return expirationDate;
+    }
+
+    /**
+     * @return purge activities with ids greater than this.
+     */
+    public long getAfterId()
+    {
+        return afterId;
+    }
+
+    /**
+     * @return number of activities deleted so far in the purge.
+     */
+    public long getDeletedCount()
+    {
+        return deletedCount;
+    }
+
+    /**
+     * @return when the purge started, in milliseconds since the epoch.
+     */
+    public long getStartTimeMillis()
+    {
+        return startTimeMillis;
+    }
+
+    /**
+     * @return earliest time the chunk may run, in milliseconds since the epoch.
+     */
+    public long getNotBeforeMillis()
+    {
+        return notBeforeMillis;
+    }
+}
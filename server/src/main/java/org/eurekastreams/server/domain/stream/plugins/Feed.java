@@ -101,6 +101,37 @@ public class Feed extends DomainEntity implements Serializable
     @Column(nullable = true)
     private Boolean broken;
 
+    /**
+     * Entity tag returned with the last copy of the feed, sent back as If-None-Match.
+     */
+    @Column(nullable = true)
+    private String etag;
+
+    /**
+     * Last-Modified header returned with the last copy of the feed, sent back as If-Modified-Since.
+     */
+    @Column(nullable = true)
+    private String lastModified;
+
+    /**
+     * Hash of the content of the last copy of the feed, to skip parsing an unchanged copy.
+     */
+    @Column(nullable = true)
+    private String contentHash;
+
+    /**
+     * Time in total minutes in epoch time the feed is next due to be polled; if not set, it is due once its update
+     * frequency has passed since it was last updated.
+     */
+    @Column(nullable = true)
+    private Long nextRefresh;
+
+    /**
+     * Number of consecutive refreshes which failed or were slow, for backing off.
+     */
+    @Column(nullable = true)
+    private Integer failureCount;
+
     /**
      * The plugin the feed belongs to.
      */
@@ -210,6 +241,16 @@ public class Feed extends DomainEntity implements Serializable
         updateFrequency = inUpdateFrequency;
     }
 
+    /**
+     * Get the update frequency in minutes.
+     *
+     * @return the frequency, or null if the feed uses its plugin's.
+     */
+    public Long getUpdateFrequency()
+    {
+        return updateFrequency;
+    }
+
     /**
      * Sets pending.
      *
@@ -327,4 +368,89 @@ public class Feed extends DomainEntity implements Serializable
         broken = inBroken;
     }
 
+    /**
+     * @return the entity tag of the last copy of the feed.
+     */
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    /**
+     * @param inEtag
+     *            the entity tag of the last copy of the feed.
+     */
+    public void setEtag(final String inEtag)
+    {
+        etag = inEtag;
+    }
+
+    /**
+     * @return the Last-Modified header of the last copy of the feed.
+     */
+    public String getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * @param inLastModified
+     *            the Last-Modified header of the last copy of the feed.
+     */
+    public void setLastModified(final String inLastModified)
+    {
+        lastModified = inLastModified;
+    }
+
+    /**
+     * @return the hash of the content of the last copy of the feed.
+     */
+    public String getContentHash()
+    {
+        return contentHash;
+    }
+
+    /**
+     * @param inContentHash
+     *            the hash of the content of the last copy of the feed.
+     */
+    public void setContentHash(final String inContentHash)
+    {
+        contentHash = inContentHash;
+    }
+
+    /**
+     * @return the time in minutes the feed is next due to be polled.
+     */
+    public Long getNextRefresh()
+    {
+        return nextRefresh;
+    }
+
+    /**
+     * @param inNextRefresh
+     *            the time in minutes the feed is next due to be polled.
+     */
+    public void setNextRefresh(final Long inNextRefresh)
+    {
+        nextRefresh = inNextRefresh;
+    }
+
+    /**
+     * @return the number of consecutive refreshes which failed or were slow.
+     */
+    public int getFailureCount()
+    {
+        return failureCount == null ? 0 : failureCount;
+    }
+
+    /**
+     * @param inFailureCount
+     *            the number of consecutive refreshes which failed or were slow.
+     */
+    public void setFailureCount(final int inFailureCount)
+    {
+        failureCount = inFailureCount;
+    }
+
 }
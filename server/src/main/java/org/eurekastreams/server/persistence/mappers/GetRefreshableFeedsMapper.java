@@ -37,7 +37,9 @@ public class GetRefreshableFeedsMapper extends
 	 * minutes, let me have it. If it has an interval of 45 minutes, drop it. If
 	 * the interval is blank (the feed does not have it set) then refer to the
 	 * plugin's interval (which is required and set up by the installation of
-	 * the plugin). Ignore feeds that are pending to avoid race conditions.
+	 * the plugin). Ignore feeds that are pending to avoid race conditions. A
+	 * feed which has been given its next refresh time (spread out or backed
+	 * off by the feed refresh scheduler) is due at that time instead.
 	 *
 	 * @param inRequest
 	 *            the request holding the current time in minutes. This is
@@ -52,11 +54,13 @@ public class GetRefreshableFeedsMapper extends
 	{
 		Query q = getEntityManager()
 				.createQuery(
-						"SELECT f FROM Feed f WHERE ((f.updateFrequency "
+						"SELECT f FROM Feed f WHERE ((f.nextRefresh is not null "
+								+ "and f.nextRefresh < :currentTimeInMinutes) or "
+								+ "(f.nextRefresh is null and ((f.updateFrequency "
 								+ "is not null and f.updated + f.updateFrequency "
 								+ "< :currentTimeInMinutes) or (f.updateFrequency "
 								+ "is null and f.updated + f.streamPlugin.updateFrequency"
-								+ "< :currentTimeInMinutes))")
+								+ "< :currentTimeInMinutes))))")
 				.setParameter("currentTimeInMinutes",
 						inRequest.getCurrentDateInMinutes());
 
@@ -30,7 +30,8 @@ public class SetRefreshableFeedsAsPending extends
 
 	/**
 	 * Execute. Refer to GetRefreshableFeedsMapper for an explanation of this
-	 * WHERE logic.
+	 * WHERE logic. The next refresh time is cleared so the feed is not due
+	 * again until the refresh sets a new one or its update frequency passes.
 	 *
 	 * @param inRequest
 	 *            request holding the current date in minutes.
@@ -40,12 +41,14 @@ public class SetRefreshableFeedsAsPending extends
 	public Boolean execute(final CurrentDateInMinutesRequest inRequest)
 	{
 		Query q = getEntityManager().createQuery(
-				"UPDATE Feed SET updated = :currentTimeInMinutes WHERE id in "
-						+ "(SELECT id FROM Feed WHERE ((updateFrequency "
+				"UPDATE Feed SET updated = :currentTimeInMinutes, nextRefresh = null "
+						+ "WHERE id in (SELECT id FROM Feed WHERE ((nextRefresh is not null "
+						+ "and nextRefresh < :currentTimeInMinutes) or "
+						+ "(nextRefresh is null and ((updateFrequency "
 						+ "is not null and updated + updateFrequency "
 						+ "< :currentTimeInMinutes) or (updateFrequency "
 						+ "is null and updated + streamPlugin.updateFrequency"
-						+ "< :currentTimeInMinutes)))")
+						+ "< :currentTimeInMinutes)))))")
 				.setParameter("currentTimeInMinutes",
 						inRequest.getCurrentDateInMinutes());
 
@@ -16,6 +16,7 @@
 package org.eurekastreams.server.persistence.mappers.cache;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 
@@ -110,10 +111,21 @@ public class AddBufferedActivitiesToCache extends CachedDomainMapper
             cache.addToTopOfList(CacheKeys.EVERYONE_ACTIVITY_IDS, allActivityIds);
         }
 
+        HashMap<String, Long> latestByFollower = new HashMap<String, Long>();
         for (Long compositeId : activitesByFollower.keySet())
         {
             ArrayList<Long> ids = activitesByFollower.get(compositeId);
             cache.addToTopOfList(CacheKeys.ACTIVITIES_BY_FOLLOWING + compositeId, ids);
+            latestByFollower.put(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + compositeId, Collections.max(ids));
+        }
+        if (!latestByFollower.isEmpty())
+        {
+            cache.multiSetAsync(latestByFollower);
+        }
+
+        if (!allActivityIds.isEmpty())
+        {
+            cache.set(CacheKeys.LATEST_ACTIVITY_ID, Collections.max(allActivityIds));
         }
 
         return true;
@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+
+/**
+ * Trims over-long cached lists in the background so that reads never have to write. Trim requests for the same key are
+ * coalesced while pending, the number of pending trims is bounded (extra requests are dropped; the list will be seen
+ * as too long again on a later read), and trims are rate-limited.
+ */
+public class AsyncListTrimmer
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Milliseconds in a second.
+     */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /**
+     * The cache whose lists are trimmed.
+     */
+    private final MemcachedCache cache;
+
+    /**
+     * Runs the trims.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Minimum milliseconds between two trims.
+     */
+    private final long minMillisBetweenTrims;
+
+    /**
+     * Keys with a pending trim, mapped to the size to trim to.
+     */
+    private final ConcurrentMap<String, Integer> pendingTrims = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Earliest time the next trim may run; only touched by the executor thread.
+     */
+    private long nextTrimAllowedMillis = 0;
+
+    /**
+     * Number of trims requested.
+     */
+    private final AtomicLong trimsRequested = new AtomicLong();
+
+    /**
+     * Number of trim requests folded into an already pending trim of the same key.
+     */
+    private final AtomicLong trimsCoalesced = new AtomicLong();
+
+    /**
+     * Number of trim requests dropped because too many trims were pending.
+     */
+    private final AtomicLong trimsDropped = new AtomicLong();
+
+    /**
+     * Number of trims performed.
+     */
+    private final AtomicLong trimsPerformed = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param inCache
+     *            the cache whose lists are trimmed.
+     * @param inMaxPendingTrims
+     *            the maximum number of trims waiting to run.
+     * @param inMaxTrimsPerSecond
+     *            the maximum number of trims run per second.
+     */
+    public AsyncListTrimmer(final MemcachedCache inCache, final int inMaxPendingTrims, final int inMaxTrimsPerSecond)
+    {
+        this(inCache, new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(
+                inMaxPendingTrims), new ThreadFactory()
+        {
+            public Thread newThread(final Runnable inRunnable)
+            {
+                Thread thread = new Thread(inRunnable, "memcached-list-trimmer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), inMaxTrimsPerSecond);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inCache
+     *            the cache whose lists are trimmed.
+     * @param inExecutor
+     *            executor to run the trims; must be single-threaded and should have a bounded queue.
+     * @param inMaxTrimsPerSecond
+     *            the maximum number of trims run per second.
+     */
+    AsyncListTrimmer(final MemcachedCache inCache, final ExecutorService inExecutor, final int inMaxTrimsPerSecond)
+    {
+        cache = inCache;
+        executor = inExecutor;
+        minMillisBetweenTrims = MILLIS_PER_SECOND / Math.max(1, inMaxTrimsPerSecond);
+    }
+
+    /**
+     * Request that a list be trimmed.
+     *
+     * @param inKey
+     *            the key of the list.
+     * @param inMaximumEntries
+     *            the number of entries to keep.
+     */
+    public void requestTrim(final String inKey, final int inMaximumEntries)
+    {
+        trimsRequested.incrementAndGet();
+
+        if (pendingTrims.putIfAbsent(inKey, inMaximumEntries) != null)
+        {
+            trimsCoalesced.incrementAndGet();
+            return;
+        }
+
+        try
+        {
+            executor.execute(new Runnable()
+            {
+                public void run()
+                {
+                    trim(inKey);
+                }
+            });
+        }
+        catch (RejectedExecutionException ex)
+        {
+            pendingTrims.remove(inKey);
+            trimsDropped.incrementAndGet();
+            if (log.isDebugEnabled())
+            {
+                log.debug("Dropped trim of list " + inKey + "; too many trims pending.");
+            }
+        }
+    }
+
+    /**
+     * Perform a pending trim, waiting first if needed to honor the rate limit.
+     *
+     * @param inKey
+     *            the key of the list.
+     */
+    private void trim(final String inKey)
+    {
+        long wait = nextTrimAllowedMillis - System.currentTimeMillis();
+        if (wait > 0)
+        {
+            try
+            {
+                Thread.sleep(wait);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                pendingTrims.remove(inKey);
+                return;
+            }
+        }
+
+        Integer maximumEntries = pendingTrims.remove(inKey);
+        if (maximumEntries == null)
+        {
+            return;
+        }
+
+        try
+        {
+            cache.trimList(inKey, maximumEntries);
+            trimsPerformed.incrementAndGet();
+        }
+        catch (Exception ex)
+        {
+            log.error("Error trimming list " + inKey, ex);
+        }
+        nextTrimAllowedMillis = System.currentTimeMillis() + minMillisBetweenTrims;
+    }
+
+    /**
+     * Stop the background trimming; pending trims are discarded.
+     */
+    public void shutdown()
+    {
+        executor.shutdownNow();
+    }
+
+    /**
+     * @return the number of trims requested.
+     */
+    public long getTrimsRequested()
+    {
+        return trimsRequested.get();
+    }
+
+    /**
+     * @return the number of trim requests folded into an already pending trim of the same key.
+     */
+    public long getTrimsCoalesced()
+    {
+        return trimsCoalesced.get();
+    }
+
+    /**
+     * @return the number of trim requests dropped because too many trims were pending.
+     */
+    public long getTrimsDropped()
+    {
+        return trimsDropped.get();
+    }
+
+    /**
+     * @return the number of trims performed.
+     */
+    public long getTrimsPerformed()
+    {
+        return trimsPerformed.get();
+    }
+
+    /**
+     * @return the number of trims waiting to run.
+     */
+    public int getTrimsPending()
+    {
+        return pendingTrims.size();
+    }
+}
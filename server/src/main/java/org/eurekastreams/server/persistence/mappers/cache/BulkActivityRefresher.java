@@ -22,7 +22,7 @@ import org.eurekastreams.server.persistence.mappers.chained.RefreshStrategy;
 import org.eurekastreams.server.persistence.mappers.stream.CachedDomainMapper;
 
 /**
- * Refreshes activity  information.
+ * Refreshes activity  information. Only used after a cache miss, so the activities are added rather than set.
  */
 public class BulkActivityRefresher extends CachedDomainMapper implements
         RefreshStrategy<Collection<Long>, Collection<ActivityDTO>>
@@ -37,7 +37,7 @@ public class BulkActivityRefresher extends CachedDomainMapper implements
     {
         for (ActivityDTO act : response)
         {
-            getCache().set(CacheKeys.ACTIVITY_BY_ID + act.getId(), act);
+            getCache().add(CacheKeys.ACTIVITY_BY_ID + act.getId(), act);
         }
     }
 }
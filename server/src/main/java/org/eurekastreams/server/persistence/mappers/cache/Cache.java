@@ -93,6 +93,18 @@ public interface Cache
      */
     void set(String inKey, Object inValue);
 
+    /**
+     * Stores a value only if the key is not already in the cache, without waiting for the write to complete. Use this
+     * to write back a value just loaded from the database after a cache miss: a newer value stored meanwhile by a
+     * writer is kept, and since nothing replaced a cached value, near caches do not broadcast an invalidation.
+     * 
+     * @param inKey
+     *            the key of the object to add.
+     * @param inValue
+     *            the object to store in the cache.
+     */
+    void add(String inKey, Object inValue);
+
     /**
      * Sets a value in the cache replacing whatever was there before.
      * 
@@ -103,6 +115,33 @@ public interface Cache
      */
     void setList(String inKey, List<Long> inValue);
 
+    /**
+     * Sets many values in the cache in one batched operation. Use this instead of calling set(String, Object) in a loop
+     * when writing many keys at once (e.g. warming the cache). Unlike set, this may wait for the writes to complete, so
+     * it is meant for background bulk writers, not the request path.
+     * 
+     * @param inValues
+     *            the objects to store in the cache, by key.
+     */
+    void multiSet(Map<String, ?> inValues);
+
+    /**
+     * Sets many values in the cache without waiting for the writes to complete; the writes are issued together so the
+     * client pipelines them. Use this instead of calling set(String, Object) in a loop on the request path.
+     * 
+     * @param inValues
+     *            the objects to store in the cache, by key.
+     */
+    void multiSetAsync(Map<String, ?> inValues);
+
+    /**
+     * Sets many lists in the cache in one batched operation, replacing whatever was there before.
+     * 
+     * @param inValues
+     *            the List&lt;Long&gt; to store in the cache, by key.
+     */
+    void multiSetList(Map<String, ? extends List<Long>> inValues);
+
     /**
      * Sets a value in the cache replacing whatever was there before 
      * and returning the original value to the caller.
@@ -124,6 +163,15 @@ public interface Cache
      *            the key of the object to delete
      */
     void delete(String inKey);
+
+    /**
+     * Deletes many values from the cache in one batched operation. Use this instead of calling delete(String) in a loop
+     * when evicting many keys at once (e.g. purging expired activities).
+     * 
+     * @param inKeys
+     *            the keys of the objects to delete.
+     */
+    void multiDelete(Collection<String> inKeys);
     
     /**
      * Deletes a list value from the cache.
@@ -157,6 +205,18 @@ public interface Cache
      */
     void addToTopOfList(String inKey, Long inValue);
 
+    /**
+     * Prepends a Long value to many cached Lists of Long values in one batched operation. Lists that are not yet in
+     * cache are NOT created. Use this instead of calling addToTopOfList(String, Long) in a loop when fanning out a
+     * single value to many lists (e.g. an activity id to every follower's following list).
+     *
+     * @param inKeys
+     *            the keys of the cached lists.
+     * @param inValue
+     *            the long value item to add to each list.
+     */
+    void multiPrepend(Collection<String> inKeys, Long inValue);
+
     /**
      * Removes a specified value from a cached List of Long values.
      * 
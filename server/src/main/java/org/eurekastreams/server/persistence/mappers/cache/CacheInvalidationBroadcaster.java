@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.Collection;
+
+/**
+ * Tells the near caches on other nodes that cached values have changed.
+ */
+public interface CacheInvalidationBroadcaster
+{
+    /**
+     * Broadcast that keys have been changed or removed.
+     *
+     * @param inOriginId
+     *            id of the near cache sending the invalidation (so it can ignore its own messages).
+     * @param inKeys
+     *            the keys to invalidate; null to invalidate everything.
+     */
+    void broadcastInvalidation(String inOriginId, Collection<String> inKeys);
+}
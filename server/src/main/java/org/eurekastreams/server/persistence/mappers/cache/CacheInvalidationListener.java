@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import javax.jms.Message;
+import javax.jms.MessageListener;
+import javax.jms.ObjectMessage;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+
+/**
+ * Applies near cache invalidations broadcast by other nodes to this node's near cache.
+ */
+public class CacheInvalidationListener implements MessageListener
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * The local near cache.
+     */
+    private final NearCache nearCache;
+
+    /**
+     * Constructor.
+     *
+     * @param inNearCache
+     *            the local near cache.
+     */
+    public CacheInvalidationListener(final NearCache inNearCache)
+    {
+        nearCache = inNearCache;
+    }
+
+    /**
+     * Receives an invalidation and applies it to the local near cache.
+     *
+     * @param inMessage
+     *            the message containing the invalidation.
+     */
+    @Override
+    public void onMessage(final Message inMessage)
+    {
+        try
+        {
+            if (!(inMessage instanceof ObjectMessage))
+            {
+                log.debug("message received is not of ObjectMessage type.");
+                return;
+            }
+
+            Object payload = ((ObjectMessage) inMessage).getObject();
+            if (!(payload instanceof CacheInvalidationMessage))
+            {
+                log.debug("message received does not contain a cache invalidation.");
+                return;
+            }
+
+            CacheInvalidationMessage invalidation = (CacheInvalidationMessage) payload;
+            if (nearCache.getNodeId().equals(invalidation.getOriginId()))
+            {
+                return;
+            }
+
+            if (invalidation.getKeys() == null)
+            {
+                nearCache.clearLocal();
+            }
+            else
+            {
+                nearCache.invalidateLocal(invalidation.getKeys());
+            }
+        }
+        catch (Exception e)
+        {
+            log.error("Error applying near cache invalidation", e);
+        }
+    }
+}
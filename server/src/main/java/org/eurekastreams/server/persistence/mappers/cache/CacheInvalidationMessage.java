@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * Payload of a near cache invalidation broadcast.
+ */
+public class CacheInvalidationMessage implements Serializable
+{
+    /**
+     * Serial version id.
+     */
+    private static final long serialVersionUID = -2811390213563526187L;
+
+    /**
+     * Id of the near cache which sent the invalidation.
+     */
+    private final String originId;
+
+    /**
+     * Keys to invalidate; null for everything.
+     */
+    private final ArrayList<String> keys;
+
+    /**
+     * Constructor.
+     *
+     * @param inOriginId
+     *            id of the near cache which sent the invalidation.
+     * @param inKeys
+     *            keys to invalidate; null for everything.
+     */
+    public CacheInvalidationMessage(final String inOriginId, final ArrayList<String> inKeys)
+    {
+        originId = inOriginId;
+        keys = inKeys;
+    }
+
+    /**
+     * @return id of the near cache which sent the invalidation.
+     */
+    public String getOriginId()
+    {
+        return originId;
+    }
+
+    /**
+     * @return keys to invalidate; null for everything.
+     */
+    public ArrayList<String> getKeys()
+    {
+        return keys;
+    }
+}
@@ -169,6 +169,24 @@ public final class CacheKeys
      */
     public static final String ENTITY_STREAM_BY_SCOPE_ID = "EntStr:";
 
+    /**
+     * Id of the newest activity posted to an entity's activity stream, by stream scope id. Watched by clients waiting
+     * for new activity.
+     */
+    public static final String LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID = "StrLatest:";
+
+    /**
+     * Id of the newest activity added to a person's following list, by person id. Watched by clients waiting for new
+     * activity in the person's following stream.
+     */
+    public static final String LATEST_ACTIVITY_ID_BY_FOLLOWER = "FwgLatest:";
+
+    /**
+     * Id of the newest activity posted anywhere. Watched by clients waiting for new activity in composite streams
+     * which have no narrower key.
+     */
+    public static final String LATEST_ACTIVITY_ID = "ActLatest";
+
     /**
      * Cache key to get the stream scope of a person by their account id.
      */
@@ -0,0 +1,702 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+
+/**
+ * Cache which namespaces every key with a cache generation, so the whole cache can be replaced without flushing
+ * memcached. Readers use the current generation. A new generation is started in the background and becomes pending;
+ * while one is pending every write goes to both generations, so the pending one misses nothing while it is warmed.
+ * Once the warmers have all reported in, the pending generation becomes current in a single write. Keys of old
+ * generations are never read again and are left to expire or be evicted.
+ *
+ * Warmers report in by adding themselves to one set with a compare-and-swap, which returns the set as stored, so the
+ * last warmer to finish always sees every other warmer regardless of which memcached client the writes went through.
+ * A generation still pending after the pending limit (a warmer died, or its report was lost) is activated anyway by
+ * the first node to notice; it has had every write since it started, so it is at worst not fully warmed.
+ *
+ * The generation state is itself kept in the backing cache under an unprefixed key, and each node re-reads it at most
+ * once per refresh interval; an update made by a node which has not yet seen a change can miss the newer generation,
+ * so the interval should be kept short. Generation 0 has no prefix, so keys written before generations were used stay
+ * valid until the first switch.
+ */
+public class GenerationalCache implements Cache
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Key of the generation state ("current:pending") in the backing cache.
+     */
+    public static final String STATE_KEY = "CacheGeneration";
+
+    /**
+     * The cache behind this one.
+     */
+    private final Cache backingCache;
+
+    /**
+     * How long to use the generation state before re-reading it, in milliseconds.
+     */
+    private final long refreshMillis;
+
+    /**
+     * How long a generation may be pending before it is activated without waiting for its warmers, in milliseconds.
+     */
+    private final long maxPendingMillis;
+
+    /**
+     * The generation state as last read.
+     */
+    private volatile State state = new State(0, 0, 0);
+
+    /**
+     * Generation state as seen by this node.
+     */
+    private static class State
+    {
+        /** Generation read from. */
+        private final long current;
+
+        /** Generation being warmed, or 0 if none. */
+        private final long pending;
+
+        /** When the state was read, in milliseconds. */
+        private final long readAt;
+
+        /**
+         * Constructor.
+         *
+         * @param inCurrent
+         *            generation read from.
+         * @param inPending
+         *            generation being warmed, or 0 if none.
+         * @param inReadAt
+         *            when the state was read, in milliseconds.
+         */
+        public State(final long inCurrent, final long inPending, final long inReadAt)
+        {
+            current = inCurrent;
+            pending = inPending;
+            readAt = inReadAt;
+        }
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inBackingCache
+     *            the cache behind this one.
+     * @param inRefreshMillis
+     *            how long to use the generation state before re-reading it, in milliseconds.
+     * @param inMaxPendingMillis
+     *            how long a generation may be pending before it is activated without waiting for its warmers, in
+     *            milliseconds.
+     */
+    public GenerationalCache(final Cache inBackingCache, final long inRefreshMillis, final long inMaxPendingMillis)
+    {
+        backingCache = inBackingCache;
+        refreshMillis = inRefreshMillis;
+        maxPendingMillis = inMaxPendingMillis;
+    }
+
+    /**
+     * Start warming a new generation. Until it is activated, reads keep using the current generation and writes go to
+     * both.
+     *
+     * @param inWarmers
+     *            names of the warmers which must all call finishWarming before the new generation is activated; if
+     *            empty, the new (empty) generation is activated at once.
+     * @return the new generation.
+     */
+    public long startGeneration(final List<String> inWarmers)
+    {
+        State now = readState(true);
+        long generation = Math.max(System.currentTimeMillis(), Math.max(now.current, now.pending) + 1);
+        if (inWarmers.isEmpty())
+        {
+            writeState(generation, 0);
+            log.info("Activated empty cache generation " + generation);
+        }
+        else
+        {
+            backingCache.set(warmersKey(generation), new ArrayList<String>(inWarmers));
+            // the set must exist for the warmers to add themselves to it
+            backingCache.set(doneKey(generation), new HashSet<Long>());
+            writeState(now.current, generation);
+            log.info("Started cache generation " + generation + ", waiting for " + inWarmers);
+        }
+        return generation;
+    }
+
+    /**
+     * Record that a warmer has finished the pending generation, and activate it if it was the last.
+     *
+     * @param inWarmer
+     *            name of the warmer.
+     */
+    @SuppressWarnings("unchecked")
+    public void finishWarming(final String inWarmer)
+    {
+        long generation = readState(true).pending;
+        if (generation == 0)
+        {
+            log.info("No cache generation pending; ignoring completion of " + inWarmer);
+            return;
+        }
+
+        List<String> warmers = (List<String>) backingCache.get(warmersKey(generation));
+        if (warmers == null)
+        {
+            log.warn("Warmers of cache generation " + generation + " have been evicted; activating it");
+            activate(generation);
+            return;
+        }
+        int index = warmers.indexOf(inWarmer);
+        if (index < 0)
+        {
+            log.warn(inWarmer + " is not a warmer of cache generation " + generation + "; ignoring its completion");
+            return;
+        }
+
+        // atomic, and returns the set as stored, so no other warmer's completion can be missed
+        Set<Long> doneWarmers = backingCache.addToSet(doneKey(generation), (long) index);
+        int done = doneWarmers == null ? 0 : doneWarmers.size();
+        if (done == 0)
+        {
+            log.warn("Could not record that " + inWarmer + " finished cache generation " + generation
+                    + "; it will be activated once it has been pending for " + maxPendingMillis + "ms");
+            return;
+        }
+        if (done < warmers.size())
+        {
+            log.info(inWarmer + " finished cache generation " + generation + "; " + done + " of " + warmers.size()
+                    + " warmers done");
+            return;
+        }
+        activate(generation);
+    }
+
+    /**
+     * Make a pending generation current, unless another generation has been started since.
+     *
+     * @param inGeneration
+     *            the generation.
+     */
+    private void activate(final long inGeneration)
+    {
+        State now = readState(true);
+        if (now.pending != inGeneration)
+        {
+            log.info("Cache generation " + inGeneration + " is no longer pending; not activating it");
+            return;
+        }
+        writeState(inGeneration, 0);
+        log.info("Activated cache generation " + inGeneration + "; generation " + now.current + " left to expire");
+    }
+
+    /**
+     * @return the generation read from.
+     */
+    public long getCurrentGeneration()
+    {
+        return readState(false).current;
+    }
+
+    /**
+     * @return the generation being warmed, or 0 if none.
+     */
+    public long getPendingGeneration()
+    {
+        return readState(false).pending;
+    }
+
+    /**
+     * Get the generation state, re-reading it from the backing cache if it is older than the refresh interval.
+     *
+     * @param inForce
+     *            re-read it regardless of age.
+     * @return the state.
+     */
+    private State readState(final boolean inForce)
+    {
+        State known = state;
+        long now = System.currentTimeMillis();
+        if (!inForce && now - known.readAt < refreshMillis)
+        {
+            return known;
+        }
+
+        Object value = backingCache.get(STATE_KEY);
+        State fresh;
+        if (value instanceof String)
+        {
+            String[] parts = ((String) value).split(":");
+            fresh = new State(Long.parseLong(parts[0]), Long.parseLong(parts[1]), now);
+
+            // generations are numbered by their start time
+            if (fresh.pending != 0 && now - fresh.pending > maxPendingMillis)
+            {
+                log.warn("Cache generation " + fresh.pending + " has been pending for over " + maxPendingMillis
+                        + "ms; activating it without waiting for its remaining warmers");
+                backingCache.set(STATE_KEY, fresh.pending + ":0");
+                fresh = new State(fresh.pending, 0, now);
+            }
+        }
+        else
+        {
+            // evicted (or never set): keep what this node last knew, and put it back so the other nodes agree.
+            fresh = new State(known.current, known.pending, now);
+            if (known.current != 0 || known.pending != 0)
+            {
+                log.warn("Cache generation state missing; restoring " + known.current + ":" + known.pending);
+                backingCache.set(STATE_KEY, known.current + ":" + known.pending);
+            }
+        }
+        if (fresh.current != known.current || fresh.pending != known.pending)
+        {
+            log.info("Cache generation is now " + fresh.current + (fresh.pending == 0 ? "" : ", warming "
+                    + fresh.pending));
+        }
+        state = fresh;
+        return fresh;
+    }
+
+    /**
+     * Write the generation state.
+     *
+     * @param inCurrent
+     *            generation read from.
+     * @param inPending
+     *            generation being warmed, or 0 if none.
+     */
+    private void writeState(final long inCurrent, final long inPending)
+    {
+        backingCache.set(STATE_KEY, inCurrent + ":" + inPending);
+        state = new State(inCurrent, inPending, System.currentTimeMillis());
+    }
+
+    /**
+     * @param inGeneration
+     *            a generation.
+     * @return key of the names of the generation's warmers.
+     */
+    private static String warmersKey(final long inGeneration)
+    {
+        return STATE_KEY + ":" + inGeneration + ":warmers";
+    }
+
+    /**
+     * @param inGeneration
+     *            a generation.
+     * @return key of the set of indexes (in the list of warmers) of the warmers which have finished the generation.
+     */
+    private static String doneKey(final long inGeneration)
+    {
+        return STATE_KEY + ":" + inGeneration + ":done";
+    }
+
+    /**
+     * @param inGeneration
+     *            a generation.
+     * @param inKey
+     *            a key.
+     * @return the key within the generation.
+     */
+    private static String keyFor(final long inGeneration, final String inKey)
+    {
+        return inGeneration == 0 ? inKey : "G" + inGeneration + ":" + inKey;
+    }
+
+    /**
+     * @param inGeneration
+     *            a generation.
+     * @param inKeys
+     *            keys.
+     * @return the keys within the generation.
+     */
+    private static List<String> keysFor(final long inGeneration, final Collection<String> inKeys)
+    {
+        List<String> keys = new ArrayList<String>(inKeys.size());
+        for (String key : inKeys)
+        {
+            keys.add(keyFor(inGeneration, key));
+        }
+        return keys;
+    }
+
+    /**
+     * @param <T>
+     *            value type.
+     * @param inGeneration
+     *            a generation.
+     * @param inValues
+     *            values by key.
+     * @return the values by key within the generation.
+     */
+    private static <T> Map<String, T> valuesFor(final long inGeneration, final Map<String, T> inValues)
+    {
+        Map<String, T> values = new LinkedHashMap<String, T>();
+        for (Map.Entry<String, T> entry : inValues.entrySet())
+        {
+            values.put(keyFor(inGeneration, entry.getKey()), entry.getValue());
+        }
+        return values;
+    }
+
+    /**
+     * Map results keyed within a generation back to the caller's keys.
+     *
+     * @param <T>
+     *            value type.
+     * @param inKeys
+     *            the caller's keys.
+     * @param inGeneration
+     *            the generation.
+     * @param inResults
+     *            results keyed within the generation.
+     * @return the results keyed by the caller's keys.
+     */
+    private static <T> Map<String, T> unprefix(final Collection<String> inKeys, final long inGeneration,
+            final Map<String, T> inResults)
+    {
+        if (inGeneration == 0)
+        {
+            return inResults;
+        }
+        Map<String, T> results = new HashMap<String, T>();
+        for (String key : inKeys)
+        {
+            String generationKey = keyFor(inGeneration, key);
+            if (inResults.containsKey(generationKey))
+            {
+                results.put(key, inResults.get(generationKey));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * Flushes every generation; the generation state is then re-read as missing and restored.
+     */
+    @Override
+    public void clear()
+    {
+        backingCache.clear();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(final String inKey)
+    {
+        return backingCache.get(keyFor(readState(false).current, inKey));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> getList(final String inKey, final int inMaximumEntries)
+    {
+        return backingCache.getList(keyFor(readState(false).current, inKey), inMaximumEntries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> getList(final String inKey)
+    {
+        return backingCache.getList(keyFor(readState(false).current, inKey));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Object> multiGet(final Collection<String> inKeys)
+    {
+        long generation = readState(false).current;
+        return unprefix(inKeys, generation, backingCache.multiGet(keysFor(generation, inKeys)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, ArrayList<Long>> multiGetList(final Collection<String> inKeys)
+    {
+        long generation = readState(false).current;
+        return unprefix(inKeys, generation, backingCache.multiGetList(keysFor(generation, inKeys)));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(final String inKey, final Object inValue)
+    {
+        State now = readState(false);
+        backingCache.set(keyFor(now.current, inKey), inValue);
+        if (now.pending != 0)
+        {
+            backingCache.set(keyFor(now.pending, inKey), inValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(final String inKey, final Object inValue)
+    {
+        State now = readState(false);
+        backingCache.add(keyFor(now.current, inKey), inValue);
+        if (now.pending != 0)
+        {
+            backingCache.add(keyFor(now.pending, inKey), inValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setList(final String inKey, final List<Long> inValue)
+    {
+        State now = readState(false);
+        backingCache.setList(keyFor(now.current, inKey), inValue);
+        if (now.pending != 0)
+        {
+            backingCache.setList(keyFor(now.pending, inKey), inValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSet(final Map<String, ?> inValues)
+    {
+        State now = readState(false);
+        backingCache.multiSet(valuesFor(now.current, inValues));
+        if (now.pending != 0)
+        {
+            backingCache.multiSet(valuesFor(now.pending, inValues));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSetAsync(final Map<String, ?> inValues)
+    {
+        State now = readState(false);
+        backingCache.multiSetAsync(valuesFor(now.current, inValues));
+        if (now.pending != 0)
+        {
+            backingCache.multiSetAsync(valuesFor(now.pending, inValues));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSetList(final Map<String, ? extends List<Long>> inValues)
+    {
+        State now = readState(false);
+        backingCache.multiSetList(valuesFor(now.current, inValues));
+        if (now.pending != 0)
+        {
+            backingCache.multiSetList(valuesFor(now.pending, inValues));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> setListCAS(final String inKey, final List<Long> inValue)
+    {
+        State now = readState(false);
+        ArrayList<Long> result = backingCache.setListCAS(keyFor(now.current, inKey), inValue);
+        if (now.pending != 0)
+        {
+            backingCache.setListCAS(keyFor(now.pending, inKey), inValue);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(final String inKey)
+    {
+        State now = readState(false);
+        backingCache.delete(keyFor(now.current, inKey));
+        if (now.pending != 0)
+        {
+            backingCache.delete(keyFor(now.pending, inKey));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiDelete(final Collection<String> inKeys)
+    {
+        State now = readState(false);
+        backingCache.multiDelete(keysFor(now.current, inKeys));
+        if (now.pending != 0)
+        {
+            backingCache.multiDelete(keysFor(now.pending, inKeys));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteList(final String inKey)
+    {
+        State now = readState(false);
+        backingCache.deleteList(keyFor(now.current, inKey));
+        if (now.pending != 0)
+        {
+            backingCache.deleteList(keyFor(now.pending, inKey));
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfList(final String inKey, final List<Long> inValues)
+    {
+        State now = readState(false);
+        backingCache.addToTopOfList(keyFor(now.current, inKey), inValues);
+        if (now.pending != 0)
+        {
+            backingCache.addToTopOfList(keyFor(now.pending, inKey), inValues);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfList(final String inKey, final Long inValue)
+    {
+        State now = readState(false);
+        backingCache.addToTopOfList(keyFor(now.current, inKey), inValue);
+        if (now.pending != 0)
+        {
+            backingCache.addToTopOfList(keyFor(now.pending, inKey), inValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiPrepend(final Collection<String> inKeys, final Long inValue)
+    {
+        State now = readState(false);
+        backingCache.multiPrepend(keysFor(now.current, inKeys), inValue);
+        if (now.pending != 0)
+        {
+            backingCache.multiPrepend(keysFor(now.pending, inKeys), inValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromList(final String inKey, final Long inValue)
+    {
+        State now = readState(false);
+        backingCache.removeFromList(keyFor(now.current, inKey), inValue);
+        if (now.pending != 0)
+        {
+            backingCache.removeFromList(keyFor(now.pending, inKey), inValue);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromLists(final List<String> inKeys, final List<Long> inValues)
+    {
+        State now = readState(false);
+        backingCache.removeFromLists(keysFor(now.current, inKeys), inValues);
+        if (now.pending != 0)
+        {
+            backingCache.removeFromLists(keysFor(now.pending, inKeys), inValues);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Long> addToSet(final String inKey, final Long inValue)
+    {
+        State now = readState(false);
+        Set<Long> result = backingCache.addToSet(keyFor(now.current, inKey), inValue);
+        if (now.pending != 0)
+        {
+            backingCache.addToSet(keyFor(now.pending, inKey), inValue);
+        }
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromSet(final String inKey, final Long inValue)
+    {
+        State now = readState(false);
+        backingCache.removeFromSet(keyFor(now.current, inKey), inValue);
+        if (now.pending != 0)
+        {
+            backingCache.removeFromSet(keyFor(now.pending, inKey), inValue);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.springframework.jms.core.JmsTemplate;
+
+/**
+ * Publishes near cache invalidations to a JMS topic. Invalidations are collected and published in batches from a
+ * background thread, so writers never wait on the broker. Each message carries at most a fixed number of keys; if too
+ * many keys are waiting, they are replaced by a single invalidation of everything.
+ *
+ * The template should use non-persistent delivery: a lost invalidation only leaves other nodes stale until their near
+ * cache TTL expires.
+ */
+public class JmsCacheInvalidationBroadcaster implements CacheInvalidationBroadcaster
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * The JMS template used to publish the invalidations; its default destination must be a topic.
+     */
+    private final JmsTemplate jmsTemplate;
+
+    /**
+     * Publishes the waiting invalidations.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * Maximum number of keys in one message.
+     */
+    private final int maxKeysPerMessage;
+
+    /**
+     * Maximum number of keys waiting to be published.
+     */
+    private final int maxPendingKeys;
+
+    /**
+     * Keys waiting to be published, by origin id; a null set means invalidate everything. Guarded by this.
+     */
+    private Map<String, Set<String>> pending = new HashMap<String, Set<String>>();
+
+    /**
+     * Number of keys in pending; guarded by this.
+     */
+    private int pendingKeyCount = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param inJmsTemplate
+     *            The JMS template used to publish the invalidations; its default destination must be a topic.
+     * @param inFlushIntervalMillis
+     *            milliseconds between publishing the waiting invalidations.
+     * @param inMaxKeysPerMessage
+     *            maximum number of keys in one message.
+     * @param inMaxPendingKeys
+     *            maximum number of keys waiting to be published.
+     */
+    public JmsCacheInvalidationBroadcaster(final JmsTemplate inJmsTemplate, final long inFlushIntervalMillis,
+            final int inMaxKeysPerMessage, final int inMaxPendingKeys)
+    {
+        this(inJmsTemplate, Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+        {
+            public Thread newThread(final Runnable inRunnable)
+            {
+                Thread thread = new Thread(inRunnable, "cache-invalidation-broadcaster");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }), inFlushIntervalMillis, inMaxKeysPerMessage, inMaxPendingKeys);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inJmsTemplate
+     *            The JMS template used to publish the invalidations; its default destination must be a topic.
+     * @param inScheduler
+     *            scheduler to publish the waiting invalidations on.
+     * @param inFlushIntervalMillis
+     *            milliseconds between publishing the waiting invalidations.
+     * @param inMaxKeysPerMessage
+     *            maximum number of keys in one message.
+     * @param inMaxPendingKeys
+     *            maximum number of keys waiting to be published.
+     */
+    JmsCacheInvalidationBroadcaster(final JmsTemplate inJmsTemplate, final ScheduledExecutorService inScheduler,
+            final long inFlushIntervalMillis, final int inMaxKeysPerMessage, final int inMaxPendingKeys)
+    {
+        jmsTemplate = inJmsTemplate;
+        scheduler = inScheduler;
+        maxKeysPerMessage = inMaxKeysPerMessage;
+        maxPendingKeys = inMaxPendingKeys;
+
+        scheduler.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                flush();
+            }
+        }, inFlushIntervalMillis, inFlushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void broadcastInvalidation(final String inOriginId, final Collection<String> inKeys)
+    {
+        if (pending.containsKey(inOriginId) && pending.get(inOriginId) == null)
+        {
+            // everything is already being invalidated
+            return;
+        }
+
+        if (inKeys == null || pendingKeyCount + inKeys.size() > maxPendingKeys)
+        {
+            if (inKeys != null)
+            {
+                log.info("Too many near cache invalidations waiting; invalidating everything instead.");
+            }
+            Set<String> replaced = pending.put(inOriginId, null);
+            if (replaced != null)
+            {
+                pendingKeyCount -= replaced.size();
+            }
+            return;
+        }
+
+        Set<String> keys = pending.get(inOriginId);
+        if (keys == null)
+        {
+            keys = new LinkedHashSet<String>();
+            pending.put(inOriginId, keys);
+        }
+        for (String key : inKeys)
+        {
+            if (keys.add(key))
+            {
+                pendingKeyCount++;
+            }
+        }
+    }
+
+    /**
+     * Publish the waiting invalidations.
+     */
+    void flush()
+    {
+        Map<String, Set<String>> batch;
+        synchronized (this)
+        {
+            if (pending.isEmpty())
+            {
+                return;
+            }
+            batch = pending;
+            pending = new HashMap<String, Set<String>>();
+            pendingKeyCount = 0;
+        }
+
+        for (Map.Entry<String, Set<String>> entry : batch.entrySet())
+        {
+            if (entry.getValue() == null)
+            {
+                send(new CacheInvalidationMessage(entry.getKey(), null));
+                continue;
+            }
+
+            ArrayList<String> keys = new ArrayList<String>();
+            for (String key : entry.getValue())
+            {
+                keys.add(key);
+                if (keys.size() == maxKeysPerMessage)
+                {
+                    send(new CacheInvalidationMessage(entry.getKey(), keys));
+                    keys = new ArrayList<String>();
+                }
+            }
+            if (!keys.isEmpty())
+            {
+                send(new CacheInvalidationMessage(entry.getKey(), keys));
+            }
+        }
+    }
+
+    /**
+     * Publish one message.
+     *
+     * @param inPayload
+     *            the invalidation.
+     */
+    private void send(final CacheInvalidationMessage inPayload)
+    {
+        try
+        {
+            jmsTemplate.convertAndSend(inPayload);
+        }
+        catch (Exception ex)
+        {
+            // other nodes fall back to their near cache TTLs
+            log.error("Unable to broadcast near cache invalidation of "
+                    + (inPayload.getKeys() == null ? "all keys" : inPayload.getKeys().size() + " keys"), ex);
+        }
+    }
+
+    /**
+     * Stop the background publishing, publishing whatever is still waiting.
+     */
+    public void shutdown()
+    {
+        scheduler.shutdownNow();
+        flush();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Read-only List&lt;Long&gt; view over a primitive long[], used for decoded cache lists so hot read paths can work
+ * with the ids without boxing every element.
+ */
+public class LongArrayList extends AbstractList<Long> implements RandomAccess
+{
+    /**
+     * The backing values.
+     */
+    private final long[] values;
+
+    /**
+     * Number of values in use from the backing array.
+     */
+    private final int size;
+
+    /**
+     * Constructor.
+     *
+     * @param inValues
+     *            the backing values (not copied).
+     */
+    public LongArrayList(final long[] inValues)
+    {
+        this(inValues, inValues.length);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inValues
+     *            the backing values (not copied).
+     * @param inSize
+     *            the number of values in use from the start of the array.
+     */
+    public LongArrayList(final long[] inValues, final int inSize)
+    {
+        if (inSize < 0 || inSize > inValues.length)
+        {
+            throw new IllegalArgumentException("Invalid size " + inSize + " for array of length " + inValues.length);
+        }
+        values = inValues;
+        size = inSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Long get(final int inIndex)
+    {
+        return getLong(inIndex);
+    }
+
+    /**
+     * Get a value without boxing it.
+     *
+     * @param inIndex
+     *            the index of the value.
+     * @return the value.
+     */
+    public long getLong(final int inIndex)
+    {
+        if (inIndex < 0 || inIndex >= size)
+        {
+            throw new IndexOutOfBoundsException("Index: " + inIndex + ", Size: " + size);
+        }
+        return values[inIndex];
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @return a copy of the values as a primitive array.
+     */
+    public long[] toLongArray()
+    {
+        return Arrays.copyOf(values, size);
+    }
+
+    /**
+     * Box the first values into a new ArrayList.
+     *
+     * @param inMaximumEntries
+     *            the maximum number of values to copy.
+     * @return a new ArrayList holding at most inMaximumEntries values.
+     */
+    public ArrayList<Long> toArrayList(final int inMaximumEntries)
+    {
+        int count = Math.min(size, Math.max(0, inMaximumEntries));
+        ArrayList<Long> result = new ArrayList<Long>(count);
+        for (int i = 0; i < count; i++)
+        {
+            result.add(values[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return all the values boxed into a new ArrayList.
+     */
+    public ArrayList<Long> toArrayList()
+    {
+        return toArrayList(size);
+    }
+}
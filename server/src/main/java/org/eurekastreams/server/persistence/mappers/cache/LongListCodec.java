@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eurekastreams.commons.io.Varints;
+
+/**
+ * Converts cached List&lt;Long&gt; values to and from the byte[] stored in memcached.
+ *
+ * Two formats exist:
+ * <ul>
+ * <li>legacy: each value as a fixed 8-byte big-endian long, no header.</li>
+ * <li>compact: one or more segments, each a version marker byte, a varint count, then the first value and the
+ * differences between consecutive values as zig-zag varints. Descending, dense id lists encode to one or two bytes per
+ * id.</li>
+ * </ul>
+ *
+ * Both formats are self-delimiting per value/segment, so bytes prepended to a cached list by memcached (see
+ * Cache.addToTopOfList) decode correctly even when the prepended part and the existing list were written in different
+ * formats. The decoder always reads both formats; only the format written is configurable. To switch a cluster to the
+ * compact format, first deploy every node with writeCompact false (the default, readers understand both formats), then
+ * turn writeCompact on. Legacy lists convert as they are rewritten and old ones simply expire.
+ *
+ * The legacy and compact formats are told apart by the first byte of each entry. That is unambiguous as long as legacy
+ * values do not have the compact marker as their high byte, which holds for all non-negative ids below 2^56.
+ */
+public class LongListCodec
+{
+    /**
+     * Marker byte starting a version 1 compact segment.
+     */
+    static final byte COMPACT_V1_MARKER = (byte) 0x81;
+
+    /**
+     * Number of bytes in a legacy encoded value.
+     */
+    private static final int LEGACY_VALUE_BYTES = 8;
+
+    /**
+     * Mask to get an unsigned value from a byte.
+     */
+    private static final int BYTE_MASK = 0xFF;
+
+    /**
+     * Bits in a byte.
+     */
+    private static final int BITS_PER_BYTE = 8;
+
+    /**
+     * Whether to write the compact format.
+     */
+    private final boolean writeCompact;
+
+    /**
+     * Constructor.
+     *
+     * @param inWriteCompact
+     *            true to write the compact format, false to write the legacy format.
+     */
+    public LongListCodec(final boolean inWriteCompact)
+    {
+        writeCompact = inWriteCompact;
+    }
+
+    /**
+     * @return whether the compact format is written.
+     */
+    public boolean isWriteCompact()
+    {
+        return writeCompact;
+    }
+
+    /**
+     * Encode a list of longs.
+     *
+     * @param inValues
+     *            the values to encode.
+     * @return the encoded bytes, or null if inValues is null.
+     */
+    public byte[] encode(final List<Long> inValues)
+    {
+        if (inValues == null)
+        {
+            return null;
+        }
+        return writeCompact ? encodeCompact(inValues) : encodeLegacy(inValues);
+    }
+
+    /**
+     * Decode bytes written in either format (or a mix of both).
+     *
+     * @param inBytes
+     *            the encoded bytes.
+     * @return the values, or null if inBytes is null.
+     * @throws IOException
+     *             if the bytes are truncated or corrupt.
+     */
+    public LongArrayList decode(final byte[] inBytes) throws IOException
+    {
+        if (inBytes == null)
+        {
+            return null;
+        }
+
+        long[] values = new long[countValues(inBytes)];
+        int count = 0;
+        int[] pos = new int[] { 0 };
+        while (pos[0] < inBytes.length)
+        {
+            if (inBytes[pos[0]] == COMPACT_V1_MARKER)
+            {
+                pos[0]++;
+                long segmentSize = Varints.readUnsigned(inBytes, pos);
+                if (segmentSize < 0 || segmentSize > values.length - count)
+                {
+                    throw new IOException("Invalid compact segment size " + segmentSize);
+                }
+                long previous = 0;
+                for (int i = 0; i < segmentSize; i++)
+                {
+                    long delta = Varints.unzigzag(Varints.readUnsigned(inBytes, pos));
+                    previous = (i == 0) ? delta : previous - delta;
+                    values[count++] = previous;
+                }
+            }
+            else
+            {
+                if (pos[0] + LEGACY_VALUE_BYTES > inBytes.length)
+                {
+                    throw new IOException("Truncated legacy value at byte " + pos[0] + " of " + inBytes.length);
+                }
+                long value = 0;
+                for (int i = 0; i < LEGACY_VALUE_BYTES; i++)
+                {
+                    value = (value << BITS_PER_BYTE) | (inBytes[pos[0]++] & BYTE_MASK);
+                }
+                values[count++] = value;
+            }
+        }
+
+        return new LongArrayList(values, count);
+    }
+
+    /**
+     * Count the values in bytes written in either format, so decoding can size its array exactly. Only segment headers
+     * and varint continuation bits are looked at; the values themselves are read by decode.
+     *
+     * @param inBytes
+     *            the encoded bytes.
+     * @return the number of values.
+     * @throws IOException
+     *             if the bytes are truncated or corrupt.
+     */
+    private static int countValues(final byte[] inBytes) throws IOException
+    {
+        int count = 0;
+        int[] pos = new int[] { 0 };
+        while (pos[0] < inBytes.length)
+        {
+            if (inBytes[pos[0]] == COMPACT_V1_MARKER)
+            {
+                pos[0]++;
+                long segmentSize = Varints.readUnsigned(inBytes, pos);
+                // every value takes at least one byte
+                if (segmentSize < 0 || segmentSize > inBytes.length - pos[0])
+                {
+                    throw new IOException("Invalid compact segment size " + segmentSize);
+                }
+                for (int i = 0; i < segmentSize; i++)
+                {
+                    while (pos[0] < inBytes.length && (inBytes[pos[0]] & Varints.CONTINUE) != 0)
+                    {
+                        pos[0]++;
+                    }
+                    if (pos[0] >= inBytes.length)
+                    {
+                        throw new IOException("Truncated varint at byte " + pos[0]);
+                    }
+                    pos[0]++;
+                }
+                count += (int) segmentSize;
+            }
+            else
+            {
+                if (pos[0] + LEGACY_VALUE_BYTES > inBytes.length)
+                {
+                    throw new IOException("Truncated legacy value at byte " + pos[0] + " of " + inBytes.length);
+                }
+                pos[0] += LEGACY_VALUE_BYTES;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Encode in the legacy fixed-width format.
+     *
+     * @param inValues
+     *            the values.
+     * @return the bytes.
+     */
+    private byte[] encodeLegacy(final List<Long> inValues)
+    {
+        byte[] bytes = new byte[inValues.size() * LEGACY_VALUE_BYTES];
+        int pos = 0;
+        for (Long value : inValues)
+        {
+            long v = value;
+            for (int shift = (LEGACY_VALUE_BYTES - 1) * BITS_PER_BYTE; shift >= 0; shift -= BITS_PER_BYTE)
+            {
+                bytes[pos++] = (byte) (v >>> shift);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode as a single compact segment.
+     *
+     * @param inValues
+     *            the values.
+     * @return the bytes.
+     */
+    private byte[] encodeCompact(final List<Long> inValues)
+    {
+        byte[] buffer = new byte[1 + Varints.MAX_BYTES * (inValues.size() + 1)];
+        int[] pos = new int[] { 0 };
+        buffer[pos[0]++] = COMPACT_V1_MARKER;
+        Varints.writeUnsigned(buffer, pos, inValues.size());
+
+        boolean first = true;
+        long previous = 0;
+        for (Long value : inValues)
+        {
+            long v = value;
+            Varints.writeUnsigned(buffer, pos, Varints.zigzag(first ? v : previous - v));
+            previous = v;
+            first = false;
+        }
+
+        byte[] bytes = new byte[pos[0]];
+        System.arraycopy(buffer, 0, bytes, 0, pos[0]);
+        return bytes;
+    }
+}
@@ -15,10 +15,6 @@
  */
 package org.eurekastreams.server.persistence.mappers.cache;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -27,6 +23,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import net.spy.memcached.CASMutation;
 import net.spy.memcached.CASMutator;
@@ -61,6 +59,46 @@ public class MemcachedCache implements Cache
      */
     private int maxListSize;
 
+    /**
+     * Default number of operations multiPrepend and multiSet allow in flight before waiting on them.
+     */
+    private static final int DEFAULT_MULTI_PREPEND_BATCH_SIZE = 500;
+
+    /**
+     * Default time in milliseconds multiPrepend and multiSet wait for a batch of operations to complete.
+     */
+    private static final long DEFAULT_MULTI_PREPEND_TIMEOUT_MILLIS = 5000L;
+
+    /**
+     * Number of operations multiPrepend and multiSet allow in flight before waiting on them.
+     */
+    private int multiPrependBatchSize = DEFAULT_MULTI_PREPEND_BATCH_SIZE;
+
+    /**
+     * Time in milliseconds multiPrepend and multiSet wait for a batch of operations to complete.
+     */
+    private long multiPrependTimeoutMillis = DEFAULT_MULTI_PREPEND_TIMEOUT_MILLIS;
+
+    /**
+     * Codec for lists stored in memcached; reads both list formats, writes the legacy one unless configured otherwise.
+     */
+    private LongListCodec listCodec = new LongListCodec(false);
+
+    /**
+     * Default maximum number of list trims waiting to run.
+     */
+    private static final int DEFAULT_MAX_PENDING_TRIMS = 1000;
+
+    /**
+     * Default maximum number of list trims run per second.
+     */
+    private static final int DEFAULT_MAX_TRIMS_PER_SECOND = 20;
+
+    /**
+     * Trims lists found to be over-long by getList.
+     */
+    private final AsyncListTrimmer listTrimmer;
+
     /**
      * Constructor.
      *
@@ -73,6 +111,7 @@ public class MemcachedCache implements Cache
     {
         client = inClient;
         maxListSize = inMaxListSize;
+        listTrimmer = new AsyncListTrimmer(this, DEFAULT_MAX_PENDING_TRIMS, DEFAULT_MAX_TRIMS_PER_SECOND);
     }
 
     /**
@@ -92,6 +131,49 @@ public class MemcachedCache implements Cache
         this.maxListSize = inMaxListSize;
     }
 
+    /**
+     * @return the number of operations multiPrepend and multiSet allow in flight before waiting on them
+     */
+    public int getMultiPrependBatchSize()
+    {
+        return multiPrependBatchSize;
+    }
+
+    /**
+     * @param inMultiPrependBatchSize
+     *            the number of operations multiPrepend and multiSet allow in flight before waiting on them
+     */
+    public void setMultiPrependBatchSize(final int inMultiPrependBatchSize)
+    {
+        multiPrependBatchSize = inMultiPrependBatchSize;
+    }
+
+    /**
+     * @param inMultiPrependTimeoutMillis
+     *            the time in milliseconds multiPrepend and multiSet wait for a batch of operations to complete
+     */
+    public void setMultiPrependTimeoutMillis(final long inMultiPrependTimeoutMillis)
+    {
+        multiPrependTimeoutMillis = inMultiPrependTimeoutMillis;
+    }
+
+    /**
+     * @param inListCodec
+     *            the codec for lists stored in memcached.
+     */
+    public void setListCodec(final LongListCodec inListCodec)
+    {
+        listCodec = inListCodec;
+    }
+
+    /**
+     * @return the trimmer for lists found to be over-long by getList.
+     */
+    public AsyncListTrimmer getListTrimmer()
+    {
+        return listTrimmer;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -137,6 +219,22 @@ public class MemcachedCache implements Cache
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void add(final String inKey, final Object inValue)
+    {
+        if (log.isTraceEnabled())
+        {
+            log.trace("Adding to cache '" + inKey + "' - " + inValue);
+        }
+
+        if (inValue != null)
+        {
+            client.add(inKey, MAX_EXPIRATION_TIME, inValue);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -272,6 +370,33 @@ public class MemcachedCache implements Cache
         client.delete(inKey);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The deletes are sent asynchronously, letting the client pipeline them, in chunks of multiPrependBatchSize; each
+     * chunk is waited on before the next is issued.
+     */
+    public void multiDelete(final Collection<String> inKeys)
+    {
+        if (log.isTraceEnabled())
+        {
+            log.trace("Deleting " + inKeys.size() + " keys");
+        }
+
+        Map<String, Future<Boolean>> inFlight = new HashMap<String, Future<Boolean>>();
+        for (String key : inKeys)
+        {
+            inFlight.put(key, client.delete(key));
+
+            if (inFlight.size() >= multiPrependBatchSize)
+            {
+                waitForAll(inFlight, "multiDelete");
+                inFlight.clear();
+            }
+        }
+        waitForAll(inFlight, "multiDelete");
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -385,6 +510,187 @@ public class MemcachedCache implements Cache
         }
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * The prepends are sent asynchronously in chunks of multiPrependBatchSize; each chunk is waited on before the next
+     * is issued so a large fan-out cannot flood the memcached client's operation queue.
+     */
+    public void multiPrepend(final Collection<String> inKeys, final Long inValue)
+    {
+        if (inKeys == null || inKeys.isEmpty())
+        {
+            return;
+        }
+
+        if (inValue == null)
+        {
+            // cannot pass null to memcached
+            log.warn("In multiPrepend, attempting to pass in NULL to memcached for " + inKeys.size() + " keys");
+            return;
+        }
+
+        if (log.isTraceEnabled())
+        {
+            log.trace("Prepending to " + inKeys.size() + " lists, value: " + inValue);
+        }
+
+        // every list gets the same value, so only serialize it once
+        byte[] bytesToPrepend;
+        try
+        {
+            List<Long> toAdd = new ArrayList<Long>();
+            toAdd.add(inValue);
+            bytesToPrepend = this.getBytesFromList(toAdd);
+        }
+        catch (IOException e)
+        {
+            log.error("Unable to multiPrepend value " + inValue + " into memcached.  Exception " + e.getMessage());
+            return;
+        }
+
+        Map<String, Future<Boolean>> inFlight = new HashMap<String, Future<Boolean>>();
+        for (String key : inKeys)
+        {
+            // NOTE: as with addToTopOfList, memcached will NOT create a List if one
+            // does not exist already - this is what we want.
+            inFlight.put(key, client.prepend(0, key, bytesToPrepend));
+
+            if (inFlight.size() >= multiPrependBatchSize)
+            {
+                waitForAll(inFlight, "multiPrepend");
+                inFlight.clear();
+            }
+        }
+        waitForAll(inFlight, "multiPrepend");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The sets are sent asynchronously, letting the client pipeline them, in chunks of multiPrependBatchSize; each
+     * chunk is waited on before the next is issued.
+     */
+    public void multiSet(final Map<String, ?> inValues)
+    {
+        if (log.isTraceEnabled())
+        {
+            log.trace("Setting " + inValues.size() + " keys");
+        }
+
+        Map<String, Future<Boolean>> inFlight = new HashMap<String, Future<Boolean>>();
+        for (Map.Entry<String, ?> entry : inValues.entrySet())
+        {
+            if (entry.getValue() == null)
+            {
+                // as with set, a null really should be a delete of the key
+                log.warn("null passed in as value for key " + entry.getKey()
+                        + ".  Deleting key from memcached to force client reload.");
+                inFlight.put(entry.getKey(), client.delete(entry.getKey()));
+            }
+            else
+            {
+                inFlight.put(entry.getKey(), client.set(entry.getKey(), MAX_EXPIRATION_TIME, entry.getValue()));
+            }
+
+            if (inFlight.size() >= multiPrependBatchSize)
+            {
+                waitForAll(inFlight, "multiSet");
+                inFlight.clear();
+            }
+        }
+        waitForAll(inFlight, "multiSet");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * The sets are queued on the client back to back and not waited on, so they go out pipelined.
+     */
+    public void multiSetAsync(final Map<String, ?> inValues)
+    {
+        if (log.isTraceEnabled())
+        {
+            log.trace("Setting " + inValues.size() + " keys without waiting");
+        }
+
+        for (Map.Entry<String, ?> entry : inValues.entrySet())
+        {
+            if (entry.getValue() == null)
+            {
+                // as with set, a null really should be a delete of the key
+                log.warn("null passed in as value for key " + entry.getKey()
+                        + ".  Deleting key from memcached to force client reload.");
+                client.delete(entry.getKey());
+            }
+            else
+            {
+                client.set(entry.getKey(), MAX_EXPIRATION_TIME, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void multiSetList(final Map<String, ? extends List<Long>> inValues)
+    {
+        Map<String, Object> encoded = new HashMap<String, Object>();
+        for (Map.Entry<String, ? extends List<Long>> entry : inValues.entrySet())
+        {
+            if (entry.getValue() == null)
+            {
+                // cannot pass null to memcached
+                log.warn("In multiSetList, attempting to pass in NULL to memcached for key " + entry.getKey());
+                continue;
+            }
+            try
+            {
+                // a null here really means delete the key, which multiSet does
+                encoded.put(entry.getKey(), getBytesFromList(entry.getValue()));
+            }
+            catch (IOException e)
+            {
+                log.error("Error setting memcached list with passed in value for key " + entry.getKey()
+                        + ".  Exception : " + e.toString());
+            }
+        }
+        multiSet(encoded);
+    }
+
+    /**
+     * Wait for a batch of asynchronous operations to complete.
+     *
+     * @param inFlight
+     *            the pending operations, keyed by cache key.
+     * @param operation
+     *            name of the operation, for logging.
+     */
+    private void waitForAll(final Map<String, Future<Boolean>> inFlight, final String operation)
+    {
+        long deadline = System.currentTimeMillis() + multiPrependTimeoutMillis;
+        for (Map.Entry<String, Future<Boolean>> entry : inFlight.entrySet())
+        {
+            try
+            {
+                long remaining = Math.max(0, deadline - System.currentTimeMillis());
+                entry.getValue().get(remaining, TimeUnit.MILLISECONDS);
+            }
+            catch (InterruptedException e)
+            {
+                log.error("Interrupted waiting on " + operation + " for key " + entry.getKey());
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (Exception e)
+            {
+                // a failed write only affects that one key, so log and keep going
+                entry.getValue().cancel(false);
+                log.error("Error in " + operation + " for key " + entry.getKey() + ".  Exception " + e.toString());
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -395,78 +701,88 @@ public class MemcachedCache implements Cache
 
     /**
      * {@inheritDoc}
+     *
+     * This is a plain read; lists longer than inMaximumEntries are sliced in memory and handed to the list trimmer to
+     * be shortened in cache in the background.
      */
     public ArrayList<Long> getList(final String inKey, final int inMaximumEntries)
     {
-        // This is how we modify a list when we find one in the cache.
-        CASMutation<Object> mutation = new CASMutation<Object>()
+        if (log.isTraceEnabled())
+        {
+            log.trace("Getting list " + inKey);
+        }
+
+        try
         {
+            LongArrayList values = getLongsFromBytes(client.get(inKey));
+            if (values == null)
+            {
+                return null;
+            }
 
+            if (values.size() > inMaximumEntries)
+            {
+                listTrimmer.requestTrim(inKey, inMaximumEntries);
+            }
+            return values.toArrayList(inMaximumEntries);
+        }
+        catch (Exception e)
+        {
+            // error, return null so the client goes to the database
+            log.error("Error in getList, general exception.  Key " + inKey + " Exception " + e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Trim a cached list down to a maximum number of entries. Used by the list trimmer; readers should call getList.
+     *
+     * @param inKey
+     *            the key of the list.
+     * @param inMaximumEntries
+     *            the maximum number of entries to keep.
+     */
+    public void trimList(final String inKey, final int inMaximumEntries)
+    {
+        CASMutation<Object> mutation = new CASMutation<Object>()
+        {
             // This is only invoked when a value actually exists.
             public Object getNewValue(final Object current)
             {
-                // retrieve the list from the bytes stored in memcache
-                ArrayList<Long> toReturn = new ArrayList<Long>();
                 try
                 {
-                    toReturn = getListFromBytes(current);
-                }
-                catch (IOException e)
-                {
-                    // problem getting the key .. return a null so the client goes
-                    // to the database
-                    log.error("Unable to retrieve LIST key " + inKey + " from memcached.  Exception " + e.getMessage());
-                    toReturn = null;
-                }
-
-                // check list size and trim if necessary
-                if (toReturn != null && toReturn.size() > inMaximumEntries)
-                {
-                    ArrayList<Long> trimmed = (ArrayList<Long>) toReturn.subList(0, inMaximumEntries - 1);
-
-                    // set the trimmed list back to memcached
-                    toReturn = trimmed;
+                    LongArrayList values = getLongsFromBytes(current);
+                    if (values.size() <= inMaximumEntries)
+                    {
+                        return current;
+                    }
 
                     if (log.isInfoEnabled())
                     {
                         log.info("Trimming list " + inKey + " to size of " + inMaximumEntries);
                     }
-                }
-
-                try
-                {
-                    return getBytesFromList(toReturn);
+                    return getBytesFromList(values.subList(0, inMaximumEntries));
                 }
                 catch (IOException e)
                 {
-                    // CAS timeout exceeded, return null because nothing was
-                    // stored in cache.
-                    log.error("Error in getList in getBytesFromList.  Key " + inKey + " Exception " + e.toString());
-                    return null;
+                    // leave the value alone; a bad value will be reloaded by the next reader
+                    log.error("Unable to trim LIST key " + inKey + " in memcached.  Exception " + e.getMessage());
+                    return current;
                 }
             }
         };
 
-        // The mutator who'll do all the low-level stuff.
         SerializingTranscoder transcoder = new SerializingTranscoder();
         CASMutator<Object> mutator = new CASMutator<Object>(client, transcoder);
 
-        // This returns whatever value was successfully stored within the
-        // cache -- either the initial list as above, or a mutated existing
-        // one
         try
         {
-            // The initial value -- only used when there's no list stored under
-            // the key.
             byte[] initialValue = null;
-
-            return getListFromBytes(mutator.cas(inKey, initialValue, MAX_EXPIRATION_TIME, mutation));
+            mutator.cas(inKey, initialValue, MAX_EXPIRATION_TIME, mutation);
         }
         catch (Exception e)
         {
-            // error, return null because nothing was stored in cache.
-            log.error("Error in getList, general exception.  Key " + inKey + " Exception " + e.toString());
-            return null;
+            log.error("Error in trimList, general exception.  Key " + inKey + " Exception " + e.toString());
         }
     }
 
@@ -481,30 +797,7 @@ public class MemcachedCache implements Cache
      */
     protected byte[] getBytesFromList(final List<Long> inListOfLongs) throws IOException
     {
-        if (inListOfLongs == null)
-        {
-            return null;
-        }
-
-        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-        DataOutputStream out = new DataOutputStream(bytes);
-        byte[] toReturn = null;
-        try
-        {
-            for (Long oneLong : inListOfLongs)
-            {
-                out.writeLong(oneLong);
-                out.flush();
-            }
-
-            toReturn = bytes.toByteArray();
-        }
-        finally
-        {
-            out.close();
-        }
-
-        return toReturn;
+        return listCodec.encode(inListOfLongs);
     }
 
     /**
@@ -518,28 +811,22 @@ public class MemcachedCache implements Cache
      */
     protected ArrayList<Long> getListFromBytes(final Object inBytesOfLongs) throws IOException
     {
-        if (inBytesOfLongs == null)
-        {
-            return null;
-        }
-
-        ArrayList<Long> toReturn = new ArrayList<Long>();
-
-        ByteArrayInputStream bytes = new ByteArrayInputStream((byte[]) inBytesOfLongs);
-        DataInputStream input = new DataInputStream(bytes);
-        try
-        {
-            while (input.available() > 0)
-            {
-                toReturn.add(input.readLong());
-            }
-        }
-        finally
-        {
-            input.close();
-        }
+        LongArrayList values = getLongsFromBytes(inBytesOfLongs);
+        return values == null ? null : values.toArrayList();
+    }
 
-        return toReturn;
+    /**
+     * Convert the memcached object into a primitive-backed list of longs without boxing.
+     *
+     * @param inBytesOfLongs
+     *            the byte[] to convert
+     * @return the values, null if inBytesOfLongs is null
+     * @throws IOException
+     *             thrown if any errors
+     */
+    protected LongArrayList getLongsFromBytes(final Object inBytesOfLongs) throws IOException
+    {
+        return listCodec.decode((byte[]) inBytesOfLongs);
     }
 
     /**
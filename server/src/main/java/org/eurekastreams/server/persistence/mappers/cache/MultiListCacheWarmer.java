@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+
+/**
+ * Warms the cached id lists (e.g. followers) of a chunk of entities: loads the lists with one set-based mapper call and
+ * writes them with one batched multiSetList.
+ */
+public class MultiListCacheWarmer implements DomainMapper<List<Long>, Integer>
+{
+    /**
+     * Loads the lists by entity id.
+     */
+    private final DomainMapper<List<Long>, Map<Long, List<Long>>> loader;
+
+    /**
+     * Cache key prefix.
+     */
+    private final String cacheKeyPrefix;
+
+    /**
+     * Cache.
+     */
+    private final Cache cache;
+
+    /**
+     * Constructor.
+     *
+     * @param inLoader
+     *            loads the lists by entity id.
+     * @param inCacheKeyPrefix
+     *            cache key prefix; the entity id is the suffix.
+     * @param inCache
+     *            cache.
+     */
+    public MultiListCacheWarmer(final DomainMapper<List<Long>, Map<Long, List<Long>>> inLoader,
+            final String inCacheKeyPrefix, final Cache inCache)
+    {
+        loader = inLoader;
+        cacheKeyPrefix = inCacheKeyPrefix;
+        cache = inCache;
+    }
+
+    /**
+     * Warm the lists of the given entities.
+     *
+     * @param inIds
+     *            entity ids.
+     * @return number of lists written.
+     */
+    @Override
+    public Integer execute(final List<Long> inIds)
+    {
+        Map<String, List<Long>> values = new HashMap<String, List<Long>>();
+        for (Map.Entry<Long, List<Long>> entry : loader.execute(inIds).entrySet())
+        {
+            values.put(cacheKeyPrefix + entry.getKey(), entry.getValue());
+        }
+        cache.multiSetList(values);
+        return values.size();
+    }
+}
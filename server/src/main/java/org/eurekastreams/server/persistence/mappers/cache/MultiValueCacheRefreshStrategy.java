@@ -58,6 +58,11 @@ public class MultiValueCacheRefreshStrategy<Request, Response> implements
      */
     private final Cache cache;
 
+    /**
+     * Whether to add the values rather than set them.
+     */
+    private boolean addOnly = false;
+
     /**
      * Constructor.
      * 
@@ -81,9 +86,23 @@ public class MultiValueCacheRefreshStrategy<Request, Response> implements
 
     }
 
+    /**
+     * Set whether to add the values (store them only if not already cached) rather than set them. Refreshers which
+     * only run after a cache miss should add, so a newer value is not overwritten and no invalidation is broadcast to
+     * other nodes' near caches; refreshers which run after an update must set.
+     * 
+     * @param inAddOnly
+     *            true to add the values.
+     */
+    public void setAddOnly(final boolean inAddOnly)
+    {
+        addOnly = inAddOnly;
+    }
+
     /**
      * Loop through all the response objects and cache them according to key, suffix transformer and value transformer
-     * results.
+     * results. This can run on cache misses in the request path, so each value is written with a set or add, which do
+     * not wait for memcached, rather than with multiSet, which does.
      * 
      * @param inRequest
      *            request objects.
@@ -101,7 +120,14 @@ public class MultiValueCacheRefreshStrategy<Request, Response> implements
             {
                 log.debug("Caching value for key: " + key);
             }
-            cache.set(key, cacheValueTransformer.transform(r));
+            if (addOnly)
+            {
+                cache.add(key, cacheValueTransformer.transform(r));
+            }
+            else
+            {
+                cache.set(key, cacheValueTransformer.transform(r));
+            }
 
         }
 
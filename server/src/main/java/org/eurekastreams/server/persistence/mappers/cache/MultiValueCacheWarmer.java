@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+
+/**
+ * Warms a cached value (e.g. page properties) of a chunk of entities: loads the values with one set-based mapper call
+ * and writes them with one batched multiSet.
+ */
+public class MultiValueCacheWarmer implements DomainMapper<List<Long>, Integer>
+{
+    /**
+     * Loads the values by entity id.
+     */
+    private final DomainMapper<List<Long>, ? extends Map<Long, ?>> loader;
+
+    /**
+     * Cache key prefix.
+     */
+    private final String cacheKeyPrefix;
+
+    /**
+     * Cache.
+     */
+    private final Cache cache;
+
+    /**
+     * Constructor.
+     *
+     * @param inLoader
+     *            loads the values by entity id; entities without a value are left out.
+     * @param inCacheKeyPrefix
+     *            cache key prefix; the entity id is the suffix.
+     * @param inCache
+     *            cache.
+     */
+    public MultiValueCacheWarmer(final DomainMapper<List<Long>, ? extends Map<Long, ?>> inLoader,
+            final String inCacheKeyPrefix, final Cache inCache)
+    {
+        loader = inLoader;
+        cacheKeyPrefix = inCacheKeyPrefix;
+        cache = inCache;
+    }
+
+    /**
+     * Warm the values of the given entities.
+     *
+     * @param inIds
+     *            entity ids.
+     * @return number of values written.
+     */
+    @Override
+    public Integer execute(final List<Long> inIds)
+    {
+        Map<String, Object> values = new HashMap<String, Object>();
+        for (Map.Entry<Long, ?> entry : loader.execute(inIds).entrySet())
+        {
+            if (entry.getValue() != null)
+            {
+                values.put(cacheKeyPrefix + entry.getKey(), entry.getValue());
+            }
+        }
+        cache.multiSet(values);
+        return values.size();
+    }
+}
@@ -0,0 +1,781 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+
+/**
+ * In-process (L1) cache in front of another Cache (typically the memcached client). Only keys whose prefix is
+ * configured with a time-to-live are held locally; everything else, and all list operations, pass straight through.
+ *
+ * Values are held in serialized form and deserialized on every hit, so callers get their own copy just as they would
+ * from memcached and cannot corrupt the shared entry by mutating it. The local store is bounded by the total size of
+ * the serialized values and evicts least recently used entries first.
+ *
+ * Every write through this cache drops the local entry and broadcasts an invalidation so other nodes drop theirs; the
+ * TTL bounds how stale an entry can get if a broadcast is missed. Adds, which only write back values loaded after a
+ * miss, are not broadcast.
+ */
+public class NearCache implements Cache
+{
+    /**
+     * Logger.
+     */
+    private final Log log = LogFactory.make();
+
+    /**
+     * Milliseconds in a second.
+     */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /**
+     * Largest fraction of the total size allowed for a single entry.
+     */
+    private static final int MAX_ENTRY_FRACTION = 16;
+
+    /**
+     * Initial capacity of the entry map.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /**
+     * Load factor of the entry map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * The cache behind this one.
+     */
+    private final Cache backingCache;
+
+    /**
+     * Tells other nodes about invalidations; may be null.
+     */
+    private final CacheInvalidationBroadcaster broadcaster;
+
+    /**
+     * Unique id of this near cache, used to ignore our own broadcasts.
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * Maximum total bytes of serialized values held.
+     */
+    private final long maxBytes;
+
+    /**
+     * Cacheable key prefixes, longest first.
+     */
+    private final String[] prefixes;
+
+    /**
+     * Time to live in milliseconds for each entry of prefixes.
+     */
+    private final long[] ttlMillis;
+
+    /**
+     * Statistics per prefix.
+     */
+    private final Map<String, PrefixStatistics> statistics = new HashMap<String, PrefixStatistics>();
+
+    /**
+     * The entries in access order; guarded by this.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY,
+            LOAD_FACTOR, true);
+
+    /**
+     * Total bytes of serialized values held; guarded by this.
+     */
+    private long currentBytes = 0;
+
+    /**
+     * Incremented on every invalidation; a load is only stored locally if no invalidation happened while it was in
+     * progress, so a slow load cannot put back a value that was just replaced.
+     */
+    private final AtomicLong invalidationCount = new AtomicLong();
+
+    /**
+     * Number of entries evicted to stay within maxBytes.
+     */
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * A locally held value.
+     */
+    private static class Entry
+    {
+        /** Serialized value. */
+        private final byte[] bytes;
+
+        /** When the entry expires. */
+        private final long expiresAt;
+
+        /**
+         * Constructor.
+         *
+         * @param inBytes
+         *            serialized value.
+         * @param inExpiresAt
+         *            when the entry expires.
+         */
+        public Entry(final byte[] inBytes, final long inExpiresAt)
+        {
+            bytes = inBytes;
+            expiresAt = inExpiresAt;
+        }
+    }
+
+    /**
+     * Hit and miss counts for a key prefix.
+     */
+    private static class PrefixStatistics
+    {
+        /** Hits. */
+        private final AtomicLong hits = new AtomicLong();
+
+        /** Misses. */
+        private final AtomicLong misses = new AtomicLong();
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inBackingCache
+     *            the cache behind this one.
+     * @param inBroadcaster
+     *            tells other nodes about invalidations; may be null for a single node.
+     * @param inMaxBytes
+     *            maximum total bytes of serialized values held.
+     * @param inTtlSecondsByKeyPrefix
+     *            the key prefixes (from CacheKeys) to hold locally, with the time to live in seconds of each.
+     */
+    public NearCache(final Cache inBackingCache, final CacheInvalidationBroadcaster inBroadcaster,
+            final long inMaxBytes, final Map<String, Integer> inTtlSecondsByKeyPrefix)
+    {
+        backingCache = inBackingCache;
+        broadcaster = inBroadcaster;
+        maxBytes = inMaxBytes;
+
+        List<String> sortedPrefixes = new ArrayList<String>(inTtlSecondsByKeyPrefix.keySet());
+        Collections.sort(sortedPrefixes, new Comparator<String>()
+        {
+            public int compare(final String inA, final String inB)
+            {
+                return inB.length() - inA.length();
+            }
+        });
+
+        prefixes = sortedPrefixes.toArray(new String[sortedPrefixes.size()]);
+        ttlMillis = new long[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++)
+        {
+            ttlMillis[i] = inTtlSecondsByKeyPrefix.get(prefixes[i]) * MILLIS_PER_SECOND;
+            statistics.put(prefixes[i], new PrefixStatistics());
+        }
+    }
+
+    /**
+     * @return the unique id of this near cache.
+     */
+    public String getNodeId()
+    {
+        return nodeId;
+    }
+
+    /**
+     * Find the configured prefix of a key.
+     *
+     * @param inKey
+     *            the key.
+     * @return the index of the prefix in prefixes, or -1 if the key is not held locally.
+     */
+    private int findPrefix(final String inKey)
+    {
+        for (int i = 0; i < prefixes.length; i++)
+        {
+            if (inKey.startsWith(prefixes[i]))
+            {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get a value from the local store.
+     *
+     * @param inKey
+     *            the key.
+     * @return the deserialized value, or null if not held or expired.
+     */
+    private Object getLocal(final String inKey)
+    {
+        Entry entry;
+        synchronized (this)
+        {
+            entry = entries.get(inKey);
+            if (entry != null && entry.expiresAt <= System.currentTimeMillis())
+            {
+                removeEntry(inKey);
+                entry = null;
+            }
+        }
+        if (entry == null)
+        {
+            return null;
+        }
+
+        try
+        {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(entry.bytes));
+            try
+            {
+                return in.readObject();
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        catch (Exception ex)
+        {
+            log.error("Unable to deserialize near cache value for key " + inKey, ex);
+            synchronized (this)
+            {
+                removeEntry(inKey);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Store a value loaded from the backing cache in the local store.
+     *
+     * @param inKey
+     *            the key.
+     * @param inPrefixIndex
+     *            index of the key's prefix.
+     * @param inValue
+     *            the value.
+     * @param inInvalidationCountAtLoad
+     *            the invalidation count before the value was loaded.
+     */
+    private void putLocal(final String inKey, final int inPrefixIndex, final Object inValue,
+            final long inInvalidationCountAtLoad)
+    {
+        if (!(inValue instanceof Serializable))
+        {
+            return;
+        }
+
+        byte[] bytes;
+        try
+        {
+            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(byteStream);
+            out.writeObject(inValue);
+            out.close();
+            bytes = byteStream.toByteArray();
+        }
+        catch (IOException ex)
+        {
+            log.debug("Unable to serialize value for near cache key " + inKey, ex);
+            return;
+        }
+
+        if (bytes.length > maxBytes / MAX_ENTRY_FRACTION)
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            if (invalidationCount.get() != inInvalidationCountAtLoad)
+            {
+                return;
+            }
+
+            removeEntry(inKey);
+            entries.put(inKey, new Entry(bytes, System.currentTimeMillis() + ttlMillis[inPrefixIndex]));
+            currentBytes += bytes.length;
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && eldest.hasNext())
+            {
+                currentBytes -= eldest.next().getValue().bytes.length;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Remove an entry from the local store; caller must hold the lock.
+     *
+     * @param inKey
+     *            the key.
+     */
+    private void removeEntry(final String inKey)
+    {
+        Entry removed = entries.remove(inKey);
+        if (removed != null)
+        {
+            currentBytes -= removed.bytes.length;
+        }
+    }
+
+    /**
+     * Drop keys from the local store without broadcasting.
+     *
+     * @param inKeys
+     *            the keys.
+     */
+    public void invalidateLocal(final Collection<String> inKeys)
+    {
+        synchronized (this)
+        {
+            invalidationCount.incrementAndGet();
+            for (String key : inKeys)
+            {
+                removeEntry(key);
+            }
+        }
+    }
+
+    /**
+     * Drop everything from the local store without broadcasting.
+     */
+    public void clearLocal()
+    {
+        synchronized (this)
+        {
+            invalidationCount.incrementAndGet();
+            entries.clear();
+            currentBytes = 0;
+        }
+    }
+
+    /**
+     * Drop a key locally and on other nodes, if it is one held locally.
+     *
+     * @param inKey
+     *            the key.
+     */
+    private void invalidate(final String inKey)
+    {
+        if (findPrefix(inKey) >= 0)
+        {
+            invalidate(Collections.singletonList(inKey));
+        }
+    }
+
+    /**
+     * Drop keys locally and on other nodes, skipping keys which are never held locally.
+     *
+     * @param inKeys
+     *            the keys.
+     */
+    private void invalidate(final Collection<String> inKeys)
+    {
+        List<String> held = new ArrayList<String>();
+        for (String key : inKeys)
+        {
+            if (findPrefix(key) >= 0)
+            {
+                held.add(key);
+            }
+        }
+        if (held.isEmpty())
+        {
+            return;
+        }
+
+        invalidateLocal(held);
+        if (broadcaster != null)
+        {
+            broadcaster.broadcastInvalidation(nodeId, held);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Object get(final String inKey)
+    {
+        int prefixIndex = findPrefix(inKey);
+        if (prefixIndex < 0)
+        {
+            return backingCache.get(inKey);
+        }
+
+        PrefixStatistics stats = statistics.get(prefixes[prefixIndex]);
+        Object value = getLocal(inKey);
+        if (value != null)
+        {
+            stats.hits.incrementAndGet();
+            return value;
+        }
+        stats.misses.incrementAndGet();
+
+        long invalidationCountAtLoad = invalidationCount.get();
+        value = backingCache.get(inKey);
+        if (value != null)
+        {
+            putLocal(inKey, prefixIndex, value, invalidationCountAtLoad);
+        }
+        return value;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Object> multiGet(final Collection<String> inKeys)
+    {
+        Map<String, Object> results = new HashMap<String, Object>();
+        List<String> remaining = new ArrayList<String>();
+
+        for (String key : inKeys)
+        {
+            int prefixIndex = findPrefix(key);
+            if (prefixIndex < 0)
+            {
+                remaining.add(key);
+                continue;
+            }
+
+            PrefixStatistics stats = statistics.get(prefixes[prefixIndex]);
+            Object value = getLocal(key);
+            if (value != null)
+            {
+                stats.hits.incrementAndGet();
+                results.put(key, value);
+            }
+            else
+            {
+                stats.misses.incrementAndGet();
+                remaining.add(key);
+            }
+        }
+
+        if (!remaining.isEmpty())
+        {
+            long invalidationCountAtLoad = invalidationCount.get();
+            Map<String, Object> loaded = backingCache.multiGet(remaining);
+            for (Map.Entry<String, Object> entry : loaded.entrySet())
+            {
+                results.put(entry.getKey(), entry.getValue());
+                int prefixIndex = findPrefix(entry.getKey());
+                if (prefixIndex >= 0 && entry.getValue() != null)
+                {
+                    putLocal(entry.getKey(), prefixIndex, entry.getValue(), invalidationCountAtLoad);
+                }
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        backingCache.clear();
+        clearLocal();
+        if (broadcaster != null)
+        {
+            broadcaster.broadcastInvalidation(nodeId, null);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void set(final String inKey, final Object inValue)
+    {
+        backingCache.set(inKey, inValue);
+        invalidate(inKey);
+    }
+
+    /**
+     * Adds without invalidating: the value was loaded from the database after a miss, so no node can hold a newer
+     * copy, and if a writer got there first its own invalidation covers the key.
+     *
+     * @param inKey
+     *            the key of the object to add.
+     * @param inValue
+     *            the object to store in the cache.
+     */
+    @Override
+    public void add(final String inKey, final Object inValue)
+    {
+        backingCache.add(inKey, inValue);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void delete(final String inKey)
+    {
+        backingCache.delete(inKey);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiDelete(final Collection<String> inKeys)
+    {
+        backingCache.multiDelete(inKeys);
+        invalidate(inKeys);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void deleteList(final String inKey)
+    {
+        backingCache.deleteList(inKey);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> getList(final String inKey, final int inMaximumEntries)
+    {
+        return backingCache.getList(inKey, inMaximumEntries);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> getList(final String inKey)
+    {
+        return backingCache.getList(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, ArrayList<Long>> multiGetList(final Collection<String> inKeys)
+    {
+        return backingCache.multiGetList(inKeys);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setList(final String inKey, final List<Long> inValue)
+    {
+        backingCache.setList(inKey, inValue);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSet(final Map<String, ?> inValues)
+    {
+        backingCache.multiSet(inValues);
+        invalidate(inValues.keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSetAsync(final Map<String, ?> inValues)
+    {
+        backingCache.multiSetAsync(inValues);
+        invalidate(inValues.keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSetList(final Map<String, ? extends List<Long>> inValues)
+    {
+        backingCache.multiSetList(inValues);
+        invalidate(inValues.keySet());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ArrayList<Long> setListCAS(final String inKey, final List<Long> inValue)
+    {
+        ArrayList<Long> result = backingCache.setListCAS(inKey, inValue);
+        invalidate(inKey);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfList(final String inKey, final List<Long> inValues)
+    {
+        backingCache.addToTopOfList(inKey, inValues);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addToTopOfList(final String inKey, final Long inValue)
+    {
+        backingCache.addToTopOfList(inKey, inValue);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiPrepend(final Collection<String> inKeys, final Long inValue)
+    {
+        backingCache.multiPrepend(inKeys, inValue);
+        invalidate(inKeys);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromList(final String inKey, final Long inValue)
+    {
+        backingCache.removeFromList(inKey, inValue);
+        invalidate(inKey);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromLists(final List<String> inKeys, final List<Long> inValues)
+    {
+        backingCache.removeFromLists(inKeys, inValues);
+        invalidate(inKeys);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Set<Long> addToSet(final String inKey, final Long inValue)
+    {
+        Set<Long> result = backingCache.addToSet(inKey, inValue);
+        invalidate(inKey);
+        return result;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeFromSet(final String inKey, final Long inValue)
+    {
+        backingCache.removeFromSet(inKey, inValue);
+        invalidate(inKey);
+    }
+
+    /**
+     * @return the number of local hits per key prefix.
+     */
+    public Map<String, Long> getHitCounts()
+    {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Map.Entry<String, PrefixStatistics> entry : statistics.entrySet())
+        {
+            counts.put(entry.getKey(), entry.getValue().hits.get());
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of local misses per key prefix.
+     */
+    public Map<String, Long> getMissCounts()
+    {
+        Map<String, Long> counts = new HashMap<String, Long>();
+        for (Map.Entry<String, PrefixStatistics> entry : statistics.entrySet())
+        {
+            counts.put(entry.getKey(), entry.getValue().misses.get());
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of entries evicted to stay within the size limit.
+     */
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    /**
+     * @return the number of entries held.
+     */
+    public synchronized int getEntryCount()
+    {
+        return entries.size();
+    }
+
+    /**
+     * @return the total bytes of serialized values held.
+     */
+    public synchronized long getSizeInBytes()
+    {
+        return currentBytes;
+    }
+}
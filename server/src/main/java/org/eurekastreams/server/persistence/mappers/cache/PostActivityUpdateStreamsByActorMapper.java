@@ -86,18 +86,18 @@ public class PostActivityUpdateStreamsByActorMapper extends CachedDomainMapper
             DomainGroupModelView group = bulkDomainGroupsByShortNameMapper
                     .execute(Collections.singletonList(uniqueKey)).get(0);
 
-            getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + group.getStreamId(), activityId);
+            addToStream(group.getStreamId(), activityId);
             break;
         case PERSON:
             PersonModelView person = getPersonModelViewByAccountIdMapper.execute(uniqueKey);
 
-            getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + person.getStreamId(), activityId);
+            addToStream(person.getStreamId(), activityId);
             break;
         case RESOURCE:
             StreamScope scope = getResourceStreamScopeIdByKeyMapper.execute(uniqueKey);
             if (scope != null)
             {
-                getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + scope.getId(), activityId);
+                addToStream(scope.getId(), activityId);
             }
 
             // if showInStream is true and author is person, add to actors (author)'s stream also.
@@ -105,7 +105,7 @@ public class PostActivityUpdateStreamsByActorMapper extends CachedDomainMapper
             {
                 PersonModelView actor = getPersonModelViewByAccountIdMapper.execute(activity.getActor()
                         .getUniqueIdentifier());
-                getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + actor.getStreamId(), activityId);
+                addToStream(actor.getStreamId(), activityId);
             }
 
             break;
@@ -113,4 +113,18 @@ public class PostActivityUpdateStreamsByActorMapper extends CachedDomainMapper
             break;
         }
     }
+
+    /**
+     * Adds an activity to the top of an entity stream and records it as the stream's newest.
+     *
+     * @param streamScopeId
+     *            the stream's scope id.
+     * @param activityId
+     *            the activity id.
+     */
+    private void addToStream(final long streamScopeId, final long activityId)
+    {
+        getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + streamScopeId, activityId);
+        getCache().set(CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + streamScopeId, activityId);
+    }
 }
@@ -33,7 +33,8 @@ public class RefreshSystemSettingsCacheMapperImpl extends CachedDomainMapper imp
     private final Log log = LogFactory.make();
 
     /**
-     * Refresh the SystemSettings cache with the input value.
+     * Refresh the SystemSettings cache with the input value. Only used after a cache miss, so the settings are added
+     * rather than set; updates delete the cached settings first.
      *
      * @param request
      *            nothing.
@@ -45,6 +46,6 @@ public class RefreshSystemSettingsCacheMapperImpl extends CachedDomainMapper imp
     {
         log.info("Updating SystemSettings in cache");
 
-        getCache().set(CacheKeys.SYSTEM_SETTINGS, inSystemSettings);
+        getCache().add(CacheKeys.SYSTEM_SETTINGS, inSystemSettings);
     }
 }
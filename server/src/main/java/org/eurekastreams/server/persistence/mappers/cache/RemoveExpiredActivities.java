@@ -15,6 +15,7 @@
  */
 package org.eurekastreams.server.persistence.mappers.cache;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.eurekastreams.server.persistence.mappers.stream.CachedDomainMapper;
@@ -43,21 +44,29 @@ public class RemoveExpiredActivities extends CachedDomainMapper
         getEntityManager().createQuery("DELETE FROM Comment c WHERE c.target.id in (:expiredActivityIds)")
                 .setParameter("expiredActivityIds", expiredActivityIds).executeUpdate();
 
-        // delete comments for activities from cache
+        // delete comments and activities from cache: read all of the comment id lists at once, then evict every key
+        // in one multi-delete
+        List<String> commentListKeys = new ArrayList<String>(expiredActivityIds.size());
         for (long activityId : expiredActivityIds)
         {
-            // get comment ids
-            List<Long> commentIds = getCache().getList(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activityId);
-            if (commentIds != null && commentIds.size() > 0)
+            commentListKeys.add(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activityId);
+        }
+        List<String> keys = new ArrayList<String>(commentListKeys);
+        for (List<Long> commentIds : getCache().multiGetList(commentListKeys).values())
+        {
+            if (commentIds != null)
             {
                 for (long commentId : commentIds)
                 {
-                    getCache().delete(CacheKeys.COMMENT_BY_ID + commentId);
+                    keys.add(CacheKeys.COMMENT_BY_ID + commentId);
                 }
             }
-            getCache().delete(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activityId);
-            getCache().delete(CacheKeys.ACTIVITY_BY_ID + activityId);
         }
+        for (long activityId : expiredActivityIds)
+        {
+            keys.add(CacheKeys.ACTIVITY_BY_ID + activityId);
+        }
+        getCache().multiDelete(keys);
 
         // delete any hashtags stored to streams on behalf of this activity
         getEntityManager().createQuery("DELETE FROM StreamHashTag WHERE activity.id in (:expiredActivityIds)")
@@ -80,6 +80,15 @@ public class RotatingCacheClient implements Cache
         writeCacheRotator.getNext().addToTopOfList(inKey, inValue);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiPrepend(final Collection<String> inKeys, final Long inValue)
+    {
+        writeCacheRotator.getNext().multiPrepend(inKeys, inValue);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -98,6 +107,15 @@ public class RotatingCacheClient implements Cache
         writeCacheRotator.getNext().delete(inKey);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiDelete(final Collection<String> inKeys)
+    {
+        writeCacheRotator.getNext().multiDelete(inKeys);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -185,6 +203,15 @@ public class RotatingCacheClient implements Cache
         writeCacheRotator.getNext().set(inKey, inValue);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void add(final String inKey, final Object inValue)
+    {
+        writeCacheRotator.getNext().add(inKey, inValue);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -194,6 +221,33 @@ public class RotatingCacheClient implements Cache
         writeCacheRotator.getNext().setList(inKey, inValue);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSet(final Map<String, ?> inValues)
+    {
+        writeCacheRotator.getNext().multiSet(inValues);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSetAsync(final Map<String, ?> inValues)
+    {
+        writeCacheRotator.getNext().multiSetAsync(inValues);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void multiSetList(final Map<String, ? extends List<Long>> inValues)
+    {
+        writeCacheRotator.getNext().multiSetList(inValues);
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -55,6 +55,12 @@ public class DecoratedPartialResponseDomainMapper<Request, Response> implements
      */
     private RefreshStrategy<Request, Response> refreshStrategy;
 
+    /**
+     * Optional tracker of decorated mapper loads in flight, to keep concurrent misses on the same request from all
+     * hitting the decorated mapper.
+     */
+    private SingleFlight singleFlight;
+
     /**
      * Constructor with data refreshing. The refresher is used to update the main datasource with the results from the
      * decorated one.
@@ -88,6 +94,7 @@ public class DecoratedPartialResponseDomainMapper<Request, Response> implements
      *            the request to use to retreive the data
      * @return the response as built from the mapper and the decorated mapper
      */
+    @SuppressWarnings("unchecked")
     public Response execute(final Request request)
     {
         PartialMapperResponse<Request, Response> partialResponse = partialMapper.execute(request);
@@ -116,28 +123,43 @@ public class DecoratedPartialResponseDomainMapper<Request, Response> implements
         Response decoratedResponse = null;
         if (decoratedMapper != null)
         {
-            if (log.isInfoEnabled())
+            if (singleFlight == null)
             {
-                log.info("Trying to complete response with decorated mapper - " + decoratedMapper.getClass());
+                decoratedResponse = loadFromDecoratedMapper(partialResponse.getUnhandledRequest());
             }
-
-            // get the response from the next mapper in the chain
-            decoratedResponse = decoratedMapper.execute(partialResponse.getUnhandledRequest());
-
-            if (log.isInfoEnabled())
+            else
             {
-                if (decoratedResponse != null)
+                SingleFlight.Flight flight = singleFlight.takeOff(partialResponse.getUnhandledRequest());
+                if (flight == null)
+                {
+                    decoratedResponse = loadAsLeader(partialResponse.getUnhandledRequest());
+                }
+                else if (flight.hasResponse())
                 {
-                    log.info("Found response with decorated response mapper - " + decoratedMapper.getClass());
+                    // another caller just loaded the same request - take its response rather than re-reading this
+                    // datasource, which its refresh may not have reached yet
+                    if (log.isInfoEnabled())
+                    {
+                        log.info("Using response loaded by another caller - " + decoratedMapper.getClass());
+                    }
+                    decoratedResponse = (Response) flight.getResponse();
                 }
                 else
                 {
-                    log.info("Found no response with decorated response mapper - " + decoratedMapper.getClass());
+                    // the other caller's load failed or timed out - look again before loading ourselves
+                    partialResponse = partialMapper.execute(request);
+                    if (!partialResponse.hasUnhandledRequest())
+                    {
+                        if (log.isInfoEnabled())
+                        {
+                            log.info("Found complete response with partial response mapper after waiting for load - "
+                                    + partialMapper.getClass());
+                        }
+                        return partialResponse.getResponse();
+                    }
+                    decoratedResponse = loadFromDecoratedMapper(partialResponse.getUnhandledRequest());
                 }
             }
-
-            // refresh this datasource
-            refreshStrategy.refresh(partialResponse.getUnhandledRequest(), decoratedResponse);
         }
         else
         {
@@ -154,4 +176,77 @@ public class DecoratedPartialResponseDomainMapper<Request, Response> implements
 
     }
 
+    /**
+     * Load as the single flight's leader, handing the response to any callers waiting on the same request.
+     *
+     * @param unhandledRequest
+     *            the part of the request the partial mapper couldn't satisfy
+     * @return the response from the decorated mapper
+     */
+    private Response loadAsLeader(final Request unhandledRequest)
+    {
+        boolean landed = false;
+        try
+        {
+            Response decoratedResponse = loadFromDecoratedMapper(unhandledRequest);
+            singleFlight.land(unhandledRequest, decoratedResponse);
+            landed = true;
+            return decoratedResponse;
+        }
+        finally
+        {
+            if (!landed)
+            {
+                singleFlight.land(unhandledRequest);
+            }
+        }
+    }
+
+    /**
+     * Get the response from the decorated mapper and refresh this datasource with it.
+     *
+     * @param unhandledRequest
+     *            the part of the request the partial mapper couldn't satisfy
+     * @return the response from the decorated mapper
+     */
+    private Response loadFromDecoratedMapper(final Request unhandledRequest)
+    {
+        if (log.isInfoEnabled())
+        {
+            log.info("Trying to complete response with decorated mapper - " + decoratedMapper.getClass());
+        }
+
+        // get the response from the next mapper in the chain
+        Response decoratedResponse = decoratedMapper.execute(unhandledRequest);
+
+        if (log.isInfoEnabled())
+        {
+            if (decoratedResponse != null)
+            {
+                log.info("Found response with decorated response mapper - " + decoratedMapper.getClass());
+            }
+            else
+            {
+                log.info("Found no response with decorated response mapper - " + decoratedMapper.getClass());
+            }
+        }
+
+        // refresh this datasource
+        refreshStrategy.refresh(unhandledRequest, decoratedResponse);
+        return decoratedResponse;
+    }
+
+    /**
+     * Coalesce concurrent decorated mapper loads of the same unhandled request. Callers which wait on another's load
+     * get their own copy of its response; if that load fails, they re-run the partial mapper and load for themselves.
+     * Responses must be Serializable to be handed over.
+     *
+     * @param inSingleFlight
+     *            tracker of loads in flight.
+     */
+    public void setSingleFlight(final SingleFlight inSingleFlight)
+    {
+        singleFlight = inSingleFlight;
+    }
+
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.chained;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang.SerializationException;
+import org.apache.commons.lang.SerializationUtils;
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+
+/**
+ * Keeps track of loads in flight so that concurrent callers missing on the same request only load it once. The first
+ * caller for a request becomes the leader and performs the load; callers arriving while the load is in flight wait for
+ * the leader to finish and take its response instead of loading themselves.
+ *
+ * The leader's response is serialized as it lands and each waiter gets its own deserialized copy, so no loaded object
+ * is shared between threads. The copy is only taken when a caller has joined the flight, so a load nobody waited on
+ * costs nothing extra. A waiter whose leader failed, or whose response can't be serialized, gets no response; so does
+ * one which joins just as the leader lands, and it simply loads for itself.
+ */
+public class SingleFlight
+{
+    /**
+     * Logger.
+     */
+    private static Log log = LogFactory.make();
+
+    /**
+     * Stand-in for a null request, which ConcurrentHashMap can't hold.
+     */
+    private static final Object NULL_KEY = new Object();
+
+    /**
+     * Default maximum time to wait for a leader, in milliseconds.
+     */
+    private static final long DEFAULT_MAX_WAIT_MILLIS = 10000;
+
+    /**
+     * Loads in flight, keyed by request.
+     */
+    private final ConcurrentMap<Object, Flight> inFlight = new ConcurrentHashMap<Object, Flight>();
+
+    /**
+     * Maximum time to wait for a leader before giving up and loading anyway, in milliseconds.
+     */
+    private long maxWaitMillis = DEFAULT_MAX_WAIT_MILLIS;
+
+    /**
+     * Number of loads performed by leaders.
+     */
+    private final AtomicLong loadCount = new AtomicLong();
+
+    /**
+     * Number of callers which waited on a leader instead of loading.
+     */
+    private final AtomicLong coalescedLoadCount = new AtomicLong();
+
+    /**
+     * Number of callers which gave up waiting on a leader.
+     */
+    private final AtomicLong waitTimeoutCount = new AtomicLong();
+
+    /**
+     * Either start a load for the request or wait for the one already in flight to finish. A caller which gets null
+     * back must call {@link #land(Object, Object)} or {@link #land(Object)} with the same request when its load is
+     * complete (the latter in a finally block).
+     *
+     * @param inRequest
+     *            the request being loaded.
+     * @return null if the caller is the leader and must perform the load; otherwise the other caller's flight, which
+     *         has landed unless the wait timed out.
+     */
+    public Flight takeOff(final Object inRequest)
+    {
+        Flight existing = inFlight.putIfAbsent(key(inRequest), new Flight());
+        if (existing == null)
+        {
+            loadCount.incrementAndGet();
+            return null;
+        }
+
+        coalescedLoadCount.incrementAndGet();
+        existing.waiters.incrementAndGet();
+        try
+        {
+            if (!existing.landing.await(maxWaitMillis, TimeUnit.MILLISECONDS))
+            {
+                waitTimeoutCount.incrementAndGet();
+                log.warn("Timed out waiting for in-flight load of " + inRequest);
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+        }
+        return existing;
+    }
+
+    /**
+     * Mark the leader's load for a request as complete, handing its response to any waiters.
+     *
+     * @param inRequest
+     *            the request which was loaded.
+     * @param inResponse
+     *            the response loaded.
+     */
+    public void land(final Object inRequest, final Object inResponse)
+    {
+        Flight flight = inFlight.remove(key(inRequest));
+        if (flight != null)
+        {
+            byte[] snapshot = null;
+            if (flight.waiters.get() > 0 && (inResponse == null || inResponse instanceof Serializable))
+            {
+                try
+                {
+                    snapshot = SerializationUtils.serialize((Serializable) inResponse);
+                }
+                catch (SerializationException ex)
+                {
+                    log.warn("Unable to hand the response for " + inRequest + " to waiters", ex);
+                }
+            }
+            flight.land(snapshot);
+        }
+    }
+
+    /**
+     * Mark the leader's load for a request as complete without a response, releasing any waiters to load for
+     * themselves. Has no effect if the leader already landed with its response.
+     *
+     * @param inRequest
+     *            the request which was loaded.
+     */
+    public void land(final Object inRequest)
+    {
+        Flight flight = inFlight.remove(key(inRequest));
+        if (flight != null)
+        {
+            flight.land(null);
+        }
+    }
+
+    /**
+     * @param inRequest
+     *            the request.
+     * @return the map key for the request.
+     */
+    private Object key(final Object inRequest)
+    {
+        return inRequest == null ? NULL_KEY : inRequest;
+    }
+
+    /**
+     * @param inMaxWaitMillis
+     *            maximum time to wait for a leader before giving up, in milliseconds.
+     */
+    public void setMaxWaitMillis(final long inMaxWaitMillis)
+    {
+        maxWaitMillis = inMaxWaitMillis;
+    }
+
+    /**
+     * @return number of loads performed by leaders.
+     */
+    public long getLoadCount()
+    {
+        return loadCount.get();
+    }
+
+    /**
+     * @return number of callers which waited on a leader instead of loading.
+     */
+    public long getCoalescedLoadCount()
+    {
+        return coalescedLoadCount.get();
+    }
+
+    /**
+     * @return number of callers which gave up waiting on a leader.
+     */
+    public long getWaitTimeoutCount()
+    {
+        return waitTimeoutCount.get();
+    }
+
+    /**
+     * @return number of loads currently in flight.
+     */
+    public int getLoadsInFlight()
+    {
+        return inFlight.size();
+    }
+
+    /**
+     * A leader's load, as seen by the callers waiting on it.
+     */
+    public static class Flight
+    {
+        /**
+         * Released when the leader lands.
+         */
+        private final CountDownLatch landing = new CountDownLatch(1);
+
+        /**
+         * Number of callers which joined the flight to wait for the leader.
+         */
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        /**
+         * The leader's serialized response, or null if it landed without one (or hasn't landed).
+         */
+        private volatile byte[] snapshot;
+
+        /**
+         * Land the flight.
+         *
+         * @param inSnapshot
+         *            the serialized response, or null if there is none to hand over.
+         */
+        void land(final byte[] inSnapshot)
+        {
+            snapshot = inSnapshot;
+            landing.countDown();
+        }
+
+        /**
+         * @return whether the leader landed with a response for the waiters.
+         */
+        public boolean hasResponse()
+        {
+            return snapshot != null;
+        }
+
+        /**
+         * @return the caller's own copy of the leader's response; only meaningful if {@link #hasResponse()}.
+         */
+        public Object getResponse()
+        {
+            return snapshot == null ? null : SerializationUtils.deserialize(snapshot);
+        }
+    }
+}
@@ -23,26 +23,30 @@ import javax.persistence.Query;
 import org.eurekastreams.server.persistence.mappers.BaseDomainMapper;
 
 /**
- * This mapper finds all activities that have passed a given expiration date. Also, any activity that has been "starred"
- * is not included in the returned list.
+ * This mapper finds activities that have passed a given expiration date, a chunk at a time in id order. Also, any
+ * activity that has been "starred" is not included in the returned list.
  */
 @SuppressWarnings("unchecked")
 public class GetExpiredActivities extends BaseDomainMapper
 {
     /**
-     * Executes database queries to find expired activities that are not starred.
+     * Executes database queries to find the next chunk of expired activities that are not starred.
      *
      * @param expirationDate
      *            the date an activity is considered to expire.
-     * @return the list of expired activity ids.
+     * @param afterId
+     *            only return activities with ids greater than this.
+     * @param maxResults
+     *            most ids to return.
+     * @return the expired activity ids in ascending order; empty when there are no more.
      */
-    public List<Long> execute(final Date expirationDate)
+    public List<Long> execute(final Date expirationDate, final long afterId, final int maxResults)
     {
-        // Gets all expired activities
         Query q = getEntityManager()
-                .createQuery("select id from Activity where postedTime < :expirationDate "
-                        + "and id not in (select pk.activityId from StarredActivity)")
-                .setParameter("expirationDate", expirationDate);
+                .createQuery("select id from Activity where postedTime < :expirationDate and id > :afterId "
+                        + "and id not in (select pk.activityId from StarredActivity) order by id")
+                .setParameter("expirationDate", expirationDate).setParameter("afterId", afterId)
+                .setMaxResults(maxResults);
         return q.getResultList();
     }
 }
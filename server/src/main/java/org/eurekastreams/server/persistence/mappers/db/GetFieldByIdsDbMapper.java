@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
+
+/**
+ * Db Mapper to return a value for each of a list of entity ids in a single query. The query selects (entity id, value)
+ * pairs and takes the entity ids as the parameter "ids".
+ */
+public class GetFieldByIdsDbMapper extends BaseArgDomainMapper<List<Long>, Map<Long, Serializable>>
+{
+    /**
+     * The query.
+     */
+    private final String query;
+
+    /**
+     * Constructor.
+     *
+     * @param inQuery
+     *            query selecting (entity id, value) pairs for the entity ids in :ids.
+     */
+    public GetFieldByIdsDbMapper(final String inQuery)
+    {
+        query = inQuery;
+    }
+
+    /**
+     * Returns the value for each of the given entities.
+     *
+     * @param inIds
+     *            The entity ids.
+     * @return The values by entity id; entities without a value are left out.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<Long, Serializable> execute(final List<Long> inIds)
+    {
+        Map<Long, Serializable> results = new HashMap<Long, Serializable>();
+        if (inIds.isEmpty())
+        {
+            return results;
+        }
+
+        List<Object[]> rows = getEntityManager().createQuery(query).setParameter("ids", inIds).getResultList();
+        for (Object[] row : rows)
+        {
+            results.put((Long) row[0], (Serializable) row[1]);
+        }
+        return results;
+    }
+}
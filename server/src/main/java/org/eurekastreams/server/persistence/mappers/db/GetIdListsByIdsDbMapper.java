@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
+
+/**
+ * Db Mapper to return a list of ids (e.g. followers) for each of a list of entity ids in a single query. The query
+ * selects (entity id, listed id) pairs and takes the entity ids as the parameter "ids".
+ */
+public class GetIdListsByIdsDbMapper extends BaseArgDomainMapper<List<Long>, Map<Long, List<Long>>>
+{
+    /**
+     * The query.
+     */
+    private final String query;
+
+    /**
+     * Constructor.
+     *
+     * @param inQuery
+     *            query selecting (entity id, listed id) pairs for the entity ids in :ids.
+     */
+    public GetIdListsByIdsDbMapper(final String inQuery)
+    {
+        query = inQuery;
+    }
+
+    /**
+     * Returns the listed ids for each of the given entities.
+     *
+     * @param inIds
+     *            The entity ids.
+     * @return The listed ids by entity id; every given entity id is present, with an empty list if it has none.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<Long, List<Long>> execute(final List<Long> inIds)
+    {
+        Map<Long, List<Long>> results = new HashMap<Long, List<Long>>();
+        if (inIds.isEmpty())
+        {
+            return results;
+        }
+        for (Long id : inIds)
+        {
+            results.put(id, new ArrayList<Long>());
+        }
+
+        List<Object[]> rows = getEntityManager().createQuery(query).setParameter("ids", inIds).getResultList();
+        for (Object[] row : rows)
+        {
+            results.get(row[0]).add((Long) row[1]);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.util.List;
+
+import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
+
+/**
+ * Db Mapper to page through the ids of every entity of a type in ascending order, a chunk at a time. Paging by id
+ * rather than by offset keeps each page cheap however far in it is and lets a walk pick up where it left off.
+ */
+public class GetIdsAfterIdDbMapper extends BaseArgDomainMapper<Long, List<Long>>
+{
+    /**
+     * Name of the entity.
+     */
+    private final String entityName;
+
+    /**
+     * Most ids to return at once.
+     */
+    private final int chunkSize;
+
+    /**
+     * Constructor.
+     *
+     * @param inEntityName
+     *            Name of the entity.
+     * @param inChunkSize
+     *            Most ids to return at once.
+     */
+    public GetIdsAfterIdDbMapper(final String inEntityName, final int inChunkSize)
+    {
+        entityName = inEntityName;
+        chunkSize = inChunkSize;
+    }
+
+    /**
+     * Returns the next chunk of ids.
+     *
+     * @param inAfterId
+     *            Return ids greater than this.
+     * @return Up to chunkSize ids in ascending order; empty when there are no more.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<Long> execute(final Long inAfterId)
+    {
+        return getEntityManager().createQuery("SELECT id FROM " + entityName + " WHERE id > :afterId ORDER BY id")
+                .setParameter("afterId", inAfterId).setMaxResults(chunkSize).getResultList();
+    }
+}
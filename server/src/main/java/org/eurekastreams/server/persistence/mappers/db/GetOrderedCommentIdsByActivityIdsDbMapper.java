@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
+
+/**
+ * Db Mapper to return the ordered comment ids for each of a list of activity ids in a single query.
+ */
+public class GetOrderedCommentIdsByActivityIdsDbMapper extends BaseArgDomainMapper<List<Long>, List<List<Long>>>
+{
+    /**
+     * Returns the comment ids for each of the given activities.
+     *
+     * @param inActivityIds
+     *            The activity ids.
+     * @return A list of comment id lists (sorted ascending), one per input activity id in the same order.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public List<List<Long>> execute(final List<Long> inActivityIds)
+    {
+        List<List<Long>> results = new ArrayList<List<Long>>(inActivityIds.size());
+        if (inActivityIds.isEmpty())
+        {
+            return results;
+        }
+
+        List<Object[]> rows = getEntityManager().createQuery(
+                "SELECT c.target.id, c.id FROM Comment c WHERE c.target.id IN (:activityIds) ORDER BY c.id ASC")
+                .setParameter("activityIds", inActivityIds).getResultList();
+
+        Map<Long, List<Long>> commentIdsByActivityId = new HashMap<Long, List<Long>>();
+        for (Object[] row : rows)
+        {
+            Long activityId = (Long) row[0];
+            List<Long> commentIds = commentIdsByActivityId.get(activityId);
+            if (commentIds == null)
+            {
+                commentIds = new ArrayList<Long>();
+                commentIdsByActivityId.put(activityId, commentIds);
+            }
+            commentIds.add((Long) row[1]);
+        }
+
+        for (Long activityId : inActivityIds)
+        {
+            List<Long> commentIds = commentIdsByActivityId.get(activityId);
+            results.add(commentIds == null ? new ArrayList<Long>() : commentIds);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.domain.Person;
+import org.eurekastreams.server.persistence.mappers.BaseArgDomainMapper;
+import org.eurekastreams.server.persistence.mappers.cache.Transformer;
+import org.eurekastreams.server.search.modelview.PersonPagePropertiesDTO;
+
+/**
+ * Db Mapper to return the page properties for each of a list of person ids, loading the people in a single query.
+ */
+public class GetPersonPagePropertiesByIdsDbMapper extends
+        BaseArgDomainMapper<List<Long>, Map<Long, PersonPagePropertiesDTO>>
+{
+    /**
+     * Transformer from person to page properties.
+     */
+    private final Transformer<Person, PersonPagePropertiesDTO> transformer;
+
+    /**
+     * Constructor.
+     *
+     * @param inTransformer
+     *            Transformer from person to page properties.
+     */
+    public GetPersonPagePropertiesByIdsDbMapper(final Transformer<Person, PersonPagePropertiesDTO> inTransformer)
+    {
+        transformer = inTransformer;
+    }
+
+    /**
+     * Returns the page properties of each of the given people.
+     *
+     * @param inPersonIds
+     *            The person ids.
+     * @return The page properties by person id.
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Map<Long, PersonPagePropertiesDTO> execute(final List<Long> inPersonIds)
+    {
+        Map<Long, PersonPagePropertiesDTO> results = new HashMap<Long, PersonPagePropertiesDTO>();
+        if (inPersonIds.isEmpty())
+        {
+            return results;
+        }
+
+        List<Person> people = getEntityManager().createQuery("FROM Person WHERE id IN (:ids)").setParameter("ids",
+                inPersonIds).getResultList();
+        for (Person person : people)
+        {
+            results.put(person.getId(), transformer.transform(person));
+        }
+        return results;
+    }
+}
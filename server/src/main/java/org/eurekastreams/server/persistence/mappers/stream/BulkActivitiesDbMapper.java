@@ -16,11 +16,12 @@
 package org.eurekastreams.server.persistence.mappers.stream;
 
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.hibernate.ModelViewResultTransformer;
@@ -52,11 +53,6 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
      */
     private final Log logger = LogFactory.make();
 
-    /**
-     * Mapper to get PersonModelView by account id.
-     */
-    private final DomainMapper<String, PersonModelView> getPersonModelViewByAccountIdMapper;
-
     /**
      * Mapper to get PersonModelViews by account ids.
      */
@@ -68,9 +64,9 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
     private final GetDomainGroupsByShortNames groupMapper;
 
     /**
-     * DAO for comment id list.
+     * DAO for comment id lists by activity ids.
      */
-    private final DomainMapper<Long, List<Long>> commentIdListDAO;
+    private final DomainMapper<List<Long>, List<List<Long>>> commentIdListsDAO;
 
     /**
      * DAO for comments by id.
@@ -78,26 +74,24 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
     private final DomainMapper<List<Long>, List<CommentDTO>> commentsByIdDAO;
 
     /**
-     * @param inGetPersonModelViewByAccountIdMapper
-     *            Mapper to get single PersonModelView by account id.
      * @param inGetPersonModelViewsByAccountIdsMapper
      *            Mapper to get multiple PersonModelViews by account ids.
      * @param inGroupMapper
      *            mapper to get domain groups by short name
-     * @param inCommentIdListDAO
-     *            comment ID list DAO.
+     * @param inCommentIdListsDAO
+     *            DAO for comment ID lists by activity ids (one list per id, in request order).
      * @param inCommentsByIdDAO
      *            comments by ID DAO.
      */
-    public BulkActivitiesDbMapper(final DomainMapper<String, PersonModelView> inGetPersonModelViewByAccountIdMapper,
+    public BulkActivitiesDbMapper(
             final DomainMapper<List<String>, List<PersonModelView>> inGetPersonModelViewsByAccountIdsMapper,
-            final GetDomainGroupsByShortNames inGroupMapper, final DomainMapper<Long, List<Long>> inCommentIdListDAO,
+            final GetDomainGroupsByShortNames inGroupMapper,
+            final DomainMapper<List<Long>, List<List<Long>>> inCommentIdListsDAO,
             final DomainMapper<List<Long>, List<CommentDTO>> inCommentsByIdDAO)
     {
-        getPersonModelViewByAccountIdMapper = inGetPersonModelViewByAccountIdMapper;
         getPersonModelViewsByAccountIdsMapper = inGetPersonModelViewsByAccountIdsMapper;
         groupMapper = inGroupMapper;
-        commentIdListDAO = inCommentIdListDAO;
+        commentIdListsDAO = inCommentIdListsDAO;
         commentsByIdDAO = inCommentsByIdDAO;
     }
 
@@ -146,90 +140,76 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
                 new ActivityDTOFactory());
         criteria.setResultTransformer(resultTransformer);
         List<ActivityDTO> results = criteria.list();
+
+        // first pass: collect every person and group referenced by the page so each is fetched in one call
+        Set<String> accountIds = new HashSet<String>();
+        Set<String> groupShortNames = new HashSet<String>();
         for (ActivityDTO activity : results)
         {
             activityMap.put(activity.getId(), activity);
 
-            // fills in data from cached view of stream
-            List<Long> streamIds = new ArrayList<Long>();
-            streamIds.add(activity.getDestinationStream().getId());
-
-            // get the display name for the destination stream
-            if (activity.getDestinationStream().getUniqueIdentifier() != null)
+            collectEntity(activity.getDestinationStream().getType(), activity.getDestinationStream()
+                    .getUniqueIdentifier(), accountIds, groupShortNames);
+            collectEntity(activity.getActor().getType(), activity.getActor().getUniqueIdentifier(), accountIds,
+                    groupShortNames);
+            if (activity.getOriginalActor() != null)
             {
-                if (activity.getDestinationStream().getType() == EntityType.PERSON)
-                {
-                    PersonModelView person = getPersonModelViewByAccountIdMapper.execute(activity
-                            .getDestinationStream().getUniqueIdentifier());
-                    activity.getDestinationStream().setDisplayName(person.getDisplayName());
+                collectEntity(activity.getOriginalActor().getType(), activity.getOriginalActor()
+                        .getUniqueIdentifier(), accountIds, groupShortNames);
+            }
+        }
 
-                }
-                else if (activity.getDestinationStream().getType() == EntityType.GROUP)
-                {
-                    DomainGroupModelView group = groupMapper.fetchUniqueResult(activity.getDestinationStream()
-                            .getUniqueIdentifier());
-                    activity.getDestinationStream().setDisplayName(group.getName());
-                }
+        Map<String, StreamDTO> people = new HashMap<String, StreamDTO>();
+        if (!accountIds.isEmpty())
+        {
+            for (PersonModelView person : getPersonModelViewsByAccountIdsMapper.execute(new ArrayList<String>(
+                    accountIds)))
+            {
+                people.put(person.getAccountId().toLowerCase(), person);
             }
+        }
+        Map<String, StreamDTO> groups = new HashMap<String, StreamDTO>();
+        if (!groupShortNames.isEmpty())
+        {
+            for (DomainGroupModelView group : groupMapper.execute(new ArrayList<String>(groupShortNames)))
+            {
+                groups.put(group.getShortName().toLowerCase(), group);
+            }
+        }
 
-            final StreamEntityDTO actor = activity.getActor();
-            if (actor.getType() == EntityType.PERSON)
+        // second pass: fill in the activities from what was fetched
+        for (ActivityDTO activity : results)
+        {
+            // get the display name for the destination stream
+            final StreamEntityDTO destination = activity.getDestinationStream();
+            if (destination.getUniqueIdentifier() != null
+                    && (destination.getType() == EntityType.PERSON || destination.getType() == EntityType.GROUP))
             {
-                List<PersonModelView> people = getPersonModelViewsByAccountIdsMapper.execute(Collections
-                        .singletonList(actor.getUniqueIdentifier()));
-                if (!people.isEmpty())
+                StreamDTO destinationStreamDTO = findEntity(destination, people, groups);
+                if (destinationStreamDTO == null)
                 {
-                    final PersonModelView person = people.get(0);
-                    actor.setId(person.getEntityId());
-                    actor.setDestinationEntityId(person.getEntityId());
-                    actor.setDisplayName(person.getDisplayName());
-                    actor.setAvatarId(person.getAvatarId());
+                    throw new RuntimeException("Could not find destination stream " + destination.getType() + " "
+                            + destination.getUniqueIdentifier() + " for activity " + activity.getId());
                 }
+                destination.setDisplayName(destinationStreamDTO.getDisplayName());
             }
-            else if (actor.getType() == EntityType.GROUP)
+
+            // fills in data from cached view of actor
+            final StreamEntityDTO actor = activity.getActor();
+            StreamDTO actorStreamDTO = findEntity(actor, people, groups);
+            if (actorStreamDTO != null)
             {
-                List<DomainGroupModelView> groups = groupMapper.execute(Collections.singletonList(actor
-                        .getUniqueIdentifier()));
-                if (!groups.isEmpty())
-                {
-                    final DomainGroupModelView group = groups.get(0);
-                    actor.setId(group.getEntityId());
-                    actor.setDestinationEntityId(group.getEntityId());
-                    actor.setDisplayName(group.getName());
-                    actor.setAvatarId(group.getAvatarId());
-                }
+                populateEntity(actor, actorStreamDTO);
             }
+
             // fills in data from cached view of original actor
             final StreamEntityDTO originalActor = activity.getOriginalActor();
             if (originalActor != null)
             {
-                StreamDTO originalActorStreamDTO = null;
-
-                if (originalActor.getType() == EntityType.PERSON)
-                {
-                    List<PersonModelView> people = getPersonModelViewsByAccountIdsMapper.execute(Collections
-                            .singletonList(originalActor.getUniqueIdentifier()));
-                    if (!people.isEmpty())
-                    {
-                        originalActorStreamDTO = people.get(0);
-                    }
-                }
-                if (originalActor.getType() == EntityType.GROUP)
-                {
-                    List<DomainGroupModelView> oagroups = groupMapper.execute(Collections.singletonList(originalActor
-                            .getUniqueIdentifier()));
-                    if (!oagroups.isEmpty())
-                    {
-                        originalActorStreamDTO = oagroups.get(0);
-                    }
-                }
-
+                StreamDTO originalActorStreamDTO = findEntity(originalActor, people, groups);
                 if (originalActorStreamDTO != null)
                 {
-                    originalActor.setId(originalActorStreamDTO.getEntityId());
-                    originalActor.setDestinationEntityId(originalActorStreamDTO.getEntityId());
-                    originalActor.setDisplayName(originalActorStreamDTO.getDisplayName());
-                    originalActor.setAvatarId(originalActorStreamDTO.getAvatarId());
+                    populateEntity(originalActor, originalActorStreamDTO);
                 }
                 else
                 {
@@ -242,10 +222,10 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
                             + " type: " + originalActor.getType());
                 }
             }
-
-            loadCommentInfo(activity); // set the first/last comment and comment count.
         }
 
+        loadCommentInfo(results); // set the first/last comment and comment count.
+
         final List<ActivityDTO> orderedResults = new LinkedList<ActivityDTO>();
 
         for (int i = 0; i < activityIds.size(); i++)
@@ -260,45 +240,155 @@ public class BulkActivitiesDbMapper extends BaseArgDomainMapper<List<Long>, List
     }
 
     /**
-     * Load the first/last comments of an activity if present, also sets the comment count.
-     * 
-     * @param activity
-     *            ActivityDTO to load comment info for.
+     * Add a person or group stream entity to the set of ids to look up.
+     *
+     * @param type
+     *            the entity type.
+     * @param uniqueId
+     *            the account id or short name; may be null.
+     * @param accountIds
+     *            account ids to look up.
+     * @param groupShortNames
+     *            group short names to look up.
+     */
+    private void collectEntity(final EntityType type, final String uniqueId, final Set<String> accountIds,
+            final Set<String> groupShortNames)
+    {
+        if (uniqueId == null)
+        {
+            return;
+        }
+        if (type == EntityType.PERSON)
+        {
+            accountIds.add(uniqueId);
+        }
+        else if (type == EntityType.GROUP)
+        {
+            groupShortNames.add(uniqueId);
+        }
+    }
+
+    /**
+     * Find the fetched person or group for a stream entity.
+     *
+     * @param entity
+     *            the stream entity.
+     * @param people
+     *            people by lower-cased account id.
+     * @param groups
+     *            groups by lower-cased short name.
+     * @return the person or group, or null if not found.
+     */
+    private StreamDTO findEntity(final StreamEntityDTO entity, final Map<String, StreamDTO> people,
+            final Map<String, StreamDTO> groups)
+    {
+        if (entity.getUniqueIdentifier() == null)
+        {
+            return null;
+        }
+        if (entity.getType() == EntityType.PERSON)
+        {
+            return people.get(entity.getUniqueIdentifier().toLowerCase());
+        }
+        if (entity.getType() == EntityType.GROUP)
+        {
+            return groups.get(entity.getUniqueIdentifier().toLowerCase());
+        }
+        return null;
+    }
+
+    /**
+     * Copy the id, name and avatar of a person or group into a stream entity.
+     *
+     * @param entity
+     *            the stream entity to fill in.
+     * @param source
+     *            the person or group.
      */
-    private void loadCommentInfo(final ActivityDTO activity)
+    private void populateEntity(final StreamEntityDTO entity, final StreamDTO source)
     {
-        List<Long> commentIds = commentIdListDAO.execute(activity.getId());
-        int numOfComments = commentIds.size();
-        activity.setCommentCount(numOfComments);
+        entity.setId(source.getEntityId());
+        entity.setDestinationEntityId(source.getEntityId());
+        entity.setDisplayName(source.getDisplayName());
+        entity.setAvatarId(source.getAvatarId());
+    }
 
-        // short circuit if nothing to do.
-        if (numOfComments == 0)
+    /**
+     * Load the first/last comments of the activities if present, also sets the comment counts. Fetches the comment id
+     * lists for all activities in one call and the first/last comments for all activities in another.
+     *
+     * @param activities
+     *            ActivityDTOs to load comment info for.
+     */
+    private void loadCommentInfo(final List<ActivityDTO> activities)
+    {
+        if (activities.isEmpty())
         {
             return;
         }
 
+        List<Long> activityIds = new ArrayList<Long>(activities.size());
+        for (ActivityDTO activity : activities)
+        {
+            activityIds.add(activity.getId());
+        }
+        List<List<Long>> commentIdLists = commentIdListsDAO.execute(activityIds);
+        if (commentIdLists.size() != activities.size())
+        {
+            throw new RuntimeException("Error loading comment ids for Activities: " + activityIds);
+        }
+
         // get the ids for the first and last comments.
-        ArrayList<Long> firstLastCommentIds = new ArrayList<Long>();
-        firstLastCommentIds.add(commentIds.get(0));
-        if (numOfComments > 1)
+        List<Long> firstLastCommentIds = new ArrayList<Long>();
+        for (int i = 0; i < activities.size(); i++)
         {
-            firstLastCommentIds.add(commentIds.get(commentIds.size() - 1));
+            List<Long> commentIds = commentIdLists.get(i);
+            activities.get(i).setCommentCount(commentIds.size());
+            if (!commentIds.isEmpty())
+            {
+                firstLastCommentIds.add(commentIds.get(0));
+                if (commentIds.size() > 1)
+                {
+                    firstLastCommentIds.add(commentIds.get(commentIds.size() - 1));
+                }
+            }
         }
 
-        // get the commentDTOs.
-        List<CommentDTO> firstLastCommentDTOs = commentsByIdDAO.execute(firstLastCommentIds);
+        // short circuit if nothing to do.
+        if (firstLastCommentIds.isEmpty())
+        {
+            return;
+        }
 
-        // make sure we got what we asked for.
-        if (firstLastCommentDTOs.size() != firstLastCommentIds.size())
+        // get the commentDTOs.
+        Map<Long, CommentDTO> commentsById = new HashMap<Long, CommentDTO>();
+        for (CommentDTO comment : commentsByIdDAO.execute(firstLastCommentIds))
         {
-            throw new RuntimeException("Error loading first/last comments for Activity: " + activity.getId());
+            commentsById.put(comment.getId(), comment);
         }
 
-        // set the commentDTOs in the activity appropriately.
-        activity.setFirstComment(firstLastCommentDTOs.get(0));
-        if (firstLastCommentDTOs.size() > 1)
+        // set the commentDTOs in the activities appropriately, making sure we got what we asked for.
+        for (int i = 0; i < activities.size(); i++)
         {
-            activity.setLastComment(firstLastCommentDTOs.get(1));
+            ActivityDTO activity = activities.get(i);
+            List<Long> commentIds = commentIdLists.get(i);
+            if (commentIds.isEmpty())
+            {
+                continue;
+            }
+
+            CommentDTO first = commentsById.get(commentIds.get(0));
+            CommentDTO last = commentIds.size() > 1 ? commentsById.get(commentIds.get(commentIds.size() - 1)) : first;
+            if (first == null || last == null)
+            {
+                throw new RuntimeException("Error loading first/last comments for Activity: " + activity.getId());
+            }
+
+            activity.setFirstComment(first);
+            if (commentIds.size() > 1)
+            {
+                activity.setLastComment(last);
+            }
         }
     }
 }
@@ -15,7 +15,10 @@
  */
 package org.eurekastreams.server.persistence.mappers.stream;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.logging.LogFactory;
@@ -104,10 +107,9 @@ public class PostCachedActivity extends CachedDomainMapper
             // this has a shared link - add this activity id to the top of the shared resource's stream in cache
             log.info("Adding activity with a shared resource (id:" + activity.getSharedLink().getStreamScope().getId()
                     + ") to the top of the shared resource's cached activity stream.");
-            getCache()
-                    .addToTopOfList(
-                            CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + activity.getSharedLink().getStreamScope().getId(),
-                            activityId);
+            long sharedScopeId = activity.getSharedLink().getStreamScope().getId();
+            getCache().addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + sharedScopeId, activityId);
+            getCache().set(CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + sharedScopeId, activityId);
         }
 
         if (activity.getShowInStream())
@@ -116,6 +118,9 @@ public class PostCachedActivity extends CachedDomainMapper
             log.trace("Adding activity id " + activityId + " into everyone activity list.");
             getCache().addToTopOfList(CacheKeys.EVERYONE_ACTIVITY_IDS, activityId);
         }
+
+        // let clients waiting on composite streams know there is something new
+        getCache().set(CacheKeys.LATEST_ACTIVITY_ID, activityId);
     }
 
     /**
@@ -129,10 +134,25 @@ public class PostCachedActivity extends CachedDomainMapper
     private void updateActivitiesByFollowingCacheLists(final long inPersonId, final long inActivityId)
     {
         List<Long> followers = personFollowersMapper.execute(inPersonId);
+        if (followers.isEmpty())
+        {
+            return;
+        }
+
+        List<String> keys = new ArrayList<String>(followers.size());
+        for (Long follower : followers)
+        {
+            keys.add(CacheKeys.ACTIVITIES_BY_FOLLOWING + follower);
+        }
+
+        getCache().multiPrepend(keys, inActivityId);
 
+        // let clients waiting on the followers' following streams know there is something new
+        Map<String, Long> latest = new HashMap<String, Long>();
         for (Long follower : followers)
         {
-            getCache().addToTopOfList(CacheKeys.ACTIVITIES_BY_FOLLOWING + follower, inActivityId);
+            latest.put(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + follower, inActivityId);
         }
+        getCache().multiSetAsync(latest);
     }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An image in its stored, encoded form, ready to be sent to a client as is.
+ */
+public class EncodedImage
+{
+    /**
+     * Mask for a byte.
+     */
+    private static final int BYTE_MASK = 0xff;
+
+    /**
+     * Hex digits.
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * Bits in a hex digit.
+     */
+    private static final int HEX_DIGIT_BITS = 4;
+
+    /**
+     * Mask for a hex digit.
+     */
+    private static final int HEX_DIGIT_MASK = 0xf;
+
+    /**
+     * Leading bytes of a PNG.
+     */
+    private static final int[] PNG_SIGNATURE = { 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n' };
+
+    /**
+     * Leading bytes of a JPEG.
+     */
+    private static final int[] JPEG_SIGNATURE = { 0xff, 0xd8, 0xff };
+
+    /**
+     * Leading bytes of a GIF.
+     */
+    private static final int[] GIF_SIGNATURE = { 'G', 'I', 'F', '8' };
+
+    /**
+     * The encoded bytes.
+     */
+    private final byte[] bytes;
+
+    /**
+     * The MIME type of the bytes.
+     */
+    private final String contentType;
+
+    /**
+     * Strong entity tag (quoted), derived from the bytes.
+     */
+    private final String entityTag;
+
+    /**
+     * Constructor.
+     *
+     * @param inBytes
+     *            the encoded bytes.
+     * @param inContentType
+     *            the MIME type of the bytes.
+     */
+    public EncodedImage(final byte[] inBytes, final String inContentType)
+    {
+        bytes = inBytes;
+        contentType = inContentType;
+        entityTag = computeEntityTag(inBytes);
+    }
+
+    /**
+     * Determine the MIME type of encoded image bytes from their signature.
+     *
+     * @param data
+     *            the bytes.
+     * @return the MIME type, or null if the format is not one browsers are sure to display.
+     */
+    public static String sniffContentType(final byte[] data)
+    {
+        if (startsWith(data, PNG_SIGNATURE))
+        {
+            return "image/png";
+        }
+        if (startsWith(data, JPEG_SIGNATURE))
+        {
+            return "image/jpeg";
+        }
+        if (startsWith(data, GIF_SIGNATURE))
+        {
+            return "image/gif";
+        }
+        return null;
+    }
+
+    /**
+     * @param data
+     *            the bytes.
+     * @param signature
+     *            the expected leading bytes.
+     * @return if data starts with the signature.
+     */
+    private static boolean startsWith(final byte[] data, final int[] signature)
+    {
+        if (data.length < signature.length)
+        {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++)
+        {
+            if ((data[i] & BYTE_MASK) != signature[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Build the entity tag. It comes from the content rather than the identifier since an identifier can be rewritten
+     * in place (e.g. re-cropping an avatar).
+     *
+     * @param data
+     *            the bytes.
+     * @return the quoted entity tag.
+     */
+    private static String computeEntityTag(final byte[] data)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2 + 2);
+            sb.append('"');
+            for (byte b : digest)
+            {
+                sb.append(HEX[(b >> HEX_DIGIT_BITS) & HEX_DIGIT_MASK]).append(HEX[b & HEX_DIGIT_MASK]);
+            }
+            return sb.append('"').toString();
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            // every JVM is required to have MD5
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * @return the encoded bytes.
+     */
+    public byte[] getBytes()
+    {
+        return bytes;
+    }
+
+    /**
+     * @return the MIME type of the bytes.
+     */
+    public String getContentType()
+    {
+        return contentType;
+    }
+
+    /**
+     * @return strong entity tag (quoted), derived from the bytes.
+     */
+    public String getEntityTag()
+    {
+        return entityTag;
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * In-memory cache of encoded images by identifier, bounded by the total number of image bytes held. The least recently
+ * used images are dropped first. Entries also expire after a maximum age so that changes made on other nodes of a
+ * cluster (which can't invalidate this node's copy) are picked up.
+ */
+public class ImageByteCache
+{
+    /**
+     * A cached image and when it was loaded.
+     */
+    private static class Entry
+    {
+        /** The image. */
+        private final EncodedImage image;
+
+        /** When the image was loaded. */
+        private final long loadedAt;
+
+        /**
+         * Constructor.
+         *
+         * @param inImage
+         *            the image.
+         * @param inLoadedAt
+         *            when the image was loaded.
+         */
+        public Entry(final EncodedImage inImage, final long inLoadedAt)
+        {
+            image = inImage;
+            loadedAt = inLoadedAt;
+        }
+    }
+
+    /**
+     * Initial capacity of the map.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * Load factor of the map.
+     */
+    private static final float LOAD_FACTOR = 0.75f;
+
+    /**
+     * Most image bytes to hold.
+     */
+    private final long maxBytes;
+
+    /**
+     * How long an entry is good for, in milliseconds.
+     */
+    private final long maxAgeMillis;
+
+    /**
+     * Entries in least to most recently used order.
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(INITIAL_CAPACITY,
+            LOAD_FACTOR, true);
+
+    /**
+     * Image bytes currently held.
+     */
+    private long currentBytes = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param inMaxBytes
+     *            most image bytes to hold.
+     * @param inMaxAgeMillis
+     *            how long an entry is good for, in milliseconds.
+     */
+    public ImageByteCache(final long inMaxBytes, final long inMaxAgeMillis)
+    {
+        maxBytes = inMaxBytes;
+        maxAgeMillis = inMaxAgeMillis;
+    }
+
+    /**
+     * Get an image.
+     *
+     * @param identifier
+     *            the image identifier.
+     * @return the image, or null if not cached (or expired).
+     */
+    public synchronized EncodedImage get(final String identifier)
+    {
+        Entry entry = entries.get(identifier);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.loadedAt > maxAgeMillis)
+        {
+            remove(identifier);
+            return null;
+        }
+        return entry.image;
+    }
+
+    /**
+     * Add an image, dropping the least recently used ones to make room. Images too big to ever fit are not cached.
+     *
+     * @param identifier
+     *            the image identifier.
+     * @param image
+     *            the image.
+     */
+    public synchronized void put(final String identifier, final EncodedImage image)
+    {
+        int size = image.getBytes().length;
+        if (size > maxBytes)
+        {
+            return;
+        }
+
+        remove(identifier);
+        Iterator<Map.Entry<String, Entry>> iter = entries.entrySet().iterator();
+        while (currentBytes + size > maxBytes && iter.hasNext())
+        {
+            currentBytes -= iter.next().getValue().image.getBytes().length;
+            iter.remove();
+        }
+
+        entries.put(identifier, new Entry(image, System.currentTimeMillis()));
+        currentBytes += size;
+    }
+
+    /**
+     * Drop an image.
+     *
+     * @param identifier
+     *            the image identifier.
+     */
+    public synchronized void remove(final String identifier)
+    {
+        Entry entry = entries.remove(identifier);
+        if (entry != null)
+        {
+            currentBytes -= entry.image.getBytes().length;
+        }
+    }
+
+    /**
+     * @return image bytes currently held.
+     */
+    public synchronized long getCurrentBytes()
+    {
+        return currentBytes;
+    }
+
+    /**
+     * @return number of images currently held.
+     */
+    public synchronized int getCount()
+    {
+        return entries.size();
+    }
+}
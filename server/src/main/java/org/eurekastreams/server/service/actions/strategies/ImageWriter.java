@@ -62,6 +62,11 @@ public class ImageWriter
      */
     private GetImageByIdentifier getMapper;
 
+    /**
+     * Cache of encoded images for serving (optional).
+     */
+    private ImageByteCache byteCache;
+
     /**
      * Constructor.
      * @param inInsertMapper insert mapper.
@@ -105,6 +110,7 @@ public class ImageWriter
                 imageInDb.setImageBlob(baos.toByteArray());
                 updateMapper.execute(new PersistenceRequest<Image>(imageInDb));
             }
+            evict(identifier);
         }
         catch (Exception ex)
         {
@@ -135,6 +141,7 @@ public class ImageWriter
             imageInDb.setImageBlob(fileItem.get());
             updateMapper.execute(new PersistenceRequest<Image>(imageInDb));
         }
+        evict(identifier);
 
     }
 
@@ -147,6 +154,7 @@ public class ImageWriter
     public void delete(final String identifier)
     {
         deleteMapper.execute(identifier);
+        evict(identifier);
     }
 
     /**
@@ -162,6 +170,8 @@ public class ImageWriter
         Image image = getMapper.execute(orig);
         image.setImageIdentifier(newIdentifier);
         updateMapper.execute(new PersistenceRequest<Image>(image));
+        evict(orig);
+        evict(newIdentifier);
     }
 
     /**
@@ -188,6 +198,80 @@ public class ImageWriter
         }
     }
 
+    /**
+     * Read an image in its stored encoding, for sending to a client without decoding it. Images stored in a format
+     * browsers may not display are converted to PNG (once, as they are cached).
+     *
+     * @param identifier
+     *            the path to read from.
+     * @return the encoded image, or null if there is no such image.
+     * @throws IOException
+     *             evil IO error.
+     */
+    public EncodedImage readEncoded(final String identifier) throws IOException
+    {
+        if (byteCache != null)
+        {
+            EncodedImage cached = byteCache.get(identifier);
+            if (cached != null)
+            {
+                return cached;
+            }
+        }
+
+        Image image = getMapper.execute(identifier);
+        if (image == null || image.getImageBlob() == null)
+        {
+            return null;
+        }
+
+        byte[] bytes = image.getImageBlob();
+        String contentType = EncodedImage.sniffContentType(bytes);
+        if (contentType == null)
+        {
+            RenderedImage decoded = ImageIO.read(new ByteArrayInputStream(bytes));
+            if (decoded == null)
+            {
+                log.error("Stored image is in an unreadable format: " + identifier);
+                return null;
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ImageIO.write(decoded, "png", baos);
+            bytes = baos.toByteArray();
+            contentType = "image/png";
+        }
+
+        EncodedImage encoded = new EncodedImage(bytes, contentType);
+        if (byteCache != null)
+        {
+            byteCache.put(identifier, encoded);
+        }
+        return encoded;
+    }
+
+    /**
+     * Drop an image from the cache after it changes.
+     *
+     * @param identifier
+     *            the image identifier.
+     */
+    private void evict(final String identifier)
+    {
+        if (byteCache != null)
+        {
+            byteCache.remove(identifier);
+        }
+    }
+
+    /**
+     * @param inByteCache
+     *            cache of encoded images for serving.
+     */
+    public void setByteCache(final ImageByteCache inByteCache)
+    {
+        byteCache = inByteCache;
+    }
+
     /**
      * Get an Image from a File.
      * @param file the file.
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies.activity.plugins;
+
+import java.util.Random;
+
+import org.eurekastreams.server.domain.stream.plugins.Feed;
+
+/**
+ * Decides when a feed is next polled. Feeds are spread across their update interval by a random jitter, so feeds
+ * subscribed at the same time drift apart instead of all coming due in the same refresh cycle. Feeds whose refreshes
+ * keep failing or are slow are backed off exponentially, up to a limit, and return to their normal interval after a
+ * good refresh.
+ */
+public class FeedRefreshScheduler
+{
+    /** Largest number of doublings of the interval when backing off. */
+    private static final int MAX_BACKOFF_SHIFT = 10;
+
+    /** Fraction of the interval over which the next refresh is spread. */
+    private final double jitterFraction;
+
+    /** Refreshes whose fetch takes longer than this many milliseconds count against the feed like failures. */
+    private final long slowFetchMillis;
+
+    /** Longest a feed is backed off beyond its interval, in minutes. */
+    private final long maxBackoffMinutes;
+
+    /** Source of the jitter. */
+    private final Random random;
+
+    /**
+     * Constructor.
+     *
+     * @param inJitterFraction
+     *            fraction of the interval over which the next refresh is spread.
+     * @param inSlowFetchMillis
+     *            refreshes whose fetch takes longer than this many milliseconds count against the feed like failures.
+     * @param inMaxBackoffMinutes
+     *            longest a feed is backed off beyond its interval, in minutes.
+     */
+    public FeedRefreshScheduler(final double inJitterFraction, final long inSlowFetchMillis,
+            final long inMaxBackoffMinutes)
+    {
+        this(inJitterFraction, inSlowFetchMillis, inMaxBackoffMinutes, new Random());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param inJitterFraction
+     *            fraction of the interval over which the next refresh is spread.
+     * @param inSlowFetchMillis
+     *            refreshes whose fetch takes longer than this many milliseconds count against the feed like failures.
+     * @param inMaxBackoffMinutes
+     *            longest a feed is backed off beyond its interval, in minutes.
+     * @param inRandom
+     *            source of the jitter.
+     */
+    public FeedRefreshScheduler(final double inJitterFraction, final long inSlowFetchMillis,
+            final long inMaxBackoffMinutes, final Random inRandom)
+    {
+        jitterFraction = inJitterFraction;
+        slowFetchMillis = inSlowFetchMillis;
+        maxBackoffMinutes = inMaxBackoffMinutes;
+        random = inRandom;
+    }
+
+    /**
+     * Records the outcome of a refresh on the feed and sets when it is next due.
+     *
+     * @param feed
+     *            The feed; its update frequency (or its plugin's) is the normal interval.
+     * @param nowInMinutes
+     *            The current time in total minutes in epoch time.
+     * @param failed
+     *            If the refresh failed.
+     * @param fetchMillis
+     *            How long the fetch took.
+     */
+    public void scheduleNext(final Feed feed, final long nowInMinutes, final boolean failed, final long fetchMillis)
+    {
+        int failureCount = (failed || fetchMillis > slowFetchMillis) ? feed.getFailureCount() + 1 : 0;
+        feed.setFailureCount(failureCount);
+        feed.setNextRefresh(nowInMinutes + getDelay(getInterval(feed), failureCount));
+    }
+
+    /**
+     * Gets the number of minutes until a feed is next due.
+     *
+     * @param interval
+     *            The feed's normal interval in minutes.
+     * @param failureCount
+     *            The number of consecutive refreshes which failed or were slow.
+     * @return The delay in minutes.
+     */
+    long getDelay(final long interval, final int failureCount)
+    {
+        long backoff = 0;
+        if (failureCount > 0)
+        {
+            backoff = Math.min(maxBackoffMinutes, interval * ((1L << Math.min(failureCount, MAX_BACKOFF_SHIFT)) - 1));
+        }
+        long spread = (long) (interval * jitterFraction);
+        long jitter = spread > 0 ? (long) (random.nextDouble() * (spread + 1)) - spread / 2 : 0;
+        return Math.max(1, interval + backoff + jitter);
+    }
+
+    /**
+     * Gets the normal interval of a feed.
+     *
+     * @param feed
+     *            The feed.
+     * @return The interval in minutes.
+     */
+    private long getInterval(final Feed feed)
+    {
+        Long interval = feed.getUpdateFrequency();
+        if (interval == null && feed.getPlugin() != null)
+        {
+            interval = feed.getPlugin().getUpdateFrequency();
+        }
+        return interval == null ? 0 : interval;
+    }
+}
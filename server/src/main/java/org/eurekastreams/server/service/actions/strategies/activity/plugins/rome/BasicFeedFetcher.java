@@ -21,6 +21,7 @@ import java.util.Map;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.eurekastreams.server.service.utility.http.HttpCacheValidators;
 import org.eurekastreams.server.service.utility.http.HttpDocumentFetcher;
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
@@ -52,14 +53,19 @@ public class BasicFeedFetcher implements FeedFetcher
      * {@inheritDoc}
      */
     public SyndFeed fetchFeed(final String inFeedUrl, final Map<String, String> inHttpHeaders,
-            final String inProxyHost, final String inProxyPort, final int inTimeout) throws IOException,
-            ParserConfigurationException, FeedException, SAXException
+            final String inProxyHost, final String inProxyPort, final int inTimeout,
+            final HttpCacheValidators inValidators) throws IOException, ParserConfigurationException, FeedException,
+            SAXException
     {
         DocumentBuilderFactory domFactory = DocumentBuilderFactory.newInstance();
         domFactory.setNamespaceAware(true);
         Document doc =
                 documentFetcher.fetchDocument(inFeedUrl, inHttpHeaders, inProxyHost, inProxyPort, inTimeout,
-                        domFactory);
+                        domFactory, inValidators);
+        if (doc == null)
+        {
+            return null;
+        }
 
         SyndFeedInput input = new SyndFeedInput();
         return input.build(doc);
@@ -19,6 +19,8 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Map;
 
+import org.eurekastreams.server.service.utility.http.HttpCacheValidators;
+
 import com.sun.syndication.feed.synd.SyndFeed;
 
 /**
@@ -78,9 +80,14 @@ public class BasicPluginFeedFetcher implements PluginFeedFetcherStrategy
      */
     @Override
     public Map<String, SyndFeed> execute(final String inFeedUrl, final Collection<String> inRequestors,
-            final String inProxyHost, final String inProxyPort, final int inTimeout) throws Exception
+            final String inProxyHost, final String inProxyPort, final int inTimeout,
+            final HttpCacheValidators inValidators) throws Exception
     {
-        return Collections.singletonMap(null, fetcher.fetchFeed(inFeedUrl, httpHeaders, inProxyHost, inProxyPort,
-                inTimeout));
+        SyndFeed feed = fetcher.fetchFeed(inFeedUrl, httpHeaders, inProxyHost, inProxyPort, inTimeout, inValidators);
+        if (feed == null)
+        {
+            return Collections.emptyMap();
+        }
+        return Collections.singletonMap(null, feed);
     }
 }
@@ -22,6 +22,7 @@ import java.util.regex.Pattern;
 
 import org.apache.commons.logging.Log;
 import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.server.service.utility.http.HttpCacheValidators;
 
 import com.sun.syndication.feed.synd.SyndFeed;
 
@@ -95,6 +96,26 @@ public class FeedFactory
      */
     public Map<String, SyndFeed> getSyndicatedFeed(final String inFeedUrl, final Collection<String> inRequestors)
             throws Exception
+    {
+        return getSyndicatedFeed(inFeedUrl, inRequestors, null);
+    }
+
+    /**
+     * Gets the Syndicated Feed if it has changed since the last fetch.
+     *
+     * @param inFeedUrl
+     *            the feed.
+     * @param inRequestors
+     *            List of people who requested the feed.
+     * @param inValidators
+     *            what is known of the last copy fetched, to make the request conditional; may be null.
+     * @return List of feeds by requestor: key is requestor (or null if anonymous), value is the feed. Empty if the
+     *         feed is unchanged.
+     * @throws Exception
+     *             if error occurs.
+     */
+    public Map<String, SyndFeed> getSyndicatedFeed(final String inFeedUrl, final Collection<String> inRequestors,
+            final HttpCacheValidators inValidators) throws Exception
     {
         for (PluginFeedFetcherStrategy ps : siteStratagies)
         {
@@ -105,7 +126,7 @@ public class FeedFactory
                     logger.debug("Feed being fetched from special site " + inFeedUrl);
                 }
 
-                return ps.execute(inFeedUrl, inRequestors, proxyHost, proxyPort, timeout);
+                return ps.execute(inFeedUrl, inRequestors, proxyHost, proxyPort, timeout, inValidators);
             }
         }
 
@@ -114,6 +135,6 @@ public class FeedFactory
             logger.debug("Feed being fetched from normal site " + inFeedUrl);
         }
 
-        return defaultFetcher.execute(inFeedUrl, inRequestors, proxyHost, proxyPort, timeout);
+        return defaultFetcher.execute(inFeedUrl, inRequestors, proxyHost, proxyPort, timeout, inValidators);
     }
 }
@@ -20,6 +20,7 @@ import java.util.Map;
 
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.eurekastreams.server.service.utility.http.HttpCacheValidators;
 import org.xml.sax.SAXException;
 
 import com.sun.syndication.feed.synd.SyndFeed;
@@ -43,7 +44,9 @@ public interface FeedFetcher
      *            port for http proxy server.
      * @param inTimeout
      *            the timeout period to wait for the feed to return (in ms).
-     * @return a Syndicated Feed.
+     * @param inValidators
+     *            what is known of the last copy fetched, to make the request conditional; may be null.
+     * @return a Syndicated Feed, or null if the validators were given and the feed is unchanged.
      * @throws FeedException
      *             if Exception.
      * @throws ParserConfigurationException
@@ -54,6 +57,6 @@ public interface FeedFetcher
      *             if Exception.
      */
     SyndFeed fetchFeed(final String inFeedUrl, final Map<String, String> inHttpHeaders, final String inProxyHost,
-            final String inProxyPort, final int inTimeout) throws IOException, ParserConfigurationException,
-            FeedException, SAXException;
+            final String inProxyPort, final int inTimeout, final HttpCacheValidators inValidators)
+            throws IOException, ParserConfigurationException, FeedException, SAXException;
 }
\ No newline at end of file
@@ -19,6 +19,8 @@ package org.eurekastreams.server.service.actions.strategies.activity.plugins.rom
 import java.util.Collection;
 import java.util.Map;
 
+import org.eurekastreams.server.service.utility.http.HttpCacheValidators;
+
 import com.sun.syndication.feed.synd.SyndFeed;
 
 /**
@@ -43,11 +45,14 @@ public interface PluginFeedFetcherStrategy
      *            port for http proxy server.
      * @param inTimeout
      *            the period of time to wait for a response from the feed.
-     * @return Syndicated feeds: key is requestor (or null if anonymous), value is the feed.
+     * @param inValidators
+     *            what is known of the last copy fetched, to make the request conditional; may be null. Strategies
+     *            which fetch separately per requestor may ignore it.
+     * @return Syndicated feeds: key is requestor (or null if anonymous), value is the feed. Empty if the validators
+     *         were used and the feed is unchanged.
      * @throws Exception
      *             if an error occurs.
      */
     Map<String, SyndFeed> execute(String inFeedUrl, Collection<String> inRequestors, String inProxyHost,
-            String inProxyPort,
-            int inTimeout) throws Exception;
+            String inProxyPort, int inTimeout, HttpCacheValidators inValidators) throws Exception;
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.push;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.server.persistence.mappers.cache.Cache;
+
+/**
+ * Lets requests wait for cached values to change without each of them polling the cache. Waiters register the keys
+ * they care about; one background check per node reads every watched key with a single multiGet and wakes the waiters
+ * whose values have changed. A waiting request holds no thread and costs nothing until that check finds its change.
+ */
+public class ChangeWatcher
+{
+    /**
+     * A request waiting for a change.
+     */
+    public interface Waiter
+    {
+        /**
+         * @return the cache keys the waiter watches.
+         */
+        Collection<String> getKeys();
+
+        /**
+         * Determines if the waiter's values have changed.
+         *
+         * @param inValues
+         *            the current cached values, by key; keys not in cache are absent.
+         * @return true if the waiter should be woken.
+         */
+        boolean isChanged(Map<String, Object> inValues);
+
+        /**
+         * Wakes the waiter. Called once, on the watcher's thread, so should only hand off to the request.
+         *
+         * @param inValues
+         *            the cached values which woke the waiter.
+         */
+        void wake(Map<String, Object> inValues);
+    }
+
+    /** Logger. */
+    private final Log log = LogFactory.make();
+
+    /** Cache holding the watched values. */
+    private final Cache cache;
+
+    /** Runs the checks; null if checks are driven by the caller. */
+    private final ScheduledExecutorService scheduler;
+
+    /** The waiters. */
+    private final Set<Waiter> waiters = Collections.newSetFromMap(new ConcurrentHashMap<Waiter, Boolean>());
+
+    /** Number of checks which read the cache. */
+    private final AtomicLong checks = new AtomicLong();
+
+    /** Number of waiters woken. */
+    private final AtomicLong wakeups = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param inCache
+     *            cache holding the watched values.
+     * @param inCheckMillis
+     *            time between checks in milliseconds.
+     */
+    public ChangeWatcher(final Cache inCache, final long inCheckMillis)
+    {
+        cache = inCache;
+        scheduler = new ScheduledThreadPoolExecutor(1, new ThreadFactory()
+        {
+            public Thread newThread(final Runnable inRunnable)
+            {
+                Thread thread = new Thread(inRunnable, "change-watcher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable()
+        {
+            public void run()
+            {
+                check();
+            }
+        }, inCheckMillis, inCheckMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Constructor for checks driven by the caller.
+     *
+     * @param inCache
+     *            cache holding the watched values.
+     */
+    ChangeWatcher(final Cache inCache)
+    {
+        cache = inCache;
+        scheduler = null;
+    }
+
+    /**
+     * Reads the current values of a waiter's keys, e.g. to see if it needs to wait at all.
+     *
+     * @param inWaiter
+     *            the waiter.
+     * @return the cached values, by key.
+     */
+    public Map<String, Object> read(final Waiter inWaiter)
+    {
+        return cache.multiGet(inWaiter.getKeys());
+    }
+
+    /**
+     * Starts watching for a waiter's change. The change is looked for from the next check on, so callers should read
+     * and test the values once themselves first.
+     *
+     * @param inWaiter
+     *            the waiter.
+     */
+    public void watch(final Waiter inWaiter)
+    {
+        waiters.add(inWaiter);
+    }
+
+    /**
+     * Stops watching for a waiter's change, e.g. when it timed out.
+     *
+     * @param inWaiter
+     *            the waiter.
+     */
+    public void cancel(final Waiter inWaiter)
+    {
+        waiters.remove(inWaiter);
+    }
+
+    /**
+     * Reads every watched key and wakes the waiters whose values changed.
+     */
+    void check()
+    {
+        if (waiters.isEmpty())
+        {
+            return;
+        }
+
+        List<Waiter> current = new ArrayList<Waiter>(waiters);
+        Set<String> keys = new HashSet<String>();
+        for (Waiter waiter : current)
+        {
+            keys.addAll(waiter.getKeys());
+        }
+
+        Map<String, Object> values;
+        try
+        {
+            values = cache.multiGet(keys);
+        }
+        catch (Exception ex)
+        {
+            log.warn("Could not read " + keys.size() + " watched keys; will retry on the next check.", ex);
+            return;
+        }
+        checks.incrementAndGet();
+
+        for (Waiter waiter : current)
+        {
+            try
+            {
+                // removing first makes sure a waiter is only woken once, even if cancelled meanwhile
+                if (waiter.isChanged(values) && waiters.remove(waiter))
+                {
+                    wakeups.incrementAndGet();
+                    waiter.wake(values);
+                }
+            }
+            catch (Exception ex)
+            {
+                log.error("Error waking waiter for keys " + waiter.getKeys() + ".", ex);
+                waiters.remove(waiter);
+            }
+        }
+    }
+
+    /**
+     * Stops checking. Waiters still registered are left to time out.
+     */
+    public void shutdown()
+    {
+        if (scheduler != null)
+        {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * @return the number of requests waiting.
+     */
+    public int getWaiterCount()
+    {
+        return waiters.size();
+    }
+
+    /**
+     * @return the number of checks which read the cache.
+     */
+    public long getChecks()
+    {
+        return checks.get();
+    }
+
+    /**
+     * @return the number of waiters woken by a change.
+     */
+    public long getWakeups()
+    {
+        return wakeups.get();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.push;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.json.JSONObject;
+
+import org.eurekastreams.server.persistence.mappers.cache.CacheKeys;
+import org.eurekastreams.server.persistence.mappers.requests.GetAllFollowedByActivityIdsRequest;
+import org.eurekastreams.server.service.actions.strategies.activity.datasources.PersistenceDataSourceRequestTransformer;
+
+/**
+ * Finds the cache keys which change when activity is posted to the stream described by a stream request (the JSON
+ * taken by getActivityIDs). Streams of specific people, groups and resources are watched by their own keys, and a
+ * person's following stream by the key bumped when their following list grows plus the keys of the groups they
+ * follow. Every other stream (everyone, keyword, ...) is watched by the key bumped on any post; callers should limit
+ * how often that wakes them (see isSiteWide).
+ */
+public class StreamChangeKeyResolver
+{
+    /** Query key listing the stream's recipients. */
+    private static final String RECIPIENT_KEY = "recipient";
+
+    /** Query key naming the person whose following stream it is. */
+    private static final String FOLLOWED_BY_KEY = "followedBy";
+
+    /** Query key for the sort order, which does not affect which activities are in the stream. */
+    private static final String SORT_KEY = "sortBy";
+
+    /** Turns the recipients of a query into stream scope ids. */
+    private final PersistenceDataSourceRequestTransformer recipientTransformer;
+
+    /** Turns the followedBy of a query into the person id and the stream scope ids of the groups they follow. */
+    private final PersistenceDataSourceRequestTransformer followedByTransformer;
+
+    /**
+     * Constructor.
+     *
+     * @param inRecipientTransformer
+     *            turns the recipients of a query into stream scope ids.
+     * @param inFollowedByTransformer
+     *            turns the followedBy of a query into the person id and the stream scope ids of the groups they
+     *            follow.
+     */
+    public StreamChangeKeyResolver(final PersistenceDataSourceRequestTransformer inRecipientTransformer,
+            final PersistenceDataSourceRequestTransformer inFollowedByTransformer)
+    {
+        recipientTransformer = inRecipientTransformer;
+        followedByTransformer = inFollowedByTransformer;
+    }
+
+    /**
+     * Determines if keys are watched for a stream which only has the key bumped on any post.
+     *
+     * @param inKeys
+     *            keys from resolve.
+     * @return true if any post on the site changes the keys.
+     */
+    public static boolean isSiteWide(final Collection<String> inKeys)
+    {
+        return inKeys.contains(CacheKeys.LATEST_ACTIVITY_ID);
+    }
+
+    /**
+     * Finds the keys to watch for a stream.
+     *
+     * @param inStreamRequest
+     *            the stream request JSON.
+     * @param inUserId
+     *            the user's person id.
+     * @return the cache keys.
+     */
+    @SuppressWarnings("unchecked")
+    public List<String> resolve(final String inStreamRequest, final Long inUserId)
+    {
+        JSONObject query = JSONObject.fromObject(inStreamRequest).optJSONObject("query");
+        List<String> keys = new ArrayList<String>();
+        if (isOnly(query, RECIPIENT_KEY))
+        {
+            addStreamKeys((Collection<Long>) recipientTransformer.transform(query, inUserId), keys);
+        }
+        else if (isOnly(query, FOLLOWED_BY_KEY))
+        {
+            GetAllFollowedByActivityIdsRequest followed = (GetAllFollowedByActivityIdsRequest) followedByTransformer
+                    .transform(query, inUserId);
+            keys.add(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + followed.getUserId());
+            addStreamKeys(followed.getGroupStreamIds(), keys);
+        }
+
+        if (keys.isEmpty())
+        {
+            return Collections.singletonList(CacheKeys.LATEST_ACTIVITY_ID);
+        }
+        return keys;
+    }
+
+    /**
+     * Determines if a query selects activities by one key alone (besides the sort order).
+     *
+     * @param inQuery
+     *            the query; may be null.
+     * @param inKey
+     *            the key.
+     * @return true if the query has the key and no others but the sort order.
+     */
+    private static boolean isOnly(final JSONObject inQuery, final String inKey)
+    {
+        if (inQuery == null || !inQuery.containsKey(inKey))
+        {
+            return false;
+        }
+        for (Object key : inQuery.keySet())
+        {
+            if (!inKey.equals(key) && !SORT_KEY.equals(key))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds the keys of entity streams.
+     *
+     * @param inStreamScopeIds
+     *            the streams' scope ids; may be null.
+     * @param inKeys
+     *            list to add the keys to.
+     */
+    private static void addStreamKeys(final Collection<Long> inStreamScopeIds, final List<String> inKeys)
+    {
+        if (inStreamScopeIds != null)
+        {
+            for (Long streamScopeId : inStreamScopeIds)
+            {
+                inKeys.add(CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + streamScopeId);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.push;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.domain.UnreadInAppNotificationCountDTO;
+import org.eurekastreams.server.persistence.mappers.cache.CacheKeys;
+
+/**
+ * Waits for a user to have something unseen: activity newer than the newest they know of in the stream they are
+ * viewing, or unread notification counts different from the ones they are showing.
+ */
+public class UnseenChangesWaiter implements ChangeWatcher.Waiter
+{
+    /** Keys holding the newest activity id of the stream viewed. */
+    private final List<String> activityKeys;
+
+    /** Key holding the user's unread notification counts. */
+    private final String notificationKey;
+
+    /** Keys watched. */
+    private final List<String> keys;
+
+    /** Newest activity id the user knows of. */
+    private final long seenActivityId;
+
+    /** Unread notification counts the user is showing; null if unknown. */
+    private final UnreadInAppNotificationCountDTO seenCounts;
+
+    /** Time before which new activity does not wake the waiter, in milliseconds; 0 for no limit. */
+    private final long activityNotBefore;
+
+    /** Hands the wakeup to the request. */
+    private final Runnable onWake;
+
+    /** Values which woke the waiter; null until woken. */
+    private volatile Map<String, Object> wakeValues;
+
+    /**
+     * Constructor.
+     *
+     * @param inActivityKeys
+     *            keys holding the newest activity id of the stream viewed.
+     * @param inUserId
+     *            the user's person id.
+     * @param inSeenActivityId
+     *            newest activity id the user knows of.
+     * @param inSeenCounts
+     *            unread notification counts the user is showing; null if unknown.
+     * @param inActivityNotBefore
+     *            time before which new activity does not wake the waiter, in milliseconds; 0 for no limit. Changed
+     *            notification counts always wake it.
+     * @param inOnWake
+     *            hands the wakeup to the request.
+     */
+    public UnseenChangesWaiter(final Collection<String> inActivityKeys, final long inUserId,
+            final long inSeenActivityId, final UnreadInAppNotificationCountDTO inSeenCounts,
+            final long inActivityNotBefore, final Runnable inOnWake)
+    {
+        activityKeys = new ArrayList<String>(inActivityKeys);
+        notificationKey = CacheKeys.UNREAD_APPLICATION_ALERT_COUNT_BY_USER + inUserId;
+        keys = new ArrayList<String>(activityKeys);
+        keys.add(notificationKey);
+        seenActivityId = inSeenActivityId;
+        seenCounts = inSeenCounts;
+        activityNotBefore = inActivityNotBefore;
+        onWake = inOnWake;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public Collection<String> getKeys()
+    {
+        return keys;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isChanged(final Map<String, Object> inValues)
+    {
+        return (getNewActivityId(inValues) != null && System.currentTimeMillis() >= activityNotBefore)
+                || getChangedCounts(inValues) != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void wake(final Map<String, Object> inValues)
+    {
+        wakeValues = inValues;
+        onWake.run();
+    }
+
+    /**
+     * @return the values which woke the waiter; null if it was not woken.
+     */
+    public Map<String, Object> getWakeValues()
+    {
+        return wakeValues;
+    }
+
+    /**
+     * Gets the newest activity id if it is newer than the one the user knows of.
+     *
+     * @param inValues
+     *            the cached values.
+     * @return the newest activity id, or null if there is nothing new.
+     */
+    public Long getNewActivityId(final Map<String, Object> inValues)
+    {
+        Long newest = null;
+        for (String key : activityKeys)
+        {
+            Object value = inValues.get(key);
+            if (value instanceof Long && (Long) value > seenActivityId && (newest == null || (Long) value > newest))
+            {
+                newest = (Long) value;
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Gets the unread notification counts if they differ from the ones the user is showing.
+     *
+     * @param inValues
+     *            the cached values.
+     * @return the counts, or null if they have not changed or are not in cache.
+     */
+    public UnreadInAppNotificationCountDTO getChangedCounts(final Map<String, Object> inValues)
+    {
+        Object value = inValues.get(notificationKey);
+        if (!(value instanceof UnreadInAppNotificationCountDTO))
+        {
+            return null;
+        }
+        UnreadInAppNotificationCountDTO counts = (UnreadInAppNotificationCountDTO) value;
+        if (seenCounts != null && seenCounts.getHighPriority() == counts.getHighPriority()
+                && seenCounts.getNormalPriority() == counts.getNormalPriority())
+        {
+            return null;
+        }
+        return counts;
+    }
+}
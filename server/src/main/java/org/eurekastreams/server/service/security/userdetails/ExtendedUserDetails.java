@@ -15,6 +15,7 @@
  */
 package org.eurekastreams.server.service.security.userdetails;
 
+import org.eurekastreams.commons.actions.context.Principal;
 import org.eurekastreams.server.domain.PersistentLogin;
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.search.modelview.AuthenticationType;
@@ -46,4 +47,12 @@ public interface ExtendedUserDetails extends UserDetails
      * @return Authentication type for user.
      */
     AuthenticationType getAuthenticationType();
+
+    /**
+     * Get the principal for the user, for running actions. The user details live in the security context held on the
+     * session, so the principal is built once per session.
+     *
+     * @return the principal.
+     */
+    Principal getPrincipal();
 }
@@ -15,6 +15,8 @@
  */
 package org.eurekastreams.server.service.security.userdetails;
 
+import org.eurekastreams.commons.actions.context.DefaultPrincipal;
+import org.eurekastreams.commons.actions.context.Principal;
 import org.eurekastreams.server.domain.PersistentLogin;
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.search.modelview.AuthenticationType;
@@ -48,6 +50,11 @@ public class ExtendedUserDetailsImpl implements ExtendedUserDetails
      */
     private final AuthenticationType authenticationType;
 
+    /**
+     * Principal for the user; built on first use.
+     */
+    private Principal principal = null;
+
     /**
      * Constructor.
      *
@@ -167,4 +174,20 @@ public class ExtendedUserDetailsImpl implements ExtendedUserDetails
         return authenticationType;
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * Built from the person on first use and kept: the account id, OpenSocial id and person id it holds never change
+     * for a person, so nothing needs to replace it for the life of the session.
+     */
+    @Override
+    public Principal getPrincipal()
+    {
+        if (principal == null)
+        {
+            principal = new DefaultPrincipal(person.getAccountId(), person.getOpenSocialId(), person.getId());
+        }
+        return principal;
+    }
+
 }
@@ -15,13 +15,9 @@
  */
 package org.eurekastreams.server.service.servlets;
 
-import java.awt.image.RenderedImage;
-import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
 
-import javax.imageio.ImageIO;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -29,13 +25,15 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.eurekastreams.server.service.actions.strategies.EncodedImage;
 import org.eurekastreams.server.service.actions.strategies.ImageWriter;
 import org.springframework.context.ApplicationContext;
 import org.springframework.web.context.support.WebApplicationContextUtils;
 
 /**
- * Get an Image via a Servlet.
- * 
+ * Get an Image via a Servlet. The stored encoded bytes are sent as is, with a strong ETag so that clients revalidating
+ * an image they already have get a 304 instead of the image.
+ *
  */
 public class GetImageServlet extends HttpServlet
 {
@@ -43,10 +41,6 @@ public class GetImageServlet extends HttpServlet
      * Logger.
      */
     private Log log = LogFactory.getLog(GetImageServlet.class);
-    /**
-     * The spring factory.
-     */
-    private ApplicationContext springContext;
 
     /**
      * Serial.
@@ -63,6 +57,21 @@ public class GetImageServlet extends HttpServlet
      */
     private static final int ERROR = 500;
 
+    /**
+     * Name of the init parameter holding how long clients may use an image without revalidating, in seconds.
+     */
+    private static final String MAX_AGE_PARAM = "maxAgeSeconds";
+
+    /**
+     * Reads the images.
+     */
+    private transient ImageWriter imageWriter;
+
+    /**
+     * Cache-Control header value sent with images.
+     */
+    private String cacheControl;
+
     /**
      * @see HttpServlet#HttpServlet()
      */
@@ -71,6 +80,21 @@ public class GetImageServlet extends HttpServlet
         super();
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() throws ServletException
+    {
+        super.init();
+        ApplicationContext springContext = WebApplicationContextUtils.getWebApplicationContext(getServletContext());
+        imageWriter = (ImageWriter) springContext.getBean("imageWriter");
+
+        // identifiers can be rewritten in place (e.g. re-cropping an avatar), so by default clients must revalidate
+        String maxAge = getInitParameter(MAX_AGE_PARAM);
+        cacheControl = "public, max-age=" + (maxAge == null ? "0, must-revalidate" : maxAge.trim());
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -78,68 +102,73 @@ public class GetImageServlet extends HttpServlet
     protected void doGet(final HttpServletRequest request, final HttpServletResponse response) throws ServletException,
             IOException
     {
-        springContext = WebApplicationContextUtils.getWebApplicationContext(getServletContext());
-        ImageWriter imageWriter = (ImageWriter) springContext.getBean("imageWriter");
-        RenderedImage image = imageWriter.read(request.getParameter("img"));
+        String identifier = request.getParameter("img");
+        EncodedImage image = null;
+        if (identifier != null)
+        {
+            try
+            {
+                image = imageWriter.readEncoded(identifier);
+            }
+            catch (Exception e)
+            {
+                log.error("Error reading image " + identifier, e);
+                // 500 - Internal server error.
+                httpError(ERROR, response);
+                return;
+            }
+        }
 
         // show a 404 page
         if (image == null)
         {
             httpError(NOTFOUND, response);
+            return;
         }
-        else
-        {
-            BufferedOutputStream bos = null;
-            ByteArrayOutputStream baos = null;
 
-            try
-            {
-                baos = new ByteArrayOutputStream();
-                ImageIO.write(image, "png", baos);
-
-                bos = new BufferedOutputStream(response.getOutputStream());
-
-                response.setContentType("image/png");
-                response.setContentLength(baos.toByteArray().length);
+        response.setHeader("ETag", image.getEntityTag());
+        response.setHeader("Cache-Control", cacheControl);
+        if (matchesEntityTag(request.getHeader("If-None-Match"), image.getEntityTag()))
+        {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
 
-                bos.write(baos.toByteArray());
+        byte[] bytes = image.getBytes();
+        response.setContentType(image.getContentType());
+        response.setContentLength(bytes.length);
+        response.getOutputStream().write(bytes);
+    }
 
-            }
-            catch (Exception e)
+    /**
+     * Determine if an If-None-Match header matches the image's entity tag.
+     *
+     * @param ifNoneMatch
+     *            the header value (may be null).
+     * @param entityTag
+     *            the image's entity tag.
+     * @return if the client already has the image.
+     */
+    private boolean matchesEntityTag(final String ifNoneMatch, final String entityTag)
+    {
+        if (ifNoneMatch == null)
+        {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(","))
+        {
+            String tag = candidate.trim();
+            // weak comparison is what If-None-Match calls for, so ignore a W/ prefix
+            if (tag.startsWith("W/"))
             {
-                // Tell the user there was some internal server error.\
-                // 500 - Internal server error.
-                httpError(ERROR, response);
+                tag = tag.substring(2);
             }
-            finally
+            if ("*".equals(tag) || entityTag.equals(tag))
             {
-                if (baos != null)
-                {
-                    try
-                    {
-                        baos.close();
-                    }
-                    catch (IOException e)
-                    {
-                        log.error(e);
-                        // To late to do anything about it now, we may have already sent some data to user.
-                    }
-                }
-                if (bos != null)
-                {
-                    try
-                    {
-                        bos.close();
-                    }
-                    catch (IOException e)
-                    {
-                        log.error(e);
-                        // To late to do anything about it now, we may have already sent some data to user.
-                    }
-                }
+                return true;
             }
         }
-
+        return false;
     }
 
     /**
@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.utility.http;
+
+/**
+ * What is known about the last fetched copy of a resource, used to make the next fetch conditional. The fetcher
+ * updates it from the response, and marks it unmodified when the server answers 304 Not Modified or returns content
+ * identical to the last copy (for servers which ignore the conditional headers).
+ */
+public class HttpCacheValidators
+{
+    /** Entity tag of the last copy. */
+    private String etag;
+
+    /** Last-Modified header of the last copy. */
+    private String lastModified;
+
+    /** Hash of the content of the last copy. */
+    private String contentHash;
+
+    /** If the last fetch found the resource unchanged. */
+    private boolean notModified = false;
+
+    /**
+     * Constructor.
+     *
+     * @param inEtag
+     *            entity tag of the last copy; may be null.
+     * @param inLastModified
+     *            Last-Modified header of the last copy; may be null.
+     * @param inContentHash
+     *            hash of the content of the last copy; may be null.
+     */
+    public HttpCacheValidators(final String inEtag, final String inLastModified, final String inContentHash)
+    {
+        etag = inEtag;
+        lastModified = inLastModified;
+        contentHash = inContentHash;
+    }
+
+    /**
+     * @return entity tag of the last copy.
+     */
+    public String getEtag()
+    {
+        return etag;
+    }
+
+    /**
+     * @param inEtag
+     *            entity tag of the last copy.
+     */
+    public void setEtag(final String inEtag)
+    {
+        etag = inEtag;
+    }
+
+    /**
+     * @return Last-Modified header of the last copy.
+     */
+    public String getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * @param inLastModified
+     *            Last-Modified header of the last copy.
+     */
+    public void setLastModified(final String inLastModified)
+    {
+        lastModified = inLastModified;
+    }
+
+    /**
+     * @return hash of the content of the last copy.
+     */
+    public String getContentHash()
+    {
+        return contentHash;
+    }
+
+    /**
+     * @param inContentHash
+     *            hash of the content of the last copy.
+     */
+    public void setContentHash(final String inContentHash)
+    {
+        contentHash = inContentHash;
+    }
+
+    /**
+     * @return if the last fetch found the resource unchanged.
+     */
+    public boolean isNotModified()
+    {
+        return notModified;
+    }
+
+    /**
+     * @param inNotModified
+     *            if the last fetch found the resource unchanged.
+     */
+    public void setNotModified(final boolean inNotModified)
+    {
+        notModified = inNotModified;
+    }
+}
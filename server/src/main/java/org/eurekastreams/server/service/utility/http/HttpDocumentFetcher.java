@@ -44,7 +44,10 @@ public interface HttpDocumentFetcher
      *            the timeout period to wait for the request to return (in ms).
      * @param domFactory
      *            Factory for creating document builders.
-     * @return The document.
+     * @param validators
+     *            What is known of the last copy fetched, to make the request conditional; updated from the response.
+     *            May be null for an unconditional fetch.
+     * @return The document, or null if the validators were given and the document is unchanged.
      * @throws IOException
      *             On error.
      * @throws ParserConfigurationException
@@ -53,6 +56,6 @@ public interface HttpDocumentFetcher
      *             On error.
      */
     Document fetchDocument(final String url, final Map<String, String> httpHeaders, final String proxyHost,
-            final String proxyPort, final int timeout, final DocumentBuilderFactory domFactory) throws IOException,
-            ParserConfigurationException, SAXException;
+            final String proxyPort, final int timeout, final DocumentBuilderFactory domFactory,
+            final HttpCacheValidators validators) throws IOException, ParserConfigurationException, SAXException;
 }
@@ -15,6 +15,7 @@
  */
 package org.eurekastreams.server.service.utility.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.Map;
 
@@ -22,11 +23,13 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.httpclient.DefaultHttpMethodRetryHandler;
+import org.apache.commons.httpclient.Header;
 import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpConnectionManager;
 import org.apache.commons.httpclient.HttpMethodRetryHandler;
-import org.apache.commons.httpclient.SimpleHttpConnectionManager;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
 import org.apache.commons.httpclient.methods.GetMethod;
 import org.apache.commons.httpclient.params.HttpClientParams;
 import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
@@ -35,10 +38,54 @@ import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 /**
- * Gets a URL resource and returns it as an XML document.
+ * Gets a URL resource and returns it as an XML document. When given validators from the last fetch, the request is
+ * made conditional and the document is only parsed if the server returns content different from the last copy.
+ *
+ * Connections come from one pool shared by all fetches, bounded overall and per host, so concurrent fetches reuse
+ * connections and no host gets more than its share of them at once.
  */
 public class HttpDocumentFetcherImpl implements HttpDocumentFetcher
 {
+    /** Default connection limit for the pool. */
+    private static final int DEFAULT_MAX_CONNECTIONS = 20;
+
+    /** Default connection limit per host. */
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 2;
+
+    /** Default time to wait for a connection to be established (in ms). */
+    private static final int DEFAULT_CONNECTION_TIMEOUT = 30000;
+
+    /** Connection pool shared by all fetches. */
+    private final MultiThreadedHttpConnectionManager manager = new MultiThreadedHttpConnectionManager();
+
+    /**
+     * Constructor for default use.
+     */
+    public HttpDocumentFetcherImpl()
+    {
+        this(DEFAULT_MAX_CONNECTIONS, DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_CONNECTION_TIMEOUT);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param maxConnections
+     *            Most connections open at once.
+     * @param maxConnectionsPerHost
+     *            Most connections open at once to one host.
+     * @param connectionTimeout
+     *            Time to wait for a connection to be established (in ms). Set once here since the pool's parameters
+     *            are shared by all fetches.
+     */
+    public HttpDocumentFetcherImpl(final int maxConnections, final int maxConnectionsPerHost,
+            final int connectionTimeout)
+    {
+        HttpConnectionManagerParams managerParams = manager.getParams();
+        managerParams.setMaxTotalConnections(maxConnections);
+        managerParams.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+        managerParams.setConnectionTimeout(connectionTimeout);
+    }
+
     /**
      * Retrieves an XML document from a given URL.
      *
@@ -51,10 +98,13 @@ public class HttpDocumentFetcherImpl implements HttpDocumentFetcher
      * @param proxyPort
      *            port for http proxy server.
      * @param timeout
-     *            the timeout period to wait for the request to return (in ms).
+     *            the timeout period to wait for a pooled connection and for the response (in ms).
      * @param domFactory
      *            Factory for creating document builders.
-     * @return The document.
+     * @param validators
+     *            What is known of the last copy fetched, to make the request conditional; updated from the response.
+     *            May be null for an unconditional fetch.
+     * @return The document, or null if the validators were given and the document is unchanged.
      * @throws IOException
      *             On error.
      * @throws ParserConfigurationException
@@ -63,16 +113,9 @@ public class HttpDocumentFetcherImpl implements HttpDocumentFetcher
      *             On error.
      */
     public Document fetchDocument(final String url, final Map<String, String> httpHeaders, final String proxyHost,
-            final String proxyPort, final int timeout, final DocumentBuilderFactory domFactory) throws IOException,
-            ParserConfigurationException, SAXException
+            final String proxyPort, final int timeout, final DocumentBuilderFactory domFactory,
+            final HttpCacheValidators validators) throws IOException, ParserConfigurationException, SAXException
     {
-        HttpConnectionManagerParams managerParams = new HttpConnectionManagerParams();
-        managerParams.setSoTimeout(timeout);
-        managerParams.setConnectionTimeout(timeout);
-
-        HttpConnectionManager manager = new SimpleHttpConnectionManager();
-        manager.setParams(managerParams);
-
         HttpClientParams params = new HttpClientParams();
         params.setConnectionManagerTimeout(timeout);
         params.setSoTimeout(timeout);
@@ -96,17 +139,71 @@ public class HttpDocumentFetcherImpl implements HttpDocumentFetcher
             }
         }
 
+        if (validators != null)
+        {
+            validators.setNotModified(false);
+            if (validators.getEtag() != null)
+            {
+                get.setRequestHeader("If-None-Match", validators.getEtag());
+            }
+            if (validators.getLastModified() != null)
+            {
+                get.setRequestHeader("If-Modified-Since", validators.getLastModified());
+            }
+        }
+
         try
         {
-            client.executeMethod(get);
+            int status = client.executeMethod(get);
 
             DocumentBuilder builder = domFactory.newDocumentBuilder();
 
-            return builder.parse(get.getResponseBodyAsStream());
+            if (validators == null)
+            {
+                return builder.parse(get.getResponseBodyAsStream());
+            }
+
+            if (status == HttpStatus.SC_NOT_MODIFIED)
+            {
+                validators.setNotModified(true);
+                return null;
+            }
+
+            // servers which ignore the conditional headers still often return the same bytes; skip parsing them
+            byte[] body = get.getResponseBody();
+            String hash = DigestUtils.md5Hex(body);
+            if (hash.equals(validators.getContentHash()))
+            {
+                validators.setNotModified(true);
+                return null;
+            }
+
+            Document document = builder.parse(new ByteArrayInputStream(body));
+
+            // only remember the copy once it has parsed, so a bad copy is fetched again in full
+            validators.setEtag(getHeaderValue(get, "ETag"));
+            validators.setLastModified(getHeaderValue(get, "Last-Modified"));
+            validators.setContentHash(hash);
+            return document;
         }
         finally
         {
             get.releaseConnection();
         }
     }
+
+    /**
+     * Gets the value of a response header.
+     *
+     * @param get
+     *            The executed request.
+     * @param name
+     *            Header name.
+     * @return The value, or null if the header is absent.
+     */
+    private String getHeaderValue(final GetMethod get, final String name)
+    {
+        Header header = get.getResponseHeader(name);
+        return header == null ? null : header.getValue();
+    }
 }
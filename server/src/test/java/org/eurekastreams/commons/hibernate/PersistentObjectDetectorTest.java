@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.hibernate;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.eurekastreams.server.domain.BackgroundItem;
+import org.eurekastreams.server.domain.PagedSet;
+import org.eurekastreams.server.domain.stream.ActivityDTO;
+import org.hibernate.collection.PersistentBag;
+import org.junit.Test;
+
+/**
+ * Tests PersistentObjectDetector.
+ */
+public class PersistentObjectDetectorTest
+{
+    /** SUT. */
+    private final PersistentObjectDetector sut = new PersistentObjectDetector(Collections
+            .singleton(ActivityDTO.class.getName()));
+
+    /**
+     * Tests simple values and graphs of them hold nothing persistent.
+     */
+    @Test
+    public void testPlainGraphs()
+    {
+        assertFalse(sut.holdsPersistentObjects(null));
+        assertFalse(sut.holdsPersistentObjects("x"));
+        assertFalse(sut.holdsPersistentObjects(new ArrayList<Long>(Arrays.asList(1L, 2L))));
+        assertFalse(sut.holdsPersistentObjects(new PagedSet<ActivityDTO>(0, 1, 1, Arrays.asList(new ActivityDTO()))));
+
+        HashMap<String, Object> map = new HashMap<String, Object>();
+        map.put("self", map);
+        map.put("values", new long[] { 1L });
+        assertFalse(sut.holdsPersistentObjects(map));
+    }
+
+    /**
+     * Tests entities and persistent collections are found, however deep.
+     */
+    @Test
+    public void testPersistentGraphs()
+    {
+        assertTrue(sut.holdsPersistentObjects(new BackgroundItem()));
+        assertTrue(sut.holdsPersistentObjects(new PersistentBag()));
+
+        List<Object> nested = new ArrayList<Object>();
+        nested.add(new PagedSet<Object>(0, 1, 1, Arrays.asList((Object) new BackgroundItem())));
+        assertTrue(sut.holdsPersistentObjects(nested));
+    }
+}
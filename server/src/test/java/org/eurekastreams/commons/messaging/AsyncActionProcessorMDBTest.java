@@ -16,11 +16,13 @@
 package org.eurekastreams.commons.messaging;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 import javax.jms.Message;
 import javax.jms.ObjectMessage;
 
 import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.commons.server.UserActionRequestBatch;
 import org.eurekastreams.commons.task.TaskHandler;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
@@ -102,4 +104,67 @@ public class AsyncActionProcessorMDBTest
         sut.onMessage(messageMock);
         context.assertIsSatisfied();
     }
+
+    /**
+     * Test onMessage(message) reads the request through the codec when there is one.
+     *
+     * @throws Exception
+     *             not expected
+     */
+    @Test
+    public void testOnMessageWithCodec() throws Exception
+    {
+        final UserActionRequestCodec codec = context.mock(UserActionRequestCodec.class);
+        sut = new AsyncActionProcessorMDB(taskHandler, codec);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(codec).fromMessage(messageMock);
+                will(returnValue(userActionRequestMock));
+
+                allowing(userActionRequestMock).getActionKey();
+                will(returnValue("TestAction"));
+
+                oneOf(taskHandler).handleTask(userActionRequestMock);
+            }
+        });
+
+        sut.onMessage(messageMock);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test onMessage(message) with a batch, where a failing request doesn't stop the rest.
+     *
+     * @throws Exception
+     *             not expected
+     */
+    @Test
+    public void testOnMessageBatch() throws Exception
+    {
+        final UserActionRequest request2 = context.mock(UserActionRequest.class, "request2");
+        final UserActionRequestBatch batch = new UserActionRequestBatch(Arrays.asList(userActionRequestMock,
+                request2));
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf((ObjectMessage) messageMock).getObject();
+                will(returnValue(batch));
+
+                allowing(userActionRequestMock).getActionKey();
+                will(returnValue("TestAction1"));
+                allowing(request2).getActionKey();
+                will(returnValue("TestAction2"));
+
+                oneOf(taskHandler).handleTask(userActionRequestMock);
+                will(throwException(new RuntimeException()));
+                oneOf(taskHandler).handleTask(request2);
+            }
+        });
+
+        sut.onMessage(messageMock);
+        context.assertIsSatisfied();
+    }
 }
@@ -15,6 +15,10 @@
  */
 package org.eurekastreams.commons.messaging;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
 import javax.jms.Destination;
 
 import org.eurekastreams.commons.server.UserActionRequest;
@@ -111,6 +115,33 @@ public class QueueTaskHandlerTest
         sut.handleTask(userActionRequestMock);
 
         context.assertIsSatisfied();
+        assertEquals(1, sut.getMessagesSent());
+        assertEquals(1, sut.getRequestsSent());
+    }
+
+    /**
+     * Test sending several requests batches them up to the batch size.
+     */
+    @Test
+    public void testHandleTasks()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(jmsTemplateMock).getDefaultDestination();
+                will(returnValue(queueMock));
+
+                exactly(2).of(jmsTemplateMock).send(with(any(MessageCreator.class)));
+            }
+        });
+
+        sut = new QueueTaskHandler(jmsTemplateMock);
+        sut.setMaxBatchSize(2);
+        sut.handleTasks(Arrays.asList(userActionRequestMock, userActionRequestMock, userActionRequestMock));
+
+        context.assertIsSatisfied();
+        assertEquals(2, sut.getMessagesSent());
+        assertEquals(3, sut.getRequestsSent());
     }
 
 }
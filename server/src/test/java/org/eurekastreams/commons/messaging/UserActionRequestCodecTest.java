@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eurekastreams.commons.actions.context.DefaultPrincipal;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.commons.server.UserActionRequestBatch;
+import org.eurekastreams.server.action.request.feed.RefreshFeedRequest;
+import org.eurekastreams.server.action.request.feed.RefreshFeedRequestCodec;
+import org.eurekastreams.server.action.request.notification.CreateNotificationsRequestCodec;
+import org.eurekastreams.server.action.request.stream.DeleteIdsFromListsRequest;
+import org.eurekastreams.server.action.request.stream.DeleteIdsFromListsRequestCodec;
+import org.junit.Test;
+
+/**
+ * Tests UserActionRequestCodec.
+ */
+public class UserActionRequestCodecTest
+{
+    /** System under test. */
+    private final UserActionRequestCodec sut = new UserActionRequestCodec(true, Arrays.<ParamCodec> asList(
+            new RefreshFeedRequestCodec(), new CreateNotificationsRequestCodec(),
+            new DeleteIdsFromListsRequestCodec()));
+
+    /**
+     * Encodes and decodes a request.
+     *
+     * @param params
+     *            the request params.
+     * @return the decoded request.
+     * @throws IOException
+     *             not expected.
+     */
+    private UserActionRequest roundTrip(final Serializable params) throws IOException
+    {
+        UserActionRequest request = new UserActionRequest("someAction", null, params);
+        UserActionRequest result = (UserActionRequest) sut.decode(sut.encode(request));
+        assertEquals("someAction", result.getActionKey());
+        return result;
+    }
+
+    /**
+     * Tests simple params and the user.
+     *
+     * @throws IOException
+     *             not expected.
+     */
+    @Test
+    public void testSimpleParams() throws IOException
+    {
+        assertNull(roundTrip(null).getParams());
+        assertEquals(5L, roundTrip(5L).getParams());
+        assertEquals(7, roundTrip(7).getParams());
+        assertEquals("text", roundTrip("text").getParams());
+        assertEquals(Boolean.TRUE, roundTrip(Boolean.TRUE).getParams());
+
+        UserActionRequest request = new UserActionRequest("someAction", new DefaultPrincipal("jdoe", "os", 9L), null);
+        UserActionRequest result = (UserActionRequest) sut.decode(sut.encode(request));
+        assertEquals("jdoe", result.getUser().getAccountId());
+        assertEquals("os", result.getUser().getOpenSocialId());
+        assertEquals((Long) 9L, result.getUser().getId());
+    }
+
+    /**
+     * Tests collection params keep their order and kind.
+     *
+     * @throws IOException
+     *             not expected.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testCollectionParams() throws IOException
+    {
+        assertEquals(new ArrayList<Long>(Arrays.asList(3L, 1L, 2L)), roundTrip(
+                new ArrayList<Long>(Arrays.asList(3L, 1L, 2L))).getParams());
+        assertEquals(Collections.singleton("key"), roundTrip((Serializable) Collections.singleton("key"))
+                .getParams());
+
+        Set<Long> set = new HashSet<Long>(Arrays.asList(4L, 5L));
+        assertTrue(roundTrip((Serializable) set).getParams() instanceof HashSet);
+        assertEquals(set, roundTrip((Serializable) set).getParams());
+
+        // mixed element types fall back to Java serialization
+        List<Serializable> mixed = new ArrayList<Serializable>(Arrays.<Serializable> asList(1L, "a"));
+        assertEquals(mixed, roundTrip((Serializable) mixed).getParams());
+
+        HashMap<String, Long> map = new HashMap<String, Long>();
+        map.put("a", 1L);
+        assertEquals(map, roundTrip(map).getParams());
+    }
+
+    /**
+     * Tests params written by param codecs.
+     *
+     * @throws IOException
+     *             not expected.
+     */
+    @Test
+    public void testCodecParams() throws IOException
+    {
+        assertEquals((Long) 8L, ((RefreshFeedRequest) roundTrip(new RefreshFeedRequest(8L)).getParams())
+                .getFeedId());
+
+        DeleteIdsFromListsRequest result = (DeleteIdsFromListsRequest) roundTrip(
+                new DeleteIdsFromListsRequest(Arrays.asList("k1", "k2"), Arrays.asList(1L, 2L))).getParams();
+        assertEquals(Arrays.asList("k1", "k2"), result.getKeys());
+        assertEquals(Arrays.asList(1L, 2L), result.getValues());
+    }
+
+    /**
+     * Tests a batch.
+     *
+     * @throws IOException
+     *             not expected.
+     */
+    @Test
+    public void testBatch() throws IOException
+    {
+        UserActionRequestBatch batch = new UserActionRequestBatch(Arrays.asList(new UserActionRequest("a", null,
+                1L), new UserActionRequest("b", null, "x")));
+        UserActionRequestBatch result = (UserActionRequestBatch) sut.decode(sut.encode(batch));
+        assertEquals(2, result.getRequests().size());
+        assertEquals("a", result.getRequests().get(0).getActionKey());
+        assertEquals(1L, result.getRequests().get(0).getParams());
+        assertEquals("b", result.getRequests().get(1).getActionKey());
+        assertEquals("x", result.getRequests().get(1).getParams());
+    }
+
+    /**
+     * Tests a version this build doesn't know is refused.
+     *
+     * @throws IOException
+     *             expected.
+     */
+    @Test(expected = IOException.class)
+    public void testUnknownVersion() throws IOException
+    {
+        byte[] bytes = sut.encode(new UserActionRequest("a", null, null));
+        bytes[0] = UserActionRequestCodec.VERSION_1 + 1;
+        sut.decode(bytes);
+    }
+}
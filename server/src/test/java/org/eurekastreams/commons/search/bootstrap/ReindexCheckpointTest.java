@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.search.bootstrap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileWriter;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test fixture for ReindexCheckpoint.
+ */
+public class ReindexCheckpointTest
+{
+    /**
+     * Checkpoint file.
+     */
+    private File file;
+
+    /**
+     * Teardown.
+     */
+    @After
+    public void tearDown()
+    {
+        if (file != null)
+        {
+            file.delete();
+        }
+    }
+
+    /**
+     * Test an id range is split into contiguous partitions covering it exactly.
+     */
+    @Test
+    public void testPlan()
+    {
+        ReindexCheckpoint sut = ReindexCheckpoint.plan(5, 14, 3);
+
+        assertEquals(14, sut.getMaxId());
+        assertEquals(3, sut.getPartitionCount());
+        assertEquals(4, sut.getDone(0));
+        assertEquals(8, sut.getEnd(0));
+        assertEquals(8, sut.getDone(1));
+        assertEquals(12, sut.getEnd(1));
+        assertEquals(12, sut.getDone(2));
+        assertEquals(14, sut.getEnd(2));
+    }
+
+    /**
+     * Test a range smaller than the partition count gets fewer partitions, and an empty one none.
+     */
+    @Test
+    public void testPlanSmall()
+    {
+        assertEquals(2, ReindexCheckpoint.plan(7, 8, 4).getPartitionCount());
+        assertEquals(0, ReindexCheckpoint.plan(1, 0, 4).getPartitionCount());
+    }
+
+    /**
+     * Test progress survives a save and load, and a snapshot is unaffected by later progress.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testSaveLoad() throws Exception
+    {
+        file = File.createTempFile("reindex", ".checkpoint");
+        ReindexCheckpoint sut = ReindexCheckpoint.plan(1, 100, 2);
+        sut.setDone(0, 20);
+        ReindexCheckpoint snapshot = sut.snapshot();
+        sut.setDone(1, 75);
+
+        snapshot.save(file);
+        ReindexCheckpoint loaded = ReindexCheckpoint.load(file);
+
+        assertEquals(100, loaded.getMaxId());
+        assertEquals(2, loaded.getPartitionCount());
+        assertEquals(20, loaded.getDone(0));
+        assertEquals(50, loaded.getEnd(0));
+        assertEquals(50, loaded.getDone(1));
+        assertEquals(100, loaded.getEnd(1));
+    }
+
+    /**
+     * Test a missing or unreadable checkpoint loads as none.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testLoadBad() throws Exception
+    {
+        file = File.createTempFile("reindex", ".checkpoint");
+        FileWriter writer = new FileWriter(file);
+        writer.write("partitions=2\n");
+        writer.close();
+
+        assertNull(ReindexCheckpoint.load(file));
+        assertNull(ReindexCheckpoint.load(new File(file.getPath() + ".missing")));
+    }
+}
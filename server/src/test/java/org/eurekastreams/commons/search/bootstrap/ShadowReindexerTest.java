@@ -0,0 +1,605 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.search.bootstrap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.lucene.analysis.KeywordAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.RAMDirectory;
+import org.hibernate.CacheMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.hibernate.classic.Session;
+import org.hibernate.search.FullTextSession;
+import org.hibernate.search.bridge.TwoWayFieldBridge;
+import org.hibernate.search.engine.DocumentBuilderIndexedEntity;
+import org.hibernate.search.engine.SearchFactoryImplementor;
+import org.hibernate.search.store.DirectoryProvider;
+import org.jmock.Expectations;
+import org.jmock.Sequence;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test fixture for ShadowReindexer.
+ */
+public class ShadowReindexerTest
+{
+    /** Name of the entity reindexed. */
+    private static final String ENTITY_NAME = "TestEntity";
+
+    /** Query for the id range. */
+    private static final String RANGE_QUERY = "SELECT min(id), max(id) FROM " + ENTITY_NAME;
+
+    /** Query for a range's entities. */
+    private static final String WALK_QUERY = "FROM " + ENTITY_NAME + " WHERE id > :after AND id <= :end ORDER BY id";
+
+    /** Query for which ids still exist. */
+    private static final String EXISTS_QUERY = "SELECT id FROM " + ENTITY_NAME + " WHERE id IN (:ids)";
+
+    /** Name of the id field. */
+    private static final String ID_FIELD = "id";
+
+    /** Name of the field telling which index a document was built for. */
+    private static final String BUILD_FIELD = "build";
+
+    /** Entities per query. */
+    private static final int FETCH_BATCH_SIZE = 2;
+
+    /**
+     * Context for mocking.
+     */
+    private final JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /**
+     * Entity type reindexed.
+     */
+    private class TestEntity
+    {
+    }
+
+    /** FullTextSession. */
+    private final FullTextSession search = context.mock(FullTextSession.class);
+
+    /** Search factory. */
+    private final SearchFactoryImplementor searchFactory = context.mock(SearchFactoryImplementor.class);
+
+    /** Live index provider. */
+    private final DirectoryProvider provider = context.mock(DirectoryProvider.class);
+
+    /** Document builder. */
+    private final DocumentBuilderIndexedEntity builder = context.mock(DocumentBuilderIndexedEntity.class);
+
+    /** Id bridge. */
+    private final TwoWayFieldBridge idBridge = context.mock(TwoWayFieldBridge.class);
+
+    /** Session factory. */
+    private final SessionFactory sessionFactory = context.mock(SessionFactory.class);
+
+    /** Worker session. */
+    private final Session session = context.mock(Session.class);
+
+    /** Worker transaction. */
+    private final Transaction transaction = context.mock(Transaction.class);
+
+    /** Query for the id range. */
+    private final Query rangeQuery = context.mock(Query.class, "rangeQuery");
+
+    /** Query for a range's entities. */
+    private final Query walkQuery = context.mock(Query.class, "walkQuery");
+
+    /** Query for which ids still exist. */
+    private final Query existsQuery = context.mock(Query.class, "existsQuery");
+
+    /** Orders the walk's batches. */
+    private final Sequence walk = context.sequence("walk");
+
+    /** Live index lock. */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /** Live index. */
+    private final Directory live = new RAMDirectory();
+
+    /** Directory holding the shadow indexes and checkpoints. */
+    private File base;
+
+    /** SUT. */
+    private ShadowReindexer sut;
+
+    /**
+     * Setup before each test.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Before
+    public void setUp() throws Exception
+    {
+        base = File.createTempFile("shadow", "");
+        base.delete();
+        sut = new ShadowReindexer(base.getPath(), 1, FETCH_BATCH_SIZE, 1);
+
+        // the live index holds entities 1-5 and 7, which was created after the reindex starts
+        IndexWriter writer = new IndexWriter(live, new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        for (long id : new long[] { 1L, 2L, 3L, 4L, 5L, 7L })
+        {
+            writer.addDocument(buildDocument(id, "old"));
+        }
+        writer.close();
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(search).getSearchFactory();
+                will(returnValue(searchFactory));
+                allowing(searchFactory).getDirectoryProviders(TestEntity.class);
+                will(returnValue(new DirectoryProvider[] { provider }));
+                allowing(searchFactory).getDocumentBuilderIndexedEntity(TestEntity.class);
+                will(returnValue(builder));
+                allowing(searchFactory).getDirectoryProviderLock(provider);
+                will(returnValue(lock));
+                allowing(provider).getDirectory();
+                will(returnValue(live));
+
+                allowing(builder).getAnalyzer();
+                will(returnValue(new KeywordAnalyzer()));
+                allowing(builder).getIdKeywordName();
+                will(returnValue(ID_FIELD));
+                allowing(builder).getIdBridge();
+                will(returnValue(idBridge));
+                allowing(idBridge).objectToString(with(any(Object.class)));
+                will(new CustomAction("Id to string")
+                {
+                    public Object invoke(final Invocation inv)
+                    {
+                        return inv.getParameter(0).toString();
+                    }
+                });
+                allowing(builder).getDocument(with(any(Object.class)), with(any(Long.class)), with(any(Map.class)));
+                will(new CustomAction("Build document")
+                {
+                    public Object invoke(final Invocation inv)
+                    {
+                        return buildDocument((Long) inv.getParameter(1), "new");
+                    }
+                });
+
+                allowing(search).getSessionFactory();
+                will(returnValue(sessionFactory));
+                allowing(sessionFactory).openSession();
+                will(returnValue(session));
+                allowing(session).beginTransaction();
+                will(returnValue(transaction));
+                allowing(transaction).commit();
+                allowing(session).clear();
+                allowing(session).close();
+                allowing(session).getIdentifier(with(any(Long.class)));
+                will(new CustomAction("Entity id")
+                {
+                    public Object invoke(final Invocation inv)
+                    {
+                        return inv.getParameter(0);
+                    }
+                });
+
+                allowing(session).createQuery(WALK_QUERY);
+                will(returnValue(walkQuery));
+                allowing(walkQuery).setLong("end", 5L);
+                will(returnValue(walkQuery));
+                allowing(walkQuery).setCacheMode(CacheMode.IGNORE);
+                will(returnValue(walkQuery));
+                allowing(walkQuery).setReadOnly(true);
+                will(returnValue(walkQuery));
+                allowing(walkQuery).setMaxResults(FETCH_BATCH_SIZE);
+                will(returnValue(walkQuery));
+
+                allowing(search).createQuery(EXISTS_QUERY);
+                will(returnValue(existsQuery));
+                allowing(existsQuery).setParameterList(with(equal("ids")), with(any(Collection.class)));
+                will(returnValue(existsQuery));
+            }
+        });
+    }
+
+    /**
+     * Teardown after each test.
+     */
+    @After
+    public void tearDown()
+    {
+        deleteRecursively(base);
+    }
+
+    /**
+     * Test a reindex walks the id range in batches and swaps the result into the live index, dropping an entity
+     * deleted after its batch was read and keeping one created after the reindex started.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testReindex() throws Exception
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(search).createQuery(RANGE_QUERY);
+                will(returnValue(rangeQuery));
+                oneOf(rangeQuery).uniqueResult();
+                will(returnValue(new Object[] { 1L, 5L }));
+
+                // entity 3 is deleted after its batch is read
+                allowing(existsQuery).list();
+                will(returnValue(Arrays.asList(1L, 2L, 4L, 5L)));
+
+                oneOf(searchFactory).optimize(TestEntity.class);
+            }
+        });
+        expectBatch(0L, Arrays.asList(1L, 2L));
+        expectBatch(2L, Arrays.asList(3L, 4L));
+        expectBatch(4L, Arrays.asList(5L));
+
+        sut.reindex(TestEntity.class, ENTITY_NAME, search);
+
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put("1", "new");
+        expected.put("2", "new");
+        expected.put("4", "new");
+        expected.put("5", "new");
+        expected.put("7", "old");
+        assertEquals(expected, readLive());
+        assertFalse(lock.isLocked());
+        assertFalse(new File(base, ENTITY_NAME).exists());
+        assertFalse(new File(base, ENTITY_NAME + ".checkpoint").exists());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test a reindex which died part way resumes from its checkpoint, keeping what the shadow index already holds.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testReindexResumes() throws Exception
+    {
+        base.mkdirs();
+        ReindexCheckpoint checkpoint = ReindexCheckpoint.plan(1L, 5L, 1);
+        checkpoint.setDone(0, 2L);
+        checkpoint.save(new File(base, ENTITY_NAME + ".checkpoint"));
+        Directory shadow = FSDirectory.open(new File(base, ENTITY_NAME));
+        IndexWriter writer = new IndexWriter(shadow, new KeywordAnalyzer(), true, IndexWriter.MaxFieldLength.UNLIMITED);
+        writer.addDocument(buildDocument(1L, "resumed"));
+        writer.addDocument(buildDocument(2L, "resumed"));
+        writer.close();
+        shadow.close();
+
+        context.checking(new Expectations()
+        {
+            {
+                never(search).createQuery(RANGE_QUERY);
+
+                allowing(existsQuery).list();
+                will(returnValue(Arrays.asList(1L, 2L, 3L, 4L, 5L)));
+
+                oneOf(searchFactory).optimize(TestEntity.class);
+            }
+        });
+        expectBatch(2L, Arrays.asList(3L, 4L));
+        expectBatch(4L, Arrays.asList(5L));
+
+        sut.reindex(TestEntity.class, ENTITY_NAME, search);
+
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put("1", "resumed");
+        expected.put("2", "resumed");
+        expected.put("3", "new");
+        expected.put("4", "new");
+        expected.put("5", "new");
+        expected.put("7", "old");
+        assertEquals(expected, readLive());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test an entity deleted after the database was checked, but before the swap holds off the live index, is dropped
+     * by checking just that entity again.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testReindexDropsEntityDeletedBeforeSwap() throws Exception
+    {
+        final int[] queries = new int[] { 0 };
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(search).createQuery(RANGE_QUERY);
+                will(returnValue(rangeQuery));
+                oneOf(rangeQuery).uniqueResult();
+                will(returnValue(new Object[] { 1L, 5L }));
+
+                allowing(existsQuery).list();
+                will(new CustomAction("Ids existing")
+                {
+                    public Object invoke(final Invocation inv) throws Throwable
+                    {
+                        queries[0]++;
+                        return existingIds(queries[0]);
+                    }
+                });
+
+                oneOf(searchFactory).optimize(TestEntity.class);
+            }
+        });
+        expectBatch(0L, Arrays.asList(1L, 2L));
+        expectBatch(2L, Arrays.asList(3L, 4L));
+        expectBatch(4L, Arrays.asList(5L));
+
+        sut.reindex(TestEntity.class, ENTITY_NAME, search);
+
+        Map<String, String> expected = new HashMap<String, String>();
+        expected.put("1", "new");
+        expected.put("2", "new");
+        expected.put("3", "new");
+        expected.put("5", "new");
+        expected.put("7", "old");
+        assertEquals(expected, readLive());
+        // three batches of the shadow index, then entity 4 alone
+        assertEquals(4, queries[0]);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test a swap which fails part way, here on a runtime exception from the last database check, leaves the live
+     * index as it was and the reindex resumable.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testReindexRollsBackFailedSwap() throws Exception
+    {
+        final int[] queries = new int[] { 0 };
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(search).createQuery(RANGE_QUERY);
+                will(returnValue(rangeQuery));
+                oneOf(rangeQuery).uniqueResult();
+                will(returnValue(new Object[] { 1L, 5L }));
+
+                allowing(existsQuery).list();
+                will(new CustomAction("Ids existing")
+                {
+                    public Object invoke(final Invocation inv) throws Throwable
+                    {
+                        queries[0]++;
+                        if (queries[0] > 3)
+                        {
+                            throw new HibernateException("Connection lost");
+                        }
+                        return existingIds(queries[0]);
+                    }
+                });
+
+                never(searchFactory).optimize(TestEntity.class);
+            }
+        });
+        expectBatch(0L, Arrays.asList(1L, 2L));
+        expectBatch(2L, Arrays.asList(3L, 4L));
+        expectBatch(4L, Arrays.asList(5L));
+
+        try
+        {
+            sut.reindex(TestEntity.class, ENTITY_NAME, search);
+            fail("Expected the swap to fail");
+        }
+        catch (HibernateException ex)
+        {
+            assertEquals("Connection lost", ex.getMessage());
+        }
+
+        // only entity 4's delete, made by normal indexing, is in the live index
+        Map<String, String> expected = new HashMap<String, String>();
+        for (String id : new String[] { "1", "2", "3", "5", "7" })
+        {
+            expected.put(id, "old");
+        }
+        assertEquals(expected, readLive());
+        assertFalse(lock.isLocked());
+        assertFalse(IndexWriter.isLocked(live));
+        assertTrue(new File(base, ENTITY_NAME).isDirectory());
+        ReindexCheckpoint checkpoint = ReindexCheckpoint.load(new File(base, ENTITY_NAME + ".checkpoint"));
+        assertEquals(5L, checkpoint.getDone(0));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test the walk finds nothing to do for an empty table.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testReindexEmpty() throws Exception
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(search).createQuery(RANGE_QUERY);
+                will(returnValue(rangeQuery));
+                oneOf(rangeQuery).uniqueResult();
+                will(returnValue(new Object[] { null, null }));
+
+                never(walkQuery).list();
+                never(existsQuery).list();
+
+                oneOf(searchFactory).optimize(TestEntity.class);
+            }
+        });
+
+        sut.reindex(TestEntity.class, ENTITY_NAME, search);
+
+        // nothing is covered by an empty reindex, so the live index keeps its documents
+        assertEquals(6, readLive().size());
+        assertNull(ReindexCheckpoint.load(new File(base, ENTITY_NAME + ".checkpoint")));
+    }
+
+    /**
+     * Expect the walk's next batch.
+     *
+     * @param after
+     *            the id the batch starts after.
+     * @param ids
+     *            the ids of the entities in the batch.
+     */
+    private void expectBatch(final long after, final List<Long> ids)
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(walkQuery).setLong("after", after);
+                inSequence(walk);
+                will(returnValue(walkQuery));
+                oneOf(walkQuery).list();
+                inSequence(walk);
+                will(returnValue(ids));
+            }
+        });
+    }
+
+    /**
+     * Answer a query for which ids still exist, with entity 4 deleted (and removed from the live index, as normal
+     * indexing does) during the third query.
+     *
+     * @param query
+     *            which query this is, from 1.
+     * @return the ids existing.
+     * @throws IOException
+     *             Shouldn't.
+     */
+    private List<Long> existingIds(final int query) throws IOException
+    {
+        if (query < 3)
+        {
+            return Arrays.asList(1L, 2L, 3L, 4L, 5L);
+        }
+        if (query == 3)
+        {
+            IndexWriter writer = new IndexWriter(live, new KeywordAnalyzer(), IndexWriter.MaxFieldLength.UNLIMITED);
+            writer.deleteDocuments(new Term(ID_FIELD, "4"));
+            writer.close();
+            return Arrays.asList(5L);
+        }
+        return Collections.<Long> emptyList();
+    }
+
+    /**
+     * @param id
+     *            the entity id.
+     * @param build
+     *            which index the document was built for.
+     * @return a document for the entity.
+     */
+    private static Document buildDocument(final long id, final String build)
+    {
+        Document document = new Document();
+        document.add(new Field(ID_FIELD, Long.toString(id), Field.Store.YES, Field.Index.NOT_ANALYZED));
+        document.add(new Field(BUILD_FIELD, build, Field.Store.YES, Field.Index.NO));
+        return document;
+    }
+
+    /**
+     * @return which index each document in the live index was built for, by id.
+     * @throws IOException
+     *             Shouldn't.
+     */
+    private Map<String, String> readLive() throws IOException
+    {
+        Map<String, String> results = new HashMap<String, String>();
+        IndexReader reader = IndexReader.open(live, true);
+        try
+        {
+            for (int i = 0; i < reader.maxDoc(); i++)
+            {
+                if (!reader.isDeleted(i))
+                {
+                    Document document = reader.document(i);
+                    results.put(document.get(ID_FIELD), document.get(BUILD_FIELD));
+                }
+            }
+        }
+        finally
+        {
+            reader.close();
+        }
+        return results;
+    }
+
+    /**
+     * Delete a directory and its contents.
+     *
+     * @param inDir
+     *            the directory.
+     */
+    private static void deleteRecursively(final File inDir)
+    {
+        File[] files = inDir.listFiles();
+        if (files != null)
+        {
+            for (File file : files)
+            {
+                deleteRecursively(file);
+            }
+        }
+        inDir.delete();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.server;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.eurekastreams.commons.client.ActionRequest;
+import org.eurekastreams.commons.client.ActionRequestImpl;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.security.userdetails.UserDetails;
+
+/**
+ * Test fixture for ActionBatchExecutor.
+ */
+@SuppressWarnings("rawtypes")
+public class ActionBatchExecutorTest
+{
+    /** Max seconds to wait for the reads to meet. */
+    private static final int WAIT_SECONDS = 5;
+
+    /** Pool. */
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    /** Order actions started and finished in. */
+    private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+    /** Released once both leading reads are running at once. */
+    private final CountDownLatch readsRunning = new CountDownLatch(2);
+
+    /**
+     * Action executor which records what runs when; actions starting with "read" are read-only.
+     */
+    private class RecordingActionExecutor extends ActionExecutor
+    {
+        /**
+         * Constructor.
+         */
+        public RecordingActionExecutor()
+        {
+            super(null, null, null, null, null);
+        }
+
+        @Override
+        public boolean isReadOnly(final String inActionKey)
+        {
+            return inActionKey.startsWith("read");
+        }
+
+        @Override
+        public ActionRequest execute(final ActionRequest inActionRequest, final UserDetails inUserDetails)
+        {
+            String key = inActionRequest.getActionKey();
+            events.add("start " + key);
+            if (key.equals("read1") || key.equals("read2"))
+            {
+                readsRunning.countDown();
+                try
+                {
+                    assertTrue(readsRunning.await(WAIT_SECONDS, TimeUnit.SECONDS));
+                }
+                catch (InterruptedException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+            events.add("end " + key);
+            return inActionRequest;
+        }
+    }
+
+    /**
+     * Teardown.
+     */
+    @After
+    public void tearDown()
+    {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Test reads run together and the write waits for them, with later reads waiting for the write.
+     */
+    @Test
+    public void testExecute()
+    {
+        ActionBatchExecutor sut = new ActionBatchExecutor(new RecordingActionExecutor(), pool);
+
+        ActionRequest[] requests = new ActionRequest[] { new ActionRequestImpl<String>("read1", null),
+                new ActionRequestImpl<String>("read2", null), new ActionRequestImpl<String>("write", null),
+                new ActionRequestImpl<String>("read3", null) };
+
+        ActionRequest[] results = sut.execute(requests, null);
+
+        assertEquals(requests.length, results.length);
+        for (int i = 0; i < requests.length; i++)
+        {
+            assertSame(requests[i], results[i]);
+        }
+
+        // both leading reads ran at once (else the latch would have timed out) and finished before the write
+        assertEquals(0, readsRunning.getCount());
+        int writeStart = events.indexOf("start write");
+        assertTrue(events.indexOf("end read1") < writeStart);
+        assertTrue(events.indexOf("end read2") < writeStart);
+        assertTrue(events.indexOf("end write") < events.indexOf("start read3"));
+    }
+}
@@ -30,6 +30,7 @@ import org.eurekastreams.commons.actions.service.TaskHandlerServiceAction;
 import org.eurekastreams.commons.client.ActionRequest;
 import org.eurekastreams.commons.client.ActionRequestImpl;
 import org.eurekastreams.commons.exceptions.GeneralException;
+import org.eurekastreams.commons.hibernate.PersistentObjectDetector;
 import org.eurekastreams.commons.server.service.ServiceActionController;
 import org.eurekastreams.server.persistence.mappers.cache.Transformer;
 import org.jmock.Expectations;
@@ -186,6 +187,68 @@ public class ActionExecutorTest
         mockery.assertIsSatisfied();
     }
 
+    /**
+     * Test a result holding no persistent objects is returned without cloning.
+     */
+    @Test
+    public final void testExecuteSkipsClone()
+    {
+        final PersistentObjectDetector detector = mockery.mock(PersistentObjectDetector.class);
+        sut.setPersistentObjectDetector(detector);
+        mockery.checking(new Expectations()
+        {
+            {
+                oneOf(springContextMock).getBean(ACTION_KEY);
+                will(returnValue(serviceAction));
+
+                oneOf(principalPopulator).getPrincipal(USERNAME, null);
+
+                oneOf(serviceActionController).execute(with(any(ServiceActionContext.class)),
+                        with(same(serviceAction)));
+                will(returnValue(genericResult));
+
+                oneOf(detector).holdsPersistentObjects(genericResult);
+                will(returnValue(false));
+            }
+        });
+
+        ActionRequest result = sut.execute(defaultRequest, validUserDetailsMock);
+
+        mockery.assertIsSatisfied();
+        assertSame(genericResult, result.getResponse());
+        Assert.assertEquals(1L, sut.getClonesSkipped());
+        Assert.assertEquals(0L, sut.getClonesPerformed());
+    }
+
+    /**
+     * Test a result holding persistent objects is cloned, and the clone timed.
+     */
+    @Test
+    public final void testExecuteClonesPersistentResult()
+    {
+        final PersistentObjectDetector detector = mockery.mock(PersistentObjectDetector.class);
+        sut.setPersistentObjectDetector(detector);
+        setupSuccess(serviceAction);
+        mockery.checking(new Expectations()
+        {
+            {
+                oneOf(serviceActionController).execute(with(any(ServiceActionContext.class)),
+                        with(same(serviceAction)));
+                will(returnValue(genericResult));
+
+                oneOf(detector).holdsPersistentObjects(genericResult);
+                will(returnValue(true));
+            }
+        });
+
+        ActionRequest result = sut.execute(defaultRequest, validUserDetailsMock);
+
+        mockery.assertIsSatisfied();
+        assertSame(genericClonedResult, result.getResponse());
+        Assert.assertEquals(0L, sut.getClonesSkipped());
+        Assert.assertEquals(1L, sut.getClonesPerformed());
+    }
+
     /**
      * Test execution with a TaskHandlerServiceAction.
      */
@@ -15,8 +15,11 @@
  */
 package org.eurekastreams.commons.server.service;
 
+import static org.junit.Assert.assertEquals;
+
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.eurekastreams.commons.actions.AuthorizationStrategy;
@@ -36,6 +39,7 @@ import org.eurekastreams.commons.exceptions.ExecutionException;
 import org.eurekastreams.commons.exceptions.GeneralException;
 import org.eurekastreams.commons.exceptions.InvalidActionException;
 import org.eurekastreams.commons.exceptions.ValidationException;
+import org.eurekastreams.commons.hibernate.ConnectionUsageTrackingDataSource;
 import org.eurekastreams.commons.server.TransactionManagerFake;
 import org.eurekastreams.commons.server.UserActionRequest;
 import org.eurekastreams.commons.task.TaskHandler;
@@ -204,6 +208,45 @@ public class ServiceActionControllerTest
         mockery.assertIsSatisfied();
     }
 
+    /**
+     * Test executions are counted per action key, with those which took a connection.
+     */
+    @Test
+    public void testExecuteCountsConnectionUsage()
+    {
+        final ConnectionUsageTrackingDataSource tracker = mockery.mock(ConnectionUsageTrackingDataSource.class);
+        sut.setConnectionUsageTracker(tracker);
+        final ServiceActionContext serviceActionContext = new ServiceActionContext(null, principalMock);
+        transDef.setReadOnly(true);
+
+        mockery.checking(new Expectations()
+        {
+            {
+                exactly(4).of(tracker).getConnectionsTakenByThread();
+                will(onConsecutiveCalls(returnValue(3), returnValue(3), returnValue(3), returnValue(4)));
+
+                exactly(2).of(transMgrMock).getTransaction(transDef);
+                will(returnValue(transStatus));
+                exactly(2).of(validationStrategy).validate(serviceActionContext);
+                exactly(2).of(authorizationStrategy).authorize(serviceActionContext);
+                exactly(2).of(executionStrategy).execute(serviceActionContext);
+                exactly(2).of(transMgrMock).commit(transStatus);
+                allowing(serviceActionMock).isReadOnly();
+                will(returnValue(true));
+                allowing(serviceActionMock).getBeanName();
+                will(returnValue("getSomething"));
+            }
+        });
+        expectServiceAction();
+
+        sut.execute(serviceActionContext, serviceActionMock);
+        sut.execute(serviceActionContext, serviceActionMock);
+
+        mockery.assertIsSatisfied();
+        assertEquals(Collections.singletonMap("getSomething", 2L), sut.getExecutionCounts());
+        assertEquals(Collections.singletonMap("getSomething", 1L), sut.getConnectionCounts());
+    }
+
     /**
      * Test the execution of the ServiceActionController with just a service Action.
      */
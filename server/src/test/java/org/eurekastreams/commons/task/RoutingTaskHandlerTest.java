@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.Sequence;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for RoutingTaskHandler.
+ */
+public class RoutingTaskHandlerTest
+{
+    /** Context for building mock objects. */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Default handler. */
+    private final BatchTaskHandler defaultHandler = context.mock(BatchTaskHandler.class, "defaultHandler");
+
+    /** Handler for the bulk lane. */
+    private final BatchTaskHandler bulkHandler = context.mock(BatchTaskHandler.class, "bulkHandler");
+
+    /** Handler which can't take batches. */
+    private final TaskHandler plainHandler = context.mock(TaskHandler.class, "plainHandler");
+
+    /** Request with no route. */
+    private final UserActionRequest notify = new UserActionRequest("createNotificationsAction", null, null);
+
+    /** Request routed to the bulk lane. */
+    private final UserActionRequest refresh1 = new UserActionRequest("refreshFeedAction", null, 1L);
+
+    /** Request routed to the bulk lane. */
+    private final UserActionRequest refresh2 = new UserActionRequest("refreshFeedAction", null, 2L);
+
+    /** Request routed to the plain handler. */
+    private final UserActionRequest plain1 = new UserActionRequest("plainAction", null, 1L);
+
+    /** Request routed to the plain handler. */
+    private final UserActionRequest plain2 = new UserActionRequest("plainAction", null, 2L);
+
+    /** System under test. */
+    private RoutingTaskHandler sut;
+
+    /**
+     * Setup.
+     */
+    @Before
+    public void setUp()
+    {
+        Map<String, TaskHandler> routes = new HashMap<String, TaskHandler>();
+        routes.put("refreshFeedAction", bulkHandler);
+        routes.put("plainAction", plainHandler);
+        sut = new RoutingTaskHandler(defaultHandler);
+        sut.setRoutes(routes);
+    }
+
+    /**
+     * Test a request with no route goes to the default handler.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testHandleTaskDefault() throws Exception
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(defaultHandler).handleTask(notify);
+            }
+        });
+
+        sut.handleTask(notify);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test a routed request goes to its handler.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testHandleTaskRouted() throws Exception
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(bulkHandler).handleTask(refresh1);
+            }
+        });
+
+        sut.handleTask(refresh1);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test a mixed batch is split by handler, keeping the order within each handler.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testHandleTasks() throws Exception
+    {
+        final Sequence plainSequence = context.sequence("plain");
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(bulkHandler).handleTasks(Arrays.asList(refresh1, refresh2));
+                oneOf(defaultHandler).handleTasks(Collections.singletonList(notify));
+                oneOf(plainHandler).handleTask(plain1);
+                inSequence(plainSequence);
+                oneOf(plainHandler).handleTask(plain2);
+                inSequence(plainSequence);
+            }
+        });
+
+        sut.handleTasks(Arrays.asList(refresh1, plain1, notify, refresh2, plain2));
+        context.assertIsSatisfied();
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.commons.task;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Test for ThrottlingTaskHandler.
+ */
+public class ThrottlingTaskHandlerTest
+{
+    /** Max seconds to wait for the threads. */
+    private static final int WAIT_SECONDS = 5;
+
+    /** Pool. */
+    private final ExecutorService pool = Executors.newFixedThreadPool(2);
+
+    /** Released to let the running requests finish. */
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    /** Released once the first capped request is running. */
+    private final CountDownLatch firstRunning = new CountDownLatch(1);
+
+    /** Number of requests run. */
+    private final AtomicInteger runCount = new AtomicInteger();
+
+    /** Handler which holds each request until released. */
+    private final TaskHandler blockingHandler = new TaskHandler()
+    {
+        public void handleTask(final UserActionRequest inUserActionRequest) throws Exception
+        {
+            runCount.incrementAndGet();
+            firstRunning.countDown();
+            assertTrue(release.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        }
+    };
+
+    /**
+     * Teardown.
+     */
+    @After
+    public void tearDown()
+    {
+        pool.shutdownNow();
+    }
+
+    /**
+     * Test a second request for a capped action waits for the first.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testHandleTaskCapped() throws Exception
+    {
+        final ThrottlingTaskHandler sut = new ThrottlingTaskHandler(blockingHandler);
+        sut.setLimits(Collections.singletonMap("refreshFeedAction", 1));
+        final UserActionRequest request = new UserActionRequest("refreshFeedAction", null, null);
+        Runnable task = new Runnable()
+        {
+            public void run()
+            {
+                try
+                {
+                    sut.handleTask(request);
+                }
+                catch (Exception ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+
+        Future< ? > first = pool.submit(task);
+        assertTrue(firstRunning.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        Future< ? > second = pool.submit(task);
+
+        // wait for the second request to hit the cap
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(WAIT_SECONDS);
+        while (sut.getThrottledCount() == 0 && System.currentTimeMillis() < deadline)
+        {
+            Thread.yield();
+        }
+        assertEquals(1, sut.getThrottledCount());
+        assertEquals(1, runCount.get());
+        assertFalse(second.isDone());
+        assertEquals(Integer.valueOf(1), sut.getInFlightCounts().get("refreshFeedAction"));
+
+        release.countDown();
+        first.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        second.get(WAIT_SECONDS, TimeUnit.SECONDS);
+        assertEquals(2, runCount.get());
+        assertEquals(1, sut.getThrottledCount());
+        assertEquals(Integer.valueOf(0), sut.getInFlightCounts().get("refreshFeedAction"));
+    }
+
+    /**
+     * Test requests for actions without a cap are not limited.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testHandleTaskUncapped() throws Exception
+    {
+        release.countDown();
+        ThrottlingTaskHandler sut = new ThrottlingTaskHandler(blockingHandler);
+        sut.setLimits(Collections.singletonMap("refreshFeedAction", 1));
+
+        sut.handleTask(new UserActionRequest("createNotificationsAction", null, null));
+
+        assertEquals(1, runCount.get());
+        assertEquals(0, sut.getThrottledCount());
+    }
+}
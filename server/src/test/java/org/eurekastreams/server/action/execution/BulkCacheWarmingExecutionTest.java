@@ -0,0 +1,175 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.BulkCacheWarmingRequest;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.jmock.Expectations;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test for BulkCacheWarmingExecution.
+ */
+@SuppressWarnings("unchecked")
+public class BulkCacheWarmingExecutionTest
+{
+    /** Used for mocking objects. */
+    private final JUnit4Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Id mapper. */
+    private final DomainMapper<Long, List<Long>> idMapper = context.mock(DomainMapper.class, "idMapper");
+
+    /** Warmer. */
+    private final DomainMapper<List<Long>, Object> warmer1 = context.mock(DomainMapper.class, "warmer1");
+
+    /** Warmer. */
+    private final DomainMapper<List<Long>, Object> warmer2 = context.mock(DomainMapper.class, "warmer2");
+
+    /** Outer action context. */
+    private final TaskHandlerActionContext<ActionContext> taskHandlerContext = context
+            .mock(TaskHandlerActionContext.class);
+
+    /** Inner action context. */
+    private final ActionContext actionContext = context.mock(ActionContext.class);
+
+    /** Requests queued by the action. */
+    private final List<UserActionRequest> queued = new ArrayList<UserActionRequest>();
+
+    /** System under test. */
+    private BulkCacheWarmingExecution sut;
+
+    /**
+     * Setup.
+     */
+    @Before
+    public void setUp()
+    {
+        sut = new BulkCacheWarmingExecution("warmPersonCache", idMapper, Arrays
+                .<DomainMapper<List<Long>, ? >> asList(warmer1, warmer2));
+        context.checking(new Expectations()
+        {
+            {
+                allowing(taskHandlerContext).getActionContext();
+                will(returnValue(actionContext));
+                allowing(taskHandlerContext).getUserActionRequests();
+                will(returnValue(queued));
+            }
+        });
+    }
+
+    /**
+     * Test the first chunk of a run warms the ids and queues the next chunk.
+     */
+    @Test
+    public void testExecuteFirstChunk()
+    {
+        final List<Long> ids = Arrays.asList(3L, 7L, 9L);
+        context.checking(new Expectations()
+        {
+            {
+                allowing(actionContext).getParams();
+                will(returnValue(null));
+                oneOf(idMapper).execute(0L);
+                will(returnValue(ids));
+                oneOf(warmer1).execute(ids);
+                oneOf(warmer2).execute(ids);
+            }
+        });
+
+        sut.execute(taskHandlerContext);
+        context.assertIsSatisfied();
+
+        assertEquals(1, queued.size());
+        assertEquals("warmPersonCache", queued.get(0).getActionKey());
+        BulkCacheWarmingRequest next = (BulkCacheWarmingRequest) queued.get(0).getParams();
+        assertEquals(9L, next.getAfterId());
+        assertEquals(3L, next.getWarmedCount());
+        assertTrue(next.getStartTimeMillis() > 0);
+        assertEquals(3L, sut.getWarmedCount());
+        assertEquals(9L, sut.getLastWarmedId());
+    }
+
+    /**
+     * Test a later chunk carries the run's position and totals forward.
+     */
+    @Test
+    public void testExecuteLaterChunk()
+    {
+        final List<Long> ids = Arrays.asList(12L, 15L);
+        context.checking(new Expectations()
+        {
+            {
+                allowing(actionContext).getParams();
+                will(returnValue(new BulkCacheWarmingRequest(9L, 3L, 1000L)));
+                oneOf(idMapper).execute(9L);
+                will(returnValue(ids));
+                oneOf(warmer1).execute(ids);
+                oneOf(warmer2).execute(ids);
+            }
+        });
+
+        sut.execute(taskHandlerContext);
+        context.assertIsSatisfied();
+
+        assertEquals(1, queued.size());
+        BulkCacheWarmingRequest next = (BulkCacheWarmingRequest) queued.get(0).getParams();
+        assertEquals(15L, next.getAfterId());
+        assertEquals(5L, next.getWarmedCount());
+        assertEquals(1000L, next.getStartTimeMillis());
+    }
+
+    /**
+     * Test the run ends when there are no more ids.
+     */
+    @Test
+    public void testExecuteDone()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                allowing(actionContext).getParams();
+                will(returnValue(new BulkCacheWarmingRequest(15L, 5L, 1000L)));
+                oneOf(idMapper).execute(15L);
+                will(returnValue(Collections.EMPTY_LIST));
+            }
+        });
+
+        sut.execute(taskHandlerContext);
+        context.assertIsSatisfied();
+
+        assertTrue(queued.isEmpty());
+        assertEquals(0L, sut.getWarmedCount());
+    }
+}
@@ -23,7 +23,7 @@ import java.util.List;
 
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.server.UserActionRequest;
-import org.eurekastreams.server.persistence.mappers.cache.Cache;
+import org.eurekastreams.server.persistence.mappers.cache.GenerationalCache;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
@@ -51,7 +51,7 @@ public class InitializeCacheExecutionTest
     /**
      * Cache mock.
      */
-    private Cache cache = context.mock(Cache.class);
+    private GenerationalCache cache = context.mock(GenerationalCache.class);
 
     /**
      * Test.
@@ -59,14 +59,15 @@ public class InitializeCacheExecutionTest
     @Test
     public void testListKeys()
     {
+        final List<String> awaited = Arrays.asList("key1");
         InitializeCacheExecution sut = new InitializeCacheExecution(cache, new ArrayList<String>(Arrays.asList("key",
-                "key1")));
+                "key1")), awaited);
 
         final List<UserActionRequest> list = new ArrayList<UserActionRequest>();
         context.checking(new Expectations()
         {
             {
-                allowing(cache).clear();
+                oneOf(cache).startGeneration(awaited);
 
                 allowing(actionContext).getUserActionRequests();
                 will(returnValue(list));
@@ -88,7 +89,7 @@ public class InitializeCacheExecutionTest
     {
         List<String> keys = new ArrayList<String>();
         keys.add(null);
-        InitializeCacheExecution sut = new InitializeCacheExecution(null, keys);
+        InitializeCacheExecution sut = new InitializeCacheExecution(null, keys, new ArrayList<String>());
 
         sut.execute(actionContext);
 
@@ -103,7 +104,7 @@ public class InitializeCacheExecutionTest
     {
         List<String> keys = new ArrayList<String>();
         keys.add("");
-        InitializeCacheExecution sut = new InitializeCacheExecution(null, keys);
+        InitializeCacheExecution sut = new InitializeCacheExecution(null, keys, new ArrayList<String>());
 
         sut.execute(actionContext);
 
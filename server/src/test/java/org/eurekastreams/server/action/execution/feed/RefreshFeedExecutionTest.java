@@ -15,6 +15,8 @@
  */
 package org.eurekastreams.server.action.execution.feed;
 
+import static org.junit.Assert.assertEquals;
+
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -26,7 +28,6 @@ import java.util.TreeMap;
 
 import org.eurekastreams.commons.actions.context.ActionContext;
 import org.eurekastreams.server.action.request.feed.RefreshFeedRequest;
-import org.eurekastreams.server.domain.DomainGroup;
 import org.eurekastreams.server.domain.EntityType;
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.domain.gadgetspec.GadgetMetaDataDTO;
@@ -35,6 +36,7 @@ import org.eurekastreams.server.domain.stream.BaseObjectType;
 import org.eurekastreams.server.domain.stream.plugins.Feed;
 import org.eurekastreams.server.domain.stream.plugins.FeedSubscriber;
 import org.eurekastreams.server.domain.stream.plugins.PluginDefinition;
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.eurekastreams.server.persistence.mappers.FindByIdMapper;
 import org.eurekastreams.server.persistence.mappers.InsertMapper;
 import org.eurekastreams.server.persistence.mappers.UpdateMapper;
@@ -42,15 +44,21 @@ import org.eurekastreams.server.persistence.mappers.cache.CacheKeys;
 import org.eurekastreams.server.persistence.mappers.cache.MemcachedCache;
 import org.eurekastreams.server.persistence.mappers.requests.FindByIdRequest;
 import org.eurekastreams.server.persistence.mappers.requests.PersistenceRequest;
+import org.eurekastreams.server.search.modelview.DomainGroupModelView;
+import org.eurekastreams.server.search.modelview.PersonModelView;
 import org.eurekastreams.server.service.actions.strategies.activity.plugins.FeedObjectActivityBuilder;
+import org.eurekastreams.server.service.actions.strategies.activity.plugins.FeedRefreshScheduler;
 import org.eurekastreams.server.service.actions.strategies.activity.plugins.ObjectBuilderForSpecificUrl;
 import org.eurekastreams.server.service.actions.strategies.activity.plugins.rome.ActivityStreamsModule;
 import org.eurekastreams.server.service.actions.strategies.activity.plugins.rome.ActivityStreamsModuleImpl;
 import org.eurekastreams.server.service.actions.strategies.activity.plugins.rome.FeedFactory;
 import org.eurekastreams.server.service.opensocial.gadgets.spec.GadgetMetaDataFetcher;
+import org.eurekastreams.server.service.utility.http.HttpCacheValidators;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.Before;
 import org.junit.Test;
@@ -120,6 +128,11 @@ public class RefreshFeedExecutionTest
      */
     private final InsertMapper<Activity> activityDBInserter = context.mock(InsertMapper.class);
 
+    /**
+     * Activities inserted.
+     */
+    private final List<Activity> inserted = new ArrayList<Activity>();
+
     /**
      * The cache.
      */
@@ -158,14 +171,16 @@ public class RefreshFeedExecutionTest
     private final FeedObjectActivityBuilder bookmarkMapper = context.mock(FeedObjectActivityBuilder.class, "bookmark");
 
     /**
-     * Find by id person mapper.
+     * Get people by ids mapper.
      */
-    private final FindByIdMapper<Person> personMapper = context.mock(FindByIdMapper.class);
+    private final DomainMapper<List<Long>, List<PersonModelView>> personMapper = context.mock(DomainMapper.class,
+            "pm");
 
     /**
-     * Find by id group mapper.
+     * Get groups by ids mapper.
      */
-    private final FindByIdMapper<DomainGroup> groupMapper = context.mock(FindByIdMapper.class, "gm");
+    private final DomainMapper<List<Long>, List<DomainGroupModelView>> groupMapper = context.mock(
+            DomainMapper.class, "gm");
 
     /**
      * Find by id feed mapper.
@@ -175,11 +190,11 @@ public class RefreshFeedExecutionTest
     /**
      * Person owner.
      */
-    private final Person personOwner = context.mock(Person.class);
+    private final PersonModelView personOwner = new PersonModelView();
     /**
      * Group owner.
      */
-    private final DomainGroup groupOwner = context.mock(DomainGroup.class);
+    private final DomainGroupModelView groupOwner = new DomainGroupModelView();
 
     /**
      * Group owner.
@@ -232,6 +247,14 @@ public class RefreshFeedExecutionTest
         feedSubs.add(sub1);
         feedSubs.add(sub2);
 
+        personOwner.setEntityId(1L);
+        personOwner.setAccountId("user1");
+        personOwner.setStreamScopeId(11L);
+        groupOwner.setEntityId(2L);
+        groupOwner.setShortName("group2");
+        groupOwner.setStreamScopeId(12L);
+        groupOwner.setIsPublic(true);
+
         specificUrlMappers.add(youTubeMapper);
         specificUrlMappers.add(flickrMapper);
 
@@ -265,6 +288,15 @@ public class RefreshFeedExecutionTest
                 allowing(feed).getTitle();
                 will(returnValue("This is a feed"));
 
+                allowing(feed).getEtag();
+                will(returnValue("\"etag\""));
+
+                allowing(feed).getLastModified();
+                will(returnValue(null));
+
+                allowing(feed).getContentHash();
+                will(returnValue("hash"));
+
                 // allowing(feed).getId();
                 // will(returnValue(5L));
 
@@ -277,9 +309,6 @@ public class RefreshFeedExecutionTest
                 allowing(plugin).getObjectType();
                 will(returnValue(BaseObjectType.BOOKMARK));
 
-                oneOf(youTubeMapper).match(with(any(String.class)));
-                will(returnValue(false));
-
                 allowing(updateMapper).execute(with(any(PersistenceRequest.class)));
 
                 allowing(cache).get(CacheKeys.BUFFERED_ACTIVITIES);
@@ -289,26 +318,73 @@ public class RefreshFeedExecutionTest
                 will(returnValue(metaDataList));
 
                 allowing(activityDBInserter).execute(with(any(PersistenceRequest.class)));
+                will(new CustomAction("Record inserted activity")
+                {
+                    public Object invoke(final Invocation inv) throws Throwable
+                    {
+                        inserted.add(((PersistenceRequest<Activity>) inv.getParameter(0)).getDomainEnity());
+                        return null;
+                    }
+                });
                 allowing(cache).addToTopOfList(with(any(String.class)), with(any(ArrayList.class)));
 
-                allowing(personMapper).execute(with(any(FindByIdRequest.class)));
-                will(returnValue(personOwner));
+                allowing(personMapper).execute(with(any(List.class)));
+                will(returnValue(Collections.singletonList(personOwner)));
 
-                allowing(groupMapper).execute(with(any(FindByIdRequest.class)));
-                will(returnValue(groupOwner));
+                allowing(groupMapper).execute(with(any(List.class)));
+                will(returnValue(Collections.singletonList(groupOwner)));
 
                 allowing(feedMapper).execute(with(any(FindByIdRequest.class)));
                 will(returnValue(feed));
 
                 // ---- updates always made ----
-                oneOf(feed).setLastPostDate(with(any(Date.class)));
                 oneOf(feed).setLastUpdated(with(any(Long.class)));
                 oneOf(feed).setPending(false);
+            }
+        });
+
+    }
+
+    /**
+     * Setup expectations for a feed which was fetched and read.
+     */
+    private void setupFeedRead()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(youTubeMapper).match(with(any(String.class)));
+                will(returnValue(false));
+
+                oneOf(feed).setLastPostDate(with(any(Date.class)));
                 oneOf(feed).setLastSeenGUID(with(any(String.class)));
                 oneOf(feed).setIsFeedBroken(with(any(Boolean.class)));
+                oneOf(feed).setEtag("\"etag2\"");
+                oneOf(feed).setLastModified(null);
+                oneOf(feed).setContentHash("hash2");
             }
         });
+    }
 
+    /**
+     * Creates an action standing in for a fetch of a changed feed.
+     *
+     * @param feeds
+     *            The feeds to return.
+     * @return The action.
+     */
+    private CustomAction fetchChanged(final Map<String, SyndFeed> feeds)
+    {
+        return new CustomAction("Fetch changed feed")
+        {
+            public Object invoke(final Invocation inv) throws Throwable
+            {
+                HttpCacheValidators validators = (HttpCacheValidators) inv.getParameter(2);
+                validators.setEtag("\"etag2\"");
+                validators.setContentHash("hash2");
+                return feeds;
+            }
+        };
     }
 
     /**
@@ -322,10 +398,12 @@ public class RefreshFeedExecutionTest
         context.checking(new Expectations()
         {
             {
-                allowing(feedFetcherFactory).getSyndicatedFeed(with(equal(FEED_URL)), with(any(List.class)));
-                will(returnValue(Collections.singletonMap(null, atomFeed1)));
+                allowing(feedFetcherFactory).getSyndicatedFeed(with(equal(FEED_URL)), with(any(List.class)),
+                        with(any(HttpCacheValidators.class)));
+                will(fetchChanged(Collections.singletonMap((String) null, atomFeed1)));
             }
         });
+        setupFeedRead();
     }
 
     /**
@@ -343,10 +421,12 @@ public class RefreshFeedExecutionTest
         context.checking(new Expectations()
         {
             {
-                allowing(feedFetcherFactory).getSyndicatedFeed(with(equal(FEED_URL)), with(any(List.class)));
-                will(returnValue(feeds));
+                allowing(feedFetcherFactory).getSyndicatedFeed(with(equal(FEED_URL)), with(any(List.class)),
+                        with(any(HttpCacheValidators.class)));
+                will(fetchChanged(feeds));
             }
         });
+        setupFeedRead();
     }
 
     /**
@@ -490,6 +570,90 @@ public class RefreshFeedExecutionTest
         coreUpdateFrequencyTest(SyModule.YEARLY, 1, MININYEAR);
     }
 
+    /**
+     * Tests an unchanged feed is not read, keeps its state, and is scheduled as a good refresh.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testNotModified() throws Exception
+    {
+        final FeedRefreshScheduler scheduler = context.mock(FeedRefreshScheduler.class);
+        sut.setRefreshScheduler(scheduler);
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(feed).getIsFeedBroken();
+                will(returnValue(false));
+
+                oneOf(scheduler).scheduleNext(with(same(feed)), with(any(Long.class)), with(equal(false)),
+                        with(any(Long.class)));
+
+                oneOf(feedFetcherFactory).getSyndicatedFeed(with(equal(FEED_URL)), with(any(List.class)),
+                        with(any(HttpCacheValidators.class)));
+                will(new CustomAction("Fetch unchanged feed")
+                {
+                    public Object invoke(final Invocation inv) throws Throwable
+                    {
+                        HttpCacheValidators validators = (HttpCacheValidators) inv.getParameter(2);
+                        assertEquals("\"etag\"", validators.getEtag());
+                        assertEquals("hash", validators.getContentHash());
+                        validators.setNotModified(true);
+                        return Collections.EMPTY_MAP;
+                    }
+                });
+
+                never(youTubeMapper).match(with(any(String.class)));
+                never(feed).setLastSeenGUID(with(any(String.class)));
+                never(feed).setIsFeedBroken(with(any(Boolean.class)));
+                never(feed).setLastPostDate(with(any(Date.class)));
+                never(feed).setEtag(with(any(String.class)));
+            }
+        });
+
+        sut.execute(ac);
+
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests a changed feed whose processing fails keeps the validators of its last copy, so the next refresh reads it
+     * again rather than being told it is unchanged.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testFailedRefreshKeepsValidators() throws Exception
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(feedFetcherFactory).getSyndicatedFeed(with(equal(FEED_URL)), with(any(List.class)),
+                        with(any(HttpCacheValidators.class)));
+                will(fetchChanged(Collections.singletonMap((String) null, atomFeed1)));
+
+                oneOf(youTubeMapper).match(with(any(String.class)));
+                will(throwException(new RuntimeException("Mapper failed")));
+
+                allowing(feed).setLastSeenGUID(with(any(String.class)));
+                allowing(feed).setIsFeedBroken(true);
+                allowing(feed).setLastPostDate(with(any(Date.class)));
+                allowing(feed).setUpdateFrequency(null);
+
+                never(feed).setEtag(with(any(String.class)));
+                never(feed).setLastModified(with(any(String.class)));
+                never(feed).setContentHash(with(any(String.class)));
+            }
+        });
+
+        sut.execute(ac);
+
+        context.assertIsSatisfied();
+    }
+
     /**
      * Test with no mapper and a specific URL mapper for the feed and 1 entry.
      * 
@@ -525,17 +689,6 @@ public class RefreshFeedExecutionTest
 
                 oneOf(flickrObjectMapper).build(with(equal(feed)), with(equal(entry1)), with(any(Activity.class)));
                 
-                allowing(personOwner).isAccountLocked();
-                will(returnValue(false));
-                
-                allowing(personOwner).getAccountId();
-                allowing(personOwner).getId();
-                allowing(personOwner).getStreamScope();
-                allowing(groupOwner).getStreamScope();
-                allowing(groupOwner).isPublicGroup();
-                allowing(groupOwner).getShortName();
-                will(returnValue(false));
-
                 allowing(atomFeed1).getEntries();
                 will(returnValue(entryList));
 
@@ -547,6 +700,70 @@ public class RefreshFeedExecutionTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Test each entry is posted to every subscriber's stream except locked accounts.
+     *
+     * @throws Exception
+     *             exception feed throws.
+     */
+    @Test
+    public void withLockedSubscriber() throws Exception
+    {
+        final FeedObjectActivityBuilder flickrObjectMapper = context.mock(FeedObjectActivityBuilder.class);
+        final SyndEntryImpl entry1 = context.mock(SyndEntryImpl.class, "e1");
+        final SyndEntryImpl entry2 = context.mock(SyndEntryImpl.class, "e2");
+        final List<SyndEntryImpl> entryList = new LinkedList<SyndEntryImpl>();
+        entryList.add(entry1);
+        entryList.add(entry2);
+
+        personOwner.setAccountLocked(true);
+
+        setupNoSyMod();
+        setupFetchAnonymous();
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(flickrMapper).match(FEED_URL);
+                will(returnValue(true));
+
+                oneOf(flickrMapper).getBuilder();
+                will(returnValue(flickrObjectMapper));
+
+                allowing(entry1).getPublishedDate();
+                will(returnValue(new Date(3)));
+                allowing(entry1).getUpdatedDate();
+                will(returnValue(new Date(3)));
+                allowing(entry1).getUri();
+                will(returnValue("uri1"));
+
+                allowing(entry2).getPublishedDate();
+                will(returnValue(new Date(4)));
+                allowing(entry2).getUpdatedDate();
+                will(returnValue(new Date(4)));
+                allowing(entry2).getUri();
+                will(returnValue("uri2"));
+
+                oneOf(flickrObjectMapper).build(with(equal(feed)), with(equal(entry1)), with(any(Activity.class)));
+                oneOf(flickrObjectMapper).build(with(equal(feed)), with(equal(entry2)), with(any(Activity.class)));
+
+                allowing(atomFeed1).getEntries();
+                will(returnValue(entryList));
+            }
+        });
+
+        sut.execute(ac);
+
+        context.assertIsSatisfied();
+        assertEquals(2, inserted.size());
+        for (Activity activity : inserted)
+        {
+            assertEquals("group2", activity.getActorId());
+            assertEquals(EntityType.GROUP, activity.getActorType());
+            assertEquals("group2", activity.getRecipientStreamScope().getUniqueKey());
+            assertEquals(Boolean.TRUE, activity.getIsDestinationStreamPublic());
+        }
+    }
+
     /**
      * Test with 1 old entry, 1 activitystreams entry, 1 unsupported activitystreams object, and 1 standard note object.
      * 
@@ -577,17 +794,6 @@ public class RefreshFeedExecutionTest
         context.checking(new Expectations()
         {
             {
-            	allowing(personOwner).isAccountLocked();
-                will(returnValue(false));
-                
-                allowing(personOwner).getAccountId();
-                allowing(personOwner).getId();
-                allowing(personOwner).getStreamScope();
-                allowing(groupOwner).getStreamScope();
-                allowing(groupOwner).isPublicGroup();
-                allowing(groupOwner).getShortName();
-                will(returnValue(false));
-
                 oneOf(flickrMapper).match(FEED_URL);
                 will(returnValue(false));
 
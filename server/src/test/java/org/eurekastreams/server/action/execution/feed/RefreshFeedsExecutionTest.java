@@ -15,11 +15,16 @@
  */
 package org.eurekastreams.server.action.execution.feed;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.client.ActionRequest;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.feed.RefreshFeedRequest;
 import org.eurekastreams.server.domain.stream.plugins.Feed;
 import org.eurekastreams.server.persistence.mappers.GetRefreshableFeedsMapper;
 import org.eurekastreams.server.persistence.mappers.SetRefreshableFeedsAsPending;
@@ -98,4 +103,69 @@ public class RefreshFeedsExecutionTest
 
         context.assertIsSatisfied();
     }
+
+    /**
+     * Tests the refreshes are queued taking each host in turn.
+     */
+    @Test
+    public void executeInterleavesHosts()
+    {
+        final List<Feed> feeds = new LinkedList<Feed>();
+        feeds.add(makeFeed(1L, "http://a.example.com/1"));
+        feeds.add(makeFeed(2L, "http://a.example.com/2"));
+        feeds.add(makeFeed(3L, "http://A.example.com/3"));
+        feeds.add(makeFeed(4L, "http://b.example.com/1"));
+        feeds.add(makeFeed(5L, "not a url"));
+
+        final List<UserActionRequest> requests = new ArrayList<UserActionRequest>();
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(getFeedsMapper).execute(with(any(CurrentDateInMinutesRequest.class)));
+                will(returnValue(feeds));
+
+                oneOf(setFeedsAsPendingMapper).execute(with(any(CurrentDateInMinutesRequest.class)));
+
+                allowing(actionContext).getUserActionRequests();
+                will(returnValue(requests));
+            }
+        });
+
+        sut.execute(actionContext);
+
+        context.assertIsSatisfied();
+        final long[] expected = { 1L, 4L, 5L, 2L, 3L };
+        assertEquals(expected.length, requests.size());
+        for (int i = 0; i < expected.length; i++)
+        {
+            assertEquals("refreshFeedAction", requests.get(i).getActionKey());
+            assertEquals(expected[i], (long) ((RefreshFeedRequest) requests.get(i).getParams()).getFeedId());
+        }
+    }
+
+    /**
+     * Makes a feed.
+     *
+     * @param id
+     *            Id.
+     * @param url
+     *            URL.
+     * @return Feed.
+     */
+    private Feed makeFeed(final long id, final String url)
+    {
+        final Feed feed = context.mock(Feed.class, "feed" + id);
+        context.checking(new Expectations()
+        {
+            {
+                allowing(feed).getId();
+                will(returnValue(id));
+
+                allowing(feed).getUrl();
+                will(returnValue(url));
+            }
+        });
+        return feed;
+    }
 }
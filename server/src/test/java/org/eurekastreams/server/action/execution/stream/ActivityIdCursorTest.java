@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import net.sf.json.JSONObject;
+
+import org.eurekastreams.server.service.actions.strategies.activity.ListCollider;
+import org.eurekastreams.server.service.actions.strategies.activity.datasources.DescendingOrderDataSource;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Test;
+
+/**
+ * Test fixture for ActivityIdCursor.
+ */
+public class ActivityIdCursorTest
+{
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery();
+
+    /**
+     * Descending order data source.
+     */
+    private final DescendingOrderDataSource dataSource = context.mock(DescendingOrderDataSource.class);
+
+    /**
+     * AND collider.
+     */
+    private final ListCollider andCollider = context.mock(ListCollider.class);
+
+    /**
+     * User id.
+     */
+    private final Long userId = 5L;
+
+    /**
+     * Test the cursor resumes after the last id handed out even when new ids were added to the top of the list.
+     */
+    @Test
+    public void testResumeAfterNewIds()
+    {
+        final JSONObject request = new JSONObject();
+        context.checking(new Expectations()
+        {
+            {
+                exactly(3).of(dataSource).fetch(request, userId);
+                will(onConsecutiveCalls(returnValue(Arrays.asList(9L, 8L)), returnValue(Arrays.asList(11L, 10L, 9L,
+                        8L)), returnValue(Arrays.asList(11L, 10L, 9L, 8L, 7L, 6L))));
+            }
+        });
+
+        ActivityIdCursor sut = new ActivityIdCursor(dataSource, null, andCollider, request, userId, 2);
+
+        assertEquals(Arrays.asList(9L, 8L), sut.next(2));
+        assertTrue(sut.isSortedByIdDescending());
+
+        // the second fetch only has new ids at the top, so the cursor fetches again to find older ones
+        assertEquals(Arrays.asList(7L, 6L), sut.next(2));
+
+        // the third fetch came back short - so we're done
+        assertTrue(sut.next(2).isEmpty());
+
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test the cursor walks a sorted-only data set without fetching from the descending data source again.
+     */
+    @Test
+    public void testSortedOnly()
+    {
+        final JSONObject request = new JSONObject();
+        final List<Long> sorted = Arrays.asList(3L, 7L, 1L);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(dataSource).fetch(request, userId);
+                will(returnValue(null));
+            }
+        });
+
+        ActivityIdCursor sut = new ActivityIdCursor(dataSource, sorted, andCollider, request, userId, 2);
+
+        assertEquals(Arrays.asList(3L, 7L), sut.next(2));
+        assertEquals(Arrays.asList(1L), sut.next(2));
+        assertTrue(sut.next(2).isEmpty());
+
+        context.assertIsSatisfied();
+    }
+}
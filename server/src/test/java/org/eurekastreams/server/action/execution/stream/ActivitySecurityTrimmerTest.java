@@ -223,4 +223,83 @@ public class ActivitySecurityTrimmerTest
         Assert.assertEquals(0, sut.trim(Arrays.asList(activityId), userId).size());
         context.assertIsSatisfied();
     }
+
+    /**
+     * Test the per-query trimmer loads the user's visible groups once and reuses them for later pages.
+     */
+    @Test
+    public void testGetTrimmerLoadsVisibleGroupsOnce()
+    {
+        final Collection<ActivitySecurityDTO> asdCollection = new ArrayList<ActivitySecurityDTO>();
+        asdCollection.add(asd);
+
+        final Set<Long> visibleDestinationEntityIds = new HashSet<Long>();
+        visibleDestinationEntityIds.add(destinationEntityId);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(getVisibleGroupsForUserMapper).execute(userId);
+                will(returnValue(visibleDestinationEntityIds));
+
+                exactly(2).of(securityMapper).execute(with(any(List.class)));
+                will(returnValue(asdCollection));
+
+                allowing(asd).isDestinationStreamPublic();
+                will(returnValue(false));
+
+                allowing(asd).getDestinationEntityId();
+                will(returnValue(destinationEntityId));
+
+                allowing(asd).getExists();
+                will(returnValue(true));
+
+                allowing(asd).getId();
+                will(returnValue(activityId));
+            }
+        });
+
+        ListTrimmer trimmer = sut.getTrimmer(null, userId);
+        Assert.assertEquals(1, trimmer.trim(Arrays.asList(activityId), userId).size());
+        Assert.assertEquals(1, trimmer.trim(Arrays.asList(activityId), userId).size());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test a large list keeps its input order and drops exactly the activities not permitted.
+     */
+    @Test
+    public void testLargeListPreservesOrder()
+    {
+        final int count = 10000;
+        final List<Long> ids = new ArrayList<Long>(count);
+        final Collection<ActivitySecurityDTO> asdCollection = new ArrayList<ActivitySecurityDTO>(count);
+        for (long i = count; i > 0; i--)
+        {
+            ids.add(i);
+            // security DTOs come back in a different order than requested; odd ids are private
+            asdCollection.add(new ActivitySecurityDTO(count + 1 - i, destinationEntityId, (count + 1 - i) % 2 == 0,
+                    true));
+        }
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(getVisibleGroupsForUserMapper).execute(userId);
+                will(returnValue(new HashSet<Long>()));
+
+                oneOf(securityMapper).execute(ids);
+                will(returnValue(asdCollection));
+            }
+        });
+
+        List<Long> results = sut.trim(ids, userId);
+
+        Assert.assertEquals(count / 2, results.size());
+        for (int i = 0; i < results.size(); i++)
+        {
+            Assert.assertEquals(count - 2 * i, results.get(i).longValue());
+        }
+        context.assertIsSatisfied();
+    }
 }
@@ -16,6 +16,7 @@
 package org.eurekastreams.server.action.execution.stream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -80,6 +81,7 @@ public class DeleteActivitiesByIdsExecutionTest
     /**
      * Test the execution fo the {@link DeleteActivitiesByIdsExecution} class.
      */
+    @SuppressWarnings("unchecked")
     @Test
     public void testExecute()
     {
@@ -113,14 +115,17 @@ public class DeleteActivitiesByIdsExecutionTest
 
         // assert that the UserActionRequest list that came out is valid.
         final List<UserActionRequest> userActionRequests = actionContext.getUserActionRequests();
-        assertEquals(8, userActionRequests.size());
+        assertEquals(3, userActionRequests.size());
         assertEquals("deleteFromSearchIndexAction", userActionRequests.get(0).getActionKey());
         assertEquals("deleteIdsFromLists", userActionRequests.get(1).getActionKey());
-        // There should be four individual deleteCacheKeysAction UserActionRequests, 2 for the two activities,
-        // and 2 for the 2 comments to be deleted.
+        // There should be one deleteCacheKeysAction UserActionRequest, with the activity, activity security and
+        // comment id list keys for the two activities and the keys for the 2 comments to be deleted.
         assertEquals("deleteCacheKeysAction", userActionRequests.get(2).getActionKey());
-        assertEquals("deleteCacheKeysAction", userActionRequests.get(3).getActionKey());
-        assertEquals("deleteCacheKeysAction", userActionRequests.get(4).getActionKey());
-        assertEquals("deleteCacheKeysAction", userActionRequests.get(5).getActionKey());
+        Set<String> cacheKeys = (Set<String>) userActionRequests.get(2).getParams();
+        assertEquals(8, cacheKeys.size());
+        assertTrue(cacheKeys.contains(CacheKeys.ACTIVITY_BY_ID + 2L));
+        assertTrue(cacheKeys.contains(CacheKeys.ACTIVITY_SECURITY_BY_ID + 2L));
+        assertTrue(cacheKeys.contains(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + 2L));
+        assertTrue(cacheKeys.contains(CacheKeys.COMMENT_BY_ID + 2L));
     }
 }
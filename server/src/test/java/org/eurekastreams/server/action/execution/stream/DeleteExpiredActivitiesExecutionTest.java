@@ -15,24 +15,20 @@
  */
 package org.eurekastreams.server.action.execution.stream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import org.eurekastreams.commons.actions.context.PrincipalActionContext;
 import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
 import org.eurekastreams.commons.server.UserActionRequest;
-import org.eurekastreams.server.action.request.DeleteFromSearchIndexRequest;
+import org.eurekastreams.server.action.request.stream.PurgeExpiredActivitiesRequest;
 import org.eurekastreams.server.domain.SystemSettings;
-import org.eurekastreams.server.domain.stream.Activity;
-import org.eurekastreams.server.persistence.mappers.DeleteFromSearchIndex;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
-import org.eurekastreams.server.persistence.mappers.cache.RemoveExpiredActivities;
-import org.eurekastreams.server.persistence.mappers.db.GetExpiredActivities;
-import org.eurekastreams.server.persistence.mappers.db.GetListsContainingActivities;
 import org.eurekastreams.server.persistence.mappers.requests.MapperRequest;
+import org.eurekastreams.server.testing.TestContextCreator;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.integration.junit4.JUnit4Mockery;
@@ -56,46 +52,16 @@ public class DeleteExpiredActivitiesExecutionTest
         }
     };
 
-    /**
-     * ActionContext mock.
-     */
-    @SuppressWarnings("unchecked")
-    private TaskHandlerActionContext actionContext = context.mock(TaskHandlerActionContext.class);
-
     /**
      * {@link FindSystemSettings} mock.
      */
     private DomainMapper<MapperRequest, SystemSettings> settingsMapper = context.mock(DomainMapper.class);
 
     /**
-     * {@link GetExpiredActivities} mock.
-     */
-    private GetExpiredActivities expiredActivitiesMapper = context.mock(GetExpiredActivities.class);
-
-    /**
-     * {@link GetListsContainingActivities} mock.
-     */
-    private GetListsContainingActivities listsMapper = context.mock(GetListsContainingActivities.class);
-
-    /**
-     * {@link RemoveExpiredActivities} mock.
-     */
-    private RemoveExpiredActivities deleteMapper = context.mock(RemoveExpiredActivities.class);
-
-    /**
-     * {@link DeleteFromSearchIndex} mock.
-     */
-    private DeleteFromSearchIndex indexDeleteMapper = context.mock(DeleteFromSearchIndex.class);
-
-    /**
-     * Test chunk size.
+     * Action context.
      */
-    private int chunkSize = 2;
-
-    /**
-     * {@link Activity} mock.
-     */
-    private Activity activity = context.mock(Activity.class);
+    private TaskHandlerActionContext<PrincipalActionContext> actionContext = TestContextCreator
+            .createTaskHandlerContextWithPrincipal(null, "user", 1L);
 
     /**
      * The system under test.
@@ -108,7 +74,7 @@ public class DeleteExpiredActivitiesExecutionTest
     @Before
     public void setUp()
     {
-        sut = new DeleteExpiredActivitiesExecution(settingsMapper, expiredActivitiesMapper, chunkSize);
+        sut = new DeleteExpiredActivitiesExecution(settingsMapper, "purge");
     }
 
     /**
@@ -117,56 +83,33 @@ public class DeleteExpiredActivitiesExecutionTest
      * @throws Exception
      *             not expected.
      */
-    @SuppressWarnings("unchecked")
     @Test
     public void testPerformAction() throws Exception
     {
+        final int expireDays = 20;
         context.checking(new Expectations()
         {
             {
-                final int expireDays = 20;
                 SystemSettings settings = new SystemSettings();
                 settings.setContentExpiration(expireDays);
                 allowing(settingsMapper).execute(null);
                 will(returnValue(settings));
-
-                List<Long> activities = new ArrayList<Long>();
-                activities.add(1L);
-                activities.add(2L);
-                activities.add(3L);
-
-                allowing(expiredActivitiesMapper).execute(with(any(Date.class)));
-                will(returnValue(activities));
-
-                // first chunk
-                allowing(listsMapper).execute(with(any(List.class)));
-                will(returnValue(Arrays.asList("cacheKey1", "cacheKey2")));
-
-                allowing(deleteMapper).execute(with(any(List.class)));
-
-                List<UserActionRequest> requests = new ArrayList<UserActionRequest>();
-                oneOf(actionContext).getUserActionRequests();
-                will(returnValue(requests));
-
-                allowing(indexDeleteMapper).execute(with(any(DeleteFromSearchIndexRequest.class)));
-
-                // second chunk
-                allowing(listsMapper).execute(with(any(List.class)));
-                will(returnValue(Arrays.asList("cacheKey3")));
-
-                allowing(deleteMapper).execute(with(any(List.class)));
-
-                requests = new ArrayList<UserActionRequest>();
-                oneOf(actionContext).getUserActionRequests();
-                will(returnValue(requests));
-
-                allowing(indexDeleteMapper).execute(with(any(DeleteFromSearchIndexRequest.class)));
             }
         });
 
         Boolean result = sut.execute(actionContext);
         context.assertIsSatisfied();
         assertTrue(result);
+
+        List<UserActionRequest> requests = actionContext.getUserActionRequests();
+        assertEquals(1, requests.size());
+        assertEquals("purge", requests.get(0).getActionKey());
+        PurgeExpiredActivitiesRequest request = (PurgeExpiredActivitiesRequest) requests.get(0).getParams();
+        assertEquals(0, request.getAfterId());
+        assertEquals(0, request.getDeletedCount());
+        final long day = 24L * 60 * 60 * 1000;
+        long age = new Date().getTime() - request.getExpirationDate().getTime();
+        assertTrue(age > (expireDays - 1) * day && age < (expireDays + 1) * day);
     }
 
     /**
@@ -175,7 +118,6 @@ public class DeleteExpiredActivitiesExecutionTest
      * @throws Exception
      *             not expected.
      */
-    @SuppressWarnings("unchecked")
     @Test
     public void testPerformActionNoWork() throws Exception
     {
@@ -193,6 +135,7 @@ public class DeleteExpiredActivitiesExecutionTest
         Boolean result = sut.execute(actionContext);
         context.assertIsSatisfied();
         assertTrue(result);
+        assertTrue(actionContext.getUserActionRequests().isEmpty());
     }
 
 }
@@ -18,6 +18,7 @@ package org.eurekastreams.server.action.execution.stream;
 import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -29,6 +30,7 @@ import org.eurekastreams.server.domain.stream.ActivityDTO;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.eurekastreams.server.search.modelview.PersonModelView;
 import org.eurekastreams.server.service.actions.strategies.activity.ActivityFilter;
+import org.hamcrest.Matchers;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
 import org.jmock.integration.junit4.JUnit4Mockery;
@@ -285,4 +287,53 @@ public class GetActivitiesByRequestExecutionTest
         context.assertIsSatisfied();
         assertEquals(1, results.getPagedSet().size());
     }
+
+    /**
+     * Perform action test asking only for newer activities: one extra is looked for whatever the sort, and the total
+     * shows there are more.
+     *
+     * @throws Exception
+     *             on failure.
+     */
+    @Test
+    public final void performActionSinceId() throws Exception
+    {
+        final String request = "{ count:2, sinceId:\"5\", query : { sortBy:\"interesting\" } }";
+        final PersonModelView personModel = new PersonModelView();
+        final ArrayList<ActivityDTO> activities = new ArrayList<ActivityDTO>();
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(actionContext).getPrincipal();
+                will(returnValue(principal));
+
+                allowing(principal).getAccountId();
+                will(returnValue(personAccountId));
+
+                allowing(principal).getId();
+                will(returnValue(personId));
+
+                allowing(actionContext).getParams();
+                will(returnValue(request));
+
+                oneOf(getActivityIdsByJsonRequest).execute(with(Matchers.containsString("\"count\":3")),
+                        with(personId));
+                will(returnValue(new ArrayList<Long>(Arrays.asList(9L, 8L, 7L))));
+
+                oneOf(bulkMapper).execute(Arrays.asList(9L, 8L));
+                will(returnValue(activities));
+
+                allowing(filterMock).filter(with(activities), with(any(PersonModelView.class)));
+
+                oneOf(getPersonModelViewByAccountIdMapper).execute(personAccountId);
+                will(returnValue(personModel));
+            }
+        });
+
+        PagedSet<ActivityDTO> results = (PagedSet<ActivityDTO>) sut.execute(actionContext);
+
+        context.assertIsSatisfied();
+        assertEquals(3, results.getTotal());
+    }
 }
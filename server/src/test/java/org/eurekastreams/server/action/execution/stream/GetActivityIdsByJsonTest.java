@@ -392,4 +392,59 @@ public class GetActivityIdsByJsonTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Test only ids newer than sinceId are returned, stopping at the first id at or below it.
+     */
+    @Test
+    public void testPerformActionSinceId()
+    {
+        final String request = "{ \"count\": 100, \"sinceId\": \"6\" }";
+
+        context.checking(new Expectations()
+        {
+            {
+                allowing(luceneDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                will(returnValue(null));
+
+                oneOf(memcacheDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                will(returnValue(allActivityIds));
+
+                oneOf(securityTrimmer).trim(Arrays.asList(9L, 8L, 7L), personId);
+                will(returnValue(Arrays.asList(9L, 7L)));
+            }
+        });
+
+        List<Long> results = sut.execute(request, personId);
+
+        assertEquals(Arrays.asList(9L, 7L), results);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test only ids newer than sinceId are walked in a data set which is not sorted by id.
+     */
+    @Test
+    public void testPerformActionSinceIdNotSortedById()
+    {
+        final String request = "{ \"count\": 100, \"sinceId\": \"6\", \"query\": { \"sortBy\": \"interest\" } }";
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(luceneDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                will(returnValue(Arrays.asList(5L, 9L, 2L, 12L, 6L, 7L, 1L)));
+
+                allowing(memcacheDS).fetch(with(any(JSONObject.class)), with(any(Long.class)));
+                will(returnValue(null));
+
+                oneOf(securityTrimmer).trim(Arrays.asList(9L, 12L, 7L), personId);
+                will(returnValue(Arrays.asList(9L, 7L)));
+            }
+        });
+
+        List<Long> results = sut.execute(request, personId);
+
+        assertEquals(Arrays.asList(9L, 7L), results);
+        context.assertIsSatisfied();
+    }
 }
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.execution.stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.eurekastreams.commons.actions.TaskHandlerExecutionStrategy;
+import org.eurekastreams.commons.actions.context.ActionContext;
+import org.eurekastreams.commons.actions.context.TaskHandlerActionContext;
+import org.eurekastreams.commons.server.UserActionRequest;
+import org.eurekastreams.server.action.request.stream.PurgeExpiredActivitiesRequest;
+import org.eurekastreams.server.persistence.mappers.db.GetExpiredActivities;
+import org.eurekastreams.server.testing.TestContextCreator;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+
+/**
+ * Tests PurgeExpiredActivitiesExecution.
+ */
+@SuppressWarnings("unchecked")
+public class PurgeExpiredActivitiesExecutionTest
+{
+    /** Test data. */
+    private static final int CHUNK_SIZE = 3;
+
+    /** Test data. */
+    private static final int ROWS_PER_SECOND = 100;
+
+    /** Test data. */
+    private static final Date EXPIRATION = new Date(1000L);
+
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Fixture: expired activities mapper. */
+    private final GetExpiredActivities expiredActivitiesMapper = context.mock(GetExpiredActivities.class);
+
+    /** Fixture: delete execution. */
+    private final TaskHandlerExecutionStrategy<ActionContext> deleteExecution = context
+            .mock(TaskHandlerExecutionStrategy.class);
+
+    /** SUT. */
+    private final PurgeExpiredActivitiesExecution sut = new PurgeExpiredActivitiesExecution("purge",
+            expiredActivitiesMapper, deleteExecution, CHUNK_SIZE, ROWS_PER_SECOND);
+
+    /**
+     * Tests a chunk is deleted and the next chunk queued after it, paced to the rate.
+     */
+    @Test
+    public void testExecuteChunk()
+    {
+        final List<Long> ids = Arrays.asList(11L, 12L, 15L);
+        TaskHandlerActionContext<ActionContext> actionContext = TestContextCreator
+                .createTaskHandlerAsyncContext(new PurgeExpiredActivitiesRequest(EXPIRATION, 10L, 7L, 5L, 0L));
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(expiredActivitiesMapper).execute(EXPIRATION, 10L, CHUNK_SIZE);
+                will(returnValue(ids));
+
+                oneOf(deleteExecution).execute(with(any(TaskHandlerActionContext.class)));
+                will(new CustomAction("check ids and queue cleanup")
+                {
+                    public Object invoke(final Invocation inv) throws Throwable
+                    {
+                        TaskHandlerActionContext<ActionContext> inner = (TaskHandlerActionContext<ActionContext>) inv
+                                .getParameter(0);
+                        assertEquals(ids, inner.getActionContext().getParams());
+                        inner.getUserActionRequests().add(new UserActionRequest("deleteCacheKeysAction", null, null));
+                        return null;
+                    }
+                });
+            }
+        });
+
+        long before = System.currentTimeMillis();
+        sut.execute(actionContext);
+        context.assertIsSatisfied();
+
+        List<UserActionRequest> requests = actionContext.getUserActionRequests();
+        assertEquals(2, requests.size());
+        assertEquals("deleteCacheKeysAction", requests.get(0).getActionKey());
+        assertEquals("purge", requests.get(1).getActionKey());
+        PurgeExpiredActivitiesRequest next = (PurgeExpiredActivitiesRequest) requests.get(1).getParams();
+        assertEquals(EXPIRATION, next.getExpirationDate());
+        assertEquals(15L, next.getAfterId());
+        assertEquals(10L, next.getDeletedCount());
+        assertEquals(5L, next.getStartTimeMillis());
+        final long chunkMillis = 30L;
+        assertTrue(next.getNotBeforeMillis() >= before + chunkMillis);
+        assertTrue(next.getNotBeforeMillis() <= System.currentTimeMillis() + chunkMillis);
+    }
+
+    /**
+     * Tests the purge ends when there are no more expired activities.
+     */
+    @Test
+    public void testExecuteFinished()
+    {
+        TaskHandlerActionContext<ActionContext> actionContext = TestContextCreator
+                .createTaskHandlerAsyncContext(new PurgeExpiredActivitiesRequest(EXPIRATION, 15L, 10L, 5L, 0L));
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(expiredActivitiesMapper).execute(EXPIRATION, 15L, CHUNK_SIZE);
+                will(returnValue(Collections.EMPTY_LIST));
+            }
+        });
+
+        sut.execute(actionContext);
+        context.assertIsSatisfied();
+        assertTrue(actionContext.getUserActionRequests().isEmpty());
+    }
+}
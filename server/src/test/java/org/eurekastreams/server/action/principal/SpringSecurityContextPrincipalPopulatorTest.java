@@ -18,9 +18,9 @@ package org.eurekastreams.server.action.principal;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import org.eurekastreams.commons.actions.context.DefaultPrincipal;
 import org.eurekastreams.commons.actions.context.Principal;
 import org.eurekastreams.commons.exceptions.AuthorizationException;
-import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.service.security.userdetails.ExtendedUserDetails;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
@@ -48,11 +48,6 @@ public class SpringSecurityContextPrincipalPopulatorTest
         }
     };
 
-    /**
-     * Test person mock.
-     */
-    private final Person personMock = context.mock(Person.class);
-
     /** Fixture: security context. */
     private final SecurityContext securityContext = context.mock(SecurityContext.class);
 
@@ -109,15 +104,8 @@ exceptionOnError);
                 oneOf(authentication).getPrincipal();
                 will(returnValue(extUserDetails));
 
-                allowing(extUserDetails).getUsername();
-                will(returnValue("username"));
-
-                allowing(extUserDetails).getPerson();
-                will(returnValue(personMock));
-
-                oneOf(personMock).getId();
-
-                oneOf(personMock).getOpenSocialId();
+                oneOf(extUserDetails).getPrincipal();
+                will(returnValue(new DefaultPrincipal("username", "osid", 1L)));
             }
         });
     }
@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.action.request.notification;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Arrays;
+
+import org.eurekastreams.server.action.request.notification.CreateNotificationsRequest.RequestType;
+import org.junit.Test;
+
+/**
+ * Tests CreateNotificationsRequestCodec.
+ */
+public class CreateNotificationsRequestCodecTest
+{
+    /** System under test. */
+    private final CreateNotificationsRequestCodec sut = new CreateNotificationsRequestCodec();
+
+    /**
+     * Writes and reads a request.
+     *
+     * @param request
+     *            the request.
+     * @return the request read back.
+     * @throws IOException
+     *             not expected.
+     */
+    private Serializable roundTrip(final CreateNotificationsRequest request) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sut.write(request, new DataOutputStream(bytes));
+        Serializable result = sut.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertSame(request.getClass(), result.getClass());
+        assertSame(request.getType(), ((CreateNotificationsRequest) result).getType());
+        assertEquals(request.getActorId(), ((CreateNotificationsRequest) result).getActorId());
+        return result;
+    }
+
+    /**
+     * Tests each subclass round trips.
+     *
+     * @throws IOException
+     *             not expected.
+     */
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        roundTrip(new CreateNotificationsRequest(RequestType.FOLLOW_PERSON, 1L));
+
+        CommentNotificationsRequest comment = (CommentNotificationsRequest) roundTrip(new CommentNotificationsRequest(
+                RequestType.COMMENT, 1L, 2L, 3L, 4L));
+        assertEquals(2L, comment.getTargetEntityId());
+        assertEquals(3L, comment.getActivityId());
+        assertEquals(4L, comment.getCommentId());
+
+        GroupMembershipResponseNotificationsRequest response = (GroupMembershipResponseNotificationsRequest) roundTrip(
+                new GroupMembershipResponseNotificationsRequest(RequestType.REQUEST_GROUP_ACCESS_APPROVED, 1L, 2L,
+                        3L));
+        assertEquals(2L, response.getTargetEntityId());
+        assertEquals(3L, response.getRequestorId());
+
+        GroupRemovedNotificationsRequest removed = (GroupRemovedNotificationsRequest) roundTrip(
+                new GroupRemovedNotificationsRequest(RequestType.REQUEST_NEW_GROUP_DENIED, 1L, "group", Arrays
+                        .asList(5L, 6L)));
+        assertEquals("group", removed.getGroupName());
+        assertEquals(Arrays.asList(5L, 6L), removed.getCoordinatorIds());
+
+        PrebuiltNotificationsRequest prebuilt = (PrebuiltNotificationsRequest) roundTrip(
+                new PrebuiltNotificationsRequest(RequestType.EXTERNAL_PRE_BUILT, true, "app", 7L, "hi", null));
+        assertEquals("app", prebuilt.getClientId());
+        assertEquals(7L, prebuilt.getRecipientId());
+        assertEquals("hi", prebuilt.getMessage());
+        assertEquals(null, prebuilt.getUrl());
+    }
+
+    /**
+     * Tests subclasses the codec doesn't know are left to Java serialization.
+     */
+    @Test
+    public void testCanWriteUnknownSubclass()
+    {
+        assertFalse(sut.canWrite(new CreateNotificationsRequest(RequestType.FOLLOW_PERSON, 1L)
+        {
+            /** Serial version id. */
+            private static final long serialVersionUID = 1L;
+        }));
+    }
+}
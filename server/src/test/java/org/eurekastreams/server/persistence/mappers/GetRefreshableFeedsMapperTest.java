@@ -118,4 +118,21 @@ public class GetRefreshableFeedsMapperTest extends MapperTest
         assertTrue(results.size() == 0);
     }
 
+    /**
+     * A feed given a next refresh time is due at that time rather than by its update frequency: feed 1 is held back
+     * past 1011 and feed 3 is brought forward to before 1005.
+     */
+    @Test
+    public void testExecuteWithNextRefresh()
+    {
+        getEntityManager().createQuery("UPDATE Feed SET nextRefresh = 1020 WHERE id = 1").executeUpdate();
+        getEntityManager().createQuery("UPDATE Feed SET nextRefresh = 1004 WHERE id = 3").executeUpdate();
+
+        List<Feed> results = sut.execute(new CurrentDateInMinutesRequest(TIME1011));
+
+        assertTrue(results.size() == 2);
+        assertTrue(results.get(0).getId() == 2L);
+        assertTrue(results.get(1).getId() == 3L);
+    }
+
 }
@@ -16,6 +16,7 @@
 package org.eurekastreams.server.persistence.mappers.cache;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -93,6 +94,12 @@ public class AddBufferedActivitiesToCacheTest
         followerIdsForAct2.add(2L);
         followerIdsForAct2.add(4L);
 
+        final HashMap<String, Long> latestByFollower = new HashMap<String, Long>();
+        latestByFollower.put(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + 1L, 8L);
+        latestByFollower.put(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + 2L, 8L);
+        latestByFollower.put(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + 3L, 7L);
+        latestByFollower.put(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + 4L, 8L);
+
         context.checking(new Expectations()
         {
             {
@@ -117,6 +124,10 @@ public class AddBufferedActivitiesToCacheTest
                 will(returnValue(followerIdsForAct2));
 
                 exactly(5).of(cache).addToTopOfList(with(any(String.class)), with(any(ArrayList.class)));
+
+                oneOf(cache).multiSetAsync(latestByFollower);
+
+                oneOf(cache).set(CacheKeys.LATEST_ACTIVITY_ID, 8L);
             }
         });
 
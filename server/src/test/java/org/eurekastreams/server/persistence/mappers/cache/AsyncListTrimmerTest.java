@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test fixture for AsyncListTrimmer.
+ */
+public class AsyncListTrimmerTest
+{
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /**
+     * Cache.
+     */
+    private final MemcachedCache cache = context.mock(MemcachedCache.class);
+
+    /**
+     * Executor which holds tasks until told to run them.
+     */
+    private ManualExecutor executor;
+
+    /**
+     * System under test.
+     */
+    private AsyncListTrimmer sut;
+
+    /**
+     * Executor which queues up to a fixed number of tasks and runs them on demand.
+     */
+    private static class ManualExecutor extends AbstractExecutorService
+    {
+        /** Queued tasks. */
+        private final List<Runnable> tasks = new ArrayList<Runnable>();
+
+        /** Capacity. */
+        private final int capacity;
+
+        /**
+         * Constructor.
+         *
+         * @param inCapacity
+         *            capacity.
+         */
+        public ManualExecutor(final int inCapacity)
+        {
+            capacity = inCapacity;
+        }
+
+        /**
+         * Run all queued tasks.
+         */
+        public void runAll()
+        {
+            List<Runnable> toRun = new ArrayList<Runnable>(tasks);
+            tasks.clear();
+            for (Runnable task : toRun)
+            {
+                task.run();
+            }
+        }
+
+        /** {@inheritDoc} */
+        public void execute(final Runnable inCommand)
+        {
+            if (tasks.size() >= capacity)
+            {
+                throw new RejectedExecutionException();
+            }
+            tasks.add(inCommand);
+        }
+
+        /** {@inheritDoc} */
+        public boolean awaitTermination(final long inTimeout, final TimeUnit inUnit)
+        {
+            return true;
+        }
+
+        /** {@inheritDoc} */
+        public boolean isShutdown()
+        {
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        public boolean isTerminated()
+        {
+            return false;
+        }
+
+        /** {@inheritDoc} */
+        public void shutdown()
+        {
+        }
+
+        /** {@inheritDoc} */
+        public List<Runnable> shutdownNow()
+        {
+            return tasks;
+        }
+    }
+
+    /**
+     * Setup.
+     */
+    @Before
+    public void setUp()
+    {
+        final int capacity = 2;
+        final int ratePerSecond = 1000;
+        executor = new ManualExecutor(capacity);
+        sut = new AsyncListTrimmer(cache, executor, ratePerSecond);
+    }
+
+    /**
+     * Test that repeated requests for one key coalesce into a single trim.
+     */
+    @Test
+    public void testCoalesce()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(cache).trimList("key1", 10);
+            }
+        });
+
+        sut.requestTrim("key1", 10);
+        sut.requestTrim("key1", 10);
+        sut.requestTrim("key1", 10);
+        assertEquals(1, sut.getTrimsPending());
+
+        executor.runAll();
+
+        context.assertIsSatisfied();
+        assertEquals(3, sut.getTrimsRequested());
+        assertEquals(2, sut.getTrimsCoalesced());
+        assertEquals(1, sut.getTrimsPerformed());
+        assertEquals(0, sut.getTrimsPending());
+    }
+
+    /**
+     * Test that requests beyond the pending limit are dropped and can be requested again later.
+     */
+    @Test
+    public void testDropWhenFull()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(cache).trimList("key1", 10);
+                oneOf(cache).trimList("key2", 10);
+                oneOf(cache).trimList("key3", 10);
+            }
+        });
+
+        sut.requestTrim("key1", 10);
+        sut.requestTrim("key2", 10);
+        sut.requestTrim("key3", 10);
+        assertEquals(1, sut.getTrimsDropped());
+        assertEquals(2, sut.getTrimsPending());
+
+        executor.runAll();
+        sut.requestTrim("key3", 10);
+        executor.runAll();
+
+        context.assertIsSatisfied();
+        assertEquals(3, sut.getTrimsPerformed());
+    }
+}
@@ -86,8 +86,8 @@ public class BulkActivityRefresherTest
         CONTEXT.checking(new Expectations()
         {
             {
-                oneOf(cache).set(CacheKeys.ACTIVITY_BY_ID + activities.get(0).getId(), activities.get(0));
-                oneOf(cache).set(CacheKeys.ACTIVITY_BY_ID + activities.get(1).getId(), activities.get(1));
+                oneOf(cache).add(CacheKeys.ACTIVITY_BY_ID + activities.get(0).getId(), activities.get(0));
+                oneOf(cache).add(CacheKeys.ACTIVITY_BY_ID + activities.get(1).getId(), activities.get(1));
             }
         });
 
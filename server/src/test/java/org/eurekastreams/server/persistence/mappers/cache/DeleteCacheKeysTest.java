@@ -66,8 +66,7 @@ public class DeleteCacheKeysTest
         context.checking(new Expectations()
         {
             {
-                oneOf(cache).delete("foo");
-                oneOf(cache).delete("bar");
+                oneOf(cache).multiDelete(params);
             }
         });
 
@@ -0,0 +1,247 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.cache.testhelpers.SimpleMemoryCache;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test fixture for GenerationalCache.
+ */
+public class GenerationalCacheTest
+{
+    /** How long a generation may be pending. */
+    private static final long MAX_PENDING_MILLIS = 60000L;
+
+    /** Backing cache. */
+    private LateSetCache backingCache;
+
+    /** System under test; re-reads the generation state on every call. */
+    private GenerationalCache sut;
+
+    /** Another node's view of the same cache. */
+    private GenerationalCache otherNode;
+
+    /**
+     * Setup.
+     */
+    @Before
+    public void setUp()
+    {
+        backingCache = new LateSetCache();
+        sut = new GenerationalCache(backingCache, 0, MAX_PENDING_MILLIS);
+        otherNode = new GenerationalCache(backingCache, 0, MAX_PENDING_MILLIS);
+    }
+
+    /**
+     * Memory cache which can hold back sets until told to apply them, like the asynchronous sets of memcached.
+     */
+    private static class LateSetCache extends SimpleMemoryCache
+    {
+        /** Sets held back, or null if sets are applied at once. */
+        private Map<String, Object> late = null;
+
+        /**
+         * Hold back sets until applied.
+         */
+        public void holdSets()
+        {
+            late = new LinkedHashMap<String, Object>();
+        }
+
+        /**
+         * Apply the sets held back, and apply later ones at once.
+         */
+        public void applySets()
+        {
+            Map<String, Object> held = late;
+            late = null;
+            for (Map.Entry<String, Object> entry : held.entrySet())
+            {
+                set(entry.getKey(), entry.getValue());
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void set(final String inKey, final Object inValue)
+        {
+            if (late == null)
+            {
+                super.set(inKey, inValue);
+            }
+            else
+            {
+                late.put(inKey, inValue);
+            }
+        }
+    }
+
+    /**
+     * Test keys written before any generation was started are used unchanged.
+     */
+    @Test
+    public void testGenerationZero()
+    {
+        backingCache.set("key", "old");
+
+        assertEquals("old", sut.get("key"));
+        assertEquals(0, sut.getCurrentGeneration());
+    }
+
+    /**
+     * Test a pending generation gets every write but is only read once all its warmers have finished.
+     */
+    @Test
+    public void testWarmAndActivate()
+    {
+        sut.set("key", "old");
+        long generation = sut.startGeneration(Arrays.asList("warmPeople", "warmGroups"));
+
+        // readers keep the current generation; writes go to both
+        assertEquals("old", otherNode.get("key"));
+        otherNode.set("key", "new");
+        otherNode.setList("list", new ArrayList<Long>(Arrays.asList(1L, 2L)));
+        assertEquals(generation, otherNode.getPendingGeneration());
+
+        sut.finishWarming("warmPeople");
+        assertEquals(0, otherNode.getCurrentGeneration());
+
+        sut.finishWarming("warmGroups");
+        assertEquals(generation, otherNode.getCurrentGeneration());
+        assertEquals(0, otherNode.getPendingGeneration());
+        assertEquals("new", otherNode.get("key"));
+        assertEquals(Arrays.asList(1L, 2L), otherNode.getList("list"));
+
+        // writes now only go to the new generation
+        otherNode.set("key", "newer");
+        assertEquals("new", backingCache.get("key"));
+    }
+
+    /**
+     * Test keys only in the old generation are not read after the switch.
+     */
+    @Test
+    public void testOldGenerationNotRead()
+    {
+        sut.set("stale", "value");
+        sut.startGeneration(Collections.singletonList("warmPeople"));
+        sut.finishWarming("warmPeople");
+
+        assertNull(sut.get("stale"));
+    }
+
+    /**
+     * Test starting a generation without warmers switches to it at once.
+     */
+    @Test
+    public void testStartWithoutWarmers()
+    {
+        sut.set("key", "value");
+        long generation = sut.startGeneration(new ArrayList<String>());
+
+        assertEquals(generation, otherNode.getCurrentGeneration());
+        assertNull(otherNode.get("key"));
+    }
+
+    /**
+     * Test multiGet returns the caller's keys.
+     */
+    @Test
+    public void testMultiGet()
+    {
+        sut.startGeneration(new ArrayList<String>());
+        sut.set("a", "1");
+        sut.set("b", "2");
+
+        Map<String, Object> results = sut.multiGet(Arrays.asList("a", "b", "c"));
+
+        assertEquals(2, results.size());
+        assertEquals("1", results.get("a"));
+        assertEquals("2", results.get("b"));
+    }
+
+    /**
+     * Test a lost generation state is restored from what the node knew.
+     */
+    @Test
+    public void testStateRestored()
+    {
+        long generation = sut.startGeneration(new ArrayList<String>());
+        sut.set("key", "value");
+        backingCache.delete(GenerationalCache.STATE_KEY);
+
+        assertEquals("value", sut.get("key"));
+        assertEquals(generation, otherNode.getCurrentGeneration());
+    }
+
+    /**
+     * Test warmers finishing together activate the generation even when the cache applies sets late.
+     */
+    @Test
+    public void testWarmersFinishWithLateSets()
+    {
+        long generation = sut.startGeneration(Arrays.asList("warmPeople", "warmGroups"));
+
+        backingCache.holdSets();
+        sut.finishWarming("warmPeople");
+        otherNode.finishWarming("warmGroups");
+        backingCache.applySets();
+
+        assertEquals(generation, sut.getCurrentGeneration());
+        assertEquals(0, sut.getPendingGeneration());
+    }
+
+    /**
+     * Test a generation pending too long is activated without waiting for its warmers.
+     */
+    @Test
+    public void testStalePendingGenerationActivated()
+    {
+        backingCache.set(GenerationalCache.STATE_KEY, "0:1000");
+
+        assertEquals(1000L, otherNode.getCurrentGeneration());
+        assertEquals(0, otherNode.getPendingGeneration());
+        assertEquals("1000:0", backingCache.get(GenerationalCache.STATE_KEY));
+    }
+
+    /**
+     * Test a generation still within the pending limit keeps waiting for its warmers.
+     */
+    @Test
+    public void testPendingGenerationWaits()
+    {
+        long generation = sut.startGeneration(Arrays.asList("warmPeople", "warmGroups"));
+        sut.finishWarming("warmPeople");
+        sut.finishWarming("warmPeople");
+        sut.finishWarming("unknown");
+
+        assertEquals(0, otherNode.getCurrentGeneration());
+        assertEquals(generation, otherNode.getPendingGeneration());
+    }
+}
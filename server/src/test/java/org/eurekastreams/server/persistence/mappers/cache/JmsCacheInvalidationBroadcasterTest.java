@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
+import org.jmock.lib.concurrent.DeterministicScheduler;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.jms.core.JmsTemplate;
+
+/**
+ * Test fixture for JmsCacheInvalidationBroadcaster.
+ */
+public class JmsCacheInvalidationBroadcasterTest
+{
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /**
+     * JMS template.
+     */
+    private final JmsTemplate jmsTemplate = context.mock(JmsTemplate.class);
+
+    /**
+     * Scheduler which runs tasks when told to.
+     */
+    private final DeterministicScheduler scheduler = new DeterministicScheduler();
+
+    /**
+     * Messages published.
+     */
+    private final List<CacheInvalidationMessage> sent = new ArrayList<CacheInvalidationMessage>();
+
+    /**
+     * System under test.
+     */
+    private JmsCacheInvalidationBroadcaster sut;
+
+    /**
+     * Setup.
+     */
+    @Before
+    public void setUp()
+    {
+        sut = new JmsCacheInvalidationBroadcaster(jmsTemplate, scheduler, 100, 2, 5);
+        context.checking(new Expectations()
+        {
+            {
+                allowing(jmsTemplate).convertAndSend(with(any(Object.class)));
+                will(new CustomAction("record message")
+                {
+                    public Object invoke(final Invocation inInvocation)
+                    {
+                        sent.add((CacheInvalidationMessage) inInvocation.getParameter(0));
+                        return null;
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Test nothing is published until the flush interval passes, then keys go out in messages of the maximum size.
+     */
+    @Test
+    public void testBatchedAndCapped()
+    {
+        sut.broadcastInvalidation("a", Arrays.asList("k1", "k2"));
+        sut.broadcastInvalidation("a", Arrays.asList("k2", "k3"));
+        assertTrue(sent.isEmpty());
+
+        scheduler.tick(100, TimeUnit.MILLISECONDS);
+
+        assertEquals(2, sent.size());
+        assertEquals("a", sent.get(0).getOriginId());
+        assertEquals(Arrays.asList("k1", "k2"), sent.get(0).getKeys());
+        assertEquals(Arrays.asList("k3"), sent.get(1).getKeys());
+
+        scheduler.tick(100, TimeUnit.MILLISECONDS);
+        assertEquals(2, sent.size());
+    }
+
+    /**
+     * Test a clear replaces the waiting keys of its origin.
+     */
+    @Test
+    public void testClearReplacesKeys()
+    {
+        sut.broadcastInvalidation("a", Arrays.asList("k1"));
+        sut.broadcastInvalidation("a", null);
+        sut.broadcastInvalidation("a", Arrays.asList("k2"));
+
+        scheduler.tick(100, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, sent.size());
+        assertNull(sent.get(0).getKeys());
+    }
+
+    /**
+     * Test too many waiting keys are replaced by a clear.
+     */
+    @Test
+    public void testOverflowClears()
+    {
+        sut.broadcastInvalidation("a", Arrays.asList("k1", "k2", "k3"));
+        sut.broadcastInvalidation("a", Arrays.asList("k4", "k5", "k6"));
+
+        scheduler.tick(100, TimeUnit.MILLISECONDS);
+
+        assertEquals(1, sent.size());
+        assertNull(sent.get(0).getKeys());
+    }
+
+    /**
+     * Test shutdown publishes what is still waiting.
+     */
+    @Test
+    public void testShutdownFlushes()
+    {
+        // the deterministic scheduler cannot be shut down
+        sut = new JmsCacheInvalidationBroadcaster(jmsTemplate, Executors.newSingleThreadScheduledExecutor(), 60000, 2,
+                5);
+        sut.broadcastInvalidation("a", Arrays.asList("k1"));
+
+        sut.shutdown();
+
+        assertEquals(1, sent.size());
+        assertEquals(Arrays.asList("k1"), sent.get(0).getKeys());
+    }
+}
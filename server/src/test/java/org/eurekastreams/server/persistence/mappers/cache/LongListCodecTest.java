@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Test fixture for LongListCodec.
+ */
+public class LongListCodecTest
+{
+    /**
+     * Values to encode.
+     */
+    private final List<Long> values = Arrays.asList(1000000L, 999999L, 999990L, 5L, Long.MAX_VALUE, 0L);
+
+    /**
+     * Compact codec.
+     */
+    private final LongListCodec compact = new LongListCodec(true);
+
+    /**
+     * Legacy codec.
+     */
+    private final LongListCodec legacy = new LongListCodec(false);
+
+    /**
+     * Encode a list the way MemcachedCache historically did.
+     *
+     * @param inValues
+     *            the values.
+     * @return the bytes.
+     * @throws IOException
+     *             on error.
+     */
+    private byte[] writeWithDataOutputStream(final List<Long> inValues) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Long value : inValues)
+        {
+            out.writeLong(value);
+        }
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Test legacy encoding is byte-for-byte what DataOutputStream wrote.
+     *
+     * @throws IOException
+     *             on error.
+     */
+    @Test
+    public void testLegacyEncodingMatchesDataOutputStream() throws IOException
+    {
+        assertTrue(Arrays.equals(writeWithDataOutputStream(values), legacy.encode(values)));
+    }
+
+    /**
+     * Test round trips in both formats.
+     *
+     * @throws IOException
+     *             on error.
+     */
+    @Test
+    public void testRoundTrip() throws IOException
+    {
+        assertEquals(values, compact.decode(compact.encode(values)));
+        assertEquals(values, legacy.decode(legacy.encode(values)));
+        assertEquals(values, compact.decode(legacy.encode(values)));
+        assertEquals(values, legacy.decode(compact.encode(values)));
+    }
+
+    /**
+     * Test empty and null lists.
+     *
+     * @throws IOException
+     *             on error.
+     */
+    @Test
+    public void testEmptyAndNull() throws IOException
+    {
+        assertEquals(0, compact.decode(compact.encode(new ArrayList<Long>())).size());
+        assertEquals(0, legacy.decode(legacy.encode(new ArrayList<Long>())).size());
+        assertNull(compact.encode(null));
+        assertNull(compact.decode(null));
+    }
+
+    /**
+     * Test that bytes prepended in one format onto a list in the other format decode in order.
+     *
+     * @throws IOException
+     *             on error.
+     */
+    @Test
+    public void testMixedFormatsFromPrepend() throws IOException
+    {
+        List<Long> top = Arrays.asList(2000000L, 1999999L);
+
+        byte[] topBytes = compact.encode(top);
+        byte[] bottomBytes = writeWithDataOutputStream(values);
+        byte[] combined = new byte[topBytes.length + bottomBytes.length];
+        System.arraycopy(topBytes, 0, combined, 0, topBytes.length);
+        System.arraycopy(bottomBytes, 0, combined, topBytes.length, bottomBytes.length);
+
+        List<Long> expected = new ArrayList<Long>(top);
+        expected.addAll(values);
+        assertEquals(expected, compact.decode(combined));
+
+        topBytes = legacy.encode(top);
+        bottomBytes = compact.encode(values);
+        combined = new byte[topBytes.length + bottomBytes.length];
+        System.arraycopy(topBytes, 0, combined, 0, topBytes.length);
+        System.arraycopy(bottomBytes, 0, combined, topBytes.length, bottomBytes.length);
+        assertEquals(expected, legacy.decode(combined));
+    }
+
+    /**
+     * Test that descending dense ids compress well.
+     *
+     * @throws IOException
+     *             on error.
+     */
+    @Test
+    public void testCompactIsSmaller() throws IOException
+    {
+        final long start = 5000000L;
+        final int count = 1000;
+        List<Long> ids = new ArrayList<Long>();
+        for (int i = 0; i < count; i++)
+        {
+            ids.add(start - i * 3);
+        }
+
+        byte[] bytes = compact.encode(ids);
+        assertTrue(bytes.length * 4 < legacy.encode(ids).length);
+        assertEquals(ids, compact.decode(bytes));
+    }
+
+    /**
+     * Test truncated legacy bytes are rejected.
+     *
+     * @throws IOException
+     *             expected.
+     */
+    @Test(expected = IOException.class)
+    public void testTruncatedLegacy() throws IOException
+    {
+        byte[] bytes = legacy.encode(values);
+        legacy.decode(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    /**
+     * Test truncated compact bytes are rejected.
+     *
+     * @throws IOException
+     *             expected.
+     */
+    @Test(expected = IOException.class)
+    public void testTruncatedCompact() throws IOException
+    {
+        byte[] bytes = compact.encode(values);
+        compact.decode(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+}
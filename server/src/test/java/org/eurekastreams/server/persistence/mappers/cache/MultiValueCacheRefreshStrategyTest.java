@@ -104,4 +104,36 @@ public class MultiValueCacheRefreshStrategyTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Test values are added rather than set when configured to.
+     */
+    @Test
+    public void testAddOnly()
+    {
+        sut.setAddOnly(true);
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(suffixTransformer).transform("foo");
+                will(returnValue("fooSuffixTransformed"));
+
+                oneOf(suffixTransformer).transform("bar");
+                will(returnValue("barSuffixTransformed"));
+
+                oneOf(valueTransformer).transform("foo");
+                will(returnValue("fooValueTransformed"));
+
+                oneOf(valueTransformer).transform("bar");
+                will(returnValue("barValueTransformed"));
+
+                oneOf(cache).add("prefix:fooSuffixTransformed", "fooValueTransformed");
+
+                oneOf(cache).add("prefix:barSuffixTransformed", "barValueTransformed");
+            }
+        });
+
+        sut.refresh(null, responseList);
+        context.assertIsSatisfied();
+    }
+
 }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.eurekastreams.server.persistence.mappers.DomainMapper;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+
+/**
+ * Test fixture for MultiValueCacheWarmer.
+ */
+public class MultiValueCacheWarmerTest
+{
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /**
+     * Test execute() writes the loaded values in one multi-set, leaving out nulls.
+     */
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testExecute()
+    {
+        final DomainMapper<List<Long>, Map<Long, String>> loader = context.mock(DomainMapper.class);
+        final Cache cache = context.mock(Cache.class);
+        final List<Long> ids = Arrays.asList(1L, 2L, 3L);
+
+        final Map<Long, String> loaded = new HashMap<Long, String>();
+        loaded.put(1L, "one");
+        loaded.put(2L, null);
+        loaded.put(3L, "three");
+
+        final Map<String, Object> expected = new HashMap<String, Object>();
+        expected.put("PREFIX1", "one");
+        expected.put("PREFIX3", "three");
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(loader).execute(ids);
+                will(returnValue(loaded));
+
+                oneOf(cache).multiSet(expected);
+            }
+        });
+
+        MultiValueCacheWarmer sut = new MultiValueCacheWarmer(loader, "PREFIX", cache);
+        assertEquals(Integer.valueOf(2), sut.execute(ids));
+
+        context.assertIsSatisfied();
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.jms.ObjectMessage;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test fixture for NearCache and CacheInvalidationListener.
+ */
+public class NearCacheTest
+{
+    /**
+     * Context for building mock objects.
+     */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /**
+     * Backing cache.
+     */
+    private final Cache backingCache = context.mock(Cache.class);
+
+    /**
+     * Broadcaster.
+     */
+    private final CacheInvalidationBroadcaster broadcaster = context.mock(CacheInvalidationBroadcaster.class);
+
+    /**
+     * System under test.
+     */
+    private NearCache sut;
+
+    /**
+     * Setup.
+     */
+    @Before
+    public void setUp()
+    {
+        Map<String, Integer> ttls = new HashMap<String, Integer>();
+        ttls.put(CacheKeys.PERSON_BY_ID, 60);
+        ttls.put(CacheKeys.GROUP_BY_ID, 60);
+        sut = new NearCache(backingCache, broadcaster, 1024 * 1024, ttls);
+    }
+
+    /**
+     * Test a second get of a configured key is served locally, as a copy.
+     */
+    @Test
+    public void testGetHit()
+    {
+        final ArrayList<String> value = new ArrayList<String>(Arrays.asList("a", "b"));
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(backingCache).get("Per:1");
+                will(returnValue(value));
+            }
+        });
+
+        assertEquals(value, sut.get("Per:1"));
+        Object second = sut.get("Per:1");
+        assertEquals(value, second);
+        assertNotSame(value, second);
+
+        context.assertIsSatisfied();
+        assertEquals(1L, (long) sut.getHitCounts().get(CacheKeys.PERSON_BY_ID));
+        assertEquals(1L, (long) sut.getMissCounts().get(CacheKeys.PERSON_BY_ID));
+    }
+
+    /**
+     * Test keys without a configured prefix always go to the backing cache.
+     */
+    @Test
+    public void testGetPassThrough()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(backingCache).get("PerAcct:foo");
+                will(returnValue("x"));
+            }
+        });
+
+        sut.get("PerAcct:foo");
+        sut.get("PerAcct:foo");
+
+        context.assertIsSatisfied();
+        assertEquals(0, sut.getEntryCount());
+    }
+
+    /**
+     * Test set invalidates locally and broadcasts.
+     */
+    @Test
+    public void testSetInvalidates()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(backingCache).get("Grp:1");
+                will(returnValue("x"));
+
+                oneOf(backingCache).set("Grp:1", "y");
+                oneOf(broadcaster).broadcastInvalidation(sut.getNodeId(), Collections.singletonList("Grp:1"));
+            }
+        });
+
+        sut.get("Grp:1");
+        sut.set("Grp:1", "y");
+        sut.get("Grp:1");
+
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test adding a value loaded after a miss neither invalidates nor broadcasts.
+     */
+    @Test
+    public void testAddNotBroadcast()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(backingCache).get("Grp:1");
+                will(returnValue("x"));
+
+                oneOf(backingCache).add("Grp:1", "y");
+            }
+        });
+
+        sut.get("Grp:1");
+        sut.add("Grp:1", "y");
+        assertEquals("x", sut.get("Grp:1"));
+
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test writes to keys that are never held locally are not broadcast.
+     */
+    @Test
+    public void testListWriteNotBroadcast()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(backingCache).addToTopOfList("CmpFwg:1", 5L);
+            }
+        });
+
+        sut.addToTopOfList("CmpFwg:1", 5L);
+
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test multiGet serves local hits and loads only the rest.
+     */
+    @Test
+    public void testMultiGet()
+    {
+        final Map<String, Object> firstLoad = new HashMap<String, Object>();
+        firstLoad.put("Per:1", "one");
+        final Map<String, Object> secondLoad = new HashMap<String, Object>();
+        secondLoad.put("Per:2", "two");
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(backingCache).multiGet(Arrays.asList("Per:1"));
+                will(returnValue(firstLoad));
+
+                oneOf(backingCache).multiGet(Arrays.asList("Per:2"));
+                will(returnValue(secondLoad));
+            }
+        });
+
+        sut.multiGet(Arrays.asList("Per:1"));
+        Map<String, Object> results = sut.multiGet(Arrays.asList("Per:1", "Per:2"));
+
+        context.assertIsSatisfied();
+        assertEquals("one", results.get("Per:1"));
+        assertEquals("two", results.get("Per:2"));
+    }
+
+    /**
+     * Test the local store stays within its size limit.
+     */
+    @Test
+    public void testEviction()
+    {
+        Map<String, Integer> ttls = new HashMap<String, Integer>();
+        ttls.put(CacheKeys.PERSON_BY_ID, 60);
+        final int maxBytes = 4096;
+        sut = new NearCache(backingCache, null, maxBytes, ttls);
+
+        final char[] chars = new char[100];
+        Arrays.fill(chars, 'x');
+        context.checking(new Expectations()
+        {
+            {
+                allowing(backingCache).get(with(any(String.class)));
+                will(returnValue(new String(chars)));
+            }
+        });
+
+        for (int i = 0; i < 100; i++)
+        {
+            sut.get("Per:" + i);
+        }
+
+        assertTrue(sut.getSizeInBytes() <= maxBytes);
+        assertTrue(sut.getEvictionCount() > 0);
+    }
+
+    /**
+     * Test the listener applies invalidations from other nodes but ignores its own.
+     *
+     * @throws Exception
+     *             on error.
+     */
+    @Test
+    public void testListener() throws Exception
+    {
+        final ObjectMessage own = context.mock(ObjectMessage.class, "own");
+        final ObjectMessage other = context.mock(ObjectMessage.class, "other");
+        final List<String> keys = new ArrayList<String>(Arrays.asList("Per:1"));
+
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(backingCache).get("Per:1");
+                will(returnValue("x"));
+
+                allowing(own).getObject();
+                will(returnValue(new CacheInvalidationMessage(sut.getNodeId(), new ArrayList<String>(keys))));
+
+                allowing(other).getObject();
+                will(returnValue(new CacheInvalidationMessage("other-node", new ArrayList<String>(keys))));
+            }
+        });
+
+        CacheInvalidationListener listener = new CacheInvalidationListener(sut);
+
+        sut.get("Per:1");
+        listener.onMessage(own);
+        sut.get("Per:1");
+        listener.onMessage(other);
+        sut.get("Per:1");
+
+        context.assertIsSatisfied();
+    }
+}
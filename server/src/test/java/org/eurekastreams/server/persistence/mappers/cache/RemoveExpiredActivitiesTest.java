@@ -16,6 +16,7 @@
 package org.eurekastreams.server.persistence.mappers.cache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.util.Arrays;
 import java.util.List;
@@ -76,5 +77,8 @@ public class RemoveExpiredActivitiesTest extends CachedMapperTest
 
         comments = commentQuery.getResultList();
         assertEquals(6, comments.size());
+
+        assertNull(getCache().get(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activity1));
+        assertNull(getCache().get(CacheKeys.COMMENT_IDS_BY_ACTIVITY_ID + activity3));
     }
 }
@@ -121,6 +121,52 @@ public class RotatingCacheClientTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Test.
+     */
+    @Test
+    public void testmultiPrepend()
+    {
+        final List<String> keys = new ArrayList<String>();
+        keys.add("key");
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(writeRotator).getNext();
+                will(returnValue(cache));
+
+                oneOf(cache).multiPrepend(keys, 5L);
+            }
+        });
+
+        sut.multiPrepend(keys, 5L);
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test.
+     */
+    @Test
+    public void testMultiDelete()
+    {
+        final List<String> keys = new ArrayList<String>();
+        keys.add("key");
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(writeRotator).getNext();
+                will(returnValue(cache));
+
+                oneOf(cache).multiDelete(keys);
+            }
+        });
+
+        sut.multiDelete(keys);
+        context.assertIsSatisfied();
+    }
+
     /**
      * Test.
      */
@@ -192,6 +192,17 @@ public class SimpleMemoryCache implements Cache
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void add(final String inKey, final Object inValue)
+    {
+        if (inValue != null && !cache.containsKey(inKey))
+        {
+            cache.put(inKey, inValue);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -250,6 +261,36 @@ public class SimpleMemoryCache implements Cache
         }
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void multiSet(final Map<String, ?> inValues)
+    {
+        for (Map.Entry<String, ?> entry : inValues.entrySet())
+        {
+            set(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void multiSetAsync(final Map<String, ?> inValues)
+    {
+        multiSet(inValues);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void multiSetList(final Map<String, ? extends List<Long>> inValues)
+    {
+        for (Map.Entry<String, ? extends List<Long>> entry : inValues.entrySet())
+        {
+            setList(entry.getKey(), entry.getValue());
+        }
+    }
+
     /**
      * Get the byte[] from a ArrayList&lt;Long&gt;.
      *
@@ -323,6 +364,17 @@ public class SimpleMemoryCache implements Cache
         cache.remove(inKey);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void multiDelete(final Collection<String> inKeys)
+    {
+        for (String key : inKeys)
+        {
+            delete(key);
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -386,6 +438,21 @@ public class SimpleMemoryCache implements Cache
         this.addToTopOfList(inKey, longs);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    public void multiPrepend(final Collection<String> inKeys, final Long inValue)
+    {
+        for (String key : inKeys)
+        {
+            // like memcached, don't create lists that aren't already cached
+            if (cache.containsKey(key))
+            {
+                this.addToTopOfList(key, inValue);
+            }
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -16,7 +16,12 @@
 package org.eurekastreams.server.persistence.mappers.chained;
 
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.apache.commons.lang.SerializationUtils;
 import org.eurekastreams.server.persistence.mappers.DomainMapper;
 import org.jmock.Expectations;
 import org.jmock.Mockery;
@@ -162,4 +167,180 @@ public class DecoratedPartialResponseDomainMapperTest
 
         context.assertIsSatisfied();
     }
+
+    /**
+     * Test execute with single flight when this caller leads the load.
+     */
+    @Test
+    public void testExecuteWithSingleFlightLeader()
+    {
+        DecoratedPartialResponseDomainMapper<Object, Object> sut =
+        // line break
+        new DecoratedPartialResponseDomainMapper<Object, Object>(partialMapper, decoratedMapper, resultsCombiner,
+                refreshStrategy);
+        final SingleFlight singleFlight = context.mock(SingleFlight.class);
+        sut.setSingleFlight(singleFlight);
+
+        final Object request = new Object();
+        final Object newRequest = new Object();
+        final Object newResponse = new Object();
+        final PartialMapperResponse<Object, Object> partialResponse = new PartialMapperResponse<Object, Object>(null,
+                newRequest);
+        final Object combinedResponse = new Object();
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(partialMapper).execute(request);
+                will(returnValue(partialResponse));
+
+                oneOf(singleFlight).takeOff(newRequest);
+                will(returnValue(null));
+
+                oneOf(decoratedMapper).execute(newRequest);
+                will(returnValue(newResponse));
+
+                oneOf(refreshStrategy).refresh(newRequest, newResponse);
+
+                oneOf(singleFlight).land(newRequest, newResponse);
+
+                oneOf(resultsCombiner).combine(partialResponse, newResponse, request);
+                will(returnValue(combinedResponse));
+            }
+        });
+
+        assertSame(combinedResponse, sut.execute(request));
+
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test execute with single flight when this caller leads a load which fails: waiters are released without a
+     * response.
+     */
+    @Test
+    public void testExecuteWithSingleFlightLeaderFailure()
+    {
+        DecoratedPartialResponseDomainMapper<Object, Object> sut =
+        // line break
+        new DecoratedPartialResponseDomainMapper<Object, Object>(partialMapper, decoratedMapper, resultsCombiner,
+                refreshStrategy);
+        final SingleFlight singleFlight = context.mock(SingleFlight.class);
+        sut.setSingleFlight(singleFlight);
+
+        final Object request = new Object();
+        final Object newRequest = new Object();
+        final PartialMapperResponse<Object, Object> partialResponse = new PartialMapperResponse<Object, Object>(null,
+                newRequest);
+        final RuntimeException failure = new RuntimeException("Database down");
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(partialMapper).execute(request);
+                will(returnValue(partialResponse));
+
+                oneOf(singleFlight).takeOff(newRequest);
+                will(returnValue(null));
+
+                oneOf(decoratedMapper).execute(newRequest);
+                will(throwException(failure));
+
+                oneOf(singleFlight).land(newRequest);
+            }
+        });
+
+        try
+        {
+            sut.execute(request);
+            fail("Expected the load to fail");
+        }
+        catch (RuntimeException ex)
+        {
+            assertSame(failure, ex);
+        }
+
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test execute with single flight when this caller waits on another's load and takes a copy of its response
+     * instead of reading the data source again.
+     */
+    @Test
+    public void testExecuteWithSingleFlightWaiterTakingResponse()
+    {
+        DecoratedPartialResponseDomainMapper<Object, Object> sut =
+        // line break
+        new DecoratedPartialResponseDomainMapper<Object, Object>(partialMapper, decoratedMapper, resultsCombiner,
+                refreshStrategy);
+        final SingleFlight singleFlight = context.mock(SingleFlight.class);
+        sut.setSingleFlight(singleFlight);
+
+        final Object request = new Object();
+        final Object newRequest = new Object();
+        final PartialMapperResponse<Object, Object> partialResponse = new PartialMapperResponse<Object, Object>(null,
+                newRequest);
+        final Object combinedResponse = new Object();
+        final SingleFlight.Flight flight = new SingleFlight.Flight();
+        flight.land(SerializationUtils.serialize(new ArrayList<Long>(Arrays.asList(1L, 2L))));
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(partialMapper).execute(request);
+                will(returnValue(partialResponse));
+
+                oneOf(singleFlight).takeOff(newRequest);
+                will(returnValue(flight));
+
+                never(decoratedMapper).execute(newRequest);
+
+                oneOf(resultsCombiner).combine(partialResponse, Arrays.asList(1L, 2L), request);
+                will(returnValue(combinedResponse));
+            }
+        });
+
+        assertSame(combinedResponse, sut.execute(request));
+
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Test execute with single flight when this caller waits on another's load which gives no response, and then
+     * finds the data.
+     */
+    @Test
+    public void testExecuteWithSingleFlightWaiter()
+    {
+        DecoratedPartialResponseDomainMapper<Object, Object> sut =
+        // line break
+        new DecoratedPartialResponseDomainMapper<Object, Object>(partialMapper, decoratedMapper, resultsCombiner,
+                refreshStrategy);
+        final SingleFlight singleFlight = context.mock(SingleFlight.class);
+        sut.setSingleFlight(singleFlight);
+
+        final Object request = new Object();
+        final Object newRequest = new Object();
+        final Object response = new Object();
+        final PartialMapperResponse<Object, Object> partialResponse = new PartialMapperResponse<Object, Object>(null,
+                newRequest);
+        final PartialMapperResponse<Object, Object> secondResponse = new PartialMapperResponse<Object, Object>(
+                response);
+
+        context.checking(new Expectations()
+        {
+            {
+                exactly(2).of(partialMapper).execute(request);
+                will(onConsecutiveCalls(returnValue(partialResponse), returnValue(secondResponse)));
+
+                oneOf(singleFlight).takeOff(newRequest);
+                will(returnValue(new SingleFlight.Flight()));
+            }
+        });
+
+        assertSame(response, sut.execute(request));
+
+        context.assertIsSatisfied();
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.chained;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Test fixture for SingleFlight.
+ */
+public class SingleFlightTest
+{
+    /**
+     * System under test.
+     */
+    private final SingleFlight sut = new SingleFlight();
+
+    /**
+     * Test that a second caller for the same request waits for the first to land, and gets its own copy of the
+     * first's response.
+     *
+     * @throws Exception
+     *             on error.
+     */
+    @Test
+    public void testWaiterReleasedOnLand() throws Exception
+    {
+        assertNull(sut.takeOff("key"));
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<SingleFlight.Flight> waiterFlight = new AtomicReference<SingleFlight.Flight>();
+        Thread waiter = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                started.countDown();
+                waiterFlight.set(sut.takeOff("key"));
+            }
+        };
+        waiter.start();
+        started.await();
+
+        final long joinMillis = 50;
+        waiter.join(joinMillis);
+        assertTrue(waiter.isAlive());
+
+        ArrayList<Long> response = new ArrayList<Long>(Arrays.asList(1L, 2L));
+        sut.land("key", response);
+        response.add(3L);
+        waiter.join();
+
+        SingleFlight.Flight flight = waiterFlight.get();
+        assertNotNull(flight);
+        assertTrue(flight.hasResponse());
+        assertEquals(Arrays.asList(1L, 2L), flight.getResponse());
+        assertNotSame(flight.getResponse(), flight.getResponse());
+        assertEquals(1, sut.getLoadCount());
+        assertEquals(1, sut.getCoalescedLoadCount());
+        assertEquals(0, sut.getLoadsInFlight());
+    }
+
+    /**
+     * Test that different requests, including null, don't wait on each other.
+     */
+    @Test
+    public void testDifferentKeys()
+    {
+        assertNull(sut.takeOff("key1"));
+        assertNull(sut.takeOff("key2"));
+        assertNull(sut.takeOff(null));
+        assertEquals(3, sut.getLoadsInFlight());
+
+        sut.land("key1", "response");
+        sut.land("key2");
+        sut.land(null);
+
+        assertNull(sut.takeOff("key1"));
+        assertEquals(4, sut.getLoadCount());
+        assertEquals(0, sut.getCoalescedLoadCount());
+    }
+
+    /**
+     * Test that a waiter gives up after the max wait.
+     */
+    @Test
+    public void testWaitTimeout()
+    {
+        sut.setMaxWaitMillis(1);
+        assertNull(sut.takeOff("key"));
+        assertFalse(sut.takeOff("key").hasResponse());
+        assertEquals(1, sut.getWaitTimeoutCount());
+    }
+
+    /**
+     * Test that waiters get no response from a leader which failed or loaded something that can't be copied, but do
+     * get a null response.
+     */
+    @Test
+    public void testLandWithoutResponse()
+    {
+        // waiters time out at once, so they can take off before their leader lands
+        sut.setMaxWaitMillis(1);
+        assertNull(sut.takeOff("failed"));
+        SingleFlight.Flight failed = sut.takeOff("failed");
+        sut.land("failed");
+        assertFalse(failed.hasResponse());
+
+        assertNull(sut.takeOff("unserializable"));
+        SingleFlight.Flight unserializable = sut.takeOff("unserializable");
+        sut.land("unserializable", new Object());
+        assertFalse(unserializable.hasResponse());
+
+        assertNull(sut.takeOff("null"));
+        SingleFlight.Flight nullResponse = sut.takeOff("null");
+        sut.land("null", null);
+        assertTrue(nullResponse.hasResponse());
+        assertNull(nullResponse.getResponse());
+    }
+
+    /**
+     * Test that a leader nobody waited on lands without serializing its response.
+     */
+    @Test
+    public void testLandWithoutWaitersSkipsSnapshot()
+    {
+        assertNull(sut.takeOff("key"));
+        CountingResponse response = new CountingResponse();
+        sut.land("key", response);
+        assertEquals(0, response.writes.get());
+
+        // with a waiter joined, it is serialized once
+        sut.setMaxWaitMillis(1);
+        assertNull(sut.takeOff("key"));
+        SingleFlight.Flight flight = sut.takeOff("key");
+        sut.land("key", response);
+        assertEquals(1, response.writes.get());
+        assertTrue(flight.hasResponse());
+    }
+
+    /**
+     * Response which counts how often it is serialized.
+     */
+    private static class CountingResponse implements Serializable
+    {
+        /** Serial version. */
+        private static final long serialVersionUID = 1L;
+
+        /** Number of times serialized. */
+        private final transient AtomicInteger writes = new AtomicInteger();
+
+        /**
+         * Count the write.
+         *
+         * @param out
+         *            the stream.
+         * @throws IOException
+         *             on error.
+         */
+        private void writeObject(final ObjectOutputStream out) throws IOException
+        {
+            writes.incrementAndGet();
+            out.defaultWriteObject();
+        }
+    }
+}
@@ -49,12 +49,37 @@ public class GetExpiredActivityIdsTest extends MapperTest
         final Long activity2 = new Long(6792L);
 
         DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
-        List<Long> results = sut.execute(dateFormat.parse("10/29/2009"));
+        List<Long> results = sut.execute(dateFormat.parse("10/29/2009"), 0, 10);
         assertEquals(2, results.size());
         assertEquals(activity1, results.get(0));
         assertEquals(activity2, results.get(1));
 
-        results = sut.execute(dateFormat.parse("10/29/2008"));
+        results = sut.execute(dateFormat.parse("10/29/2008"), 0, 10);
+        assertEquals(0, results.size());
+    }
+
+    /**
+     * Test execute method pages through the expired activities in id order.
+     *
+     * @throws Exception
+     *             on error.
+     */
+    @Test
+    public void testExecuteChunked() throws Exception
+    {
+        final Long activity1 = new Long(6791L);
+        final Long activity2 = new Long(6792L);
+
+        DateFormat dateFormat = new SimpleDateFormat("MM/dd/yyyy");
+        List<Long> results = sut.execute(dateFormat.parse("10/29/2009"), 0, 1);
+        assertEquals(1, results.size());
+        assertEquals(activity1, results.get(0));
+
+        results = sut.execute(dateFormat.parse("10/29/2009"), activity1, 1);
+        assertEquals(1, results.size());
+        assertEquals(activity2, results.get(0));
+
+        results = sut.execute(dateFormat.parse("10/29/2009"), activity2, 1);
         assertEquals(0, results.size());
     }
 }
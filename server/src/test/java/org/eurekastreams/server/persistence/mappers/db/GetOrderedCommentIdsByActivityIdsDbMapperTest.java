@@ -0,0 +1,63 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.persistence.mappers.db;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.eurekastreams.server.persistence.mappers.MapperTest;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Test for GetOrderedCommentIdsByActivityIdsDbMapper.
+ */
+public class GetOrderedCommentIdsByActivityIdsDbMapperTest extends MapperTest
+{
+    /**
+     * System under test.
+     */
+    @Autowired
+    private GetOrderedCommentIdsByActivityIdsDbMapper sut;
+
+    /**
+     * Test the lists come back in request order, with an empty list for an activity with no comments.
+     */
+    @Test
+    public void testExecute()
+    {
+        final long activityWithNoComments = 99999L;
+        List<List<Long>> results = sut.execute(Arrays.asList(6790L, activityWithNoComments, 6789L));
+
+        assertEquals(3, results.size());
+        assertEquals(Arrays.asList(5L, 6L, 7L), results.get(0));
+        assertTrue(results.get(1).isEmpty());
+        assertEquals(Arrays.asList(1L, 2L, 3L), results.get(2));
+    }
+
+    /**
+     * Test an empty request doesn't query.
+     */
+    @Test
+    public void testExecuteEmpty()
+    {
+        assertTrue(sut.execute(new ArrayList<Long>()).isEmpty());
+    }
+}
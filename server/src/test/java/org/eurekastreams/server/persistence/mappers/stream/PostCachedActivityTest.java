@@ -18,7 +18,9 @@ package org.eurekastreams.server.persistence.mappers.stream;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eurekastreams.server.domain.stream.Activity;
 import org.eurekastreams.server.domain.stream.SharedResource;
@@ -84,6 +86,14 @@ public class PostCachedActivityTest
         followerIds.add(follower1Id);
         followerIds.add(follower2Id);
 
+        final List<String> followerKeys = new ArrayList<String>();
+        followerKeys.add(CacheKeys.ACTIVITIES_BY_FOLLOWING + follower1Id);
+        followerKeys.add(CacheKeys.ACTIVITIES_BY_FOLLOWING + follower2Id);
+
+        final Map<String, Long> latestByFollower = new HashMap<String, Long>();
+        latestByFollower.put(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + follower1Id, activityId);
+        latestByFollower.put(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + follower2Id, activityId);
+
         final ArrayList<String> peopleAccountIds = new ArrayList<String>();
         peopleAccountIds.add(personAccountId);
 
@@ -113,12 +123,13 @@ public class PostCachedActivityTest
                 oneOf(personFollowersMapper).execute(personId);
                 will(returnValue(followerIds));
 
-                // followers get the activity id
-                oneOf(cache).addToTopOfList(CacheKeys.ACTIVITIES_BY_FOLLOWING + follower1Id, activityId);
-                oneOf(cache).addToTopOfList(CacheKeys.ACTIVITIES_BY_FOLLOWING + follower2Id, activityId);
+                // followers get the activity id in one batch
+                oneOf(cache).multiPrepend(followerKeys, activityId);
+                oneOf(cache).multiSetAsync(latestByFollower);
 
                 // everyone list gets the activity id
                 oneOf(cache).addToTopOfList(CacheKeys.EVERYONE_ACTIVITY_IDS, activityId);
+                oneOf(cache).set(CacheKeys.LATEST_ACTIVITY_ID, activityId);
 
                 // -----
                 // build the activity that we're passing in
@@ -194,6 +205,7 @@ public class PostCachedActivityTest
 
                 // everyone list gets the activity id
                 oneOf(cache).addToTopOfList(CacheKeys.EVERYONE_ACTIVITY_IDS, activityId);
+                oneOf(cache).set(CacheKeys.LATEST_ACTIVITY_ID, activityId);
 
                 // -----
                 // build the activity that we're passing in
@@ -254,6 +266,7 @@ public class PostCachedActivityTest
             {
                 // everyone list gets the activity id
                 oneOf(cache).addToTopOfList(CacheKeys.EVERYONE_ACTIVITY_IDS, activityId);
+                oneOf(cache).set(CacheKeys.LATEST_ACTIVITY_ID, activityId);
 
                 // -----
                 // build the activity that we're passing in
@@ -317,6 +330,7 @@ public class PostCachedActivityTest
             {
                 // everyone list gets the activity id
                 oneOf(cache).addToTopOfList(CacheKeys.EVERYONE_ACTIVITY_IDS, activityId);
+                oneOf(cache).set(CacheKeys.LATEST_ACTIVITY_ID, activityId);
 
                 // -----
                 // build the activity that we're passing in
@@ -344,6 +358,7 @@ public class PostCachedActivityTest
                 will(returnValue(sharedResourceScopeId));
 
                 oneOf(cache).addToTopOfList(CacheKeys.ENTITY_STREAM_BY_SCOPE_ID + sharedResourceScopeId, activityId);
+                oneOf(cache).set(CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + sharedResourceScopeId, activityId);
 
                 allowing(act).getShowInStream();
                 will(returnValue(true));
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * Tests ImageByteCache.
+ */
+public class ImageByteCacheTest
+{
+    /** Max age used when entries should not expire. */
+    private static final long LONG_TIME = 60000;
+
+    /**
+     * Builds an image of a given size.
+     *
+     * @param size
+     *            number of bytes.
+     * @return the image.
+     */
+    private EncodedImage image(final int size)
+    {
+        return new EncodedImage(new byte[size], "image/png");
+    }
+
+    /**
+     * Tests the least recently used images are dropped to stay within the byte limit.
+     */
+    @Test
+    public void testEvictsLeastRecentlyUsed()
+    {
+        ImageByteCache sut = new ImageByteCache(10, LONG_TIME);
+        EncodedImage a = image(4);
+        EncodedImage b = image(4);
+        sut.put("a", a);
+        sut.put("b", b);
+        sut.get("a");
+        sut.put("c", image(4));
+
+        assertSame(a, sut.get("a"));
+        assertNull(sut.get("b"));
+        assertEquals(2, sut.getCount());
+        assertEquals(8, sut.getCurrentBytes());
+    }
+
+    /**
+     * Tests images bigger than the whole cache are not held.
+     */
+    @Test
+    public void testTooBig()
+    {
+        ImageByteCache sut = new ImageByteCache(10, LONG_TIME);
+        sut.put("a", image(11));
+        assertNull(sut.get("a"));
+        assertEquals(0, sut.getCurrentBytes());
+    }
+
+    /**
+     * Tests replacing and removing images keeps the byte count right.
+     */
+    @Test
+    public void testReplaceAndRemove()
+    {
+        ImageByteCache sut = new ImageByteCache(10, LONG_TIME);
+        sut.put("a", image(4));
+        sut.put("a", image(6));
+        assertEquals(6, sut.getCurrentBytes());
+        sut.remove("a");
+        assertNull(sut.get("a"));
+        assertEquals(0, sut.getCurrentBytes());
+    }
+
+    /**
+     * Tests expired images are not returned.
+     */
+    @Test
+    public void testExpired()
+    {
+        ImageByteCache sut = new ImageByteCache(10, -1);
+        sut.put("a", image(4));
+        assertNull(sut.get("a"));
+        assertEquals(0, sut.getCount());
+    }
+
+    /**
+     * Tests content type detection and the entity tag.
+     */
+    @Test
+    public void testEncodedImage()
+    {
+        byte[] png = new byte[] { (byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n', 0 };
+        byte[] jpeg = new byte[] { (byte) 0xff, (byte) 0xd8, (byte) 0xff, 0 };
+        byte[] gif = "GIF89a".getBytes();
+        assertEquals("image/png", EncodedImage.sniffContentType(png));
+        assertEquals("image/jpeg", EncodedImage.sniffContentType(jpeg));
+        assertEquals("image/gif", EncodedImage.sniffContentType(gif));
+        assertNull(EncodedImage.sniffContentType("BM".getBytes()));
+
+        String tag = new EncodedImage(png, "image/png").getEntityTag();
+        assertEquals(tag, new EncodedImage(png.clone(), "image/png").getEntityTag());
+        assertFalse(tag.equals(new EncodedImage(jpeg, "image/jpeg").getEntityTag()));
+    }
+}
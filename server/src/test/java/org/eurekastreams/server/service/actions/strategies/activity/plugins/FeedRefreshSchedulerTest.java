@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.actions.strategies.activity.plugins;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.eurekastreams.server.domain.stream.plugins.Feed;
+import org.eurekastreams.server.domain.stream.plugins.PluginDefinition;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests FeedRefreshScheduler.
+ */
+public class FeedRefreshSchedulerTest
+{
+    /** Test data. */
+    private static final long NOW = 1000L;
+
+    /** Test data. */
+    private static final long INTERVAL = 60L;
+
+    /** Test data. */
+    private static final long SLOW_MILLIS = 5000L;
+
+    /** Test data. */
+    private static final long MAX_BACKOFF = 600L;
+
+    /** Fixture: random source returning a fixed value. */
+    private double randomValue;
+
+    /** Fixture: feed. */
+    private Feed feed;
+
+    /** SUT. */
+    private FeedRefreshScheduler sut;
+
+    /**
+     * Setup before each test.
+     */
+    @Before
+    public void setUp()
+    {
+        randomValue = 0.5;
+        feed = new Feed();
+        feed.setUpdateFrequency(INTERVAL);
+        sut = new FeedRefreshScheduler(0.2, SLOW_MILLIS, MAX_BACKOFF, new Random()
+        {
+            @Override
+            public double nextDouble()
+            {
+                return randomValue;
+            }
+        });
+    }
+
+    /**
+     * Tests a good refresh is due again after the interval, spread by the jitter.
+     */
+    @Test
+    public void testSuccess()
+    {
+        feed.setFailureCount(3);
+        sut.scheduleNext(feed, NOW, false, 1);
+        assertEquals(0, feed.getFailureCount());
+        assertEquals(NOW + INTERVAL, (long) feed.getNextRefresh());
+
+        randomValue = 0;
+        sut.scheduleNext(feed, NOW, false, 1);
+        assertEquals(NOW + INTERVAL - 6, (long) feed.getNextRefresh());
+
+        randomValue = 0.999;
+        sut.scheduleNext(feed, NOW, false, 1);
+        assertEquals(NOW + INTERVAL + 6, (long) feed.getNextRefresh());
+    }
+
+    /**
+     * Tests failed and slow refreshes back off exponentially up to the limit.
+     */
+    @Test
+    public void testBackoff()
+    {
+        sut.scheduleNext(feed, NOW, true, 1);
+        assertEquals(1, feed.getFailureCount());
+        assertEquals(NOW + INTERVAL * 2, (long) feed.getNextRefresh());
+
+        sut.scheduleNext(feed, NOW, false, SLOW_MILLIS + 1);
+        assertEquals(2, feed.getFailureCount());
+        assertEquals(NOW + INTERVAL * 4, (long) feed.getNextRefresh());
+
+        feed.setFailureCount(40);
+        sut.scheduleNext(feed, NOW, true, 1);
+        assertEquals(NOW + INTERVAL + MAX_BACKOFF, (long) feed.getNextRefresh());
+    }
+
+    /**
+     * Tests the plugin's interval is used when the feed has none.
+     */
+    @Test
+    public void testPluginInterval()
+    {
+        PluginDefinition plugin = new PluginDefinition();
+        plugin.setUpdateFrequency(30L);
+        feed.setUpdateFrequency(null);
+        feed.setPlugin(plugin);
+
+        sut.scheduleNext(feed, NOW, false, 1);
+        assertEquals(NOW + 30L, (long) feed.getNextRefresh());
+    }
+}
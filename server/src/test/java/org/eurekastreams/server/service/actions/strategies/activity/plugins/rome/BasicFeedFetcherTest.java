@@ -16,6 +16,7 @@
 package org.eurekastreams.server.service.actions.strategies.activity.plugins.rome;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 import java.io.IOException;
 import java.io.StringReader;
@@ -25,6 +26,7 @@ import java.util.Map;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
+import org.eurekastreams.server.service.utility.http.HttpCacheValidators;
 import org.eurekastreams.server.service.utility.http.HttpDocumentFetcher;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JUnit4Mockery;
@@ -89,12 +91,13 @@ public class BasicFeedFetcherTest
         {
             {
                 oneOf(docFetcher).fetchDocument(with(equal(url)), with(same(headers)), with(equal(host)),
-                        with(equal(port)), with(equal(timeout)), with(any(DocumentBuilderFactory.class)));
+                        with(equal(port)), with(equal(timeout)), with(any(DocumentBuilderFactory.class)),
+                        with(aNull(HttpCacheValidators.class)));
                 will(returnValue(doc));
             }
         });
 
-        SyndFeed result = sut.fetchFeed(url, headers, host, port, timeout);
+        SyndFeed result = sut.fetchFeed(url, headers, host, port, timeout, null);
 
         context.assertIsSatisfied();
         assertEquals("The Title", result.getTitle());
@@ -102,4 +105,32 @@ public class BasicFeedFetcherTest
         assertEquals(1, entries.size());
         assertEquals("Item Title", entries.get(0).getTitle());
     }
+
+    /**
+     * Tests fetching a document which is unchanged.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testNotModified() throws Exception
+    {
+        final String url = "http://www.example.com/feed.xml";
+        final HttpCacheValidators validators = new HttpCacheValidators("etag", null, null);
+
+        BasicFeedFetcher sut = new BasicFeedFetcher(docFetcher);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(docFetcher).fetchDocument(with(equal(url)), with(any(Map.class)), with(any(String.class)),
+                        with(any(String.class)), with(any(Integer.class)), with(any(DocumentBuilderFactory.class)),
+                        with(same(validators)));
+                will(returnValue(null));
+            }
+        });
+
+        assertNull(sut.fetchFeed(url, null, "", "", 1, validators));
+        context.assertIsSatisfied();
+    }
 }
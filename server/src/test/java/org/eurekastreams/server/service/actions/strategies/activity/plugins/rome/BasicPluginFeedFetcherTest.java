@@ -17,6 +17,7 @@ package org.eurekastreams.server.service.actions.strategies.activity.plugins.rom
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.util.Collection;
 import java.util.Collections;
@@ -24,6 +25,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 
+import org.eurekastreams.server.service.utility.http.HttpCacheValidators;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
@@ -114,12 +116,12 @@ public class BasicPluginFeedFetcherTest
         context.checking(new Expectations()
         {
             {
-                oneOf(fetcher).fetchFeed(URL_TEXT, httpHeaders, PROXY_HOST, PROXY_PORT, TIMEOUT);
+                oneOf(fetcher).fetchFeed(URL_TEXT, httpHeaders, PROXY_HOST, PROXY_PORT, TIMEOUT, null);
                 will(returnValue(feed));
             }
         });
 
-        Map<String, SyndFeed> result = sut.execute(URL_TEXT, users, PROXY_HOST, PROXY_PORT, TIMEOUT);
+        Map<String, SyndFeed> result = sut.execute(URL_TEXT, users, PROXY_HOST, PROXY_PORT, TIMEOUT, null);
         context.assertIsSatisfied();
 
         assertEquals(1, result.size());
@@ -140,16 +142,42 @@ public class BasicPluginFeedFetcherTest
         context.checking(new Expectations()
         {
             {
-                oneOf(fetcher).fetchFeed(URL_TEXT, Collections.EMPTY_MAP, PROXY_HOST, PROXY_PORT, TIMEOUT);
+                oneOf(fetcher).fetchFeed(URL_TEXT, Collections.EMPTY_MAP, PROXY_HOST, PROXY_PORT, TIMEOUT, null);
                 will(returnValue(feed));
             }
         });
 
-        Map<String, SyndFeed> result = sut.execute(URL_TEXT, users, PROXY_HOST, PROXY_PORT, TIMEOUT);
+        Map<String, SyndFeed> result = sut.execute(URL_TEXT, users, PROXY_HOST, PROXY_PORT, TIMEOUT, null);
         context.assertIsSatisfied();
 
         assertEquals(1, result.size());
         assertSame(feed, result.get(null));
     }
 
+    /**
+     * Tests executing when the feed is unchanged.
+     *
+     * @throws Exception
+     *             Shouldn't.
+     */
+    @Test
+    public void testExecuteNotModified() throws Exception
+    {
+        sut = new BasicPluginFeedFetcher(fetcher, REGEX, httpHeaders);
+        final HttpCacheValidators validators = new HttpCacheValidators("etag", null, null);
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(fetcher).fetchFeed(URL_TEXT, httpHeaders, PROXY_HOST, PROXY_PORT, TIMEOUT, validators);
+                will(returnValue(null));
+            }
+        });
+
+        Map<String, SyndFeed> result = sut.execute(URL_TEXT, users, PROXY_HOST, PROXY_PORT, TIMEOUT, validators);
+        context.assertIsSatisfied();
+
+        assertTrue(result.isEmpty());
+    }
+
 }
@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Map;
 
+import org.eurekastreams.server.service.utility.http.HttpCacheValidators;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
@@ -104,7 +105,7 @@ public class FeedFactoryTest
         context.checking(new Expectations()
         {
             {
-                oneOf(plugin2).execute(url, requestors, HOST, PORT, TIMEOUT);
+                oneOf(plugin2).execute(url, requestors, HOST, PORT, TIMEOUT, null);
                 will(returnValue(pluginResult));
             }
         });
@@ -126,16 +127,17 @@ public class FeedFactoryTest
     {
         final Collection requestors = context.mock(Collection.class);
         final String url = "www.ordinary.com/rss.xml";
+        final HttpCacheValidators validators = new HttpCacheValidators("etag", null, null);
 
         context.checking(new Expectations()
         {
             {
-                oneOf(defaultPlugin).execute(url, requestors, HOST, PORT, TIMEOUT);
+                oneOf(defaultPlugin).execute(url, requestors, HOST, PORT, TIMEOUT, validators);
                 will(returnValue(pluginResult));
             }
         });
 
-        Map<String, SyndFeed> result = sut.getSyndicatedFeed(url, requestors);
+        Map<String, SyndFeed> result = sut.getSyndicatedFeed(url, requestors, validators);
 
         context.assertIsSatisfied();
         assertSame(pluginResult, result);
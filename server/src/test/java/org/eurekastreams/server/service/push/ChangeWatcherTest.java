@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.push;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.eurekastreams.server.domain.UnreadInAppNotificationCountDTO;
+import org.eurekastreams.server.persistence.mappers.cache.Cache;
+import org.eurekastreams.server.persistence.mappers.cache.CacheKeys;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+
+/**
+ * Tests ChangeWatcher with UnseenChangesWaiter.
+ */
+public class ChangeWatcherTest
+{
+    /** Used for mocking objects. */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Cache. */
+    private final Cache cache = context.mock(Cache.class);
+
+    /** Woken waiters count. */
+    private int woken = 0;
+
+    /** Counts wakeups. */
+    private final Runnable onWake = new Runnable()
+    {
+        public void run()
+        {
+            woken++;
+        }
+    };
+
+    /** SUT. */
+    private final ChangeWatcher sut = new ChangeWatcher(cache);
+
+    /**
+     * Tests waiters share one read and only those whose values changed are woken, once.
+     */
+    @Test
+    public void testCheckWakesChangedWaiters()
+    {
+        final String streamKey = CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + 5L;
+        final UnseenChangesWaiter streamWaiter = new UnseenChangesWaiter(Arrays.asList(streamKey), 1L, 100L,
+                new UnreadInAppNotificationCountDTO(0, 2), 0L, onWake);
+        final UnseenChangesWaiter quietWaiter = new UnseenChangesWaiter(Arrays.asList(CacheKeys.LATEST_ACTIVITY_ID),
+                2L, 300L, new UnreadInAppNotificationCountDTO(1, 1), 0L, onWake);
+
+        final Map<String, Object> values = new HashMap<String, Object>();
+        values.put(streamKey, 101L);
+        values.put(CacheKeys.LATEST_ACTIVITY_ID, 300L);
+        values.put(CacheKeys.UNREAD_APPLICATION_ALERT_COUNT_BY_USER + 2L, new UnreadInAppNotificationCountDTO(1, 1));
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(cache).multiGet(
+                        new HashSet<String>(Arrays.asList(streamKey, CacheKeys.LATEST_ACTIVITY_ID,
+                                CacheKeys.UNREAD_APPLICATION_ALERT_COUNT_BY_USER + 1L,
+                                CacheKeys.UNREAD_APPLICATION_ALERT_COUNT_BY_USER + 2L)));
+                will(returnValue(values));
+
+                oneOf(cache).multiGet(Arrays.asList(CacheKeys.LATEST_ACTIVITY_ID,
+                        CacheKeys.UNREAD_APPLICATION_ALERT_COUNT_BY_USER + 2L));
+                will(returnValue(values));
+            }
+        });
+
+        sut.watch(streamWaiter);
+        sut.watch(quietWaiter);
+        sut.check();
+
+        assertEquals(1, woken);
+        assertEquals(Long.valueOf(101L), streamWaiter.getNewActivityId(streamWaiter.getWakeValues()));
+        assertNull(streamWaiter.getChangedCounts(streamWaiter.getWakeValues()));
+        assertNull(quietWaiter.getWakeValues());
+        assertEquals(1, sut.getWaiterCount());
+
+        // the read made before waiting sees the same values
+        sut.read(quietWaiter);
+
+        sut.cancel(quietWaiter);
+        sut.check();
+        assertEquals(0, sut.getWaiterCount());
+        assertEquals(1, sut.getChecks());
+        assertEquals(1, sut.getWakeups());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests changed notification counts wake a waiter, and unknown counts count as changed.
+     */
+    @Test
+    public void testNotificationCountChanges()
+    {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put(CacheKeys.UNREAD_APPLICATION_ALERT_COUNT_BY_USER + 1L, new UnreadInAppNotificationCountDTO(1, 2));
+
+        UnseenChangesWaiter same = new UnseenChangesWaiter(Arrays.<String> asList(), 1L, 0L,
+                new UnreadInAppNotificationCountDTO(1, 2), 0L, onWake);
+        UnseenChangesWaiter changed = new UnseenChangesWaiter(Arrays.<String> asList(), 1L, 0L,
+                new UnreadInAppNotificationCountDTO(0, 2), 0L, onWake);
+        UnseenChangesWaiter unknown = new UnseenChangesWaiter(Arrays.<String> asList(), 1L, 0L, null, 0L, onWake);
+
+        assertNull(same.getChangedCounts(values));
+        assertNotNull(changed.getChangedCounts(values));
+        assertNotNull(unknown.getChangedCounts(values));
+        assertNull(unknown.getChangedCounts(new HashMap<String, Object>()));
+    }
+
+    /**
+     * Tests a post outside the user's following stream does not wake a waiter on it.
+     */
+    @Test
+    public void testPostOutsideStreamDoesNotWake()
+    {
+        final UnseenChangesWaiter waiter = new UnseenChangesWaiter(Arrays.asList(
+                CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + 1L, CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + 5L),
+                1L, 100L, new UnreadInAppNotificationCountDTO(0, 0), 0L, onWake);
+
+        final Map<String, Object> values = new HashMap<String, Object>();
+        values.put(CacheKeys.LATEST_ACTIVITY_ID, 200L);
+        values.put(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + 2L, 200L);
+        values.put(CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + 6L, 200L);
+        values.put(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + 1L, 90L);
+        values.put(CacheKeys.UNREAD_APPLICATION_ALERT_COUNT_BY_USER + 1L, new UnreadInAppNotificationCountDTO(0, 0));
+
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(cache).multiGet(with(any(HashSet.class)));
+                will(returnValue(values));
+            }
+        });
+
+        sut.watch(waiter);
+        sut.check();
+
+        assertEquals(0, woken);
+        assertEquals(1, sut.getWaiterCount());
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests new activity in a site-wide stream does not wake a waiter before its limit, but changed counts do.
+     */
+    @Test
+    public void testSiteWideActivityLimited()
+    {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put(CacheKeys.LATEST_ACTIVITY_ID, 200L);
+        values.put(CacheKeys.UNREAD_APPLICATION_ALERT_COUNT_BY_USER + 1L, new UnreadInAppNotificationCountDTO(0, 0));
+
+        long later = System.currentTimeMillis() + 60000L;
+        UnseenChangesWaiter limited = new UnseenChangesWaiter(Arrays.asList(CacheKeys.LATEST_ACTIVITY_ID), 1L,
+                100L, new UnreadInAppNotificationCountDTO(0, 0), later, onWake);
+        UnseenChangesWaiter unlimited = new UnseenChangesWaiter(Arrays.asList(CacheKeys.LATEST_ACTIVITY_ID), 1L,
+                100L, new UnreadInAppNotificationCountDTO(0, 0), 0L, onWake);
+        UnseenChangesWaiter countsChanged = new UnseenChangesWaiter(Arrays.asList(CacheKeys.LATEST_ACTIVITY_ID), 1L,
+                100L, new UnreadInAppNotificationCountDTO(1, 0), later, onWake);
+
+        assertFalse(limited.isChanged(values));
+        assertTrue(unlimited.isChanged(values));
+        assertTrue(countsChanged.isChanged(values));
+    }
+}
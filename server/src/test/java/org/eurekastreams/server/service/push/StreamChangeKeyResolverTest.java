@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.server.service.push;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.sf.json.JSONObject;
+
+import org.eurekastreams.server.persistence.mappers.cache.CacheKeys;
+import org.eurekastreams.server.persistence.mappers.requests.GetAllFollowedByActivityIdsRequest;
+import org.eurekastreams.server.service.actions.strategies.activity.datasources.PersistenceDataSourceRequestTransformer;
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.legacy.ClassImposteriser;
+import org.junit.Test;
+
+/**
+ * Tests StreamChangeKeyResolver.
+ */
+public class StreamChangeKeyResolverTest
+{
+    /** Used for mocking objects. */
+    private final Mockery context = new JUnit4Mockery()
+    {
+        {
+            setImposteriser(ClassImposteriser.INSTANCE);
+        }
+    };
+
+    /** Recipient transformer. */
+    private final PersistenceDataSourceRequestTransformer recipientTransformer = context
+            .mock(PersistenceDataSourceRequestTransformer.class);
+
+    /** Followed by transformer. */
+    private final PersistenceDataSourceRequestTransformer followedByTransformer = context.mock(
+            PersistenceDataSourceRequestTransformer.class, "followedByTransformer");
+
+    /** SUT. */
+    private final StreamChangeKeyResolver sut = new StreamChangeKeyResolver(recipientTransformer,
+            followedByTransformer);
+
+    /**
+     * Tests streams of specific recipients are watched by their own keys.
+     */
+    @Test
+    public void testResolveRecipientStream()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(recipientTransformer).transform(with(any(JSONObject.class)), with(equal(9L)));
+                will(returnValue(new ArrayList<Long>(Arrays.asList(3L, 4L))));
+            }
+        });
+
+        assertEquals(Arrays.asList(CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + 3L,
+                CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + 4L), sut.resolve(
+                "{\"query\":{\"recipient\":[{\"type\":\"GROUP\",\"name\":\"g\"},{\"type\":\"PERSON\",\"name\":\"p\"}],"
+                        + "\"sortBy\":\"date\"},\"minId\":\"5\",\"count\":\"100\"}", 9L));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests a following stream is watched by the person's following key and the keys of the groups they follow, so
+     * posts elsewhere do not wake it.
+     */
+    @Test
+    public void testResolveFollowingStream()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(followedByTransformer).transform(with(any(JSONObject.class)), with(equal(9L)));
+                will(returnValue(new GetAllFollowedByActivityIdsRequest(9L, Arrays.asList(11L, 12L))));
+            }
+        });
+
+        List<String> keys = sut.resolve("{\"query\":{\"followedBy\":\"p\",\"sortBy\":\"date\"},\"sinceId\":\"5\"}",
+                9L);
+
+        assertEquals(Arrays.asList(CacheKeys.LATEST_ACTIVITY_ID_BY_FOLLOWER + 9L,
+                CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + 11L,
+                CacheKeys.LATEST_ACTIVITY_ID_BY_STREAM_SCOPE_ID + 12L), keys);
+        assertFalse(StreamChangeKeyResolver.isSiteWide(keys));
+        context.assertIsSatisfied();
+    }
+
+    /**
+     * Tests other streams are watched by the key bumped on any post.
+     */
+    @Test
+    public void testResolveOtherStreams()
+    {
+        assertTrue(StreamChangeKeyResolver.isSiteWide(sut.resolve("{\"query\":{\"sortBy\":\"date\"}}", 9L)));
+        assertEquals(Collections.singletonList(CacheKeys.LATEST_ACTIVITY_ID), sut.resolve(
+                "{\"query\":{\"followedBy\":\"p\",\"keywords\":\"x\"},\"minId\":\"5\"}", 9L));
+        assertEquals(Collections.singletonList(CacheKeys.LATEST_ACTIVITY_ID), sut.resolve(
+                "{\"query\":{\"recipient\":[{\"type\":\"GROUP\",\"name\":\"g\"}],\"keywords\":\"x\"}}", 9L));
+        assertEquals(Collections.singletonList(CacheKeys.LATEST_ACTIVITY_ID), sut.resolve("{\"minId\":\"5\"}", 9L));
+        context.assertIsSatisfied();
+    }
+}
@@ -19,8 +19,10 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import org.eurekastreams.commons.actions.context.Principal;
 import org.eurekastreams.server.domain.PersistentLogin;
 import org.eurekastreams.server.domain.Person;
 import org.eurekastreams.server.search.modelview.AuthenticationType;
@@ -115,6 +117,33 @@ public class ExtendedUserDetailsImplTest
         context.assertIsSatisfied();
     }
 
+    /**
+     * Test the principal is built from the person once and then kept.
+     */
+    @Test
+    public void testGetPrincipal()
+    {
+        context.checking(new Expectations()
+        {
+            {
+                oneOf(person).getAccountId();
+                will(returnValue("acctid"));
+                oneOf(person).getOpenSocialId();
+                will(returnValue("osid"));
+                oneOf(person).getId();
+                will(returnValue(5L));
+            }
+        });
+
+        ExtendedUserDetailsImpl sut = new ExtendedUserDetailsImpl(person, null, null, null);
+        Principal principal = sut.getPrincipal();
+        assertEquals("acctid", principal.getAccountId());
+        assertEquals("osid", principal.getOpenSocialId());
+        assertEquals((Long) 5L, principal.getId());
+        assertSame(principal, sut.getPrincipal());
+        context.assertIsSatisfied();
+    }
+
     /**
      * Test isAccountNonLocked.
      */
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.web.client.model;
+
+import java.util.ArrayList;
+
+import org.eurekastreams.web.client.events.NotificationCountsAvailableEvent;
+import org.eurekastreams.web.client.events.Observer;
+import org.eurekastreams.web.client.events.data.GotUnseenActivitiesCountResponseEvent;
+import org.eurekastreams.web.client.ui.Session;
+
+import com.google.gwt.http.client.Request;
+import com.google.gwt.http.client.RequestBuilder;
+import com.google.gwt.http.client.RequestCallback;
+import com.google.gwt.http.client.Response;
+import com.google.gwt.http.client.URL;
+import com.google.gwt.json.client.JSONArray;
+import com.google.gwt.json.client.JSONObject;
+import com.google.gwt.json.client.JSONParser;
+import com.google.gwt.user.client.Timer;
+
+/**
+ * Keeps one long poll open to the server for new activity in the stream being viewed and for changes to the
+ * notification counts, replacing the timer jobs which polled for them. The server only answers when something changed
+ * (or after a while with nothing), so an open tab costs one waiting request.
+ */
+public class UnseenChangesModel
+{
+    /** Singleton. */
+    private static UnseenChangesModel model = new UnseenChangesModel();
+
+    /** URL of the long poll. */
+    private static final String URL_PATH = "/eurekastreams/unseenchanges";
+
+    /** Time to give up on a request; longer than the server waits. */
+    private static final int REQUEST_TIMEOUT_MS = 70000;
+
+    /** First wait before retrying after an error. */
+    private static final int MIN_RETRY_MS = 5000;
+
+    /** Longest wait before retrying after an error. */
+    private static final int MAX_RETRY_MS = 300000;
+
+    /** HTTP OK. */
+    private static final int HTTP_OK = 200;
+
+    /** Whether the notification counts are being watched. */
+    private boolean started = false;
+
+    /** Stream request JSON for the stream being viewed; null if none. */
+    private String streamRequest = null;
+
+    /** Newest activity id in the stream the client has been told of. */
+    private String latestActivityId = null;
+
+    /** Notification counts being shown; null until known. */
+    private NotificationCountsAvailableEvent counts = null;
+
+    /** The request in flight; null if none. */
+    private Request pending = null;
+
+    /** Current wait before retrying after an error. */
+    private int retryMs = MIN_RETRY_MS;
+
+    /** Whether a retry is scheduled. */
+    private boolean retryScheduled = false;
+
+    /** Retries after an error. */
+    private final Timer retryTimer = new Timer()
+    {
+        @Override
+        public void run()
+        {
+            retryScheduled = false;
+            connect();
+        }
+    };
+
+    /**
+     * Gets the singleton.
+     *
+     * @return the singleton.
+     */
+    public static UnseenChangesModel getInstance()
+    {
+        return model;
+    }
+
+    /**
+     * Constructor.
+     */
+    private UnseenChangesModel()
+    {
+        Session.getInstance().getEventBus()
+                .addObserver(NotificationCountsAvailableEvent.class, new Observer<NotificationCountsAvailableEvent>()
+                {
+                    public void update(final NotificationCountsAvailableEvent ev)
+                    {
+                        counts = ev;
+                        if (started && pending == null && !retryScheduled)
+                        {
+                            connect();
+                        }
+                    }
+                });
+    }
+
+    /**
+     * Starts watching the notification counts; the poll opens once the current counts are known.
+     */
+    public void start()
+    {
+        started = true;
+    }
+
+    /**
+     * Starts watching a stream for new activity, instead of any stream watched before.
+     *
+     * @param inStreamRequest
+     *            stream request JSON for getActivityIDs, with sinceId set to the newest activity shown.
+     * @param inNewestShownId
+     *            id of the newest activity shown.
+     */
+    public void watchStream(final String inStreamRequest, final long inNewestShownId)
+    {
+        streamRequest = inStreamRequest;
+        latestActivityId = Long.toString(inNewestShownId);
+        reconnect();
+    }
+
+    /**
+     * Stops watching for new activity.
+     */
+    public void stopWatchingStream()
+    {
+        if (streamRequest != null)
+        {
+            streamRequest = null;
+            latestActivityId = null;
+            reconnect();
+        }
+    }
+
+    /**
+     * Replaces the request in flight with one for what is now watched.
+     */
+    private void reconnect()
+    {
+        if (pending != null)
+        {
+            pending.cancel();
+            pending = null;
+        }
+        if (!retryScheduled)
+        {
+            connect();
+        }
+    }
+
+    /**
+     * Opens the long poll if there is anything to watch.
+     */
+    private void connect()
+    {
+        if (streamRequest == null && (!started || counts == null))
+        {
+            return;
+        }
+
+        StringBuilder url = new StringBuilder(URL_PATH).append("?");
+        if (streamRequest != null)
+        {
+            url.append("stream=").append(URL.encodeQueryString(streamRequest));
+            url.append("&latest=").append(latestActivityId).append("&");
+        }
+        if (counts != null)
+        {
+            url.append("high=").append(counts.getHighPriorityCount());
+            url.append("&normal=").append(counts.getNormalCount());
+        }
+
+        RequestBuilder builder = new RequestBuilder(RequestBuilder.GET, url.toString());
+        builder.setTimeoutMillis(REQUEST_TIMEOUT_MS);
+        try
+        {
+            pending = builder.sendRequest(null, new RequestCallback()
+            {
+                public void onResponseReceived(final Request inRequest, final Response inResponse)
+                {
+                    if (inRequest != pending)
+                    {
+                        return;
+                    }
+                    if (inResponse.getStatusCode() == HTTP_OK)
+                    {
+                        retryMs = MIN_RETRY_MS;
+                        handleResponse(JSONParser.parse(inResponse.getText()).isObject());
+
+                        // ask again, unless an observer of the changes already did
+                        if (pending == inRequest)
+                        {
+                            pending = null;
+                            connect();
+                        }
+                    }
+                    else
+                    {
+                        pending = null;
+                        retryLater();
+                    }
+                }
+
+                public void onError(final Request inRequest, final Throwable inException)
+                {
+                    if (inRequest == pending)
+                    {
+                        pending = null;
+                        retryLater();
+                    }
+                }
+            });
+        }
+        catch (Exception ex)
+        {
+            pending = null;
+            retryLater();
+        }
+    }
+
+    /**
+     * Waits before connecting again, for longer after each consecutive error.
+     */
+    private void retryLater()
+    {
+        retryScheduled = true;
+        retryTimer.schedule(retryMs);
+        retryMs = Math.min(retryMs * 2, MAX_RETRY_MS);
+    }
+
+    /**
+     * Announces what changed.
+     *
+     * @param json
+     *            the response.
+     */
+    private void handleResponse(final JSONObject json)
+    {
+        if (json.containsKey("latest") && streamRequest != null)
+        {
+            latestActivityId = json.get("latest").isString().stringValue();
+
+            ArrayList<Long> ids = new ArrayList<Long>();
+            JSONArray idArray = json.get("activityIds").isArray();
+            for (int i = 0; i < idArray.size(); i++)
+            {
+                ids.add(Long.parseLong(idArray.get(i).isString().stringValue()));
+            }
+            Session.getInstance().getEventBus().notifyObservers(new GotUnseenActivitiesCountResponseEvent(ids));
+        }
+        if (json.containsKey("high"))
+        {
+            // also updates counts via the observer
+            Session.getInstance().getEventBus().notifyObservers(
+                    new NotificationCountsAvailableEvent((int) json.get("normal").isNumber().doubleValue(),
+                            (int) json.get("high").isNumber().doubleValue()));
+        }
+    }
+}
@@ -18,6 +18,7 @@ package org.eurekastreams.web.client.ui.common.notification;
 import org.eurekastreams.web.client.events.NotificationCountsAvailableEvent;
 import org.eurekastreams.web.client.events.Observer;
 import org.eurekastreams.web.client.model.NotificationCountModel;
+import org.eurekastreams.web.client.model.UnseenChangesModel;
 import org.eurekastreams.web.client.ui.Session;
 import org.eurekastreams.web.client.ui.common.dialog.Dialog;
 import org.eurekastreams.web.client.ui.common.notification.dialog.NotificationsDialogContent;
@@ -32,9 +33,6 @@ import com.google.gwt.user.client.ui.Label;
  */
 public class NotificationCountWidget extends Label
 {
-    /** Polling time in minutes. */
-    private static final int POLL_TIME_MINUTES = 1;
-
     /**
      * Constructor.
      */
@@ -85,9 +83,8 @@ public class NotificationCountWidget extends Label
      */
     public void init()
     {
-        Session.getInstance().getTimer()
-        .addTimerJob("getNotificationCountTimerJob", POLL_TIME_MINUTES, NotificationCountModel.getInstance(),
-                null, true);
+        // changes after the first fetch are pushed by the server
+        UnseenChangesModel.getInstance().start();
 
         NotificationCountModel.getInstance().fetch(null, true);
     }
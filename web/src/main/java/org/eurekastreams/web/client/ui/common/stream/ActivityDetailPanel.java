@@ -21,6 +21,7 @@ import org.eurekastreams.server.domain.stream.ActivityDTO;
 import org.eurekastreams.server.domain.stream.StreamEntityDTO;
 import org.eurekastreams.web.client.events.SwitchedToActivityDetailViewEvent;
 import org.eurekastreams.web.client.history.CreateUrlRequest;
+import org.eurekastreams.web.client.model.UnseenChangesModel;
 import org.eurekastreams.web.client.ui.Session;
 import org.eurekastreams.web.client.ui.common.stream.renderers.ShowRecipient;
 import org.eurekastreams.web.client.ui.common.stream.renderers.StreamMessageItemRenderer;
@@ -120,7 +121,7 @@ public class ActivityDetailPanel extends FlowPanel
         msgPanel.add(msgText);
 
         errorReport.add(msgPanel);
-        Session.getInstance().getTimer().removeTimerJob("getUnseenActivityJob");
+        UnseenChangesModel.getInstance().stopWatchingStream();
 
     }
 }
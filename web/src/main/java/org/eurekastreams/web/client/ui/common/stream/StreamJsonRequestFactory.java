@@ -79,6 +79,11 @@ public final class StreamJsonRequestFactory
      */
     public static final String MIN_ID_KEY = "minId";
 
+    /**
+     * Since ID key: only activity newer than it is returned.
+     */
+    public static final String SINCE_ID_KEY = "sinceId";
+
     /**
      * Max ID key.
      */
@@ -391,6 +396,22 @@ public final class StreamJsonRequestFactory
         return json;
     }
 
+    /**
+     * Sets the since ID of a request, so only activity newer than it is returned.
+     *
+     * @param sinceId
+     *            the since ID.
+     * @param json
+     *            the request.
+     * @return the request.
+     */
+    public static JSONObject setSinceId(final Long sinceId, final JSONObject json)
+    {
+        json.put(SINCE_ID_KEY, new JSONString(sinceId.toString()));
+
+        return json;
+    }
+
     /**
      * Sets the max ID of a request.
      *
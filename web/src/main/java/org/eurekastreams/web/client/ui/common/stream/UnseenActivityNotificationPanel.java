@@ -25,7 +25,7 @@ import org.eurekastreams.web.client.events.Observer;
 import org.eurekastreams.web.client.events.StreamReinitializeRequestEvent;
 import org.eurekastreams.web.client.events.data.GotStreamResponseEvent;
 import org.eurekastreams.web.client.events.data.GotUnseenActivitiesCountResponseEvent;
-import org.eurekastreams.web.client.model.UnseenActivityIDsForViewModel;
+import org.eurekastreams.web.client.model.UnseenChangesModel;
 import org.eurekastreams.web.client.ui.Session;
 import org.eurekastreams.web.client.ui.pages.master.StaticResourceBundle;
 
@@ -52,9 +52,6 @@ public class UnseenActivityNotificationPanel extends FlowPanel
      */
     private static final int MAX_UNSEEN = 100;
 
-    /** Polling time in minutes. */
-    private static final int POLL_TIME_MINUTES = 1;
-
     /**
      * Whether we're actively listening for new activity counts.
      */
@@ -107,22 +104,20 @@ public class UnseenActivityNotificationPanel extends FlowPanel
                     {
                         thisBuffered.setVisible(false);
 
-                        // remove job if present and clear job from paused list.
-                        Session.getInstance().getTimer().removeTimerJob("getUnseenActivityJob");
-
                         // Only show unseen activity if sorted by date.
                         if ("date".equals(event.getSortType()) && event.getStream().getPagedSet().size() > 0)
                         {
+                            long newestId = event.getStream().getPagedSet().get(0).getId();
                             JSONObject request = StreamJsonRequestFactory.getJSONRequest(event.getJsonRequest());
-                            request = StreamJsonRequestFactory.setMinId(
-                                    event.getStream().getPagedSet().get(0).getId(), request);
+                            request = StreamJsonRequestFactory.setSinceId(newestId, request);
                             request = StreamJsonRequestFactory.setMaxResults(MAX_UNSEEN, request);
 
-                            // add and configure
-                            Session.getInstance()
-                                    .getTimer()
-                                    .addTimerJob("getUnseenActivityJob", POLL_TIME_MINUTES,
-                                            UnseenActivityIDsForViewModel.getInstance(), request.toString(), false);
+                            // the server tells us when there is activity newer than the newest shown
+                            UnseenChangesModel.getInstance().watchStream(request.toString(), newestId);
+                        }
+                        else
+                        {
+                            UnseenChangesModel.getInstance().stopWatchingStream();
                         }
                     }
                 });
@@ -170,7 +165,7 @@ public class UnseenActivityNotificationPanel extends FlowPanel
             {
                 if (event.isSingleMode())
                 {
-                    Session.getInstance().getTimer().removeTimerJob("getUnseenActivityJob");
+                    UnseenChangesModel.getInstance().stopWatchingStream();
                 }
             }
         });
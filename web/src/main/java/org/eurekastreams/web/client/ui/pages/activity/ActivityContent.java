@@ -694,14 +694,16 @@ public class ActivityContent extends Composite
                             .getEntityId();
                 }
 
-                if (StreamJsonRequestFactory.getJSONRequest(event.getJsonRequest()).containsKey("minId"))
+                JSONObject jsonRequest = StreamJsonRequestFactory.getJSONRequest(event.getJsonRequest());
+                if (jsonRequest.containsKey(StreamJsonRequestFactory.MIN_ID_KEY)
+                        || jsonRequest.containsKey(StreamJsonRequestFactory.SINCE_ID_KEY))
                 {
                     for (int i = activitySet.getPagedSet().size(); i > 0; i--)
                     {
                         appendActivity(activitySet.getPagedSet().get(i - 1));
                     }
                 }
-                else if (StreamJsonRequestFactory.getJSONRequest(event.getJsonRequest()).containsKey("maxId"))
+                else if (jsonRequest.containsKey(StreamJsonRequestFactory.MAX_ID_KEY))
                 {
                     moreSpinner.addClassName(StaticResourceBundle.INSTANCE.coreCss().displayNone());
                     for (ActivityDTO activity : activitySet.getPagedSet())
@@ -0,0 +1,324 @@
+/*
+ * Copyright (c) 2011 Lockheed Martin Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.eurekastreams.web.services;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import net.sf.json.JSONArray;
+import net.sf.json.JSONObject;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.commons.logging.Log;
+import org.eurekastreams.commons.client.ActionRequest;
+import org.eurekastreams.commons.client.ActionRequestImpl;
+import org.eurekastreams.commons.logging.LogFactory;
+import org.eurekastreams.commons.server.ActionExecutor;
+import org.eurekastreams.server.action.execution.stream.GetActivityIdsByJson;
+import org.eurekastreams.server.domain.UnreadInAppNotificationCountDTO;
+import org.eurekastreams.server.service.push.ChangeWatcher;
+import org.eurekastreams.server.service.push.StreamChangeKeyResolver;
+import org.eurekastreams.server.service.push.UnseenChangesWaiter;
+import org.eurekastreams.server.service.security.userdetails.ExtendedUserDetails;
+import org.mortbay.util.ajax.Continuation;
+import org.mortbay.util.ajax.ContinuationSupport;
+import org.springframework.context.ApplicationContext;
+import org.springframework.security.Authentication;
+import org.springframework.security.context.SecurityContextHolder;
+import org.springframework.web.context.support.WebApplicationContextUtils;
+
+/**
+ * Long poll for what the user has not seen yet: activity newer than the newest they know of in the stream they are
+ * viewing, and changes to their unread notification counts. The request waits until one of these changes or the
+ * timeout passes, then answers with only what changed; the client asks again straight away.
+ *
+ * Parameters: "stream" is the stream request JSON the unseen activity is counted with (getActivityIDs, with sinceId set
+ * to the newest activity the client is showing; omit to only watch notifications); "latest" is the newest activity id
+ * the client has been told of (defaults to sinceId); "high" and "normal" are the notification counts the client is
+ * showing (omit if unknown).
+ *
+ * Streams with no narrower key to watch (everyone, keyword, ...) change with any post on the site, so new activity
+ * in them wakes a user's requests at most once per "siteWideWakeSeconds" (the interval the client used to poll at);
+ * changed notification counts still answer at once.
+ *
+ * While waiting the request is suspended with a Jetty continuation, so it holds no thread on the NIO connector (other
+ * connectors fall back to blocking the thread). The waiting itself is done by the ChangeWatcher, which checks the
+ * watched cache keys of every waiting request at once.
+ */
+public class UnseenChangesServlet extends HttpServlet
+{
+    /** Serial version id. */
+    private static final long serialVersionUID = -3460227416850612392L;
+
+    /** Default time a request may wait, in seconds. */
+    private static final int DEFAULT_TIMEOUT_SECONDS = 50;
+
+    /** Default time between wakes by new activity in site-wide streams, in seconds. */
+    private static final int DEFAULT_SITE_WIDE_WAKE_SECONDS = 60;
+
+    /** Session attribute holding when new activity in a site-wide stream was last returned. */
+    private static final String SITE_WIDE_WAKE_ATTRIBUTE = UnseenChangesServlet.class.getName() + ".siteWideWake";
+
+    /** Milliseconds per second. */
+    private static final long MILLIS_PER_SECOND = 1000L;
+
+    /** Most unseen activity ids returned. */
+    private static final int MAX_ACTIVITY_IDS = 100;
+
+    /** Logger. */
+    private final Log log = LogFactory.make();
+
+    /** Time a request may wait, in milliseconds. */
+    private long timeoutMillis;
+
+    /** Time between wakes by new activity in site-wide streams, in milliseconds. */
+    private long siteWideWakeMillis;
+
+    /** Holds the waiting requests. */
+    private ChangeWatcher changeWatcher;
+
+    /** Finds the keys to watch for a stream. */
+    private StreamChangeKeyResolver streamChangeKeyResolver;
+
+    /** Runs getActivityIDs. */
+    private ActionExecutor actionExecutor;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void init() throws ServletException
+    {
+        String timeout = getInitParameter("timeoutSeconds");
+        timeoutMillis = (StringUtils.isBlank(timeout) ? DEFAULT_TIMEOUT_SECONDS : Integer.parseInt(timeout))
+                * MILLIS_PER_SECOND;
+        String siteWideWake = getInitParameter("siteWideWakeSeconds");
+        siteWideWakeMillis = (StringUtils.isBlank(siteWideWake) ? DEFAULT_SITE_WIDE_WAKE_SECONDS : Integer
+                .parseInt(siteWideWake)) * MILLIS_PER_SECOND;
+
+        ApplicationContext springContext = WebApplicationContextUtils.getWebApplicationContext(getServletContext());
+        changeWatcher = (ChangeWatcher) springContext.getBean("changeWatcher");
+        streamChangeKeyResolver = (StreamChangeKeyResolver) springContext.getBean("streamChangeKeyResolver");
+        actionExecutor = (ActionExecutor) springContext.getBean("actionExecutor");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void doGet(final HttpServletRequest request, final HttpServletResponse response)
+            throws ServletException, IOException
+    {
+        ExtendedUserDetails user = getUser();
+        if (user == null)
+        {
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED);
+            return;
+        }
+
+        String streamRequest = request.getParameter("stream");
+        final Continuation continuation = ContinuationSupport.getContinuation(request, null);
+        UnseenChangesWaiter waiter = (UnseenChangesWaiter) continuation.getObject();
+        Map<String, Object> values;
+
+        if (waiter == null)
+        {
+            try
+            {
+                Long userId = user.getPrincipal().getId();
+                boolean watchingStream = StringUtils.isNotBlank(streamRequest);
+                List<String> activityKeys = watchingStream ? streamChangeKeyResolver.resolve(streamRequest, userId)
+                        : Collections.<String> emptyList();
+                waiter = new UnseenChangesWaiter(activityKeys, userId, watchingStream ? getSeenActivityId(request,
+                        streamRequest) : 0L, getSeenCounts(request), getActivityNotBefore(request, activityKeys),
+                        new Runnable()
+                        {
+                            public void run()
+                            {
+                                continuation.resume();
+                            }
+                        });
+            }
+            catch (Exception ex)
+            {
+                log.debug("Invalid request for unseen changes: " + request.getQueryString(), ex);
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+                return;
+            }
+
+            values = changeWatcher.read(waiter);
+            if (!waiter.isChanged(values))
+            {
+                continuation.setObject(waiter);
+                changeWatcher.watch(waiter);
+
+                // on the NIO connector this throws and the request is dispatched again when resumed or timed out
+                continuation.suspend(timeoutMillis);
+
+                changeWatcher.cancel(waiter);
+                values = waiter.getWakeValues();
+            }
+        }
+        else
+        {
+            changeWatcher.cancel(waiter);
+            values = waiter.getWakeValues();
+        }
+
+        JSONObject result = new JSONObject();
+        if (values != null)
+        {
+            Long newestActivityId = waiter.getNewActivityId(values);
+            if (newestActivityId != null)
+            {
+                result.put("latest", newestActivityId.toString());
+                result.put("activityIds", getUnseenActivityIds(streamRequest, user, request));
+                if (StreamChangeKeyResolver.isSiteWide(waiter.getKeys()))
+                {
+                    request.getSession().setAttribute(SITE_WIDE_WAKE_ATTRIBUTE, System.currentTimeMillis());
+                }
+            }
+            UnreadInAppNotificationCountDTO counts = waiter.getChangedCounts(values);
+            if (counts != null)
+            {
+                result.put("high", counts.getHighPriority());
+                result.put("normal", counts.getNormalPriority());
+            }
+        }
+
+        response.setHeader("Cache-Control", "no-store, no-cache, must-revalidate, max-age=0");
+        response.addHeader("Pragma", "no-cache");
+        response.setContentType("application/json");
+        response.getWriter().write(result.toString());
+    }
+
+    /**
+     * Gets the newest activity id the client has been told of.
+     *
+     * @param request
+     *            the request.
+     * @param streamRequest
+     *            the stream request JSON.
+     * @return the activity id.
+     */
+    private long getSeenActivityId(final HttpServletRequest request, final String streamRequest)
+    {
+        String latest = request.getParameter("latest");
+        if (StringUtils.isNotBlank(latest))
+        {
+            return Long.parseLong(latest);
+        }
+        JSONObject json = JSONObject.fromObject(streamRequest);
+        return json.containsKey(GetActivityIdsByJson.SINCE_ID_KEY) ? json.getLong(GetActivityIdsByJson.SINCE_ID_KEY)
+                : json.getLong("minId");
+    }
+
+    /**
+     * Gets the time before which new activity should not wake the request.
+     *
+     * @param request
+     *            the request.
+     * @param activityKeys
+     *            the keys watched for new activity.
+     * @return the time in milliseconds, or 0 for no limit.
+     */
+    private long getActivityNotBefore(final HttpServletRequest request, final List<String> activityKeys)
+    {
+        if (!StreamChangeKeyResolver.isSiteWide(activityKeys))
+        {
+            return 0L;
+        }
+        Long lastWake = (Long) request.getSession().getAttribute(SITE_WIDE_WAKE_ATTRIBUTE);
+        return lastWake == null ? 0L : lastWake + siteWideWakeMillis;
+    }
+
+    /**
+     * Gets the notification counts the client is showing.
+     *
+     * @param request
+     *            the request.
+     * @return the counts, or null if the client does not know them.
+     */
+    private UnreadInAppNotificationCountDTO getSeenCounts(final HttpServletRequest request)
+    {
+        String high = request.getParameter("high");
+        String normal = request.getParameter("normal");
+        if (StringUtils.isBlank(high) || StringUtils.isBlank(normal))
+        {
+            return null;
+        }
+        return new UnreadInAppNotificationCountDTO(Integer.parseInt(high), Integer.parseInt(normal));
+    }
+
+    /**
+     * Gets the ids of the activity in the stream newer than the newest the client is showing.
+     *
+     * @param streamRequest
+     *            the stream request JSON, with sinceId set.
+     * @param user
+     *            the user.
+     * @param request
+     *            the HTTP request.
+     * @return the activity ids; empty if they could not be found.
+     */
+    @SuppressWarnings("unchecked")
+    private JSONArray getUnseenActivityIds(final String streamRequest, final ExtendedUserDetails user,
+            final HttpServletRequest request)
+    {
+        JSONObject json = JSONObject.fromObject(streamRequest);
+        json.put("count", Integer.toString(MAX_ACTIVITY_IDS));
+
+        ActionRequest<Serializable> actionRequest = new ActionRequestImpl<Serializable>("getActivityIDs", json
+                .toString());
+        actionRequest.setSessionId(request.getSession().getId());
+        Serializable ids = actionExecutor.execute(actionRequest, user).getResponse();
+
+        JSONArray result = new JSONArray();
+        if (ids instanceof List)
+        {
+            for (Long id : (List<Long>) ids)
+            {
+                result.add(id.toString());
+            }
+        }
+        else
+        {
+            log.warn("Could not get unseen activity ids for " + user.getUsername() + ": " + ids);
+        }
+        return result;
+    }
+
+    /**
+     * @return the current user, or null if not logged in.
+     */
+    private ExtendedUserDetails getUser()
+    {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.getPrincipal() instanceof ExtendedUserDetails)
+        {
+            return (ExtendedUserDetails) auth.getPrincipal();
+        }
+        return null;
+    }
+}